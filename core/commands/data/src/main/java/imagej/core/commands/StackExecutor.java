@@ -0,0 +1,257 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands;
+
+import imagej.ImageJ;
+import imagej.core.options.OptionsMemoryAndThreads;
+import imagej.data.Dataset;
+import imagej.data.undo.UndoService;
+import imagej.options.OptionsService;
+import imagej.thread.ThreadService;
+import imagej.thread.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.basictypeaccess.PlanarAccess;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Runs an operation over every XY plane of an image, splitting the planes
+ * across the number of threads set by the "Parallel threads for stacks" option
+ * in {@link OptionsMemoryAndThreads}.
+ * <p>
+ * Each thread asks the given {@link PlaneWorkerFactory} for its own
+ * {@link PlaneWorker}, so workers can keep accessors and scratch state without
+ * synchronization. Threads take the next unprocessed plane until none remain.
+ * X and Y are expected to be the first two dimensions of the image.
+ * </p>
+ * 
+ * @author agent
+ */
+public class StackExecutor {
+
+	// -- public interfaces --
+
+	/** Processes the planes handed to one thread. */
+	public interface PlaneWorker {
+
+		/**
+		 * Processes one XY plane. The given position has the plane's coordinates
+		 * in all dimensions past X and Y. Its X and Y entries are zero and may be
+		 * used freely by the worker.
+		 */
+		void processPlane(long[] position);
+	}
+
+	/** Creates one {@link PlaneWorker} per thread. */
+	public interface PlaneWorkerFactory {
+
+		PlaneWorker createWorker();
+	}
+
+	// -- instance variables --
+
+	private final ThreadService threadService;
+	private final UndoService undoService;
+	private final int threadCount;
+
+	// -- constructors --
+
+	/** Creates an executor using the services and options of a context. */
+	public StackExecutor(final ImageJ context) {
+		this(context.getService(ThreadService.class), context
+			.getService(UndoService.class), getStackThreads(context));
+	}
+
+	/**
+	 * Creates an executor running on the given number of threads. The
+	 * {@link UndoService} may be null.
+	 */
+	public StackExecutor(final ThreadService threadService,
+		final UndoService undoService, final int threadCount)
+	{
+		this.threadService = threadService;
+		this.undoService = undoService;
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+	// -- public interface --
+
+	/** Gets the largest number of threads planes are split across. */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Modifies every plane of a dataset in place. Each plane is reported to the
+	 * {@link UndoService} as changing before its worker processes it. Callers
+	 * should call {@link Dataset#update()} once done.
+	 */
+	public void runInPlace(final Dataset dataset,
+		final PlaneWorkerFactory factory)
+	{
+		run(dataset, dataset.getImgPlus(), factory);
+	}
+
+	/** Processes every plane of an image. */
+	public void run(final Img<? extends RealType<?>> img,
+		final PlaneWorkerFactory factory)
+	{
+		run(null, img, factory);
+	}
+
+	// -- utility methods --
+
+	/**
+	 * Gets the number of threads set by the "Parallel threads for stacks"
+	 * option, or 1 if the context has no options.
+	 */
+	public static int getStackThreads(final ImageJ context) {
+		if (context == null) return 1;
+		final OptionsService optionsService =
+			context.getService(OptionsService.class);
+		if (optionsService == null) return 1;
+		final OptionsMemoryAndThreads options =
+			optionsService.getOptions(OptionsMemoryAndThreads.class);
+		return options == null ? 1 : options.getStackThreads();
+	}
+
+	/**
+	 * Runs the given block over [0, count) like
+	 * {@link ThreadUtils#forEachBlock}, split across at most the number of
+	 * threads set by the "Parallel threads for stacks" option of the thread
+	 * service's context.
+	 */
+	public static void forEachBlock(final ThreadService threadService,
+		final long count, final ThreadUtils.Block block)
+	{
+		final int threads =
+			threadService == null ? 1 : getStackThreads(threadService.getContext());
+		ThreadUtils.forEachBlock(threadService, count, threads, block);
+	}
+
+	// -- private helpers --
+
+	private void run(final Dataset dataset,
+		final Img<? extends RealType<?>> img, final PlaneWorkerFactory factory)
+	{
+		final long[] dims = new long[img.numDimensions()];
+		img.dimensions(dims);
+		long planeCount = 1;
+		for (int d = 2; d < dims.length; d++)
+			planeCount *= dims[d];
+		final AtomicLong nextPlane = new AtomicLong();
+		final Runnable task =
+			new PlaneTask(dataset, dims, planeCount, nextPlane, factory);
+
+		final int threads = (int) Math.min(planeCount, threadCount);
+		if (threads <= 1 || threadService == null || !isPlaneSafe(img)) {
+			task.run();
+			return;
+		}
+		final List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(threadService.run(task));
+		}
+		try {
+			ThreadUtils.getAll(futures);
+		}
+		catch (final IllegalStateException e) {
+			nextPlane.set(planeCount); // stop the other threads
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns true if different threads can write to different planes of the
+	 * given image. This is not the case for packed types (e.g., 1-bit or 12-bit)
+	 * stored in one array, where two planes may share a storage word.
+	 */
+	private boolean isPlaneSafe(final Img<? extends RealType<?>> img) {
+		if (img instanceof PlanarAccess) return true;
+		return img.firstElement().getBitsPerPixel() % 8 == 0;
+	}
+
+	// -- helper classes --
+
+	/** Takes planes one at a time until none remain. */
+	private class PlaneTask implements Runnable {
+
+		private final Dataset dataset;
+		private final long[] dims;
+		private final long planeCount;
+		private final AtomicLong nextPlane;
+		private final PlaneWorkerFactory factory;
+
+		public PlaneTask(final Dataset dataset, final long[] dims,
+			final long planeCount, final AtomicLong nextPlane,
+			final PlaneWorkerFactory factory)
+		{
+			this.dataset = dataset;
+			this.dims = dims;
+			this.planeCount = planeCount;
+			this.nextPlane = nextPlane;
+			this.factory = factory;
+		}
+
+		@Override
+		public void run() {
+			final PlaneWorker worker = factory.createWorker();
+			final long[] position = new long[dims.length];
+			long plane;
+			while ((plane = nextPlane.getAndIncrement()) < planeCount) {
+				long remainder = plane;
+				position[0] = 0;
+				position[1] = 0;
+				for (int d = 2; d < dims.length; d++) {
+					position[d] = remainder % dims[d];
+					remainder /= dims[d];
+				}
+				if (dataset != null && undoService != null &&
+					plane <= Integer.MAX_VALUE)
+				{
+					undoService.planeChanging(dataset, (int) plane);
+				}
+				worker.processPlane(position);
+			}
+		}
+	}
+
+}
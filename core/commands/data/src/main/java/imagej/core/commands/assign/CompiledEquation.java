@@ -0,0 +1,564 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A flattened, row-at-a-time evaluator for equations in the syntax accepted by
+ * {@link EquationDataValues}.
+ * <p>
+ * Rather than evaluating an expression tree once per pixel, the equation is
+ * compiled once into a postfix program, which is then executed over a whole
+ * row of pixels at a time: every instruction is dispatched once per row and
+ * applied to a primitive array of values. Subexpressions which do not depend
+ * on the row axis or on the pixel values (e.g. {@code cos(t*PI/7)}) are
+ * computed once per row as scalars.
+ * </p>
+ * <p>
+ * Only a core subset of the equation language is supported: an optional
+ * variable list, numbers, the constants {@code E} and {@code PI}, the pixel
+ * value {@code img}, the operators {@code + - * / % ^}, parentheses and common
+ * math functions of one or two arguments. {@link #compile} returns null for any
+ * other equation, so that callers can fall back to the general parser.
+ * </p>
+ *
+ * @author agent
+ */
+public class CompiledEquation {
+
+	// -- instruction codes --
+
+	private static final int CONST = 0;
+	private static final int VAR = 1;
+	private static final int IMG = 2;
+	private static final int NEG = 3;
+	private static final int ADD = 4;
+	private static final int SUB = 5;
+	private static final int MUL = 6;
+	private static final int DIV = 7;
+	private static final int MOD = 8;
+	private static final int POW = 9;
+	private static final int FUNC1 = 10;
+	private static final int FUNC2 = 11;
+
+	private static final List<String> FUNCTIONS1 = Arrays.asList("abs", "acos",
+		"asin", "atan", "cbrt", "ceil", "cos", "cosh", "exp", "floor", "log",
+		"log10", "log1p", "round", "signum", "sin", "sinh", "sqrt", "tan", "tanh");
+
+	private static final List<String> FUNCTIONS2 = Arrays.asList("atan2", "max",
+		"min", "pow");
+
+	// -- instance variables --
+
+	/** Instruction codes and their operands, in pairs. */
+	private final int[] program;
+
+	/** Constant pool referenced by {@link #CONST} instructions. */
+	private final double[] constants;
+
+	/** Maximum depth of the evaluation stack. */
+	private final int maxDepth;
+
+	/** Whether the program reads the pixel values. */
+	private final boolean readsImg;
+
+	// evaluation stack
+	private double[][] vectors;
+	private final double[] scalars;
+	private final boolean[] isVector;
+
+	// -- constructor --
+
+	private CompiledEquation(final int[] program, final double[] constants,
+		final int maxDepth, final boolean readsImg)
+	{
+		this.program = program;
+		this.constants = constants;
+		this.maxDepth = maxDepth;
+		this.readsImg = readsImg;
+		vectors = new double[maxDepth][0];
+		scalars = new double[maxDepth];
+		isVector = new boolean[maxDepth];
+	}
+
+	// -- public interface --
+
+	/**
+	 * Compiles the given equation.
+	 *
+	 * @param equation The equation, e.g. {@code [x,y], x^2 + y^2}.
+	 * @param numDims The number of dimensions of the image; variables are bound
+	 *          to dimensions in the order they are listed.
+	 * @return The compiled equation, or null if the equation uses syntax which
+	 *         this evaluator does not support.
+	 */
+	public static CompiledEquation compile(final String equation,
+		final int numDims)
+	{
+		try {
+			return new Compiler(equation, numDims).compile();
+		}
+		catch (final UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+	/** Gets whether the equation reads the current pixel values. */
+	public boolean readsImg() {
+		return readsImg;
+	}
+
+	/**
+	 * Evaluates the equation over one row of pixels.
+	 *
+	 * @param rowStart The position of the first pixel of the row.
+	 * @param rowDim The dimension along which the row runs.
+	 * @param imgValues The current values of the row's pixels (only read if
+	 *          {@link #readsImg()}).
+	 * @param out The array in which to store the results; its length is the
+	 *          length of the row.
+	 */
+	public void evaluateRow(final long[] rowStart, final int rowDim,
+		final double[] imgValues, final double[] out)
+	{
+		final int n = out.length;
+		if (vectors[0].length < n) vectors = new double[maxDepth][n];
+		int sp = -1;
+		for (int pc = 0; pc < program.length; pc += 2) {
+			final int op = program[pc];
+			final int arg = program[pc + 1];
+			switch (op) {
+				case CONST:
+					sp++;
+					isVector[sp] = false;
+					scalars[sp] = constants[arg];
+					break;
+				case VAR:
+					sp++;
+					if (arg == rowDim) {
+						isVector[sp] = true;
+						final double[] v = vectors[sp];
+						final long first = rowStart[arg];
+						for (int i = 0; i < n; i++) {
+							v[i] = first + i;
+						}
+					}
+					else {
+						isVector[sp] = false;
+						scalars[sp] = rowStart[arg];
+					}
+					break;
+				case IMG:
+					sp++;
+					isVector[sp] = true;
+					System.arraycopy(imgValues, 0, vectors[sp], 0, n);
+					break;
+				case NEG:
+					if (isVector[sp]) {
+						final double[] v = vectors[sp];
+						for (int i = 0; i < n; i++) {
+							v[i] = -v[i];
+						}
+					}
+					else scalars[sp] = -scalars[sp];
+					break;
+				case FUNC1:
+					if (isVector[sp]) {
+						final double[] v = vectors[sp];
+						for (int i = 0; i < n; i++) {
+							v[i] = function1(arg, v[i]);
+						}
+					}
+					else scalars[sp] = function1(arg, scalars[sp]);
+					break;
+				default:
+					// binary instruction: combine the top two entries
+					sp--;
+					binary(op, arg, sp, n);
+			}
+		}
+		if (isVector[0]) System.arraycopy(vectors[0], 0, out, 0, n);
+		else Arrays.fill(out, 0, n, scalars[0]);
+	}
+
+	// -- private helpers --
+
+	/** Applies a binary instruction to stack entries {@code a} and a+1. */
+	private void binary(final int op, final int func, final int a, final int n)
+	{
+		final int b = a + 1;
+		if (!isVector[a] && !isVector[b]) {
+			scalars[a] = function2(op, func, scalars[a], scalars[b]);
+			return;
+		}
+		final double[] va = vectors[a];
+		if (!isVector[a]) {
+			Arrays.fill(va, 0, n, scalars[a]);
+			isVector[a] = true;
+		}
+		final double[] vb = isVector[b] ? vectors[b] : null;
+		final double sb = scalars[b];
+		switch (op) {
+			case ADD:
+				for (int i = 0; i < n; i++) {
+					va[i] += vb == null ? sb : vb[i];
+				}
+				break;
+			case SUB:
+				for (int i = 0; i < n; i++) {
+					va[i] -= vb == null ? sb : vb[i];
+				}
+				break;
+			case MUL:
+				for (int i = 0; i < n; i++) {
+					va[i] *= vb == null ? sb : vb[i];
+				}
+				break;
+			case DIV:
+				for (int i = 0; i < n; i++) {
+					va[i] /= vb == null ? sb : vb[i];
+				}
+				break;
+			default:
+				for (int i = 0; i < n; i++) {
+					va[i] = function2(op, func, va[i], vb == null ? sb : vb[i]);
+				}
+		}
+	}
+
+	private static double function1(final int func, final double v) {
+		switch (func) {
+			case 0:
+				return Math.abs(v);
+			case 1:
+				return Math.acos(v);
+			case 2:
+				return Math.asin(v);
+			case 3:
+				return Math.atan(v);
+			case 4:
+				return Math.cbrt(v);
+			case 5:
+				return Math.ceil(v);
+			case 6:
+				return Math.cos(v);
+			case 7:
+				return Math.cosh(v);
+			case 8:
+				return Math.exp(v);
+			case 9:
+				return Math.floor(v);
+			case 10:
+				return Math.log(v);
+			case 11:
+				return Math.log10(v);
+			case 12:
+				return Math.log1p(v);
+			case 13:
+				return Math.round(v);
+			case 14:
+				return Math.signum(v);
+			case 15:
+				return Math.sin(v);
+			case 16:
+				return Math.sinh(v);
+			case 17:
+				return Math.sqrt(v);
+			case 18:
+				return Math.tan(v);
+			case 19:
+				return Math.tanh(v);
+			default:
+				throw new IllegalStateException("Unknown function: " + func);
+		}
+	}
+
+	private static double function2(final int op, final int func,
+		final double a, final double b)
+	{
+		switch (op) {
+			case ADD:
+				return a + b;
+			case SUB:
+				return a - b;
+			case MUL:
+				return a * b;
+			case DIV:
+				return a / b;
+			case MOD:
+				return a % b;
+			case POW:
+				return Math.pow(a, b);
+			case FUNC2:
+				switch (func) {
+					case 0:
+						return Math.atan2(a, b);
+					case 1:
+						return Math.max(a, b);
+					case 2:
+						return Math.min(a, b);
+					case 3:
+						return Math.pow(a, b);
+				}
+		}
+		throw new IllegalStateException("Unknown instruction: " + op);
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * Recursive descent compiler from equation text to a postfix program.
+	 * Throws {@link UnsupportedOperationException} for any syntax it does not
+	 * handle.
+	 */
+	private static class Compiler {
+
+		private final String text;
+		private final int numDims;
+		private final List<String> variables = new ArrayList<String>();
+		private final List<Double> constants = new ArrayList<Double>();
+		private int[] program = new int[32];
+		private int length;
+		private int depth, maxDepth;
+		private boolean readsImg;
+		private int pos;
+
+		private Compiler(final String text, final int numDims) {
+			this.text = text;
+			this.numDims = numDims;
+		}
+
+		private CompiledEquation compile() {
+			skipSpace();
+			if (peek() == '[') {
+				pos++;
+				do {
+					final String name = identifier();
+					if (variables.contains(name) || isReserved(name)) unsupported();
+					variables.add(name);
+					skipSpace();
+				}
+				while (accept(','));
+				expect(']');
+				if (variables.size() > numDims) unsupported();
+				expect(',');
+			}
+			expression();
+			skipSpace();
+			if (pos != text.length()) unsupported();
+
+			final double[] pool = new double[constants.size()];
+			for (int i = 0; i < pool.length; i++) {
+				pool[i] = constants.get(i);
+			}
+			return new CompiledEquation(Arrays.copyOf(program, length), pool,
+				maxDepth, readsImg);
+		}
+
+		// expression = term { ("+" | "-") term }
+		private void expression() {
+			term();
+			while (true) {
+				if (accept('+')) {
+					term();
+					emit(ADD, 0);
+				}
+				else if (accept('-')) {
+					term();
+					emit(SUB, 0);
+				}
+				else return;
+			}
+		}
+
+		// term = factor { ("*" | "/" | "%") factor }
+		private void term() {
+			factor();
+			while (true) {
+				if (accept('*')) {
+					factor();
+					emit(MUL, 0);
+				}
+				else if (accept('/')) {
+					factor();
+					emit(DIV, 0);
+				}
+				else if (accept('%')) {
+					factor();
+					emit(MOD, 0);
+				}
+				else return;
+			}
+		}
+
+		// factor = ["+" | "-"] atom ["^" factor]
+		private void factor() {
+			boolean negate = false;
+			if (accept('-')) negate = true;
+			else accept('+');
+			atom();
+			if (accept('^')) {
+				// NB: Whether the sign binds tighter than the power is ambiguous;
+				// leave such equations to the general parser.
+				if (negate) unsupported();
+				factor();
+				emit(POW, 0);
+			}
+			if (negate) emit(NEG, 0);
+		}
+
+		// atom = number | constant | variable | "img" | function | "(" expr ")"
+		private void atom() {
+			skipSpace();
+			final char c = peek();
+			if (c == '(') {
+				pos++;
+				expression();
+				expect(')');
+			}
+			else if (Character.isDigit(c) || c == '.') {
+				number();
+			}
+			else if (Character.isLetter(c)) {
+				final String name = identifier();
+				final int var = variables.indexOf(name);
+				if (var >= 0) emit(VAR, var);
+				else if (name.equals("img")) {
+					readsImg = true;
+					emit(IMG, 0);
+				}
+				else if (name.equals("E")) constant(Math.E);
+				else if (name.equals("PI")) constant(Math.PI);
+				else if (FUNCTIONS1.contains(name)) {
+					expect('(');
+					expression();
+					expect(')');
+					emit(FUNC1, FUNCTIONS1.indexOf(name));
+				}
+				else if (FUNCTIONS2.contains(name)) {
+					expect('(');
+					expression();
+					expect(',');
+					expression();
+					expect(')');
+					emit(FUNC2, FUNCTIONS2.indexOf(name));
+				}
+				else unsupported();
+			}
+			else unsupported();
+		}
+
+		private void number() {
+			final int start = pos;
+			while (pos < text.length() &&
+				(Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.'))
+			{
+				pos++;
+			}
+			try {
+				constant(Double.parseDouble(text.substring(start, pos)));
+			}
+			catch (final NumberFormatException e) {
+				unsupported();
+			}
+		}
+
+		private String identifier() {
+			skipSpace();
+			final int start = pos;
+			while (pos < text.length() &&
+				Character.isLetterOrDigit(text.charAt(pos)))
+			{
+				pos++;
+			}
+			if (pos == start || !Character.isLetter(text.charAt(start))) {
+				unsupported();
+			}
+			return text.substring(start, pos);
+		}
+
+		private boolean isReserved(final String name) {
+			return name.equals("img") || name.equals("E") || name.equals("PI") ||
+				FUNCTIONS1.contains(name) || FUNCTIONS2.contains(name);
+		}
+
+		private void constant(final double value) {
+			emit(CONST, constants.size());
+			constants.add(value);
+		}
+
+		private void emit(final int op, final int arg) {
+			if (length + 2 > program.length) {
+				program = Arrays.copyOf(program, program.length * 2);
+			}
+			program[length++] = op;
+			program[length++] = arg;
+			// track the stack depth needed to evaluate the program
+			if (op == CONST || op == VAR || op == IMG) depth++;
+			else if (op != NEG && op != FUNC1) depth--;
+			maxDepth = Math.max(maxDepth, depth);
+		}
+
+		private char peek() {
+			return pos < text.length() ? text.charAt(pos) : '\0';
+		}
+
+		private boolean accept(final char c) {
+			skipSpace();
+			if (peek() != c) return false;
+			pos++;
+			return true;
+		}
+
+		private void expect(final char c) {
+			if (!accept(c)) unsupported();
+		}
+
+		private void skipSpace() {
+			while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+				pos++;
+			}
+		}
+
+		private void unsupported() {
+			throw new UnsupportedOperationException(text);
+		}
+	}
+
+}
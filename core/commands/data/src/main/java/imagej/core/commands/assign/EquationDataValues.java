@@ -54,6 +54,7 @@
 
 import java.net.URL;
 
+import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.meta.Axes;
 import net.imglib2.ops.condition.UVInsideRoiCondition;
@@ -63,6 +64,7 @@
 import net.imglib2.ops.input.PointInputIteratorFactory;
 import net.imglib2.ops.parse.RealEquationFunctionParser;
 import net.imglib2.ops.util.Tuple2;
+import net.imglib2.roi.RegionOfInterest;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
 
@@ -118,6 +120,8 @@
 	private long[] origin;
 	private long[] span;
 	private UVInsideRoiCondition condition;
+	private RegionOfInterest roi;
+	private int xIndex, yIndex;
 
 	// -- public interface --
 
@@ -128,6 +132,14 @@ public void run() {
 			cancel(err);
 			return;
 		}
+		final CompiledEquation compiled =
+			CompiledEquation.compile(equationString, dataset.numDimensions());
+		if (compiled != null && xIndex == 0 && yIndex == 1) {
+			assignRows(compiled);
+			dataset.update();
+			return;
+		}
+		// fall back to the general equation parser
 		RealEquationFunctionParser parser = new RealEquationFunctionParser();
 		Tuple2<Function<long[],DoubleType>, String> result =
 				parser.parse(equationString, dataset.getImgPlus());
@@ -178,8 +190,8 @@ private String setRegion(final ImageDisplay disp, boolean allPlanes) {
 		final DatasetView view = imgDispService.getActiveDatasetView(disp);
 		
 		// check dimensions of Dataset
-		final int xIndex = dataset.getAxisIndex(Axes.X);
-		final int yIndex = dataset.getAxisIndex(Axes.Y);
+		xIndex = dataset.getAxisIndex(Axes.X);
+		yIndex = dataset.getAxisIndex(Axes.Y);
 		if ((xIndex < 0) || (yIndex < 0))
 			return "display does not have XY planes";
 		
@@ -224,12 +236,73 @@ else if (allPlanes) {
 		}
 		
 		condition = null;
-		if (overlay != null)
-			condition = new UVInsideRoiCondition(overlay.getRegionOfInterest());
+		roi = null;
+		if (overlay != null) {
+			roi = overlay.getRegionOfInterest();
+			condition = new UVInsideRoiCondition(roi);
+		}
 		
 		return null;
 	}
 	
+	/**
+	 * Assigns the region row by row using a compiled equation. The ROI is
+	 * evaluated once per XY position up front, as a mask shared by all planes.
+	 */
+	private void assignRows(final CompiledEquation equation) {
+		@SuppressWarnings("unchecked")
+		final Img<T> img = (Img<T>) dataset.getImgPlus();
+		final RandomAccess<T> accessor = img.randomAccess();
+		for (final long size : span) {
+			if (size <= 0) return; // empty region
+		}
+		final int w = (int) span[0];
+		final int h = (int) span[1];
+		final boolean[][] mask = roi == null ? null : new boolean[h][w];
+		if (mask != null) {
+			final double[] pt = new double[2];
+			for (int y = 0; y < h; y++) {
+				pt[1] = origin[1] + y;
+				for (int x = 0; x < w; x++) {
+					pt[0] = origin[0] + x;
+					mask[y][x] = roi.contains(pt);
+				}
+			}
+		}
+
+		final double[] imgValues = new double[w];
+		final double[] values = new double[w];
+		final long[] pos = origin.clone();
+		while (true) {
+			final boolean[] rowMask =
+				mask == null ? null : mask[(int) (pos[1] - origin[1])];
+			accessor.setPosition(pos);
+			if (equation.readsImg()) {
+				for (int x = 0; x < w; x++) {
+					imgValues[x] = accessor.get().getRealDouble();
+					accessor.fwd(0);
+				}
+				accessor.setPosition(pos);
+			}
+			equation.evaluateRow(pos, 0, imgValues, values);
+			for (int x = 0; x < w; x++) {
+				if (rowMask == null || rowMask[x]) {
+					accessor.get().setReal(values[x]);
+				}
+				accessor.fwd(0);
+			}
+
+			// advance to the next row of the region
+			int d = 1;
+			while (d < pos.length) {
+				if (++pos[d] < origin[d] + span[d]) break;
+				pos[d] = origin[d];
+				d++;
+			}
+			if (d == pos.length) break;
+		}
+	}
+
 	protected void openWebPage() {
 		try {
 			String urlString =
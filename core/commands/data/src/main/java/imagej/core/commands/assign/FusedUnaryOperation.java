@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.ops.operation.complex.unary.ComplexUnaryOperation;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+/**
+ * A {@link ComplexUnaryOperation} which applies a chain of other operations in
+ * sequence. After every step the intermediate value is stored into a variable
+ * of the image's pixel type and read back, so it is rounded and clamped just
+ * as if each operation had been written to the image by its own command.
+ * Intermediate results are kept in preallocated variables, so computing a
+ * value allocates nothing no matter how long the chain is.
+ * 
+ * @author agent
+ */
+public class FusedUnaryOperation<T extends RealType<T>> implements
+	ComplexUnaryOperation<DoubleType, DoubleType>
+{
+
+	// -- instance variables --
+
+	private final T pixel;
+	private final List<ComplexUnaryOperation<DoubleType, DoubleType>> operations;
+	private final DoubleType temp1, temp2;
+
+	// -- constructor --
+
+	/**
+	 * Creates an empty chain whose intermediate values are coerced to the type
+	 * of the given pixel.
+	 */
+	public FusedUnaryOperation(final T pixelType) {
+		pixel = pixelType.createVariable();
+		operations = new ArrayList<ComplexUnaryOperation<DoubleType, DoubleType>>();
+		temp1 = new DoubleType();
+		temp2 = new DoubleType();
+	}
+
+	// -- public interface --
+
+	/** Appends an operation to the end of the chain. */
+	public void add(final ComplexUnaryOperation<DoubleType, DoubleType> op) {
+		operations.add(op);
+	}
+
+	/** Gets the number of operations in the chain. */
+	public int size() {
+		return operations.size();
+	}
+
+	@Override
+	public DoubleType compute(final DoubleType input, final DoubleType output) {
+		DoubleType in = input;
+		for (int i = 0; i < operations.size(); i++) {
+			// alternate between the temporaries
+			final DoubleType out = (i & 1) == 0 ? temp1 : temp2;
+			operations.get(i).compute(in, out);
+			// round and clamp as writing to the image would
+			pixel.setReal(out.getRealDouble());
+			out.setReal(pixel.getRealDouble());
+			in = out;
+		}
+		output.set(in);
+		return output;
+	}
+
+	@Override
+	public FusedUnaryOperation<T> copy() {
+		final FusedUnaryOperation<T> copy = new FusedUnaryOperation<T>(pixel);
+		for (final ComplexUnaryOperation<DoubleType, DoubleType> op : operations) {
+			copy.add(op.copy());
+		}
+		return copy;
+	}
+
+}
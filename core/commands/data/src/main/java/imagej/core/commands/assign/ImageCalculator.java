@@ -43,6 +43,7 @@
 import imagej.plugin.Menu;
 import imagej.plugin.Parameter;
 import imagej.plugin.Plugin;
+import imagej.thread.ThreadService;
 
 import java.util.HashMap;
 
@@ -89,6 +90,9 @@
 	@Parameter
 	private DatasetService datasetService;
 
+	@Parameter
+	private ThreadService threadService;
+
 	@Parameter(type = ItemIO.BOTH)
 	private Dataset input1;
 
@@ -155,6 +159,12 @@ public ImageCalculator() {
 	@Override
 	public void run() {
 		if (operator == null) operator = operators.get(opName);
+		// use the primitive plane engine for built-in operations when possible
+		if (operator == operators.get(opName) &&
+			PlanarCalculator.canCombine(input1, input2, opName) && combinePlanes())
+		{
+			return;
+		}
 		Img<DoubleType> img = null;
 		try {
 			@SuppressWarnings("unchecked")
@@ -179,18 +189,7 @@ public void run() {
 			input1.update();
 		}
 		else { // write into output
-			int bits = input1.getType().getBitsPerPixel();
-			boolean floating = !input1.isInteger();
-			boolean signed = input1.isSigned();
-			if (wantDoubles) {
-				bits = 64;
-				floating = true;
-				signed = true;
-			}
-			// TODO : HACK - this next line works but always creates a PlanarImg
-			output =
-				datasetService.create(span, "Result of operation", input1.getAxes(),
-					bits, signed, floating);
+			output = createOutput(span);
 			copyDataInto(output.getImgPlus(), img, span);
 			output.update(); // TODO - probably unecessary
 		}
@@ -245,6 +244,42 @@ public void setDoubleOutput(final boolean wantDoubles) {
 
 	// -- private helpers --
 
+	/**
+	 * Combines the inputs plane by plane with a {@link PlanarCalculator}, writing
+	 * in place when no new window is wanted.
+	 * 
+	 * @return false if the output could not be accessed as primitive planes.
+	 */
+	private boolean combinePlanes() {
+		final PlanarCalculator calculator = new PlanarCalculator(threadService);
+		if (!wantDoubles && !newWindow) {
+			output = null;
+			calculator.combine(input1, input2, input1, opName);
+			input1.update();
+			return true;
+		}
+		final Dataset result = createOutput(input1.getDims());
+		if (!PlanarCalculator.isSupported(result)) return false;
+		output = result;
+		calculator.combine(input1, input2, output, opName);
+		output.update();
+		return true;
+	}
+
+	private Dataset createOutput(final long[] span) {
+		int bits = input1.getType().getBitsPerPixel();
+		boolean floating = !input1.isInteger();
+		boolean signed = input1.isSigned();
+		if (wantDoubles) {
+			bits = 64;
+			floating = true;
+			signed = true;
+		}
+		// TODO : HACK - this next line works but always creates a PlanarImg
+		return datasetService.create(span, "Result of operation",
+			input1.getAxes(), bits, signed, floating);
+	}
+
 	private void copyDataInto(
 		Img<? extends RealType<?>> out, Img<? extends RealType<?>> in, long[] span)
 	{
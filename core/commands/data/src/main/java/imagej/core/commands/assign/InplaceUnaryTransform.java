@@ -35,14 +35,19 @@
 
 package imagej.core.commands.assign;
 
+import imagej.core.commands.StackExecutor;
+import imagej.core.commands.StackExecutor.PlaneWorker;
+import imagej.core.commands.StackExecutor.PlaneWorkerFactory;
 import imagej.data.Dataset;
 import imagej.data.Position;
 import imagej.data.display.ImageDisplay;
 import imagej.data.overlay.Overlay;
+import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.meta.Axes;
 import net.imglib2.ops.condition.Condition;
 import net.imglib2.ops.condition.UVInsideRoiCondition;
+import net.imglib2.ops.function.Function;
 import net.imglib2.ops.function.complex.ComplexImageFunction;
 import net.imglib2.ops.function.general.GeneralUnaryFunction;
 import net.imglib2.ops.img.ImageAssignment;
@@ -56,7 +61,8 @@
  * ComplexUnaryOperation} to some input image. The run() method modifies the
  * current selection of the active {@link Dataset} of the given {@link
  * ImageDisplay}. The given {@link ComplexUnaryOperation} is applied on a pixel
- * by pixel basis.
+ * by pixel basis. When all planes of a stack are transformed, the planes are
+ * processed in parallel by a {@link StackExecutor}.
  * 
  * @author Barry DeZonia
  */
@@ -68,6 +74,8 @@
 	private final ImageAssignment<I,O,long[]> assigner2;
 	private final ImageAssignment<I,O,long[]> assigner3;
 	private final Dataset dataset;
+	private final ComplexUnaryOperation<O,O> operation;
+	private final O outType;
 	private long[] origin;
 	private long[] span;
 	private Condition<long[]> condition;
@@ -82,19 +90,27 @@ public InplaceUnaryTransform(
 			Overlay overlay)
 	{
 		this.dataset = dataset;
+		this.operation = operation;
+		this.outType = outType;
 		setRegion(dataset, overlay);
-		@SuppressWarnings("unchecked")
-		final Img<I> img = (Img<I>)dataset.getImgPlus();
-		final ComplexImageFunction<I,O> f1 =
-				new ComplexImageFunction<I,O>(img, outType.createVariable());
-		final GeneralUnaryFunction<long[],O,O> function = new
-				GeneralUnaryFunction<long[],O,O>(
-					f1, operation, outType.createVariable());
-		final InputIteratorFactory<long[]> factory =
-				new PointInputIteratorFactory();
-		assigner1 =
-			new ImageAssignment<I,O, long[]>(img, origin, span, function,
-					condition, factory);
+		if (isStack()) {
+			// planes are assigned by the workers of runPlanes()
+			assigner1 = null;
+		}
+		else {
+			@SuppressWarnings("unchecked")
+			final Img<I> img = (Img<I>)dataset.getImgPlus();
+			final ComplexImageFunction<I,O> f1 =
+					new ComplexImageFunction<I,O>(img, outType.createVariable());
+			final GeneralUnaryFunction<long[],O,O> function = new
+					GeneralUnaryFunction<long[],O,O>(
+						f1, operation, outType.createVariable());
+			final InputIteratorFactory<long[]> factory =
+					new PointInputIteratorFactory();
+			assigner1 =
+				new ImageAssignment<I,O, long[]>(img, origin, span, function,
+						condition, factory);
+		}
 		assigner2 = null;
 		assigner3 = null;
 	}
@@ -108,6 +124,8 @@ public InplaceUnaryTransform(
 			Position planePos)
 	{
 		this.dataset = dataset;
+		this.operation = operation;
+		this.outType = outType;
 		setRegion(dataset, overlay, planePos);
 		@SuppressWarnings("unchecked")
 		final Img<I> img = (Img<I>)dataset.getImgPlus();
@@ -146,6 +164,10 @@ public InplaceUnaryTransform(
 	// -- public interface --
 
 	public void run() {
+		if (assigner1 == null) {
+			runPlanes();
+			return;
+		}
 		if (assigner1 != null) assigner1.assign();
 		if (assigner2 != null) assigner2.assign();
 		if (assigner3 != null) assigner3.assign();
@@ -158,6 +180,31 @@ public void run() {
 
 	// -- private helpers --
 
+	/**
+	 * Returns true if the region spans several XY planes. A single plane is left
+	 * to the {@link ImageAssignment}, which splits the plane itself.
+	 */
+	private boolean isStack() {
+		if (dataset.getAxisIndex(Axes.X) != 0) return false;
+		if (dataset.getAxisIndex(Axes.Y) != 1) return false;
+		final long[] dims = dataset.getDims();
+		for (int i = 2; i < dims.length; i++)
+			if (dims[i] > 1) return true;
+		return false;
+	}
+
+	private void runPlanes() {
+		final StackExecutor executor = new StackExecutor(dataset.getContext());
+		executor.runInPlace(dataset, new PlaneWorkerFactory() {
+
+			@Override
+			public PlaneWorker createWorker() {
+				return new TransformWorker();
+			}
+		});
+		dataset.update();
+	}
+
 	/** All planes version */
 	private void setRegion(Dataset ds, Overlay overlay) {
 
@@ -250,6 +297,46 @@ private LongRect findXYRegion(Dataset ds, Overlay overlay, int xIndex, int yInde
 		return rect;
 	}
 	
+	/** Transforms the region of one plane at a time. */
+	private class TransformWorker implements PlaneWorker {
+
+		private final Img<I> img;
+		private final Function<long[],O> function;
+		private final Condition<long[]> planeCondition;
+		private final RandomAccess<I> accessor;
+		private final O output;
+
+		@SuppressWarnings("unchecked")
+		public TransformWorker() {
+			img = (Img<I>) dataset.getImgPlus();
+			final ComplexImageFunction<I,O> f1 =
+					new ComplexImageFunction<I,O>(img, outType.createVariable());
+			function =
+				new GeneralUnaryFunction<long[],O,O>(
+					f1, operation.copy(), outType.createVariable());
+			planeCondition = condition == null ? null : condition.copy();
+			accessor = img.randomAccess();
+			output = outType.createVariable();
+		}
+
+		@Override
+		public void processPlane(final long[] position) {
+			for (long y = origin[1]; y < origin[1] + span[1]; y++) {
+				position[1] = y;
+				for (long x = origin[0]; x < origin[0] + span[0]; x++) {
+					position[0] = x;
+					if (planeCondition != null && !planeCondition.isTrue(position)) {
+						continue;
+					}
+					function.compute(position, output);
+					accessor.setPosition(position);
+					accessor.get().setReal(output.getRealDouble());
+					accessor.get().setImaginary(output.getImaginaryDouble());
+				}
+			}
+		}
+	}
+
 	private class LongRect {
 		public long x, y, w, h;
 	}
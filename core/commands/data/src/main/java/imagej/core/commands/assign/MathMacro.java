@@ -0,0 +1,259 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign;
+
+import imagej.command.ContextCommand;
+import imagej.core.options.OptionsMisc;
+import imagej.data.Dataset;
+import imagej.data.display.DatasetView;
+import imagej.data.display.ImageDisplay;
+import imagej.data.display.ImageDisplayService;
+import imagej.data.display.OverlayService;
+import imagej.data.overlay.Overlay;
+import imagej.menu.MenuConstants;
+import imagej.module.ItemIO;
+import imagej.module.ItemVisibility;
+import imagej.options.OptionsService;
+import imagej.plugin.Menu;
+import imagej.plugin.Parameter;
+import imagej.plugin.Plugin;
+import net.imglib2.ops.operation.complex.unary.ComplexUnaryOperation;
+import net.imglib2.ops.operation.real.unary.RealAbs;
+import net.imglib2.ops.operation.real.unary.RealAddConstant;
+import net.imglib2.ops.operation.real.unary.RealAndConstant;
+import net.imglib2.ops.operation.real.unary.RealConstant;
+import net.imglib2.ops.operation.real.unary.RealDivideConstant;
+import net.imglib2.ops.operation.real.unary.RealExp;
+import net.imglib2.ops.operation.real.unary.RealGammaConstant;
+import net.imglib2.ops.operation.real.unary.RealLog;
+import net.imglib2.ops.operation.real.unary.RealMaxConstant;
+import net.imglib2.ops.operation.real.unary.RealMinConstant;
+import net.imglib2.ops.operation.real.unary.RealMultiplyConstant;
+import net.imglib2.ops.operation.real.unary.RealOrConstant;
+import net.imglib2.ops.operation.real.unary.RealPowerConstant;
+import net.imglib2.ops.operation.real.unary.RealReciprocal;
+import net.imglib2.ops.operation.real.unary.RealSqr;
+import net.imglib2.ops.operation.real.unary.RealSqrt;
+import net.imglib2.ops.operation.real.unary.RealSubtractConstant;
+import net.imglib2.ops.operation.real.unary.RealXorConstant;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+/**
+ * Applies a chain of math operations to a Dataset in a single pass. The chain
+ * is given as text, e.g. "add=25 multiply=2 log", naming the same operations
+ * as the individual commands of the Math menu. The result matches running
+ * those commands one after another, but the data is swept once and updated
+ * once (see {@link MathPipeline}).
+ * 
+ * @author agent
+ */
+@Plugin(menu = {
+	@Menu(label = MenuConstants.PROCESS_LABEL,
+		weight = MenuConstants.PROCESS_WEIGHT,
+		mnemonic = MenuConstants.PROCESS_MNEMONIC),
+	@Menu(label = "Math", mnemonic = 'm'),
+	@Menu(label = "Macro...", weight = 21) },
+	headless = true)
+public class MathMacro<T extends RealType<T>> extends ContextCommand {
+
+	// -- instance variables that are Parameters --
+
+	@Parameter
+	private OptionsService optionsService;
+
+	@Parameter
+	private OverlayService overlayService;
+
+	@Parameter
+	private ImageDisplayService imgDispService;
+
+	@Parameter(type = ItemIO.BOTH)
+	private ImageDisplay display;
+
+	@Parameter(visibility = ItemVisibility.MESSAGE)
+	private final String examples = "<html><b>Format examples:</b>" + "<ul>"
+		+ "<li>add=25 multiply=2 log</li>" + "<li>subtract=10; max=0; sqrt</li>"
+		+ "</ul>";
+
+	@Parameter(label = "Apply to all planes")
+	private boolean allPlanes;
+
+	@Parameter(label = "Operations")
+	private String operations;
+
+	// -- public interface --
+
+	@Override
+	public void run() {
+		final MathPipeline pipeline = new MathPipeline();
+		final String err = parse(operations, pipeline);
+		if (err != null) {
+			cancel(err);
+			return;
+		}
+		final Dataset dataset = imgDispService.getActiveDataset(display);
+		final Overlay overlay = overlayService.getActiveOverlay(display);
+		final DatasetView view = imgDispService.getActiveDatasetView(display);
+		if (allPlanes) pipeline.<T> apply(dataset, overlay);
+		else pipeline.<T> apply(dataset, overlay, view.getPlanePosition());
+	}
+
+	public ImageDisplay getDisplay() {
+		return display;
+	}
+
+	public void setDisplay(final ImageDisplay display) {
+		this.display = display;
+	}
+
+	public boolean isAllPlanes() {
+		return allPlanes;
+	}
+
+	public void setAllPlanes(final boolean value) {
+		this.allPlanes = value;
+	}
+
+	public String getOperations() {
+		return operations;
+	}
+
+	public void setOperations(final String operations) {
+		this.operations = operations;
+	}
+
+	// -- private helpers --
+
+	/**
+	 * Records the operations named by the given text in the given pipeline.
+	 * Returns an error message, or null if all operations were recognized.
+	 */
+	private String parse(final String text, final MathPipeline pipeline) {
+		if (text == null) return "No operations given";
+		for (final String token : text.trim().split("[\\s;,]+")) {
+			if (token.length() == 0) continue;
+			final int eq = token.indexOf('=');
+			final String name =
+				(eq < 0 ? token : token.substring(0, eq)).toLowerCase();
+			final String arg = eq < 0 ? null : token.substring(eq + 1);
+			final ComplexUnaryOperation<DoubleType, DoubleType> op;
+			try {
+				op = createOperation(name, arg);
+			}
+			catch (final NumberFormatException e) {
+				return "Bad value for " + name + ": " + arg;
+			}
+			if (op == null) return "Unknown operation: " + token;
+			pipeline.add(op);
+		}
+		if (pipeline.size() == 0) return "No operations given";
+		return null;
+	}
+
+	/**
+	 * Creates the operation of the given name, as the corresponding Math menu
+	 * command would. Returns null if the name is unknown or the operation's
+	 * value is missing or not expected.
+	 */
+	private ComplexUnaryOperation<DoubleType, DoubleType> createOperation(
+		final String name, final String arg)
+	{
+		if (arg == null) {
+			if (name.equals("abs")) return new RealAbs<DoubleType, DoubleType>();
+			if (name.equals("exp")) return new RealExp<DoubleType, DoubleType>();
+			if (name.equals("log")) return new RealLog<DoubleType, DoubleType>();
+			if (name.equals("sqrt")) return new RealSqrt<DoubleType, DoubleType>();
+			if (name.equals("square")) return new RealSqr<DoubleType, DoubleType>();
+			if (name.equals("reciprocal")) {
+				return new RealReciprocal<DoubleType, DoubleType>(divByZeroValue());
+			}
+			return null;
+		}
+		if (name.equals("and")) {
+			return new RealAndConstant<DoubleType, DoubleType>(Long.parseLong(arg));
+		}
+		if (name.equals("or")) {
+			return new RealOrConstant<DoubleType, DoubleType>(Long.parseLong(arg));
+		}
+		if (name.equals("xor")) {
+			return new RealXorConstant<DoubleType, DoubleType>(Long.parseLong(arg));
+		}
+		final double value = Double.parseDouble(arg);
+		if (name.equals("add")) {
+			return new RealAddConstant<DoubleType, DoubleType>(value);
+		}
+		if (name.equals("subtract")) {
+			return new RealSubtractConstant<DoubleType, DoubleType>(value);
+		}
+		if (name.equals("multiply")) {
+			return new RealMultiplyConstant<DoubleType, DoubleType>(value);
+		}
+		if (name.equals("divide")) {
+			return new RealDivideConstant<DoubleType, DoubleType>(value,
+				divByZeroValue());
+		}
+		if (name.equals("min")) {
+			return new RealMinConstant<DoubleType, DoubleType>(value);
+		}
+		if (name.equals("max")) {
+			return new RealMaxConstant<DoubleType, DoubleType>(value);
+		}
+		if (name.equals("gamma")) {
+			return new RealGammaConstant<DoubleType, DoubleType>(value);
+		}
+		if (name.equals("power")) {
+			return new RealPowerConstant<DoubleType, DoubleType>(value);
+		}
+		if (name.equals("set")) {
+			return new RealConstant<DoubleType, DoubleType>(value);
+		}
+		return null;
+	}
+
+	private double divByZeroValue() {
+		final OptionsMisc optionsMisc =
+			optionsService.getOptions(OptionsMisc.class);
+		final String dbzString = optionsMisc.getDivByZeroVal();
+		try {
+			return Double.parseDouble(dbzString);
+		}
+		catch (final NumberFormatException e) {
+			return Double.POSITIVE_INFINITY;
+		}
+	}
+
+}
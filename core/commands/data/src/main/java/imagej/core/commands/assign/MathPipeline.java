@@ -0,0 +1,139 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign;
+
+import imagej.data.Dataset;
+import imagej.data.Position;
+import imagej.data.overlay.Overlay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.ops.operation.complex.unary.ComplexUnaryOperation;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+/**
+ * Records a chain of unary math operations and applies them to a
+ * {@link Dataset} in a single pass.
+ * <p>
+ * Running several math commands in a row (e.g. Add, then Multiply, then Log)
+ * makes one full pass over the data per command and updates the dataset after
+ * each. A pipeline instead fuses the recorded operations with a
+ * {@link FusedUnaryOperation}: each pixel is read once, transformed by every
+ * operation in turn, and written once, followed by a single update. Each
+ * intermediate value is rounded and clamped to the dataset's pixel type, so
+ * the result is the same as running the commands one after another.
+ * </p>
+ * <p>
+ * Operations can be recorded from configured {@link MathCommand}s, e.g.:
+ * </p>
+ * 
+ * <pre>
+ * MathPipeline pipeline = new MathPipeline();
+ * AddToDataValues&lt;?&gt; add = new AddToDataValues();
+ * add.setValue(25);
+ * pipeline.add(add);
+ * pipeline.add(new RealLog&lt;DoubleType, DoubleType&gt;());
+ * pipeline.apply(dataset, overlay);
+ * </pre>
+ * 
+ * @author agent
+ * @see MathMacro
+ */
+public class MathPipeline {
+
+	// -- instance variables --
+
+	private final List<ComplexUnaryOperation<DoubleType, DoubleType>> operations =
+		new ArrayList<ComplexUnaryOperation<DoubleType, DoubleType>>();
+
+	// -- public interface --
+
+	/** Records the operation of the given (fully configured) math command. */
+	public void add(final MathCommand<?, DoubleType> command) {
+		add(command.getOperation());
+	}
+
+	/** Records the given operation. */
+	public void add(final ComplexUnaryOperation<DoubleType, DoubleType> op) {
+		operations.add(op);
+	}
+
+	/** Gets the number of recorded operations. */
+	public int size() {
+		return operations.size();
+	}
+
+	/**
+	 * Applies the recorded operations to all planes of the given dataset, within
+	 * the given overlay (if not null).
+	 */
+	public <T extends RealType<T>> void apply(final Dataset dataset,
+		final Overlay overlay)
+	{
+		if (size() == 0) return;
+		new InplaceUnaryTransform<T, DoubleType>(this.<T> fuse(dataset),
+			new DoubleType(), dataset, overlay).run();
+	}
+
+	/**
+	 * Applies the recorded operations to a single plane of the given dataset,
+	 * within the given overlay (if not null).
+	 */
+	public <T extends RealType<T>> void apply(final Dataset dataset,
+		final Overlay overlay, final Position planePos)
+	{
+		if (size() == 0) return;
+		new InplaceUnaryTransform<T, DoubleType>(this.<T> fuse(dataset),
+			new DoubleType(), dataset, overlay, planePos).run();
+	}
+
+	// -- private helpers --
+
+	private <T extends RealType<T>> FusedUnaryOperation<T> fuse(
+		final Dataset dataset)
+	{
+		@SuppressWarnings("unchecked")
+		final T type = (T) dataset.getType();
+		final FusedUnaryOperation<T> fused = new FusedUnaryOperation<T>(type);
+		for (final ComplexUnaryOperation<DoubleType, DoubleType> op : operations) {
+			fused.add(op.copy());
+		}
+		return fused;
+	}
+
+}
@@ -0,0 +1,328 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign;
+
+import imagej.core.commands.StackExecutor;
+import imagej.data.Dataset;
+import imagej.thread.ThreadService;
+import imagej.thread.ThreadUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Combines two planar {@link Dataset}s of primitive types plane by plane, in
+ * tight loops over the primitive plane arrays. This is the fast path of
+ * {@link ImageCalculator} for its built-in operations.
+ * <p>
+ * Each plane is converted to doubles, combined, and stored back with the same
+ * rounding and wrapping behavior as {@link RealType#setReal(double)}, so the
+ * results match those of the general per-pixel path. Planes are distributed
+ * across threads.
+ * </p>
+ * 
+ * @author agent
+ */
+public class PlanarCalculator {
+
+	// -- constants --
+
+	/** The operations supported, as named by {@link ImageCalculator}. */
+	public static final List<String> OPERATIONS = Arrays.asList("Add",
+		"Subtract", "Multiply", "Divide", "AND", "OR", "XOR", "Min", "Max",
+		"Average", "Difference", "Copy", "Transparent-zero");
+
+	private static final int BYTE = 0, UBYTE = 1, SHORT = 2, USHORT = 3,
+			INT = 4, UINT = 5, LONG = 6, FLOAT = 7, DOUBLE = 8;
+
+	// -- instance variables --
+
+	private final ThreadService threadService;
+
+	// -- constructor --
+
+	/**
+	 * @param threadService The service with which to run planes in parallel, or
+	 *          null to run on the calling thread.
+	 */
+	public PlanarCalculator(final ThreadService threadService) {
+		this.threadService = threadService;
+	}
+
+	// -- public interface --
+
+	/**
+	 * Gets whether the given dataset can be accessed directly as primitive
+	 * planes by this calculator.
+	 */
+	public static boolean isSupported(final Dataset ds) {
+		return kind(ds.getType()) >= 0 && ds.getPlaneForReading(0, false) != null;
+	}
+
+	/**
+	 * Gets whether the given inputs can be combined by this calculator: both
+	 * must be {@link #isSupported supported}, with equal dimensions.
+	 */
+	public static boolean canCombine(final Dataset input1, final Dataset input2,
+		final String opName)
+	{
+		return OPERATIONS.contains(opName) && isSupported(input1) &&
+			isSupported(input2) && Arrays.equals(input1.getDims(), input2.getDims());
+	}
+
+	/**
+	 * Combines every plane of the two inputs into the corresponding plane of the
+	 * output, which may be the same dataset as the first input.
+	 */
+	public void combine(final Dataset input1, final Dataset input2,
+		final Dataset output, final String opName)
+	{
+		final int op = OPERATIONS.indexOf(opName);
+		if (op < 0) {
+			throw new IllegalArgumentException("Unsupported operation: " + opName);
+		}
+		final long[] dims = input1.getDims();
+		long planeCount = 1;
+		for (int d = 2; d < dims.length; d++) {
+			planeCount *= dims[d];
+		}
+		final int planeSize = (int) (dims[0] * (dims.length > 1 ? dims[1] : 1));
+		StackExecutor.forEachBlock(threadService, planeCount,
+			new ThreadUtils.Block() {
+
+				@Override
+				public void run(final long first, final long last) {
+					combine(input1, input2, output, op, planeSize, (int) first,
+						(int) last);
+				}
+			});
+	}
+
+	// -- private helpers --
+
+	private void combine(final Dataset input1, final Dataset input2,
+		final Dataset output, final int op, final int planeSize,
+		final int firstPlane, final int lastPlane)
+	{
+		final int kind1 = kind(input1.getType());
+		final int kind2 = kind(input2.getType());
+		final int kindOut = kind(output.getType());
+		final double[] a = new double[planeSize];
+		final double[] b = new double[planeSize];
+		for (int p = firstPlane; p < lastPlane; p++) {
+			read(input1.getPlaneForReading(p, false), kind1, a);
+			read(input2.getPlaneForReading(p, false), kind2, b);
+			apply(op, a, b);
+			write(a, kindOut, output.getPlane(p, false));
+		}
+	}
+
+	/** Combines a and b, storing the result in a. */
+	private void apply(final int op, final double[] a, final double[] b) {
+		final int n = a.length;
+		switch (op) {
+			case 0: // Add
+				for (int i = 0; i < n; i++) a[i] += b[i];
+				break;
+			case 1: // Subtract
+				for (int i = 0; i < n; i++) a[i] -= b[i];
+				break;
+			case 2: // Multiply
+				for (int i = 0; i < n; i++) a[i] *= b[i];
+				break;
+			case 3: // Divide
+				for (int i = 0; i < n; i++) a[i] /= b[i];
+				break;
+			case 4: // AND
+				for (int i = 0; i < n; i++) a[i] = (long) a[i] & (long) b[i];
+				break;
+			case 5: // OR
+				for (int i = 0; i < n; i++) a[i] = (long) a[i] | (long) b[i];
+				break;
+			case 6: // XOR
+				for (int i = 0; i < n; i++) a[i] = (long) a[i] ^ (long) b[i];
+				break;
+			case 7: // Min
+				for (int i = 0; i < n; i++) a[i] = Math.min(a[i], b[i]);
+				break;
+			case 8: // Max
+				for (int i = 0; i < n; i++) a[i] = Math.max(a[i], b[i]);
+				break;
+			case 9: // Average
+				for (int i = 0; i < n; i++) a[i] = (a[i] + b[i]) / 2;
+				break;
+			case 10: // Difference
+				for (int i = 0; i < n; i++) a[i] = Math.abs(a[i] - b[i]);
+				break;
+			case 11: // Copy
+				System.arraycopy(b, 0, a, 0, n);
+				break;
+			case 12: // Transparent-zero
+				for (int i = 0; i < n; i++) if (b[i] != 0) a[i] = b[i];
+				break;
+			default:
+				throw new IllegalStateException("Unknown operation: " + op);
+		}
+	}
+
+	/** Converts a primitive plane to doubles. */
+	private void read(final Object plane, final int kind, final double[] values)
+	{
+		final int n = values.length;
+		switch (kind) {
+			case BYTE: {
+				final byte[] p = (byte[]) plane;
+				for (int i = 0; i < n; i++) values[i] = p[i];
+				break;
+			}
+			case UBYTE: {
+				final byte[] p = (byte[]) plane;
+				for (int i = 0; i < n; i++) values[i] = p[i] & 0xff;
+				break;
+			}
+			case SHORT: {
+				final short[] p = (short[]) plane;
+				for (int i = 0; i < n; i++) values[i] = p[i];
+				break;
+			}
+			case USHORT: {
+				final short[] p = (short[]) plane;
+				for (int i = 0; i < n; i++) values[i] = p[i] & 0xffff;
+				break;
+			}
+			case INT: {
+				final int[] p = (int[]) plane;
+				for (int i = 0; i < n; i++) values[i] = p[i];
+				break;
+			}
+			case UINT: {
+				final int[] p = (int[]) plane;
+				for (int i = 0; i < n; i++) values[i] = p[i] & 0xffffffffL;
+				break;
+			}
+			case LONG: {
+				final long[] p = (long[]) plane;
+				for (int i = 0; i < n; i++) values[i] = p[i];
+				break;
+			}
+			case FLOAT: {
+				final float[] p = (float[]) plane;
+				for (int i = 0; i < n; i++) values[i] = p[i];
+				break;
+			}
+			case DOUBLE:
+				System.arraycopy(plane, 0, values, 0, n);
+				break;
+			default:
+				throw new IllegalStateException("Unknown type: " + kind);
+		}
+	}
+
+	/**
+	 * Stores doubles into a primitive plane. Integer values are rounded half
+	 * away from zero and then truncated to the storage width, as by
+	 * {@link RealType#setReal(double)}.
+	 */
+	private void write(final double[] values, final int kind, final Object plane)
+	{
+		final int n = values.length;
+		switch (kind) {
+			case BYTE:
+			case UBYTE: {
+				final byte[] p = (byte[]) plane;
+				for (int i = 0; i < n; i++) p[i] = (byte) round(values[i]);
+				break;
+			}
+			case SHORT:
+			case USHORT: {
+				final short[] p = (short[]) plane;
+				for (int i = 0; i < n; i++) p[i] = (short) round(values[i]);
+				break;
+			}
+			case INT:
+			case UINT: {
+				final int[] p = (int[]) plane;
+				for (int i = 0; i < n; i++) p[i] = (int) round(values[i]);
+				break;
+			}
+			case LONG: {
+				final long[] p = (long[]) plane;
+				for (int i = 0; i < n; i++) p[i] = round(values[i]);
+				break;
+			}
+			case FLOAT: {
+				final float[] p = (float[]) plane;
+				for (int i = 0; i < n; i++) p[i] = (float) values[i];
+				break;
+			}
+			case DOUBLE:
+				System.arraycopy(values, 0, plane, 0, n);
+				break;
+			default:
+				throw new IllegalStateException("Unknown type: " + kind);
+		}
+	}
+
+	private static long round(final double value) {
+		return (long) (value + 0.5d * Math.signum(value));
+	}
+
+	/** Gets the primitive storage kind of the given type, or -1 if unknown. */
+	private static int kind(final RealType<?> type) {
+		if (type instanceof ByteType) return BYTE;
+		if (type instanceof UnsignedByteType) return UBYTE;
+		if (type instanceof ShortType) return SHORT;
+		if (type instanceof UnsignedShortType) return USHORT;
+		if (type instanceof IntType) return INT;
+		if (type instanceof UnsignedIntType) return UINT;
+		if (type instanceof LongType) return LONG;
+		if (type instanceof FloatType) return FLOAT;
+		if (type instanceof DoubleType) return DOUBLE;
+		return -1;
+	}
+
+}
@@ -104,11 +104,13 @@ private class ConvolveWatcher implements Neighborhood3x3Watcher {
 
 		private double scale;
 		private double sum;
+		private final Dataset dataset;
 		private final boolean integerDataset;
 		private final double typeMinValue;
 		private final double typeMaxValue;
 
 		public ConvolveWatcher(final Dataset ds) {
+			dataset = ds;
 			integerDataset = ds.isInteger();
 			typeMinValue = ds.getType().getMinValue();
 			typeMaxValue = ds.getType().getMaxValue();
@@ -158,6 +160,11 @@ public double calcOutputValue() {
 			return value;
 		}
 
+		@Override
+		public Neighborhood3x3Watcher copy() {
+			return new ConvolveWatcher(dataset);
+		}
+
 	}
 
 }
@@ -101,11 +101,13 @@ private class FindEdgesWatcher implements Neighborhood3x3Watcher {
 		 * n - contains a local copy of the 9 values of a 3x3 neighborhood
 		 */
 		private double[] n;
+		private final Dataset dataset;
 		private final boolean integerDataset;
 		private final double typeMinValue;
 		private final double typeMaxValue;
 
 		public FindEdgesWatcher(final Dataset input) {
+			dataset = input;
 			integerDataset = input.isInteger();
 			typeMinValue = input.getType().getMinValue();
 			typeMaxValue = input.getType().getMaxValue();
@@ -157,6 +159,11 @@ public double calcOutputValue() {
 
 			return value;
 		}
+
+		@Override
+		public Neighborhood3x3Watcher copy() {
+			return new FindEdgesWatcher(dataset);
+		}
 	}
 
 }
@@ -35,21 +35,24 @@
 
 package imagej.core.commands.neigh;
 
+import imagej.core.commands.StackExecutor;
+import imagej.core.commands.StackExecutor.PlaneWorker;
+import imagej.core.commands.StackExecutor.PlaneWorkerFactory;
 import imagej.data.Dataset;
-import imagej.data.Extents;
-import imagej.data.Position;
 import imagej.util.RealRect;
-import net.imglib2.Cursor;
 import net.imglib2.RandomAccess;
-import net.imglib2.RandomAccessible;
 import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.view.Views;
 
 /**
  * Neighborhood3x3Operation - a helper class for 3x3 neighborhood operation
  * plugins such as SmoothDataValues, SharpenDataValues, and FindEdges. Does the
- * work of communicating with a Neighborhood3x3Watcher.
+ * work of communicating with a Neighborhood3x3Watcher. Planes are processed in
+ * parallel by a {@link StackExecutor}, each thread with its own copy of the
+ * watcher.
  * 
  * @author Barry DeZonia
  */
@@ -59,7 +62,6 @@ public class Neighborhood3x3Operation {
 
 	private final Dataset input;
 	private Img<? extends RealType<?>> inputImage;
-	private Img<? extends RealType<?>> inputImageCopy;
 	private final RealRect selection;
 	private final Neighborhood3x3Watcher watcher;
 
@@ -103,112 +105,101 @@ private void checkInput() {
 
 	private void setupWorkingData() {
 		inputImage = input.getImgPlus();
-		inputImageCopy = cloneImage(inputImage);
+
+		if (selection.width == 0) selection.width = inputImage.dimension(0);
+
+		if (selection.height == 0) selection.height = inputImage.dimension(1);
 	}
 
 	private void runAssignment() {
-		final long[] planeDims = new long[inputImage.numDimensions() - 2];
-		for (int i = 0; i < planeDims.length; i++)
-			planeDims[i] = inputImage.dimension(i + 2);
-		final Extents extents = new Extents(planeDims);
-		final Position planePos = extents.createPosition();
-		if (planeDims.length == 0) { // dataset is 2d only
-			applyOperationToPlane(planePos);
-		}
-		else { // 3 or more dimensions
-			while (planePos.hasNext()) {
-				planePos.fwd();
-				applyOperationToPlane(planePos);
+		final StackExecutor executor = new StackExecutor(input.getContext());
+		executor.runInPlace(input, new PlaneWorkerFactory() {
+
+			@Override
+			public PlaneWorker createWorker() {
+				return new NeighborhoodWorker();
 			}
-		}
+		});
 		input.update();
 	}
 
-	private void applyOperationToPlane(final Position planePos) {
-
-		final long[] imageDims = new long[inputImage.numDimensions()];
-		inputImage.dimensions(imageDims);
+	// -- helper classes --
 
-		if (selection.width == 0) selection.width = (int) imageDims[0];
+	/**
+	 * Applies the operation to one plane at a time. Each worker copies the plane
+	 * it is working on, since the input image is changed in place.
+	 */
+	private class NeighborhoodWorker implements PlaneWorker {
 
-		if (selection.height == 0) selection.height = (int) imageDims[1];
+		private final Neighborhood3x3Watcher planeWatcher = watcher.copy();
 
-		// output is done by changin input image in place
-		final RandomAccess<? extends RealType<?>> outputAccessor =
+		// output is done by changing input image in place
+		private final RandomAccess<? extends RealType<?>> outputAccessor =
 			inputImage.randomAccess();
 
-		// input is a copy of the original data with out of bounds access enabled
-		final RandomAccessible<? extends RealType<?>> inputInterval =
-			Views.extendMirrorSingle(inputImageCopy);
-
-		final RandomAccess<? extends RealType<?>> extendedInput =
-			inputInterval.randomAccess();
-
-		// initialize the watcher
-		watcher.setup();
-
-		final long[] inputPosition = new long[imageDims.length];
-		final long[] localInputPosition = new long[imageDims.length];
-
-		for (int i = 2; i < inputPosition.length; i++) {
-			inputPosition[i] = planePos.getLongPosition(i - 2);
-			localInputPosition[i] = planePos.getLongPosition(i - 2);
-		}
+		private final RandomAccess<? extends RealType<?>> inputAccessor =
+			inputImage.randomAccess();
 
-		final long minX = (long) selection.x;
-		final long minY = (long) selection.y;
-		final long width = (long) selection.width;
-		final long height = (long) selection.height;
-		for (long y = minY; y < minY + height; y++) {
-			inputPosition[1] = y;
-			for (long x = minX; x < minX + width; x++) {
-				inputPosition[0] = x;
-				watcher.initializeNeighborhood(inputPosition);
-
-				for (int dy = -1; dy <= 1; dy++) {
-					localInputPosition[1] = inputPosition[1] + dy;
-					for (int dx = -1; dx <= 1; dx++) {
-						localInputPosition[0] = inputPosition[0] + dx;
-						extendedInput.setPosition(localInputPosition);
-						final double localValue = extendedInput.get().getRealDouble();
-						watcher.visitLocation(dx, dy, localValue);
+		// a copy of the original plane data
+		private final Img<DoubleType> planeCopy =
+			new ArrayImgFactory<DoubleType>().create(new long[] {
+				inputImage.dimension(0), inputImage.dimension(1) }, new DoubleType());
+
+		private final RandomAccess<DoubleType> planeAccessor =
+			planeCopy.randomAccess();
+
+		// the copy with out of bounds access enabled
+		private final RandomAccess<DoubleType> extendedInput = Views
+			.extendMirrorSingle(planeCopy).randomAccess();
+
+		private final long[] localInputPosition = new long[2];
+
+		@Override
+		public void processPlane(final long[] inputPosition) {
+			copyPlane(inputPosition);
+
+			// initialize the watcher
+			planeWatcher.setup();
+
+			final long minX = (long) selection.x;
+			final long minY = (long) selection.y;
+			final long width = (long) selection.width;
+			final long height = (long) selection.height;
+			for (long y = minY; y < minY + height; y++) {
+				inputPosition[1] = y;
+				for (long x = minX; x < minX + width; x++) {
+					inputPosition[0] = x;
+					planeWatcher.initializeNeighborhood(inputPosition);
+
+					for (int dy = -1; dy <= 1; dy++) {
+						localInputPosition[1] = y + dy;
+						for (int dx = -1; dx <= 1; dx++) {
+							localInputPosition[0] = x + dx;
+							extendedInput.setPosition(localInputPosition);
+							final double localValue = extendedInput.get().getRealDouble();
+							planeWatcher.visitLocation(dx, dy, localValue);
+						}
 					}
+					// assign output
+					outputAccessor.setPosition(inputPosition);
+					outputAccessor.get().setReal(planeWatcher.calcOutputValue());
 				}
-				// assign output
-				outputAccessor.setPosition(inputPosition);
-				outputAccessor.get().setReal(watcher.calcOutputValue());
 			}
 		}
-	}
-
-	// TODO - eliminate when ImgLib allows ability to duplicate/clone an Img
-	// TODO - find a way to eliminate use of raw types here
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private Img<? extends RealType<?>> cloneImage(final Img image) {
-		// TODO - used to be able to call Image::clone()
-		// For now copy data by hand
-
-		final long[] dimensions = new long[image.numDimensions()];
-		image.dimensions(dimensions);
-
-		final Img<? extends RealType<?>> copyOfImg =
-			image.factory().create(dimensions, image.firstElement());
 
-		final long[] position = new long[dimensions.length];
-
-		final Cursor<? extends RealType<?>> cursor = image.localizingCursor();
-
-		final RandomAccess<? extends RealType<?>> access =
-			copyOfImg.randomAccess();
-
-		while (cursor.hasNext()) {
-			cursor.next();
-			final double currValue = cursor.get().getRealDouble();
-			cursor.localize(position);
-			access.setPosition(position);
-			access.get().setReal(currValue);
+		private void copyPlane(final long[] position) {
+			final long width = planeCopy.dimension(0);
+			final long height = planeCopy.dimension(1);
+			for (long y = 0; y < height; y++) {
+				position[1] = y;
+				planeAccessor.setPosition(y, 1);
+				for (long x = 0; x < width; x++) {
+					position[0] = x;
+					planeAccessor.setPosition(x, 0);
+					inputAccessor.setPosition(position);
+					planeAccessor.get().set(inputAccessor.get().getRealDouble());
+				}
+			}
 		}
-
-		return copyOfImg;
 	}
 }
@@ -67,4 +67,10 @@ public interface Neighborhood3x3Watcher {
 	 */
 	double calcOutputValue();
 
+	/**
+	 * Returns a new watcher doing the same operation with its own state. Planes
+	 * are processed in parallel, each thread using its own copy.
+	 */
+	Neighborhood3x3Watcher copy();
+
 }
@@ -43,6 +43,7 @@
 import imagej.plugin.Menu;
 import imagej.plugin.Parameter;
 import imagej.plugin.Plugin;
+import imagej.thread.ThreadService;
 
 import java.util.ArrayList;
 
@@ -70,6 +71,9 @@ public class AddAxis extends DynamicCommand {
 
 	// -- Parameters --
 
+	@Parameter
+	private ThreadService threadService;
+
 	@Parameter(type = ItemIO.BOTH)
 	private Dataset dataset;
 
@@ -210,8 +214,8 @@ private void fillNewImgPlus(final ImgPlus<? extends RealType<?>> srcImgPlus,
 		dstImgPlus.dimensions(dstSpan);
 		dstSpan[dstSpan.length - 1] = 1;
 
-		RestructureUtils.copyHyperVolume(srcImgPlus, srcOrigin, srcSpan,
-			dstImgPlus, dstOrigin, dstSpan);
+		RestructureUtils.moveHyperVolume(threadService, srcImgPlus, srcOrigin,
+			srcSpan, dstImgPlus, dstOrigin, dstSpan);
 	}
 
 	private class RemapAlgorithm implements ColorTableRemapper.RemapAlgorithm {
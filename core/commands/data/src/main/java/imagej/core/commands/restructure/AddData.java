@@ -43,6 +43,7 @@
 import imagej.plugin.Menu;
 import imagej.plugin.Parameter;
 import imagej.plugin.Plugin;
+import imagej.thread.ThreadService;
 
 import java.util.ArrayList;
 
@@ -71,6 +72,9 @@ public class AddData extends DynamicCommand {
 
 	// -- Parameters --
 
+	@Parameter
+	private ThreadService threadService;
+
 	@Parameter(type = ItemIO.BOTH)
 	private Dataset dataset;
 
@@ -223,10 +227,11 @@ private boolean inputBad(final AxisType axis) {
 		final long numInInsertion = quantity;
 		final long numAfterInsertion = axisSize - numBeforeInsert;
 
-		RestructureUtils.copyData(srcImgPlus, dstImgPlus, modifiedAxis, 0, 0,
-			numBeforeInsert);
-		RestructureUtils.copyData(srcImgPlus, dstImgPlus, modifiedAxis,
-			numBeforeInsert, numBeforeInsert + numInInsertion, numAfterInsertion);
+		RestructureUtils.moveData(threadService, srcImgPlus, dstImgPlus,
+			modifiedAxis, 0, 0, numBeforeInsert);
+		RestructureUtils.moveData(threadService, srcImgPlus, dstImgPlus,
+			modifiedAxis, numBeforeInsert, numBeforeInsert + numInInsertion,
+			numAfterInsertion);
 	}
 
 	private int compositeStatus(final Dataset origData,
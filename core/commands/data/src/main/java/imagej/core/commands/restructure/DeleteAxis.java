@@ -44,6 +44,7 @@
 import imagej.plugin.Menu;
 import imagej.plugin.Parameter;
 import imagej.plugin.Plugin;
+import imagej.thread.ThreadService;
 
 import java.util.ArrayList;
 
@@ -71,6 +72,9 @@ public class DeleteAxis extends DynamicCommand {
 
 	// -- Parameters --
 
+	@Parameter
+	private ThreadService threadService;
+
 	@Parameter
 	private ImageDisplay display;
 
@@ -260,8 +264,8 @@ private void fillNewImgPlus(final ImgPlus<? extends RealType<?>> srcImgPlus,
 		srcOrigin[axisIndex] = position - 1;
 		srcSpan[axisIndex] = 1;
 
-		RestructureUtils.copyHyperVolume(srcImgPlus, srcOrigin, srcSpan,
-			dstImgPlus, dstOrigin, dstSpan);
+		RestructureUtils.moveHyperVolume(threadService, srcImgPlus, srcOrigin,
+			srcSpan, dstImgPlus, dstOrigin, dstSpan);
 	}
 
 	private int
@@ -43,6 +43,7 @@
 import imagej.plugin.Menu;
 import imagej.plugin.Parameter;
 import imagej.plugin.Plugin;
+import imagej.thread.ThreadService;
 
 import java.util.ArrayList;
 
@@ -72,6 +73,9 @@ public class DeleteData extends DynamicCommand {
 
 	// -- Parameters --
 
+	@Parameter
+	private ThreadService threadService;
+
 	@Parameter(type = ItemIO.BOTH)
 	private Dataset dataset;
 
@@ -229,10 +233,10 @@ private boolean inputBad(final AxisType axis) {
 		if (numBeforeCut + numInCut > axisSize) numInCut = axisSize - numBeforeCut;
 		final long numAfterCut = axisSize - (numBeforeCut + numInCut);
 
-		RestructureUtils.copyData(srcImgPlus, dstImgPlus, modifiedAxis, 0, 0,
-			numBeforeCut);
-		RestructureUtils.copyData(srcImgPlus, dstImgPlus, modifiedAxis,
-			numBeforeCut + numInCut, numBeforeCut, numAfterCut);
+		RestructureUtils.moveData(threadService, srcImgPlus, dstImgPlus,
+			modifiedAxis, 0, 0, numBeforeCut);
+		RestructureUtils.moveData(threadService, srcImgPlus, dstImgPlus,
+			modifiedAxis, numBeforeCut + numInCut, numBeforeCut, numAfterCut);
 	}
 
 	private int compositeStatus(final int compositeCount,
@@ -36,6 +36,7 @@
 package imagej.core.commands.restructure;
 
 import imagej.command.DynamicCommand;
+import imagej.core.commands.StackExecutor;
 import imagej.data.Dataset;
 import imagej.log.LogService;
 import imagej.menu.MenuConstants;
@@ -44,12 +45,17 @@
 import imagej.plugin.Menu;
 import imagej.plugin.Parameter;
 import imagej.plugin.Plugin;
+import imagej.thread.ThreadService;
+import imagej.thread.ThreadUtils;
 
+import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Map;
 
 import net.imglib2.RandomAccess;
 import net.imglib2.img.ImgPlus;
+import net.imglib2.img.basictypeaccess.PlanarAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
 import net.imglib2.ops.pointset.HyperVolumePointSet;
@@ -81,6 +87,9 @@ public class ReorderData extends DynamicCommand {
 	@Parameter
 	private LogService log;
 
+	@Parameter
+	private ThreadService threadService;
+
 	@Parameter(type = ItemIO.BOTH)
 	private Dataset dataset;
 
@@ -252,6 +261,12 @@ private ImgPlus<? extends RealType<?>> getReorganizedData() {
 		final ImgPlus<? extends RealType<?>> newImgPlus =
 			RestructureUtils.createNewImgPlus(dataset, newDims, newAxes);
 		newImgPlus.setCompositeChannelCount(dataset.getCompositeChannelCount());
+		if (movePlanes(dataset.getImgPlus(), newImgPlus, origDims, newDims)) {
+			return newImgPlus;
+		}
+		if (copyRows(dataset.getImgPlus(), newImgPlus, origDims, newDims)) {
+			return newImgPlus;
+		}
 		final RandomAccess<? extends RealType<?>> outputAccessor =
 			newImgPlus.randomAccess();
 		final long[] permutedPos = new long[inputSpan.length];
@@ -267,6 +282,89 @@ private ImgPlus<? extends RealType<?>> getReorganizedData() {
 		return newImgPlus;
 	}
 
+	/**
+	 * When X and Y keep their positions, reordering only changes the order of
+	 * whole planes. In that case the planes of planar images are handed over to
+	 * the new image by reference, without copying any pixels.
+	 * 
+	 * @return false if the permutation or images do not allow this
+	 */
+	private boolean movePlanes(final ImgPlus<? extends RealType<?>> input,
+		final ImgPlus<? extends RealType<?>> output, final long[] inputDims,
+		final long[] outputDims)
+	{
+		if (permutationAxisIndices.length < 2) return false;
+		if (permutationAxisIndices[0] != 0 || permutationAxisIndices[1] != 1) {
+			return false;
+		}
+		final PlanarAccess<ArrayDataAccess<?>> src =
+			RestructureUtils.planarAccess(input);
+		final PlanarAccess<ArrayDataAccess<?>> dst =
+			RestructureUtils.planarAccess(output);
+		if (src == null || dst == null) return false;
+		final long planeCount = RestructureUtils.planeCount(inputDims);
+		final long[] pos = new long[inputDims.length];
+		final long[] newPos = new long[inputDims.length];
+		for (int p = 0; p < planeCount; p++) {
+			RestructureUtils.planePosition(p, inputDims, pos);
+			permute(pos, newPos);
+			final int newIndex = RestructureUtils.planeIndex(newPos, outputDims);
+			dst.setPlane(newIndex, src.getPlane(p));
+		}
+		return true;
+	}
+
+	/**
+	 * When X stays innermost, every row of the input is a contiguous run of the
+	 * output. In that case the rows of planar images are copied with
+	 * {@link System#arraycopy}, with input planes spread across threads.
+	 * 
+	 * @return false if the permutation or images do not allow this
+	 */
+	private boolean copyRows(final ImgPlus<? extends RealType<?>> input,
+		final ImgPlus<? extends RealType<?>> output, final long[] inputDims,
+		final long[] outputDims)
+	{
+		if (inputDims.length < 2 || permutationAxisIndices[0] != 0) return false;
+		final PlanarAccess<ArrayDataAccess<?>> src =
+			RestructureUtils.planarAccess(input);
+		final PlanarAccess<ArrayDataAccess<?>> dst =
+			RestructureUtils.planarAccess(output);
+		if (src == null || dst == null) return false;
+		final int width = (int) inputDims[0];
+		final int height = (int) inputDims[1];
+		final int outputWidth = (int) outputDims[0];
+		// NB: Packed types (e.g. 1-bit) do not store one element per pixel.
+		final Object plane0 = RestructureUtils.readPlane(src, 0);
+		if (Array.getLength(plane0) != (long) width * height) return false;
+
+		final long planeCount = RestructureUtils.planeCount(inputDims);
+		StackExecutor.forEachBlock(threadService, planeCount,
+			new ThreadUtils.Block() {
+
+				@Override
+				public void run(final long first, final long last) {
+					final long[] pos = new long[inputDims.length];
+					final long[] newPos = new long[inputDims.length];
+					for (int p = (int) first; p < last; p++) {
+						RestructureUtils.planePosition(p, inputDims, pos);
+						final Object srcPlane = RestructureUtils.readPlane(src, p);
+						for (int y = 0; y < height; y++) {
+							pos[1] = y;
+							permute(pos, newPos);
+							final int newIndex =
+								RestructureUtils.planeIndex(newPos, outputDims);
+							final Object dstPlane =
+								dst.getPlane(newIndex).getCurrentStorageArray();
+							System.arraycopy(srcPlane, y * width, dstPlane,
+								(int) newPos[1] * outputWidth, width);
+						}
+					}
+				}
+			});
+		return true;
+	}
+
 	/**
 	 * Returns the axis index of an Axis given a permuted set of axes.
 	 */
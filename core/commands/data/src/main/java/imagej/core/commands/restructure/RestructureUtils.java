@@ -35,13 +35,22 @@
 
 package imagej.core.commands.restructure;
 
+import imagej.core.commands.StackExecutor;
+import imagej.data.CachedPlanes;
 import imagej.data.Dataset;
 import imagej.data.Extents;
+import imagej.thread.ThreadService;
+import imagej.thread.ThreadUtils.Block;
+
+import java.lang.reflect.Array;
+
 import net.imglib2.RandomAccess;
 import net.imglib2.display.ColorTable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.ImgPlus;
+import net.imglib2.img.basictypeaccess.PlanarAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.meta.AxisType;
 import net.imglib2.ops.pointset.HyperVolumePointSet;
 import net.imglib2.ops.pointset.PointSetIterator;
@@ -101,15 +110,23 @@ public static void copyData(final ImgPlus<? extends RealType<?>> srcImgPlus,
 		final ImgPlus<? extends RealType<?>> dstImgPlus, final AxisType axis,
 		final long srcStartPos, final long dstStartPos, final long numHyperplanes)
 	{
-		if (numHyperplanes == 0) return;
-		final long[] srcOrigin = calcOrigin(srcImgPlus, axis, srcStartPos);
-		final long[] dstOrigin = calcOrigin(dstImgPlus, axis, dstStartPos);
-
-		final long[] srcSpan = calcSpan(srcImgPlus, axis, numHyperplanes);
-		final long[] dstSpan = calcSpan(dstImgPlus, axis, numHyperplanes);
+		transferData(null, false, srcImgPlus, dstImgPlus, axis, srcStartPos,
+			dstStartPos, numHyperplanes);
+	}
 
-		copyHyperVolume(srcImgPlus, srcOrigin, srcSpan, dstImgPlus, dstOrigin,
-			dstSpan);
+	/**
+	 * Moves a region of data from a srcImgPlus to a dstImgPlus. Like
+	 * {@link #copyData} but whole planes of planar images are handed to the
+	 * dstImgPlus by reference, so the srcImgPlus must be discarded afterwards.
+	 * Planes are spread across threads when a {@link ThreadService} is given.
+	 */
+	public static void moveData(final ThreadService threadService,
+		final ImgPlus<? extends RealType<?>> srcImgPlus,
+		final ImgPlus<? extends RealType<?>> dstImgPlus, final AxisType axis,
+		final long srcStartPos, final long dstStartPos, final long numHyperplanes)
+	{
+		transferData(threadService, true, srcImgPlus, dstImgPlus, axis,
+			srcStartPos, dstStartPos, numHyperplanes);
 	}
 
 	/**
@@ -121,8 +138,163 @@ public static void copyHyperVolume(
 		final ImgPlus<? extends RealType<?>> srcImgPlus, final long[] srcOrigin,
 		final long[] srcSpan, final ImgPlus<? extends RealType<?>> dstImgPlus,
 		final long[] dstOrigin, final long[] dstSpan)
+	{
+		transferHyperVolume(null, false, srcImgPlus, srcOrigin, srcSpan,
+			dstImgPlus, dstOrigin, dstSpan);
+	}
+
+	/**
+	 * Moves a hypervolume from a source {@link ImgPlus} to a destination
+	 * {@link ImgPlus}. Like {@link #copyHyperVolume} but whole planes of planar
+	 * images are handed to the destination by reference, so the source must be
+	 * discarded afterwards. Planes are spread across threads when a
+	 * {@link ThreadService} is given.
+	 */
+	public static void moveHyperVolume(final ThreadService threadService,
+		final ImgPlus<? extends RealType<?>> srcImgPlus, final long[] srcOrigin,
+		final long[] srcSpan, final ImgPlus<? extends RealType<?>> dstImgPlus,
+		final long[] dstOrigin, final long[] dstSpan)
+	{
+		transferHyperVolume(threadService, true, srcImgPlus, srcOrigin, srcSpan,
+			dstImgPlus, dstOrigin, dstSpan);
+	}
+
+	/**
+	 * Modifies an given ImgPlus by allocating 1 color table reference for each
+	 * plane in the ImgPlus. 
+	 */
+	public static void allocateColorTables(ImgPlus<?> imgPlus) {
+		long planeCount = planeCount(imgPlus);
+		if (planeCount > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("allocating color tables: too many planes");
+		imgPlus.initializeColorTables((int)planeCount);
+	}
+
+	/**
+	 * Returns the number of planes present in an ImgPlus
+	 */
+	public static long planeCount(ImgPlus<?> imgPlus) {
+		int numD = imgPlus.numDimensions();
+		if (numD < 2) return 0;
+		if (numD == 2) return 1;
+		long count = 1;
+		for (int d = 2; d < numD; d++) {
+			count *= imgPlus.dimension(d);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of planes spanned by the given dimensions
+	 */
+	public static long planeCount(final long[] dims) {
+		long count = 1;
+		for (int d = 2; d < dims.length; d++)
+			count *= dims[d];
+		return count;
+	}
+
+	/**
+	 * Gets planar access to the given ImgPlus, or null if it is not planar
+	 */
+	@SuppressWarnings("unchecked")
+	public static PlanarAccess<ArrayDataAccess<?>> planarAccess(
+		final ImgPlus<?> imgPlus)
+	{
+		final Object img = imgPlus.getImg();
+		if (!(img instanceof PlanarAccess)) return null;
+		final PlanarAccess<?> access = (PlanarAccess<?>) img;
+		final Object plane0 =
+			img instanceof CachedPlanes ? ((CachedPlanes<?>) img).readPlane(0)
+				: access.getPlane(0);
+		if (!(plane0 instanceof ArrayDataAccess)) return null;
+		return (PlanarAccess<ArrayDataAccess<?>>) access;
+	}
+
+	/**
+	 * Gets the storage array of a plane which the caller only reads. Planes of
+	 * images read on demand are then not kept in memory (see
+	 * {@link CachedPlanes}).
+	 */
+	public static Object readPlane(final PlanarAccess<ArrayDataAccess<?>> access,
+		final int no)
+	{
+		final Object plane =
+			access instanceof CachedPlanes ? ((CachedPlanes<?>) access)
+				.readPlane(no) : access.getPlane(no);
+		return ((ArrayDataAccess<?>) plane).getCurrentStorageArray();
+	}
+
+	/**
+	 * Sets the non-planar coordinates of pos from a plane index
+	 */
+	public static void planePosition(final long index, final long[] dims,
+		final long[] pos)
+	{
+		long remainder = index;
+		for (int d = 2; d < dims.length; d++) {
+			pos[d] = remainder % dims[d];
+			remainder /= dims[d];
+		}
+	}
+
+	/**
+	 * Gets the plane index of the non-planar coordinates of pos
+	 */
+	public static int planeIndex(final long[] pos, final long[] dims) {
+		long index = 0;
+		for (int d = dims.length - 1; d >= 2; d--)
+			index = index * dims[d] + pos[d];
+		return (int) index;
+	}
+
+	/**
+	 * Copies color table references from a source ImgPlus to a destination
+	 * ImgPlus. The ImgPluses are assumed to have the same number of planes.
+	 */
+	public static void copyColorTables(ImgPlus<?> srcImgPlus, ImgPlus<?> dstImgPlus) {
+		int tableCount = srcImgPlus.getColorTableCount();
+		for (int i = 0; i < tableCount; i++) {
+			ColorTable c = srcImgPlus.getColorTable(i);
+			dstImgPlus.setColorTable(c, i);
+		}
+	}
+	
+	// -- private helpers --
+
+	private static void transferData(final ThreadService threadService,
+		final boolean sharePlanes, final ImgPlus<? extends RealType<?>> srcImgPlus,
+		final ImgPlus<? extends RealType<?>> dstImgPlus, final AxisType axis,
+		final long srcStartPos, final long dstStartPos, final long numHyperplanes)
+	{
+		if (numHyperplanes == 0) return;
+		final long[] srcOrigin = calcOrigin(srcImgPlus, axis, srcStartPos);
+		final long[] dstOrigin = calcOrigin(dstImgPlus, axis, dstStartPos);
+
+		final long[] srcSpan = calcSpan(srcImgPlus, axis, numHyperplanes);
+		final long[] dstSpan = calcSpan(dstImgPlus, axis, numHyperplanes);
+
+		transferHyperVolume(threadService, sharePlanes, srcImgPlus, srcOrigin,
+			srcSpan, dstImgPlus, dstOrigin, dstSpan);
+	}
+
+	private static void transferHyperVolume(final ThreadService threadService,
+		final boolean sharePlanes, final ImgPlus<? extends RealType<?>> srcImgPlus,
+		final long[] srcOrigin, final long[] srcSpan,
+		final ImgPlus<? extends RealType<?>> dstImgPlus, final long[] dstOrigin,
+		final long[] dstSpan)
 	{
 		checkSpanShapes(srcSpan, dstSpan);
+		if (transferPlanes(threadService, sharePlanes, srcImgPlus, srcOrigin,
+			srcSpan, dstImgPlus, dstOrigin, dstSpan))
+		{
+			return;
+		}
+		if (transferRows(threadService, srcImgPlus, srcOrigin, srcSpan,
+			dstImgPlus, dstOrigin, dstSpan))
+		{
+			return;
+		}
 		final RandomAccess<? extends RealType<?>> srcAccessor =
 			srcImgPlus.randomAccess();
 		final RandomAccess<? extends RealType<?>> dstAccessor =
@@ -152,43 +324,155 @@ public static void copyHyperVolume(
 	}
 
 	/**
-	 * Modifies an given ImgPlus by allocating 1 color table reference for each
-	 * plane in the ImgPlus. 
+	 * When both regions consist of whole XY planes of the same size, each
+	 * source plane maps onto exactly one destination plane. Such planes are
+	 * shared by reference or copied with a single {@link System#arraycopy}.
+	 * 
+	 * @return false if the regions or images do not allow this
 	 */
-	public static void allocateColorTables(ImgPlus<?> imgPlus) {
-		long planeCount = planeCount(imgPlus);
-		if (planeCount > Integer.MAX_VALUE)
-			throw new IllegalArgumentException("allocating color tables: too many planes");
-		imgPlus.initializeColorTables((int)planeCount);
+	private static boolean transferPlanes(final ThreadService threadService,
+		final boolean sharePlanes, final ImgPlus<? extends RealType<?>> srcImgPlus,
+		final long[] srcOrigin, final long[] srcSpan,
+		final ImgPlus<? extends RealType<?>> dstImgPlus, final long[] dstOrigin,
+		final long[] dstSpan)
+	{
+		if (!wholePlanes(srcImgPlus, srcOrigin, srcSpan)) return false;
+		if (!wholePlanes(dstImgPlus, dstOrigin, dstSpan)) return false;
+		if (srcSpan[0] != dstSpan[0] || srcSpan[1] != dstSpan[1]) return false;
+		final PlanarAccess<ArrayDataAccess<?>> src = planarAccess(srcImgPlus);
+		final PlanarAccess<ArrayDataAccess<?>> dst = planarAccess(dstImgPlus);
+		final long planeSize = srcSpan[0] * srcSpan[1];
+		if (!compatibleStorage(src, planeSize, dst, planeSize)) return false;
+		final long[] srcDims = new long[srcImgPlus.numDimensions()];
+		final long[] dstDims = new long[dstImgPlus.numDimensions()];
+		srcImgPlus.dimensions(srcDims);
+		dstImgPlus.dimensions(dstDims);
+		final long planeCount = planeCount(srcSpan);
+		forEachBlock(threadService, planeCount, new Block() {
+
+			@Override
+			public void run(final long first, final long last) {
+				final long[] srcPos = new long[srcDims.length];
+				final long[] dstPos = new long[dstDims.length];
+				for (long p = first; p < last; p++) {
+					regionPosition(p, 2, srcOrigin, srcSpan, srcPos);
+					regionPosition(p, 2, dstOrigin, dstSpan, dstPos);
+					final int srcIndex = planeIndex(srcPos, srcDims);
+					final int dstIndex = planeIndex(dstPos, dstDims);
+					if (sharePlanes) {
+						dst.setPlane(dstIndex, src.getPlane(srcIndex));
+					}
+					else {
+						System.arraycopy(readPlane(src, srcIndex), 0, dst.getPlane(
+							dstIndex).getCurrentStorageArray(), 0, (int) planeSize);
+					}
+				}
+			}
+		});
+		return true;
 	}
 
 	/**
-	 * Returns the number of planes present in an ImgPlus
+	 * When both regions have rows of the same length, the n-th row of the
+	 * source region maps onto the n-th row of the destination region. Such rows
+	 * are contiguous in planar images and are copied with
+	 * {@link System#arraycopy}.
+	 * 
+	 * @return false if the regions or images do not allow this
 	 */
-	public static long planeCount(ImgPlus<?> imgPlus) {
-		int numD = imgPlus.numDimensions();
-		if (numD < 2) return 0;
-		if (numD == 2) return 1;
-		long count = 1;
-		for (int d = 2; d < numD; d++) {
-			count *= imgPlus.dimension(d);
+	private static boolean transferRows(final ThreadService threadService,
+		final ImgPlus<? extends RealType<?>> srcImgPlus, final long[] srcOrigin,
+		final long[] srcSpan, final ImgPlus<? extends RealType<?>> dstImgPlus,
+		final long[] dstOrigin, final long[] dstSpan)
+	{
+		if (srcSpan.length < 2 || dstSpan.length < 2) return false;
+		if (srcSpan[0] != dstSpan[0]) return false;
+		final PlanarAccess<ArrayDataAccess<?>> src = planarAccess(srcImgPlus);
+		final PlanarAccess<ArrayDataAccess<?>> dst = planarAccess(dstImgPlus);
+		final long srcWidth = srcImgPlus.dimension(0);
+		final long dstWidth = dstImgPlus.dimension(0);
+		if (!compatibleStorage(src, srcWidth * srcImgPlus.dimension(1), dst,
+			dstWidth * dstImgPlus.dimension(1)))
+		{
+			return false;
 		}
-		return count;
+		final long[] srcDims = new long[srcImgPlus.numDimensions()];
+		final long[] dstDims = new long[dstImgPlus.numDimensions()];
+		srcImgPlus.dimensions(srcDims);
+		dstImgPlus.dimensions(dstDims);
+		final int rowSize = (int) srcSpan[0];
+		final long rowCount = new Extents(srcSpan).numElements() / rowSize;
+		forEachBlock(threadService, rowCount, new Block() {
+
+			@Override
+			public void run(final long first, final long last) {
+				final long[] srcPos = new long[srcDims.length];
+				final long[] dstPos = new long[dstDims.length];
+				for (long r = first; r < last; r++) {
+					regionPosition(r, 1, srcOrigin, srcSpan, srcPos);
+					regionPosition(r, 1, dstOrigin, dstSpan, dstPos);
+					final Object srcPlane = readPlane(src, planeIndex(srcPos, srcDims));
+					final Object dstPlane =
+						dst.getPlane(planeIndex(dstPos, dstDims)).getCurrentStorageArray();
+					System.arraycopy(srcPlane,
+						(int) (srcPos[1] * srcWidth + srcOrigin[0]), dstPlane,
+						(int) (dstPos[1] * dstWidth + dstOrigin[0]), rowSize);
+				}
+			}
+		});
+		return true;
+	}
+
+	/** Returns true if a region covers whole XY planes of an image. */
+	private static boolean wholePlanes(final ImgPlus<?> imgPlus,
+		final long[] origin, final long[] span)
+	{
+		if (span.length < 2) return false;
+		return origin[0] == 0 && origin[1] == 0 &&
+			span[0] == imgPlus.dimension(0) && span[1] == imgPlus.dimension(1);
 	}
 
 	/**
-	 * Copies color table references from a source ImgPlus to a destination
-	 * ImgPlus. The ImgPluses are assumed to have the same number of planes.
+	 * Returns true if two planar images store one element per pixel in arrays
+	 * of the same kind, so that array copies between them are exact.
 	 */
-	public static void copyColorTables(ImgPlus<?> srcImgPlus, ImgPlus<?> dstImgPlus) {
-		int tableCount = srcImgPlus.getColorTableCount();
-		for (int i = 0; i < tableCount; i++) {
-			ColorTable c = srcImgPlus.getColorTable(i);
-			dstImgPlus.setColorTable(c, i);
+	private static boolean compatibleStorage(
+		final PlanarAccess<ArrayDataAccess<?>> src, final long srcPlaneSize,
+		final PlanarAccess<ArrayDataAccess<?>> dst, final long dstPlaneSize)
+	{
+		if (src == null || dst == null) return false;
+		final Object srcPlane = readPlane(src, 0);
+		final Object dstPlane = readPlane(dst, 0);
+		if (srcPlane.getClass() != dstPlane.getClass()) return false;
+		// NB: Packed types (e.g. 1-bit) do not store one element per pixel.
+		return Array.getLength(srcPlane) == srcPlaneSize &&
+			Array.getLength(dstPlane) == dstPlaneSize;
+	}
+
+	/**
+	 * Sets the coordinates of pos from dimension firstDim onward to those of
+	 * the index-th block of a region, counting blocks in raster order.
+	 */
+	private static void regionPosition(final long index, final int firstDim,
+		final long[] origin, final long[] span, final long[] pos)
+	{
+		long remainder = index;
+		for (int d = firstDim; d < span.length; d++) {
+			pos[d] = origin[d] + remainder % span[d];
+			remainder /= span[d];
 		}
 	}
-	
-	// -- private helpers --
+
+	/**
+	 * Runs the given block over [0, count), split across the threads set by the
+	 * "Parallel threads for stacks" option when a {@link ThreadService} is
+	 * given.
+	 */
+	private static void forEachBlock(final ThreadService threadService,
+		final long count, final Block block)
+	{
+		StackExecutor.forEachBlock(threadService, count, block);
+	}
 	
 	/**
 	 * Returns a span array covering the specified hyperplanes. Only the axis
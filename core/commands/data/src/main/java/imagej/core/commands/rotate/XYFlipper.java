@@ -35,10 +35,11 @@
 
 package imagej.core.commands.rotate;
 
+import imagej.core.commands.StackExecutor;
+import imagej.core.commands.StackExecutor.PlaneWorker;
+import imagej.core.commands.StackExecutor.PlaneWorkerFactory;
 import imagej.core.commands.imglib.OutputAlgorithm;
 import imagej.data.Dataset;
-import imagej.data.Extents;
-import imagej.data.Position;
 import imagej.util.RealRect;
 import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
@@ -49,7 +50,8 @@
 // TODO - XYFlipper could be renamed to something else. It takes XY data and transforms it some other space */
 
 /**
- * XYFlipper is used by Rotate90DegreesLeft and Rotate90DegreesRight
+ * XYFlipper is used by Rotate90DegreesLeft and Rotate90DegreesRight. Planes are
+ * filled in parallel by a {@link StackExecutor}.
  * 
  * @author Barry DeZonia
  */
@@ -70,10 +72,6 @@ public class XYFlipper implements OutputAlgorithm {
 
 	private long[] inputDimensions;
 
-	private RandomAccess<? extends RealType<?>> inputAccessor;
-
-	private RandomAccess<? extends RealType<?>> outputAccessor;
-
 	// -- exported interface --
 
 	/**
@@ -149,13 +147,10 @@ public String getErrorMessage() {
 	public boolean process() {
 		final Img<? extends RealType<?>> inputImage = dataset.getImgPlus();
 
-		inputAccessor = inputImage.randomAccess();
-		outputAccessor = outputImage.randomAccess();
-
 		final long width = inputDimensions[0];
 		final long height = inputDimensions[1];
 
-		long rx, ry, rw, rh;
+		final long rx, ry, rw, rh;
 
 		if (flipper.isShapePreserving() && (bounds.width > 0) &&
 			(bounds.height > 0))
@@ -172,20 +167,14 @@ public boolean process() {
 			rh = height;
 		}
 
-		final long[] planeDims = new long[inputImage.numDimensions() - 2];
-		for (int i = 0; i < planeDims.length; i++)
-			planeDims[i] = inputDimensions[i + 2];
-		final Extents extents = new Extents(planeDims);
-		final Position planePos = extents.createPosition();
-		if (planeDims.length == 0) { // 2d Dataset
-			processPlane(planePos, rx, ry, rw, rh);
-		}
-		else { // more than two dimensions
-			while (planePos.hasNext()) {
-				planePos.fwd();
-				processPlane(planePos, rx, ry, rw, rh);
+		final StackExecutor executor = new StackExecutor(dataset.getContext());
+		executor.run(outputImage, new PlaneWorkerFactory() {
+
+			@Override
+			public PlaneWorker createWorker() {
+				return new FlipWorker(inputImage, rx, ry, rw, rh);
 			}
-		}
+		});
 		return true;
 	}
 
@@ -197,31 +186,46 @@ public Img<? extends RealType<?>> getResult() {
 		return outputImage;
 	}
 
-	private void processPlane(final Position planePos, final long rx,
-		final long ry, final long rw, final long rh)
-	{
+	// -- helper classes --
+
+	/** Copies planes from the input image to the output image. */
+	private class FlipWorker implements PlaneWorker {
 
-		final long[] inputPosition = new long[planePos.numDimensions() + 2];
-		final long[] outputPosition = new long[planePos.numDimensions() + 2];
+		private final RandomAccess<? extends RealType<?>> inputAccessor;
+		private final RandomAccess<? extends RealType<?>> outputAccessor;
+		private final long rx, ry, rw, rh;
+		private final long[] outputPosition;
 
-		for (int i = 2; i < inputPosition.length; i++)
-			inputPosition[i] = planePos.getLongPosition(i - 2);
+		public FlipWorker(final Img<? extends RealType<?>> inputImage,
+			final long rx, final long ry, final long rw, final long rh)
+		{
+			inputAccessor = inputImage.randomAccess();
+			outputAccessor = outputImage.randomAccess();
+			this.rx = rx;
+			this.ry = ry;
+			this.rw = rw;
+			this.rh = rh;
+			outputPosition = new long[inputDimensions.length];
+		}
 
-		for (long y = ry; y < ry + rh; y++) {
-			inputPosition[1] = y;
+		@Override
+		public void processPlane(final long[] inputPosition) {
+			for (long y = ry; y < ry + rh; y++) {
+				inputPosition[1] = y;
 
-			for (long x = rx; x < rx + rw; x++) {
-				inputPosition[0] = x;
+				for (long x = rx; x < rx + rw; x++) {
+					inputPosition[0] = x;
 
-				flipper.calcOutputPosition(inputDimensions, inputPosition,
-					outputPosition);
+					flipper.calcOutputPosition(inputDimensions, inputPosition,
+						outputPosition);
 
-				inputAccessor.setPosition(inputPosition);
-				outputAccessor.setPosition(outputPosition);
+					inputAccessor.setPosition(inputPosition);
+					outputAccessor.setPosition(outputPosition);
 
-				final double value = inputAccessor.get().getRealDouble();
+					final double value = inputAccessor.get().getRealDouble();
 
-				outputAccessor.get().setReal(value);
+					outputAccessor.get().setReal(value);
+				}
 			}
 		}
 	}
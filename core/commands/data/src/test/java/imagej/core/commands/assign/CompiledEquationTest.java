@@ -0,0 +1,215 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.ops.function.Function;
+import net.imglib2.ops.parse.RealEquationFunctionParser;
+import net.imglib2.ops.util.Tuple2;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link CompiledEquation}, by comparing its results with those of
+ * {@link RealEquationFunctionParser}, which {@link EquationDataValues} uses for
+ * equations that cannot be compiled.
+ * 
+ * @author agent
+ */
+public class CompiledEquationTest {
+
+	private static final long[] DIMENSIONS = { 7, 3, 2, 3, 4 };
+
+	@Test
+	public void testDialogExamples() {
+		assertParity("img + 40");
+		assertParity("[x,y], x^2 + y^2");
+		assertParity("[u1,v1,w1] , -2.003*u1 + 8.41*w1 + E + PI");
+		assertParity("[x,y,c,z,t], cos(t*PI/7) + sin(z*PI/12)");
+	}
+
+	@Test
+	public void testOperators() {
+		assertParity("[x,y], (x + 1) * (y - 2) / 3");
+		assertParity("[x,y], img % (x + 2)");
+		assertParity("[x], 2^x^0.5 - img");
+		assertParity("[a,b,c], c * img - b / (a + 1) + 0.25");
+	}
+
+	@Test
+	public void testConstants() {
+		assertParity("E");
+		assertParity("PI * img");
+		assertParity("[x], x * E - PI");
+	}
+
+	@Test
+	public void testFunctions() {
+		assertParity("abs(img - 10)");
+		assertParity("sqrt(img) + exp(img / 100)");
+		assertParity("log(img) - cos(img) * sin(img)");
+		assertParity("[x,y], floor(img / 3) + ceil(x / 2) + tan(y / 4)");
+	}
+
+	@Test
+	public void testEveryFunction() {
+		// NB: Image values lie in [1, 58], in steps of 0.5.
+		assertParity("abs(20 - img)");
+		assertParity("acos(img / 100)");
+		assertParity("asin(img / 100)");
+		assertParity("atan(img - 20)");
+		assertParity("cbrt(img - 20)");
+		assertParity("ceil(img / 4)");
+		assertParity("cos(img)");
+		assertParity("cosh(img / 10)");
+		assertParity("exp(img / 10)");
+		assertParity("floor(img / 4)");
+		assertParity("log(img)");
+		assertParity("log10(img)");
+		assertParity("log1p(img / 1000)");
+		// values halfway between integers, on both sides of zero
+		assertParity("round(img - 20)");
+		assertParity("signum(img - 20)");
+		assertParity("sin(img)");
+		assertParity("sinh(img / 10)");
+		assertParity("sqrt(img)");
+		assertParity("tan(img / 100)");
+		assertParity("tanh(img / 10 - 3)");
+		// argument order matters for all but min and max
+		assertParity("[x,y], atan2(img - 20, x - 3)");
+		assertParity("[x], max(img / 2, x)");
+		assertParity("[x], min(img / 2, x)");
+		assertParity("[x], pow(img / 10, x / 4)");
+	}
+
+	@Test
+	public void testAxisVariables() {
+		// all dimensions, including ones not along the row
+		assertParity("[x,y,c,z,t], x + 10*y + 100*c + 1000*z + 10000*t");
+		// fewer variables than dimensions
+		assertParity("[p,q,r], r * img + q");
+		// a variable along the row axis only
+		assertParity("[x], x * x");
+	}
+
+	@Test
+	public void testUnsupported() {
+		assertNotNull(CompiledEquation.compile("[x,y], x + y", 2));
+		// more variables than dimensions
+		assertNull(CompiledEquation.compile("[x,y,z], x + y + z", 2));
+		// ambiguous precedence of sign and power
+		assertNull(CompiledEquation.compile("-img^2", 2));
+		// unknown names and syntax
+		assertNull(CompiledEquation.compile("foo(img)", 2));
+		assertNull(CompiledEquation.compile("img < 4", 2));
+		assertNull(CompiledEquation.compile("[x,x], x", 2));
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Evaluates the equation over every row of a test image, both compiled and
+	 * via the parser, and asserts that the results agree.
+	 */
+	private void assertParity(final String equation) {
+		final ImgPlus<DoubleType> img = createImage();
+		final CompiledEquation compiled =
+			CompiledEquation.compile(equation, DIMENSIONS.length);
+		assertNotNull(equation, compiled);
+
+		final Tuple2<Function<long[], DoubleType>, String> result =
+			new RealEquationFunctionParser().parse(equation, img);
+		assertNull(equation + ": " + result.get2(), result.get2());
+		final Function<long[], DoubleType> function = result.get1();
+
+		final int w = (int) DIMENSIONS[0];
+		final double[] imgValues = new double[w];
+		final double[] values = new double[w];
+		final long[] rowStart = new long[DIMENSIONS.length];
+		final long[] pos = new long[DIMENSIONS.length];
+		final RandomAccess<DoubleType> accessor = img.randomAccess();
+		final DoubleType expected = new DoubleType();
+		while (true) {
+			for (int x = 0; x < w; x++) {
+				rowStart[0] = x;
+				accessor.setPosition(rowStart);
+				imgValues[x] = accessor.get().getRealDouble();
+			}
+			rowStart[0] = 0;
+			compiled.evaluateRow(rowStart, 0, imgValues, values);
+			for (int x = 0; x < w; x++) {
+				System.arraycopy(rowStart, 0, pos, 0, pos.length);
+				pos[0] = x;
+				function.compute(pos, expected);
+				final double e = expected.getRealDouble();
+				final double tolerance = 1e-9 * Math.max(1, Math.abs(e));
+				assertEquals(equation, e, values[x], tolerance);
+			}
+			// advance to the next row
+			int d = 1;
+			while (d < rowStart.length) {
+				if (++rowStart[d] < DIMENSIONS[d]) break;
+				rowStart[d] = 0;
+				d++;
+			}
+			if (d == rowStart.length) break;
+		}
+	}
+
+	/** Creates an image whose values are positive and vary along every axis. */
+	private ImgPlus<DoubleType> createImage() {
+		final Img<DoubleType> img =
+			new ArrayImgFactory<DoubleType>().create(DIMENSIONS, new DoubleType());
+		final Cursor<DoubleType> cursor = img.localizingCursor();
+		final long[] pos = new long[DIMENSIONS.length];
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.localize(pos);
+			cursor.get().setReal(1 + pos[0] + 0.5 * pos[1] + 3 * pos[2] + 7 *
+				pos[3] + 11 * pos[4]);
+		}
+		return new ImgPlus<DoubleType>(img);
+	}
+
+}
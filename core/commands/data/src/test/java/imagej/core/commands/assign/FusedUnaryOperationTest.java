@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign;
+
+import static org.junit.Assert.assertEquals;
+import net.imglib2.ops.operation.real.unary.RealAddConstant;
+import net.imglib2.ops.operation.real.unary.RealSubtractConstant;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link FusedUnaryOperation}.
+ * 
+ * @author agent
+ */
+public class FusedUnaryOperationTest {
+
+	@Test
+	public void testEmptyChain() {
+		final FusedUnaryOperation<FloatType> op =
+			new FusedUnaryOperation<FloatType>(new FloatType());
+		final DoubleType output = new DoubleType();
+		op.compute(new DoubleType(3.25), output);
+		assertEquals(3.25, output.get(), 0);
+	}
+
+	@Test
+	public void testRoundsEachStep() {
+		// 1 + 1e-9 is 1 in float precision, so running Add and then Subtract
+		// on a float image gives 0, not 1e-9
+		final FusedUnaryOperation<FloatType> op =
+			new FusedUnaryOperation<FloatType>(new FloatType());
+		op.add(new RealAddConstant<DoubleType, DoubleType>(1e-9));
+		op.add(new RealSubtractConstant<DoubleType, DoubleType>(1));
+		final DoubleType output = new DoubleType();
+		op.compute(new DoubleType(1), output);
+		assertEquals(0, output.get(), 0);
+
+		// a double image keeps the intermediate value
+		final FusedUnaryOperation<DoubleType> exact =
+			new FusedUnaryOperation<DoubleType>(new DoubleType());
+		exact.add(new RealAddConstant<DoubleType, DoubleType>(1e-9));
+		exact.add(new RealSubtractConstant<DoubleType, DoubleType>(1));
+		exact.compute(new DoubleType(1), output);
+		assertEquals(1e-9, output.get(), 1e-15);
+	}
+
+	@Test
+	public void testCopy() {
+		final FusedUnaryOperation<FloatType> op =
+			new FusedUnaryOperation<FloatType>(new FloatType());
+		op.add(new RealAddConstant<DoubleType, DoubleType>(2));
+		op.add(new RealAddConstant<DoubleType, DoubleType>(3));
+		final FusedUnaryOperation<FloatType> copy = op.copy();
+		assertEquals(2, copy.size());
+		final DoubleType output = new DoubleType();
+		copy.compute(new DoubleType(1), output);
+		assertEquals(6, output.get(), 0);
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.debug;
+
+import imagej.ImageJ;
+import imagej.command.Command;
+import imagej.module.ItemIO;
+import imagej.plugin.Parameter;
+import imagej.plugin.Plugin;
+import imagej.util.StartupProfiler;
+
+/**
+ * Reports where the time went while starting up ImageJ: the startup phases
+ * recorded by the context's {@link StartupProfiler}, followed by the time spent creating
+ * each service.
+ * 
+ * @author agent
+ */
+@Plugin(menuPath = "Plugins>Debug>Startup Profile", headless = true)
+public class StartupProfile implements Command {
+
+	// -- Constants --
+
+	private static final String NL = System.getProperty("line.separator");
+
+	// -- Parameters --
+
+	@Parameter
+	private ImageJ context;
+
+	@Parameter(label = "Output as JSON",
+		description = "Machine-readable output, for tracking startup performance")
+	private boolean json;
+
+	@Parameter(label = "Startup Profile", type = ItemIO.OUTPUT)
+	private String profile;
+
+	// -- Runnable methods --
+
+	@Override
+	public void run() {
+		if (json) {
+			profile = context.getStartupProfiler().toJSON();
+			return;
+		}
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append(context.getInfo(false) + NL);
+
+		sb.append(NL);
+		sb.append("-- Startup phases --" + NL);
+		sb.append(context.getStartupProfiler().getReport());
+
+		sb.append(NL);
+		sb.append("-- Service creation --" + NL);
+		sb.append(context.getServiceHelper().getProfileReport());
+
+		profile = sb.toString();
+	}
+
+}
@@ -43,6 +43,7 @@
 import imagej.util.CheckSezpoz;
 import imagej.util.Manifest;
 import imagej.util.POM;
+import imagej.util.StartupProfiler;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -139,6 +140,14 @@ public static <S extends Service> S get(final Class<S> serviceClass) {
 		return context.getService(serviceClass);
 	}
 
+	/**
+	 * System property which, when set to {@code true}, makes newly created
+	 * contexts instantiate their services on demand.
+	 * 
+	 * @see #ImageJ(Collection, boolean)
+	 */
+	public static final String LAZY_SERVICES_PROPERTY = "imagej.services.lazy";
+
 	// -- Fields --
 
 	/** Title of the application context. */
@@ -156,6 +165,15 @@ public static <S extends Service> S get(final Class<S> serviceClass) {
 	/** JAR manifest with metadata about ImageJ. */
 	private final Manifest manifest;
 
+	/** Helper for instantiating services, kept for on-demand creation. */
+	private final ServiceHelper serviceHelper;
+
+	/** Whether services are instantiated on demand. */
+	private final boolean lazy;
+
+	/** Timings of the phases of this context's startup. */
+	private final StartupProfiler startupProfiler = new StartupProfiler();
+
 	/** Creates a new ImageJ application context with all available services. */
 	public ImageJ() {
 		this(false);
@@ -202,37 +220,83 @@ public ImageJ(final Class... serviceClasses) {
 	/**
 	 * Creates a new ImageJ application context with the specified services (and
 	 * any required service dependencies).
+	 * <p>
+	 * If the {@code imagej.services.lazy} system property is set to
+	 * {@code true}, the context is created in lazy mode; see
+	 * {@link #ImageJ(Collection, boolean)}.
+	 * </p>
 	 * 
 	 * @param serviceClasses A collection of types that implement the
 	 *          {@link Service} interface (e.g., {@code DisplayService.class}).
 	 */
 	public ImageJ(final Collection<Class<? extends Service>> serviceClasses) {
-		if (staticContext == null) {
-			// First context! Check that annotations were generated properly.
-			try {
-				if (!CheckSezpoz.check(false)) {
-					// SezPoz uses ClassLoader.getResources() which will now pick up the
-					// apt-generated annotations.
-					System.err.println("SezPoz generated annotations."); // no log service
+		this(serviceClasses, Boolean.getBoolean(LAZY_SERVICES_PROPERTY));
+	}
+
+	/**
+	 * Creates a new ImageJ application context with the specified services (and
+	 * any required service dependencies).
+	 * <p>
+	 * In lazy mode, only the given services (and their dependencies) are created
+	 * up front; passing null creates none at all. Any other discovered service is
+	 * instantiated the first time it is requested via {@link #getService(Class)}.
+	 * Note that services which are never requested also never receive events,
+	 * so lazy mode is intended for headless, short-lived contexts.
+	 * </p>
+	 * 
+	 * @param serviceClasses A collection of types that implement the
+	 *          {@link Service} interface (e.g., {@code DisplayService.class}).
+	 * @param lazy Whether to instantiate the remaining services on demand.
+	 */
+	public ImageJ(final Collection<Class<? extends Service>> serviceClasses,
+		final boolean lazy)
+	{
+		startupProfiler.begin();
+		final StartupProfiler.Phase contextPhase =
+			StartupProfiler.start(StartupProfiler.PHASE, "Context creation");
+		try {
+			if (staticContext == null) {
+				// First context! Check that annotations were generated properly.
+				final StartupProfiler.Phase phase =
+					StartupProfiler.start(StartupProfiler.PHASE, "SezPoz check");
+				try {
+					final boolean upToDate = CheckSezpoz.check(false);
+					if (!upToDate) {
+						// SezPoz uses ClassLoader.getResources() which will now pick up
+						// the apt-generated annotations. There is no log service yet.
+						System.err.println("SezPoz generated annotations.");
+					}
+				}
+				catch (final IOException e) {
+					e.printStackTrace();
+				}
+				finally {
+					phase.stop();
 				}
 			}
-			catch (final IOException e) {
-				e.printStackTrace();
-			}
-		}
-		staticContext = this; // TEMP
+			staticContext = this; // TEMP
 
-		serviceIndex = new ServiceIndex();
+			serviceIndex = new ServiceIndex();
 
-		pluginIndex = new PluginIndex();
-		pluginIndex.discover();
+			pluginIndex = new PluginIndex();
+			pluginIndex.discover();
 
-		pom = POM.getPOM(ImageJ.class, "net.imagej", "ij-core");
-		manifest = Manifest.getManifest(ImageJ.class);
+			pom = POM.getPOM(ImageJ.class, "net.imagej", "ij-core");
+			manifest = Manifest.getManifest(ImageJ.class);
 
-		final ServiceHelper serviceHelper =
-			new ServiceHelper(this, serviceClasses);
-		serviceHelper.loadServices();
+			this.lazy = lazy;
+			if (lazy && serviceClasses == null) {
+				serviceHelper = new ServiceHelper(this,
+					Collections.<Class<? extends Service>> emptyList());
+			}
+			else serviceHelper = new ServiceHelper(this, serviceClasses);
+			serviceHelper.loadServices();
+		}
+		finally {
+			contextPhase.stop();
+			startupProfiler.finish();
+		}
+		startupProfiler.dumpIfRequested();
 	}
 
 	// -- ImageJ methods --
@@ -306,9 +370,35 @@ public PluginIndex getPluginIndex() {
 		return pluginIndex;
 	}
 
-	/** Gets the service of the given class. */
+	/** Gets whether this context instantiates its services on demand. */
+	public boolean isLazy() {
+		return lazy;
+	}
+
+	/**
+	 * Gets the helper which instantiated this context's services, e.g. to query
+	 * how long each service took to create.
+	 */
+	public ServiceHelper getServiceHelper() {
+		return serviceHelper;
+	}
+
+	/** Gets the timings of the phases of this context's startup. */
+	public StartupProfiler getStartupProfiler() {
+		return startupProfiler;
+	}
+
+	/**
+	 * Gets the service of the given class. In lazy mode, a compatible service is
+	 * instantiated if none exists yet.
+	 */
 	public <S extends Service> S getService(final Class<S> c) {
-		return serviceIndex.getService(c);
+		final S service = serviceIndex.getService(c);
+		if (service != null || !lazy) return service;
+		synchronized (serviceHelper) {
+			if (!serviceHelper.isAvailable(c)) return null;
+			return serviceHelper.loadService(c);
+		}
 	}
 
 	/** Gets the service of the given class name (useful for scripts). */
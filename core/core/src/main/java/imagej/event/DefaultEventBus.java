@@ -41,10 +41,15 @@
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bushe.swing.event.CleanupEvent;
+import org.bushe.swing.event.EventSubscriber;
 import org.bushe.swing.event.ThreadSafeEventService;
 
 /**
@@ -55,6 +60,11 @@
  * {@link org.bushe.swing.event.EventService} but rather an ImageJ
  * {@link Service} implementation.
  * </p>
+ * <p>
+ * The subscribers of each event class, including those subscribed to its
+ * superclasses and interfaces, are looked up once and cached until the next
+ * subscription change, rather than resolved on every publication.
+ * </p>
  * 
  * @author Curtis Rueden
  */
@@ -63,6 +73,13 @@ public class DefaultEventBus extends ThreadSafeEventService {
 	private final ThreadService threadService;
 	private final LogService log;
 
+	/** Table of subscriber lists, keyed on event class. */
+	private final Map<Class<?>, List<?>> subscriberCache =
+		new ConcurrentHashMap<Class<?>, List<?>>();
+
+	/** Number of times the subscriber cache has been invalidated. */
+	private long cacheGeneration;
+
 	// TODO - Think more about how publishing events should work.
 	// Unfortunately, without further care elsewhere in the code (subject to
 	// further investigation), event publication can result in a race condition
@@ -84,7 +101,7 @@ public void publishNow(final Object event) {
 		if (event == null) {
 			throw new IllegalArgumentException("Cannot publish null event.");
 		}
-		publishNow(event, null, null, getSubscribers(event.getClass()),
+		publishNow(event, null, null, getCachedSubscribers(event.getClass()),
 			getVetoSubscribers(event.getClass()), null);
 	}
 
@@ -107,7 +124,7 @@ public void publishLater(final Object event) {
 		if (event == null) {
 			throw new IllegalArgumentException("Cannot publish null event.");
 		}
-		publishLater(event, null, null, getSubscribers(event.getClass()),
+		publishLater(event, null, null, getCachedSubscribers(event.getClass()),
 			getVetoSubscribers(event.getClass()), null);
 	}
 
@@ -160,6 +177,22 @@ public void publish(final Object event) {
 		publishNow(event);
 	}
 
+	@Override
+	@SuppressWarnings("rawtypes")
+	public boolean subscribe(final Class c, final EventSubscriber subscriber) {
+		final boolean result = super.subscribe(c, subscriber);
+		invalidateCache();
+		return result;
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public boolean unsubscribe(final Class c, final EventSubscriber subscriber) {
+		final boolean result = super.unsubscribe(c, subscriber);
+		invalidateCache();
+		return result;
+	}
+
 	@Override
 	public void publish(final Type genericType, final Object event) {
 		publishNow(genericType, event);
@@ -185,6 +218,35 @@ protected void publish(final Object event, final String topic,
 
 	// -- Helper methods --
 
+	/**
+	 * Gets the subscribers of the given event class from the cache, looking
+	 * them up if needed. The cache lock is never held while looking up, to avoid
+	 * waiting on the superclass's listener lock, which is held during cleanup.
+	 */
+	private List<?> getCachedSubscribers(final Class<?> c) {
+		List<?> subscribers = subscriberCache.get(c);
+		if (subscribers != null) return subscribers;
+
+		final long generation;
+		synchronized (subscriberCache) {
+			generation = cacheGeneration;
+		}
+		subscribers =
+			Collections.unmodifiableList(new ArrayList<Object>(getSubscribers(c)));
+		synchronized (subscriberCache) {
+			// skip caching if subscriptions changed during the lookup
+			if (generation == cacheGeneration) subscriberCache.put(c, subscribers);
+		}
+		return subscribers;
+	}
+
+	private void invalidateCache() {
+		synchronized (subscriberCache) {
+			cacheGeneration++;
+			subscriberCache.clear();
+		}
+	}
+
 	private void publishNow(final Object event, final String topic,
 		final Object eventObj,
 		@SuppressWarnings("rawtypes") final List subscribers,
@@ -35,16 +35,26 @@
 
 package imagej.event;
 
+import imagej.log.LogService;
 import imagej.plugin.Parameter;
 import imagej.plugin.Plugin;
 import imagej.service.AbstractService;
 import imagej.service.Service;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Default service for keeping a history of ImageJ events.
+ * <p>
+ * Events are kept in a fixed-capacity ring buffer, which recording threads
+ * fill without locking. Once full, each new event replaces the oldest one.
+ * </p>
  * 
  * @author Curtis Rueden
  */
@@ -53,15 +63,23 @@ public class DefaultEventHistory extends AbstractService implements
 	EventHistory
 {
 
+	/** Default maximum number of events kept in the history. */
+	public static final int DEFAULT_CAPACITY = 10000;
+
 	@Parameter
 	private EventService eventService;
 
+	@Parameter
+	private LogService log;
+
 	/** Event details that have been recorded. */
-	private ArrayList<EventDetails> history;
+	private volatile Ring history;
 
 	private ArrayList<EventHistoryListener> listeners;
 
-	private boolean active;
+	private volatile EventCapture capture;
+
+	private volatile boolean active;
 
 	// -- EventHistory methods --
 
@@ -77,7 +95,41 @@ public boolean isActive() {
 
 	@Override
 	public void clear() {
-		history.clear();
+		history = new Ring(history.capacity());
+	}
+
+	@Override
+	public int getCapacity() {
+		return history.capacity();
+	}
+
+	@Override
+	public void setCapacity(final int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		history = new Ring(capacity);
+	}
+
+	@Override
+	public List<EventDetails> getHistory() {
+		return getHistory(null, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	@Override
+	public List<EventDetails> getHistory(
+		final Set<Class<? extends ImageJEvent>> types, final long startTime,
+		final long endTime)
+	{
+		final List<EventDetails> list = history.toList();
+		final ArrayList<EventDetails> matches = new ArrayList<EventDetails>();
+		for (final EventDetails details : list) {
+			if (types != null && !types.contains(details.getEventType())) continue;
+			final long time = details.getTime();
+			if (time < startTime || time > endTime) continue;
+			matches.add(details);
+		}
+		return matches;
 	}
 
 	@Override
@@ -85,7 +137,7 @@ public String toHTML(final Set<Class<? extends ImageJEvent>> filtered,
 		final Set<Class<? extends ImageJEvent>> highlighted)
 	{
 		final StringBuilder sb = new StringBuilder();
-		for (final EventDetails details : history) {
+		for (final EventDetails details : history.toList()) {
 			final Class<? extends ImageJEvent> eventType = details.getEventType();
 			if (filtered != null && filtered.contains(eventType)) {
 				// skip filtered event type
@@ -112,17 +164,47 @@ public void removeListener(final EventHistoryListener l) {
 		synchronized (listeners) {
 			listeners.remove(l);
 		}
-		if (listeners.isEmpty()) {
+		if (listeners.isEmpty() && capture == null) {
 			// if no one is listening, stop recording
 			setActive(false);
 		}
 	}
 
+	@Override
+	public synchronized void startCapture(final File file) throws IOException {
+		stopCapture();
+		capture = new EventCapture(file);
+		// record events for the capture, even if no one is listening
+		setActive(true);
+	}
+
+	@Override
+	public synchronized void stopCapture() {
+		final EventCapture oldCapture = capture;
+		if (oldCapture == null) return;
+		capture = null;
+		try {
+			oldCapture.close();
+		}
+		catch (final IOException e) {
+			log.error("Cannot close event capture: " + oldCapture.getFile(), e);
+		}
+		synchronized (listeners) {
+			// if no one is listening, stop recording
+			if (listeners.isEmpty()) setActive(false);
+		}
+	}
+
+	@Override
+	public boolean isCapturing() {
+		return capture != null;
+	}
+
 	// -- Service methods --
 
 	@Override
 	public void initialize() {
-		history = new ArrayList<EventDetails>();
+		history = new Ring(DEFAULT_CAPACITY);
 		listeners = new ArrayList<EventHistoryListener>();
 	}
 
@@ -133,11 +215,24 @@ protected void onEvent(final ImageJEvent event) {
 		if (!active) return; // only record events while active
 		final EventDetails details = new EventDetails(event);
 		history.add(details);
+		capture(details);
 		notifyListeners(details);
 	}
 
 	// -- Helper methods --
 
+	private void capture(final EventDetails details) {
+		final EventCapture eventCapture = capture;
+		if (eventCapture == null) return;
+		try {
+			eventCapture.write(details);
+		}
+		catch (final IOException e) {
+			log.error("Cannot write event capture: " + eventCapture.getFile(), e);
+			stopCapture();
+		}
+	}
+
 	private void notifyListeners(final EventDetails details) {
 		synchronized (listeners) {
 			for (final EventHistoryListener l : listeners) {
@@ -146,4 +241,54 @@ private void notifyListeners(final EventDetails details) {
 		}
 	}
 
+	// -- Helper classes --
+
+	/**
+	 * A fixed-capacity ring buffer of event details. Each slot holds the
+	 * sequence number of its entry, so readers can skip slots overwritten while
+	 * they read.
+	 */
+	private static class Ring {
+
+		private final AtomicReferenceArray<Entry> entries;
+		private final AtomicLong next = new AtomicLong();
+
+		public Ring(final int capacity) {
+			entries = new AtomicReferenceArray<Entry>(capacity);
+		}
+
+		public int capacity() {
+			return entries.length();
+		}
+
+		public void add(final EventDetails details) {
+			final long sequence = next.getAndIncrement();
+			entries.set((int) (sequence % capacity()), new Entry(sequence, details));
+		}
+
+		public List<EventDetails> toList() {
+			final long end = next.get();
+			final long start = Math.max(0, end - capacity());
+			final ArrayList<EventDetails> list =
+				new ArrayList<EventDetails>((int) (end - start));
+			for (long sequence = start; sequence < end; sequence++) {
+				final Entry entry = entries.get((int) (sequence % capacity()));
+				if (entry == null || entry.sequence != sequence) continue;
+				list.add(entry.details);
+			}
+			return list;
+		}
+	}
+
+	private static class Entry {
+
+		private final long sequence;
+		private final EventDetails details;
+
+		public Entry(final long sequence, final EventDetails details) {
+			this.sequence = sequence;
+			this.details = details;
+		}
+	}
+
 }
@@ -43,11 +43,15 @@
 import imagej.service.Service;
 import imagej.thread.ThreadService;
 
+import java.lang.ref.SoftReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.bushe.swing.event.annotation.AbstractProxySubscriber;
 import org.bushe.swing.event.annotation.BaseProxySubscriber;
@@ -55,6 +59,11 @@
 
 /**
  * Default service for publishing and subscribing to ImageJ events.
+ * <p>
+ * The @{@link EventHandler} methods of each class are discovered once and
+ * cached, so subscribing many objects of the same class does not repeat the
+ * reflection.
+ * </p>
  * 
  * @author Curtis Rueden
  * @author Grant Harris
@@ -87,25 +96,39 @@ public class DefaultEventService extends AbstractService implements
 
 	private DefaultEventBus eventBus;
 
+	/**
+	 * Table of event handler methods, keyed on the declaring class. The keys are
+	 * weak so that classes can be unloaded. The methods are held softly, since
+	 * they refer back to their class and would otherwise keep the key alive.
+	 */
+	private final Map<Class<?>, SoftReference<List<Method>>> handlers =
+		Collections.synchronizedMap(
+			new WeakHashMap<Class<?>, SoftReference<List<Method>>>());
+
 	// -- EventService methods --
 
 	@Override
 	public <E extends ImageJEvent> void publish(final E e) {
 		e.setContext(getContext());
+		e.published();
 		eventBus.publishNow(e);
 	}
 
 	@Override
 	public <E extends ImageJEvent> void publishLater(final E e) {
 		e.setContext(getContext());
+		e.published();
 		eventBus.publishLater(e);
 	}
 
 	@Override
 	public List<EventSubscriber<?>> subscribe(final Object o) {
+		final List<Method> methods = getHandlers(o.getClass());
 		final List<EventSubscriber<?>> subscribers =
-			new ArrayList<EventSubscriber<?>>();
-		subscribeRecursively(subscribers, o.getClass(), o);
+			new ArrayList<EventSubscriber<?>>(methods.size());
+		for (final Method m : methods) {
+			subscribers.add(subscribe(getEventClass(m), o, m));
+		}
 		return subscribers;
 	}
 
@@ -141,27 +164,35 @@ public void initialize() {
 	// -- Helper methods --
 
 	/**
-	 * Recursively scans for @{@link EventHandler} annotated methods, and
-	 * subscribes them to the event service.
+	 * Gets the @{@link EventHandler} annotated methods of the given class and its
+	 * superclasses. The methods of each class are scanned only once.
 	 */
-	private void subscribeRecursively(
-		final List<EventSubscriber<?>> subscribers, final Class<?> type,
-		final Object o)
-	{
-		if (type == null || type == Object.class) return;
+	private List<Method> getHandlers(final Class<?> type) {
+		if (type == null || type == Object.class) {
+			return Collections.emptyList();
+		}
+		final SoftReference<List<Method>> ref = handlers.get(type);
+		List<Method> methods = ref == null ? null : ref.get();
+		if (methods != null) return methods;
+
+		methods = new ArrayList<Method>();
 		for (final Method m : type.getDeclaredMethods()) {
 			final EventHandler ann = m.getAnnotation(EventHandler.class);
 			if (ann == null) continue; // not an event handler method
 
-			final Class<? extends ImageJEvent> eventClass = getEventClass(m);
-			if (eventClass == null) {
+			if (getEventClass(m) == null) {
 				log.warn("Invalid EventHandler method: " + m);
 				continue;
 			}
 
-			subscribers.add(subscribe(eventClass, o, m));
+			// allow calling of non-public methods
+			m.setAccessible(true);
+			methods.add(m);
 		}
-		subscribeRecursively(subscribers, type.getSuperclass(), o);
+		methods.addAll(getHandlers(type.getSuperclass()));
+		methods = Collections.unmodifiableList(methods);
+		handlers.put(type, new SoftReference<List<Method>>(methods));
+		return methods;
 	}
 
 	private <E extends ImageJEvent> void subscribe(final Class<E> c,
@@ -219,13 +250,12 @@ private Class<? extends ImageJEvent> getEventClass(final Method m) {
 	{
 
 		private final Class<E> c;
+		private final Method m;
 
 		public ProxySubscriber(final Class<E> c, final Object o, final Method m) {
 			super(o, m, ReferenceStrength.WEAK, eventBus, false);
 			this.c = c;
-
-			// allow calling of non-public methods
-			m.setAccessible(true);
+			this.m = m;
 		}
 
 		/**
@@ -239,7 +269,7 @@ public void onEvent(final E event) {
 			try {
 				final Object obj = getProxiedSubscriber();
 				if (obj == null) return; // has been garbage collected
-				getSubscriptionMethod().invoke(obj, event);
+				m.invoke(obj, event);
 			}
 			catch (final IllegalAccessException exc) {
 				log.error("Exception during event handling:\n\t[Event] " +
@@ -0,0 +1,153 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.event;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams {@link EventDetails} to a file in a compact binary form.
+ * <p>
+ * The file starts with the int {@link #MAGIC} and the int {@link #VERSION}.
+ * Then come records, each starting with a byte giving its kind:
+ * </p>
+ * <ul>
+ * <li>{@link #TYPE_RECORD}: an int id and the UTF name of an event class,
+ * written before the first event of that class.</li>
+ * <li>{@link #THREAD_RECORD}: an int id and the UTF name of a thread, written
+ * before the first event published by that thread.</li>
+ * <li>{@link #EVENT_RECORD}: the long time in milliseconds, the long latency
+ * in nanoseconds, the int type id, the int thread id and the UTF event string,
+ * cut to {@link #MAX_STRING_LENGTH} characters.</li>
+ * </ul>
+ * 
+ * @author agent
+ */
+public class EventCapture {
+
+	public static final int MAGIC = 0x494a4556; // "IJEV"
+	public static final int VERSION = 1;
+
+	public static final byte TYPE_RECORD = 0;
+	public static final byte THREAD_RECORD = 1;
+	public static final byte EVENT_RECORD = 2;
+
+	public static final int MAX_STRING_LENGTH = 4096;
+
+	private final File file;
+	private final DataOutputStream out;
+
+	private final Map<Class<?>, Integer> typeIds =
+		new HashMap<Class<?>, Integer>();
+	private final Map<String, Integer> threadIds =
+		new HashMap<String, Integer>();
+
+	public EventCapture(final File file) throws IOException {
+		this.file = file;
+		out =
+			new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+				64 * 1024));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+	}
+
+	// -- EventCapture methods --
+
+	/** Gets the file being written. */
+	public File getFile() {
+		return file;
+	}
+
+	/** Appends the given event details to the file. */
+	public synchronized void write(final EventDetails details)
+		throws IOException
+	{
+		final int typeId = getTypeId(details.getEventType());
+		final int threadId = getThreadId(details.getThreadName());
+		String eventString = details.getEventString();
+		if (eventString.length() > MAX_STRING_LENGTH) {
+			eventString = eventString.substring(0, MAX_STRING_LENGTH);
+		}
+		out.writeByte(EVENT_RECORD);
+		out.writeLong(details.getTime());
+		out.writeLong(details.getLatency());
+		out.writeInt(typeId);
+		out.writeInt(threadId);
+		out.writeUTF(eventString);
+	}
+
+	/** Writes out any buffered records. */
+	public synchronized void flush() throws IOException {
+		out.flush();
+	}
+
+	/** Writes out any buffered records and closes the file. */
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+
+	// -- Helper methods --
+
+	private int getTypeId(final Class<?> type) throws IOException {
+		Integer id = typeIds.get(type);
+		if (id == null) {
+			id = typeIds.size();
+			typeIds.put(type, id);
+			out.writeByte(TYPE_RECORD);
+			out.writeInt(id);
+			out.writeUTF(type.getName());
+		}
+		return id;
+	}
+
+	private int getThreadId(final String threadName) throws IOException {
+		Integer id = threadIds.get(threadName);
+		if (id == null) {
+			id = threadIds.size();
+			threadIds.put(threadName, id);
+			out.writeByte(THREAD_RECORD);
+			out.writeInt(id);
+			out.writeUTF(threadName);
+		}
+		return id;
+	}
+
+}
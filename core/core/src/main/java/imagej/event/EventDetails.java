@@ -41,20 +41,29 @@
 
 /**
  * Caches details of a particular {@link ImageJEvent}, without saving the event
- * itself (since doing so could leave dangling references).
+ * itself (since doing so could leave dangling references). Besides the event's
+ * type and string, the details include when and by which thread the event was
+ * published, and how long it took to reach the history.
  * 
  * @author Curtis Rueden
  */
 public class EventDetails {
 
-	private final Date timestamp;
+	private final long timestamp;
 	private final Class<? extends ImageJEvent> eventType;
 	private final String eventString;
+	private final String threadName;
+	private final long latency;
 
 	public EventDetails(final ImageJEvent event) {
-		timestamp = new Date();
+		timestamp = System.currentTimeMillis();
 		eventType = event.getClass();
 		eventString = event.toString();
+		final String publishThread = event.getPublishThread();
+		threadName =
+			publishThread == null ? Thread.currentThread().getName() : publishThread;
+		final long publishTime = event.getPublishTime();
+		latency = publishTime == 0 ? 0 : System.nanoTime() - publishTime;
 	}
 
 	// -- EventDetails methods --
@@ -64,9 +73,27 @@ public Class<? extends ImageJEvent> getEventType() {
 	}
 
 	public Date getTimestamp() {
+		return new Date(timestamp);
+	}
+
+	/** Gets the time the event was recorded, in milliseconds since the epoch. */
+	public long getTime() {
 		return timestamp;
 	}
 
+	/** Gets the name of the thread that published the event. */
+	public String getThreadName() {
+		return threadName;
+	}
+
+	/**
+	 * Gets the time in nanoseconds between the publication of the event and its
+	 * recording.
+	 */
+	public long getLatency() {
+		return latency;
+	}
+
 	public String getEventString() {
 		return eventString;
 	}
@@ -86,6 +113,13 @@ public String toHTML(final boolean bold) {
 		sb.append(eventType.getSimpleName());
 		sb.append("</font>");
 
+		// append publishing thread and latency
+		sb.append("<font color=\"gray\"> (");
+		sb.append(htmlize(threadName));
+		sb.append(", ");
+		sb.append(latency / 1000);
+		sb.append(" &micro;s)</font>");
+
 		// append event string
 		sb.append("<font color=\"black\">");
 		sb.append(htmlize(eventString));
@@ -101,7 +135,7 @@ public String toHTML(final boolean bold) {
 	private String timestampAsString() {
 		final SimpleDateFormat formatter =
 			new SimpleDateFormat("hh:mm:ss.SS", Locale.getDefault());
-		final String dateStr = formatter.format(timestamp);
+		final String dateStr = formatter.format(new Date(timestamp));
 		return dateStr;
 	}
 
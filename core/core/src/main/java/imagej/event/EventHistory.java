@@ -37,10 +37,18 @@
 
 import imagej.service.Service;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 
 /**
  * Interface for service that keeps a history of ImageJ events.
+ * <p>
+ * Only the most recent events are kept, up to the history's capacity, so that
+ * the history can stay active during long runs. Recorded events can also be
+ * streamed to a file with {@link #startCapture(File)}.
+ * </p>
  * 
  * @author Curtis Rueden
  */
@@ -55,6 +63,29 @@ public interface EventHistory extends Service {
 	/** Clears the recorded event history. */
 	void clear();
 
+	/** Gets the maximum number of events kept in the history. */
+	int getCapacity();
+
+	/**
+	 * Sets the maximum number of events kept in the history. The recorded event
+	 * history is cleared.
+	 */
+	void setCapacity(int capacity);
+
+	/** Gets the recorded event history, oldest event first. */
+	List<EventDetails> getHistory();
+
+	/**
+	 * Gets the recorded events of the given types, within the given time window.
+	 * 
+	 * @param types Set of event types to include, or null for all types.
+	 * @param startTime Earliest time to include, in milliseconds since the epoch.
+	 * @param endTime Latest time to include, in milliseconds since the epoch.
+	 * @return The matching event details, oldest event first.
+	 */
+	List<EventDetails> getHistory(Set<Class<? extends ImageJEvent>> types,
+		long startTime, long endTime);
+
 	/**
 	 * Gets the recorded event history as an HTML string.
 	 * 
@@ -79,4 +110,21 @@ String toHTML(Set<Class<? extends ImageJEvent>> filtered,
 	 */
 	void removeListener(EventHistoryListener l);
 
+	/**
+	 * Starts streaming recorded events to the given file, in the binary form
+	 * described by {@link EventCapture}. Any earlier capture is stopped. The
+	 * history is made active, so that events are recorded even when no listener
+	 * is attached.
+	 */
+	void startCapture(File file) throws IOException;
+
+	/**
+	 * Stops streaming recorded events to a file, closing it. The history is made
+	 * inactive if no listener remains.
+	 */
+	void stopCapture();
+
+	/** Gets whether recorded events are being streamed to a file. */
+	boolean isCapturing();
+
 }
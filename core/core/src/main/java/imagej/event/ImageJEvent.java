@@ -46,6 +46,12 @@ public abstract class ImageJEvent extends AbstractContextual {
 
 	private boolean consumed;
 
+	/** Time of publication, as given by {@link System#nanoTime()}. */
+	private long publishTime;
+
+	/** Name of the thread that published the event. */
+	private String publishThread;
+
 	// -- ImageJEvent methods --
 
 	public boolean isConsumed() {
@@ -60,6 +66,27 @@ public void consume() {
 		setConsumed(true);
 	}
 
+	/**
+	 * Gets the time at which the event was published, as given by
+	 * {@link System#nanoTime()}, or 0 if it has not been published.
+	 */
+	public long getPublishTime() {
+		return publishTime;
+	}
+
+	/** Gets the name of the thread that published the event. */
+	public String getPublishThread() {
+		return publishThread;
+	}
+
+	// -- Internal methods --
+
+	/** Notes that the event is being published by the current thread. */
+	void published() {
+		publishTime = System.nanoTime();
+		publishThread = Thread.currentThread().getName();
+	}
+
 	// Object methods --
 
 	@Override
@@ -48,6 +48,7 @@
 import imagej.plugin.Plugin;
 import imagej.service.AbstractService;
 import imagej.service.Service;
+import imagej.util.StartupProfiler;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -173,34 +174,40 @@ protected void onEvent(final ModulesUpdatedEvent event) {
 	// -- Helper methods --
 
 	private void addModules(final Collection<ModuleInfo> items) {
-		// categorize modules by menu root
-		final HashMap<String, ArrayList<ModuleInfo>> modulesByMenuRoot =
-			new HashMap<String, ArrayList<ModuleInfo>>();
-		for (final ModuleInfo info : items) {
-			final String menuRoot = info.getMenuRoot();
-			ArrayList<ModuleInfo> modules = modulesByMenuRoot.get(menuRoot);
-			if (modules == null) {
-				modules = new ArrayList<ModuleInfo>();
-				modulesByMenuRoot.put(menuRoot, modules);
+		final StartupProfiler.Phase phase =
+			StartupProfiler.start(StartupProfiler.PHASE, "Menu building");
+		try {
+			// categorize modules by menu root
+			final HashMap<String, ArrayList<ModuleInfo>> modulesByMenuRoot =
+				new HashMap<String, ArrayList<ModuleInfo>>();
+			for (final ModuleInfo info : items) {
+				final String menuRoot = info.getMenuRoot();
+				ArrayList<ModuleInfo> modules = modulesByMenuRoot.get(menuRoot);
+				if (modules == null) {
+					modules = new ArrayList<ModuleInfo>();
+					modulesByMenuRoot.put(menuRoot, modules);
+				}
+				modules.add(info);
 			}
-			modules.add(info);
-		}
 
-		// process each menu root separately
-		for (final String menuRoot : modulesByMenuRoot.keySet()) {
-			final ArrayList<ModuleInfo> modules = modulesByMenuRoot.get(menuRoot);
-			ShadowMenu menu = rootMenus.get(menuRoot);
-			if (menu == null) {
-				// new menu root: create new menu structure
-				menu = new ShadowMenu(getContext(), modules);
-				rootMenus.put(menuRoot, menu);
-			}
-			else {
-				// existing menu root: add to menu structure
-				menu.addAll(modules);
+			// process each menu root separately
+			for (final String menuRoot : modulesByMenuRoot.keySet()) {
+				final ArrayList<ModuleInfo> modules = modulesByMenuRoot.get(menuRoot);
+				ShadowMenu menu = rootMenus.get(menuRoot);
+				if (menu == null) {
+					// new menu root: create new menu structure
+					menu = new ShadowMenu(getContext(), modules);
+					rootMenus.put(menuRoot, menu);
+				}
+				else {
+					// existing menu root: add to menu structure
+					menu.addAll(modules);
+				}
 			}
 		}
-
+		finally {
+			phase.stop();
+		}
 	}
 
 }
@@ -37,15 +37,21 @@
 
 import imagej.util.ClassUtils;
 
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -71,6 +77,16 @@
  * added to the index more than once, in which case it will appear on compatible
  * type lists multiple times.
  * </p>
+ * <p>
+ * The type hierarchy of each class is computed once and cached, so adding and
+ * removing objects does not repeat the reflective walk of superclasses and
+ * interfaces. Lists returned by {@link #get(Class)} are immutable snapshots,
+ * which are rebuilt only after the corresponding type list has changed. An
+ * object appended to a type list extends its snapshot without copying it.
+ * Each type list indexes the positions of its objects by identity, so that
+ * removing a registered object takes constant time per type list; the gaps
+ * it leaves are closed up when the list is next read.
+ * </p>
  * 
  * @author Curtis Rueden
  */
@@ -83,6 +99,22 @@
 	protected final Map<Class<?>, List<E>> hoard =
 		new ConcurrentHashMap<Class<?>, List<E>>();
 
+	/**
+	 * Cached type hierarchies, shared between all indices. Classes are only
+	 * weakly referenced, so that the cache does not keep plugin classes (nor
+	 * their class loaders) alive once no context uses them.
+	 */
+	private static final Map<Class<?>, WeakReference<Class<?>>[]> typeCache =
+		Collections
+			.synchronizedMap(new WeakHashMap<Class<?>, WeakReference<Class<?>>[]>());
+
+	/** Read-only copies of the type lists, discarded when a list changes. */
+	private final Map<Class<?>, Snapshot<E>> snapshots =
+		new ConcurrentHashMap<Class<?>, Snapshot<E>>();
+
+	/** Number of changes to the type lists, guarded by {@link #snapshots}. */
+	private long generation;
+
 	private final Class<E> baseClass;
 
 	public ObjectIndex(final Class<E> baseClass) {
@@ -125,25 +157,36 @@ public List<E> getAll() {
 	 *         list if no such objects exist (this method never returns null).
 	 */
 	public List<E> get(final Class<?> type) {
-		final List<E> list = retrieveList(type);
-		return Collections.unmodifiableList(list);
+		Snapshot<E> snapshot = snapshots.get(type);
+		if (snapshot != null) return snapshot;
+		final long start;
+		synchronized (snapshots) {
+			start = generation;
+		}
+		snapshot = new Snapshot<E>(retrieveList(type));
+		synchronized (snapshots) {
+			// NB: A list changed during the copy may have discarded its snapshot
+			// already, so keep this one only if nothing changed meanwhile.
+			if (generation == start) snapshots.put(type, snapshot);
+		}
+		return snapshot;
 	}
 
 	// -- Collection methods --
 
 	@Override
 	public int size() {
-		return getAll().size();
+		return retrieveList(All.class).size();
 	}
 
 	@Override
 	public boolean isEmpty() {
-		return getAll().isEmpty();
+		return retrieveList(All.class).isEmpty();
 	}
 
 	@Override
 	public boolean contains(final Object o) {
-		return get(o.getClass()).contains(o);
+		return retrieveList(o.getClass()).contains(o);
 	}
 
 	@Override
@@ -204,6 +247,7 @@ public boolean retainAll(final Collection<?> c) {
 	@Override
 	public void clear() {
 		hoard.clear();
+		invalidate();
 	}
 
 	// -- Object methods --
@@ -252,9 +296,12 @@ protected boolean remove(final Object o, final boolean batch) {
 	/** Adds an object to type lists beneath the given type hierarchy. */
 	protected boolean add(final E o, final Class<?> type, final boolean batch) {
 		boolean result = false;
-		final Set<Class<?>> types = getTypes(type);
-		for (final Class<?> c : types) {
-			if (addToList(o, retrieveList(c), batch)) result = true;
+		for (final Class<?> c : getTypes(type)) {
+			final List<E> list = retrieveList(c);
+			if (addToList(o, list, batch)) {
+				added(c, list, o);
+				result = true;
+			}
 		}
 		return result;
 	}
@@ -264,9 +311,14 @@ protected boolean remove(final Object o, final Class<?> type,
 		final boolean batch)
 	{
 		boolean result = false;
-		final Set<Class<?>> types = getTypes(type);
-		for (final Class<?> c : types) {
-			if (removeFromList(o, retrieveList(c), batch)) result = true;
+		for (final Class<?> c : getTypes(type)) {
+			if (removeFromList(o, retrieveList(c), batch)) {
+				synchronized (snapshots) {
+					generation++;
+					snapshots.remove(c);
+				}
+				result = true;
+			}
 		}
 		return result;
 	}
@@ -280,23 +332,70 @@ protected boolean addToList(final E obj, final List<E> list,
 	protected boolean removeFromList(final Object obj, final List<E> list,
 		@SuppressWarnings("unused") final boolean batch)
 	{
+		// NB: Objects are most often removed by reference, which the type lists
+		// can do without a scan; fall back to a full scan with equals otherwise.
+		if (list instanceof TypeList && ((TypeList<E>) list).removeIdentical(obj))
+		{
+			return true;
+		}
 		return list.remove(obj);
 	}
 
+	/**
+	 * Discards the read-only snapshots of all type lists. Subclasses which
+	 * modify the type lists directly (e.g., by reordering them) must call this
+	 * method afterward.
+	 */
+	protected void invalidate() {
+		synchronized (snapshots) {
+			generation++;
+			snapshots.clear();
+		}
+	}
+
 	// -- Helper methods --
 
-	/** Gets a new set containing the type and all its supertypes. */
-	private HashSet<Class<?>> getTypes(final Class<?> type) {
-		final HashSet<Class<?>> types = new HashSet<Class<?>>();
-		types.add(All.class); // NB: Always include the "All" class.
-		getTypes(type, types);
+	/**
+	 * Updates the snapshot of a type list to which an object was just added.
+	 * An object appended to the end of the list extends the snapshot; one
+	 * inserted elsewhere discards it.
+	 */
+	private void added(final Class<?> type, final List<E> list, final E o) {
+		synchronized (snapshots) {
+			generation++;
+			final Snapshot<E> snapshot = snapshots.remove(type);
+			if (snapshot == null) return;
+			final Snapshot<E> extended = snapshot.append(list, o);
+			if (extended != null) snapshots.put(type, extended);
+		}
+	}
+
+	/** Gets the type and all its supertypes, including the "All" class. */
+	private Class<?>[] getTypes(final Class<?> type) {
+		final WeakReference<Class<?>>[] refs = typeCache.get(type);
+		if (refs != null) {
+			// NB: A class keeps its supertypes alive, so none has been cleared.
+			final Class<?>[] types = new Class<?>[refs.length];
+			for (int i = 0; i < refs.length; i++)
+				types[i] = refs[i].get();
+			return types;
+		}
+		final Set<Class<?>> typeSet = new LinkedHashSet<Class<?>>();
+		typeSet.add(All.class); // NB: Always include the "All" class.
+		getTypes(type, typeSet);
+		final Class<?>[] types = typeSet.toArray(new Class<?>[typeSet.size()]);
+		@SuppressWarnings("unchecked")
+		final WeakReference<Class<?>>[] newRefs = new WeakReference[types.length];
+		for (int i = 0; i < types.length; i++) {
+			newRefs[i] = new WeakReference<Class<?>>(types[i]);
+		}
+		typeCache.put(type, newRefs);
 		return types;
 	}
 
 	/** Recursively adds the type and all its supertypes to the given set. */
-	private void getTypes(final Class<?> type, final HashSet<Class<?>> types) {
-		if (type == null) return;
-		types.add(type);
+	private void getTypes(final Class<?> type, final Set<Class<?>> types) {
+		if (type == null || !types.add(type)) return;
 
 		// recursively add to supertypes
 		getTypes(type.getSuperclass(), types);
@@ -309,7 +408,7 @@ private void getTypes(final Class<?> type, final HashSet<Class<?>> types) {
 	private List<E> retrieveList(final Class<?> type) {
 		List<E> list = hoard.get(type);
 		if (list == null) {
-			list = new ArrayList<E>();
+			list = new TypeList<E>();
 			hoard.put(type, list);
 		}
 		return list;
@@ -319,4 +418,221 @@ private static class All {
 		// NB: A special class beneath which *all* elements of the index are listed.
 	}
 
+	/**
+	 * Type list which removes objects by reference in constant time. The
+	 * position of each object is indexed by identity, and removing it leaves a
+	 * gap; gaps are closed up in a single pass when the list is next read, or
+	 * when they outnumber the objects. Other modifications take linear time, as
+	 * with {@link ArrayList}.
+	 */
+	private static class TypeList<E> extends AbstractList<E> implements
+		RandomAccess
+	{
+
+		/** Slots of the list, with null marking the gap of a removed object. */
+		private Object[] elements = new Object[8];
+
+		/** Number of slots in use, including gaps. */
+		private int end;
+
+		/** Number of gaps among the slots in use. */
+		private int gaps;
+
+		/** Slot of each object, or of its last occurrence if added repeatedly. */
+		private final Map<Object, Integer> positions =
+			new IdentityHashMap<Object, Integer>();
+
+		/**
+		 * Removes the given object, if it occupies its indexed slot.
+		 * 
+		 * @return true if the object was removed, or false if it was not found by
+		 *         reference (in which case the list is unchanged)
+		 */
+		public boolean removeIdentical(final Object o) {
+			final Integer pos = positions.get(o);
+			if (pos == null || elements[pos] != o) return false;
+			positions.remove(o);
+			elements[pos] = null;
+			gaps++;
+			modCount++;
+			while (end > 0 && elements[end - 1] == null) {
+				end--;
+				gaps--;
+			}
+			if (gaps > end - gaps) compact();
+			return true;
+		}
+
+		// -- List methods --
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public E get(final int index) {
+			compact();
+			checkIndex(index, end);
+			return (E) elements[index];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public E set(final int index, final E o) {
+			compact();
+			checkIndex(index, end);
+			final E old = (E) elements[index];
+			elements[index] = o;
+			unindex(old, index);
+			positions.put(o, index);
+			return old;
+		}
+
+		@Override
+		public void add(final int index, final E o) {
+			if (index == size()) {
+				// NB: Appending leaves any gaps in place.
+				ensureCapacity(end + 1);
+				elements[end] = o;
+				positions.put(o, end++);
+			}
+			else {
+				compact();
+				checkIndex(index, end + 1);
+				ensureCapacity(end + 1);
+				System.arraycopy(elements, index, elements, index + 1, end - index);
+				elements[index] = o;
+				end++;
+				reindex(index);
+			}
+			modCount++;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public E remove(final int index) {
+			compact();
+			checkIndex(index, end);
+			final E old = (E) elements[index];
+			System.arraycopy(elements, index + 1, elements, index, end - index - 1);
+			elements[--end] = null;
+			unindex(old, index);
+			reindex(index);
+			modCount++;
+			return old;
+		}
+
+		// -- Collection methods --
+
+		@Override
+		public int size() {
+			return end - gaps;
+		}
+
+		@Override
+		public void clear() {
+			Arrays.fill(elements, 0, end, null);
+			end = gaps = 0;
+			positions.clear();
+			modCount++;
+		}
+
+		// -- Helper methods --
+
+		/**
+		 * Closes up the gaps left by removed objects. This is synchronized since
+		 * reading the list may compact it, and concurrent reads must stay safe.
+		 */
+		private synchronized void compact() {
+			if (gaps == 0) return;
+			int size = 0;
+			for (int i = 0; i < end; i++) {
+				if (elements[i] != null) elements[size++] = elements[i];
+			}
+			Arrays.fill(elements, size, end, null);
+			end = size;
+			gaps = 0;
+			reindex(0);
+		}
+
+		/** Indexes the positions of the objects from the given slot onward. */
+		private void reindex(final int start) {
+			for (int i = start; i < end; i++) {
+				positions.put(elements[i], i);
+			}
+		}
+
+		/** Drops the position of an object no longer in the given slot. */
+		private void unindex(final Object o, final int index) {
+			final Integer pos = positions.get(o);
+			if (pos != null && pos == index) positions.remove(o);
+		}
+
+		private void ensureCapacity(final int capacity) {
+			if (capacity <= elements.length) return;
+			elements = Arrays.copyOf(elements, Math.max(capacity, 2 * end));
+		}
+
+		private static void checkIndex(final int index, final int size) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " +
+					size);
+			}
+		}
+
+	}
+
+	/**
+	 * Read-only copy of a type list. Snapshots extended by
+	 * {@link #append(List, Object)} share their array with the snapshot they
+	 * extend, each seeing only the elements it was created with.
+	 */
+	private static class Snapshot<E> extends AbstractList<E> implements
+		RandomAccess
+	{
+
+		private final Object[] elements;
+		private final int size;
+
+		public Snapshot(final List<E> list) {
+			elements = list.toArray();
+			size = elements.length;
+		}
+
+		private Snapshot(final Object[] elements, final int size) {
+			this.elements = elements;
+			this.size = size;
+		}
+
+		/**
+		 * Gets a snapshot of the given list, which is this snapshot's list with
+		 * the object appended, or null if the object was not appended.
+		 */
+		public Snapshot<E> append(final List<E> list, final E o) {
+			if (list.size() != size + 1 || list.get(size) != o) return null;
+			final Object[] array =
+				size < elements.length ? elements : Arrays.copyOf(elements,
+					2 * size + 1);
+			array[size] = o;
+			return new Snapshot<E>(array, size + 1);
+		}
+
+		// -- List methods --
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public E get(final int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " +
+					size);
+			}
+			return (E) elements[index];
+		}
+
+		// -- Collection methods --
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+	}
+
 }
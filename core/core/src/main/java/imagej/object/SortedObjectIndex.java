@@ -48,7 +48,8 @@
  * with {@link #add(Object)}), a binary search is used to insert it in the
  * correct position (O(log n) + O(n) time per item). When adding multiple items
  * at once (i.e., with {@link #addAll(Collection)}), the items are appended and
- * the list is then resorted (O(n log n) time for all items).
+ * the list is then resorted (O(n log n) time for all items). Removing an item
+ * also uses a binary search to locate it (O(log n) + O(n) time per item).
  * </p>
  * 
  * @author Curtis Rueden
@@ -113,12 +114,43 @@ protected boolean addToList(final E obj, final List<E> list,
 		return true;
 	}
 
+	@Override
+	protected boolean removeFromList(final Object obj, final List<E> list,
+		final boolean batch)
+	{
+		final int index = findInList(obj, list);
+		if (index >= 0 && index < list.size()) {
+			// NB: The match may be an unequal object with the same ordering, so
+			// look for an equal object among all neighbors that compare the same.
+			@SuppressWarnings("unchecked")
+			final E typedObj = (E) obj;
+			for (int i = index; i >= 0 && list.get(i).compareTo(typedObj) == 0; i--)
+			{
+				if (obj.equals(list.get(i))) {
+					list.remove(i);
+					return true;
+				}
+			}
+			for (int i = index + 1; i < list.size() &&
+				list.get(i).compareTo(typedObj) == 0; i++)
+			{
+				if (obj.equals(list.get(i))) {
+					list.remove(i);
+					return true;
+				}
+			}
+		}
+		// NB: Fall back to a linear scan, in case the list is not in order.
+		return super.removeFromList(obj, list, batch);
+	}
+
 	// -- Helper methods --
 
 	private void sort() {
 		for (final List<E> list : hoard.values()) {
 			Collections.sort(list);
 		}
+		invalidate();
 	}
 
 	private int findInList(final Object o, final List<E> list) {
@@ -0,0 +1,662 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.plugin;
+
+import imagej.util.FileUtils;
+import imagej.util.Log;
+import imagej.util.StartupProfiler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plugin discovery mechanism backed by a precomputed binary plugin index.
+ * <p>
+ * The first time plugins are discovered, the metadata found by the delegate
+ * {@link PluginFinder} (by default a {@link DefaultPluginFinder}) is written to
+ * a single binary cache file. Subsequent discoveries read that file at once and
+ * create the {@link PluginInfo} objects directly from it, without asking
+ * SezPoz to read and deserialize the annotation indices of each classpath
+ * component. Classes referenced from the annotations (e.g.,
+ * {@link Plugin#type()}) are only resolved when first requested.
+ * </p>
+ * <p>
+ * The cache is versioned against a digest of all SezPoz annotation indices on
+ * the classpath: their locations, plus the size and modification time of the
+ * JAR file or index file containing them. Whenever any of those changes, the
+ * cache is discarded and rebuilt.
+ * </p>
+ * <p>
+ * The cache file lives in {@code ~/.imagej/cache/plugins}, which only the
+ * current user may access. Its location can be set via the
+ * {@code imagej.plugin.cache} system property; setting it to {@code false}
+ * disables the cache altogether.
+ * </p>
+ * 
+ * @author agent
+ */
+public class CachingPluginFinder implements PluginFinder {
+
+	/** System property controlling the location of the plugin cache. */
+	public static final String CACHE_PROPERTY = "imagej.plugin.cache";
+
+	/** Resource containing SezPoz's index of @{@link Plugin} annotations. */
+	private static final String INDEX_RESOURCE = "META-INF/annotations/" +
+		Plugin.class.getName();
+
+	private static final int MAGIC = 0x494a5043; // "IJPC"
+	private static final int VERSION = 1;
+
+	// value tags
+	private static final byte STRING = 's', BOOLEAN = 'z', CHAR = 'c',
+			BYTE = 'b', SHORT = 'h', INT = 'i', LONG = 'j', FLOAT = 'f',
+			DOUBLE = 'd', CLASS = 'l', ENUM = 'e', ANNOTATION = 'a', ARRAY = '[';
+
+	/** Class loader to use when querying SezPoz and resolving classes. */
+	private final ClassLoader classLoader;
+
+	/** Mechanism to use when the cache is missing or stale. */
+	private final PluginFinder delegate;
+
+	/** The cache file, or null if caching is disabled. */
+	private final File cacheFile;
+
+	// -- Constructors --
+
+	public CachingPluginFinder() {
+		this(null);
+	}
+
+	public CachingPluginFinder(final ClassLoader classLoader) {
+		this(classLoader, new DefaultPluginFinder(classLoader), getDefaultCacheFile());
+	}
+
+	public CachingPluginFinder(final ClassLoader classLoader,
+		final PluginFinder delegate, final File cacheFile)
+	{
+		this.classLoader = classLoader;
+		this.delegate = delegate;
+		this.cacheFile = cacheFile;
+	}
+
+	// -- CachingPluginFinder methods --
+
+	/**
+	 * Gets the default location of the plugin cache, or null if the cache was
+	 * disabled by setting the {@code imagej.plugin.cache} system property to
+	 * {@code false}.
+	 */
+	public static File getDefaultCacheFile() {
+		final String path = System.getProperty(CACHE_PROPERTY);
+		if ("false".equals(path)) return null;
+		if (path != null) return new File(path);
+		try {
+			return new File(FileUtils.getUserCacheDirectory("plugins"),
+				"plugins.cache");
+		}
+		catch (final IOException e) {
+			Log.debug("Plugin cache disabled", e);
+			return null;
+		}
+	}
+
+	// -- PluginFinder methods --
+
+	@Override
+	public void findPlugins(final List<PluginInfo<?>> plugins) {
+		if (cacheFile == null) {
+			delegate.findPlugins(plugins);
+			return;
+		}
+
+		final String signature;
+		try {
+			signature = computeSignature();
+		}
+		catch (final IOException e) {
+			Log.debug(e);
+			delegate.findPlugins(plugins);
+			return;
+		}
+
+		final int oldSize = plugins.size();
+		final StartupProfiler.Phase phase =
+			StartupProfiler.start(StartupProfiler.PHASE, "Plugin cache");
+		try {
+			if (readCache(signature, plugins)) {
+				Log.info("Found " + (plugins.size() - oldSize) +
+					" plugins in the plugin cache.");
+				return;
+			}
+		}
+		catch (final Throwable t) {
+			Log.debug("Invalid plugin cache: " + cacheFile, t);
+			// discard anything read from the stale cache
+			while (plugins.size() > oldSize) {
+				plugins.remove(plugins.size() - 1);
+			}
+		}
+		finally {
+			phase.stop();
+		}
+
+		delegate.findPlugins(plugins);
+		try {
+			writeCache(signature, plugins.subList(oldSize, plugins.size()));
+		}
+		catch (final IOException e) {
+			Log.debug("Could not write plugin cache: " + cacheFile, e);
+		}
+	}
+
+	// -- Helper methods - signature --
+
+	/**
+	 * Computes a digest identifying the current set of SezPoz annotation indices
+	 * on the classpath.
+	 */
+	private String computeSignature() throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		}
+		catch (final NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage());
+		}
+		final Enumeration<URL> indices = getClassLoader().getResources(INDEX_RESOURCE);
+		while (indices.hasMoreElements()) {
+			final URL url = indices.nextElement();
+			update(digest, url.toString());
+			final File file = getContainingFile(url);
+			if (file != null) {
+				update(digest, file.length() + ":" + file.lastModified());
+			}
+		}
+		final StringBuilder builder = new StringBuilder();
+		for (final byte b : digest.digest()) {
+			builder.append(String.format("%02x", b & 0xff));
+		}
+		return builder.toString();
+	}
+
+	private static void update(final MessageDigest digest, final String s)
+		throws UnsupportedEncodingException
+	{
+		digest.update(s.getBytes("UTF-8"));
+		digest.update((byte) 0);
+	}
+
+	/** Gets the JAR file or index file backing the given resource URL. */
+	private static File getContainingFile(final URL url) {
+		// NB: The path of a URL is escaped (e.g., spaces become %20).
+		final String path = url.toString();
+		if (!path.startsWith("file:") && !path.startsWith("jar:file:")) {
+			return null;
+		}
+		try {
+			return FileUtils.urlToFile(path);
+		}
+		catch (final IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private ClassLoader getClassLoader() {
+		if (classLoader != null) return classLoader;
+		return Thread.currentThread().getContextClassLoader();
+	}
+
+	// -- Helper methods - reading --
+
+	/**
+	 * Reads the cached plugins, if the cache matches the given signature.
+	 * 
+	 * @return true if the cache was valid and its plugins were added
+	 */
+	private boolean readCache(final String signature,
+		final List<PluginInfo<?>> plugins) throws IOException
+	{
+		if (!cacheFile.exists()) return false;
+		final FileInputStream in = new FileInputStream(cacheFile);
+		try {
+			// NB: The cache is read into the heap rather than mapped, since a mapped
+			// file cannot be replaced on Windows until the mapping is collected.
+			final FileChannel channel = in.getChannel();
+			final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) return false;
+			}
+			buffer.flip();
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return false;
+			if (!signature.equals(readString(buffer))) return false;
+
+			final int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				final String className = readString(buffer);
+				final Plugin annotation = (Plugin) readAnnotation(buffer);
+				@SuppressWarnings("unchecked")
+				final Class<ImageJPlugin> pluginType =
+					(Class<ImageJPlugin>) annotation.type();
+				plugins.add(new PluginInfo<ImageJPlugin>(className, pluginType,
+					annotation));
+			}
+			return true;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private Annotation readAnnotation(final ByteBuffer buffer)
+		throws IOException
+	{
+		final Class<?> type = loadClass(readString(buffer));
+		final int count = buffer.getInt();
+		final Map<String, Object> values = new HashMap<String, Object>();
+		for (int i = 0; i < count; i++) {
+			final String name = readString(buffer);
+			values.put(name, readValue(buffer));
+		}
+		return (Annotation) Proxy.newProxyInstance(getClassLoader(),
+			new Class<?>[] { type }, new AnnotationHandler(type, values));
+	}
+
+	private Object readValue(final ByteBuffer buffer) throws IOException {
+		final byte tag = buffer.get();
+		switch (tag) {
+			case STRING:
+				return readString(buffer);
+			case BOOLEAN:
+				return buffer.get() != 0;
+			case CHAR:
+				return buffer.getChar();
+			case BYTE:
+				return buffer.get();
+			case SHORT:
+				return buffer.getShort();
+			case INT:
+				return buffer.getInt();
+			case LONG:
+				return buffer.getLong();
+			case FLOAT:
+				return buffer.getFloat();
+			case DOUBLE:
+				return buffer.getDouble();
+			case CLASS:
+				return new ClassReference(readString(buffer));
+			case ENUM:
+				return readEnum(loadClass(readString(buffer)), readString(buffer));
+			case ANNOTATION:
+				return readAnnotation(buffer);
+			case ARRAY:
+				final Class<?> componentType = loadClass(readString(buffer));
+				final int length = buffer.getInt();
+				final Object array = Array.newInstance(componentType, length);
+				for (int i = 0; i < length; i++) {
+					Object element = readValue(buffer);
+					if (element instanceof ClassReference) {
+						element = ((ClassReference) element).resolve();
+					}
+					Array.set(array, i, element);
+				}
+				return array;
+			default:
+				throw new IOException("Invalid value tag: " + tag);
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static Object readEnum(final Class<?> type, final String name) {
+		return Enum.valueOf((Class) type, name);
+	}
+
+	private static String readString(final ByteBuffer buffer)
+		throws UnsupportedEncodingException
+	{
+		final byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	private Class<?> loadClass(final String name) throws IOException {
+		try {
+			return Class.forName(name, false, getClassLoader());
+		}
+		catch (final ClassNotFoundException e) {
+			throw new IOException("Class not found: " + name);
+		}
+	}
+
+	// -- Helper methods - writing --
+
+	/** Writes the given plugins to the cache, atomically replacing it. */
+	private void writeCache(final String signature,
+		final List<PluginInfo<?>> plugins) throws IOException
+	{
+		final File directory = cacheFile.getAbsoluteFile().getParentFile();
+		if (directory != null && !directory.exists()) directory.mkdirs();
+		// NB: Each writer gets its own temporary file, so that concurrent
+		// discoveries cannot interleave their output.
+		final File tmp =
+			File.createTempFile(cacheFile.getName() + ".", ".tmp", directory);
+		final DataOutputStream out =
+			new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		boolean success = false;
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, signature);
+			out.writeInt(plugins.size());
+			for (final PluginInfo<?> info : plugins) {
+				if (info.getAnnotation() == null) {
+					throw new IOException("Plugin without annotation: " + info);
+				}
+				writeString(out, info.getClassName());
+				writeAnnotation(out, info.getAnnotation());
+			}
+			success = true;
+		}
+		finally {
+			out.close();
+			if (!success) tmp.delete();
+		}
+		cacheFile.delete();
+		if (!tmp.renameTo(cacheFile)) {
+			tmp.delete();
+			throw new IOException("Could not rename " + tmp + " to " + cacheFile);
+		}
+	}
+
+	private static void writeAnnotation(final DataOutputStream out,
+		final Annotation annotation) throws IOException
+	{
+		final Class<? extends Annotation> type = annotation.annotationType();
+		writeString(out, type.getName());
+		final Method[] methods = getAttributes(type);
+		out.writeInt(methods.length);
+		for (final Method method : methods) {
+			writeString(out, method.getName());
+			try {
+				writeValue(out, method.invoke(annotation));
+			}
+			catch (final IllegalAccessException e) {
+				throw new IOException(e.getMessage());
+			}
+			catch (final InvocationTargetException e) {
+				throw new IOException(e.getMessage());
+			}
+		}
+	}
+
+	private static void writeValue(final DataOutputStream out,
+		final Object value) throws IOException
+	{
+		if (value instanceof String) {
+			out.writeByte(STRING);
+			writeString(out, (String) value);
+		}
+		else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		}
+		else if (value instanceof Character) {
+			out.writeByte(CHAR);
+			out.writeChar((Character) value);
+		}
+		else if (value instanceof Byte) {
+			out.writeByte(BYTE);
+			out.writeByte((Byte) value);
+		}
+		else if (value instanceof Short) {
+			out.writeByte(SHORT);
+			out.writeShort((Short) value);
+		}
+		else if (value instanceof Integer) {
+			out.writeByte(INT);
+			out.writeInt((Integer) value);
+		}
+		else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		}
+		else if (value instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		}
+		else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		}
+		else if (value instanceof Class) {
+			out.writeByte(CLASS);
+			writeString(out, ((Class<?>) value).getName());
+		}
+		else if (value instanceof Enum) {
+			final Enum<?> e = (Enum<?>) value;
+			out.writeByte(ENUM);
+			writeString(out, e.getDeclaringClass().getName());
+			writeString(out, e.name());
+		}
+		else if (value instanceof Annotation) {
+			out.writeByte(ANNOTATION);
+			writeAnnotation(out, (Annotation) value);
+		}
+		else if (value != null && value.getClass().isArray() &&
+			!value.getClass().getComponentType().isPrimitive())
+		{
+			out.writeByte(ARRAY);
+			writeString(out, value.getClass().getComponentType().getName());
+			final int length = Array.getLength(value);
+			out.writeInt(length);
+			for (int i = 0; i < length; i++) {
+				writeValue(out, Array.get(value, i));
+			}
+		}
+		else {
+			throw new IOException("Unsupported annotation value: " + value);
+		}
+	}
+
+	private static void writeString(final DataOutputStream out, final String s)
+		throws IOException
+	{
+		final byte[] bytes = s.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/** Gets the attributes of the given annotation type, in a stable order. */
+	private static Method[] getAttributes(final Class<?> type) {
+		final Method[] methods = type.getDeclaredMethods();
+		Arrays.sort(methods, new Comparator<Method>() {
+
+			@Override
+			public int compare(final Method m1, final Method m2) {
+				return m1.getName().compareTo(m2.getName());
+			}
+		});
+		return methods;
+	}
+
+	// -- Helper classes --
+
+	/** A class name, resolved into a {@link Class} only when needed. */
+	private class ClassReference {
+
+		private final String name;
+
+		public ClassReference(final String name) {
+			this.name = name;
+		}
+
+		public Class<?> resolve() {
+			try {
+				return loadClass(name);
+			}
+			catch (final IOException e) {
+				throw new TypeNotPresentException(name, e);
+			}
+		}
+	}
+
+	/**
+	 * Implements an annotation whose values were read from the cache, following
+	 * the {@link Annotation#equals(Object)} and {@link Annotation#hashCode()}
+	 * contracts, so that it is interchangeable with the real annotation.
+	 */
+	private static class AnnotationHandler implements InvocationHandler {
+
+		private final Class<?> type;
+		private final Map<String, Object> values;
+
+		public AnnotationHandler(final Class<?> type,
+			final Map<String, Object> values)
+		{
+			this.type = type;
+			this.values = Collections.synchronizedMap(values);
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method,
+			final Object[] args)
+		{
+			final String name = method.getName();
+			final int argCount = args == null ? 0 : args.length;
+			if (argCount == 1 && name.equals("equals")) {
+				return annotationEquals(proxy, args[0]);
+			}
+			if (argCount > 0) throw new UnsupportedOperationException(name);
+			if (name.equals("annotationType")) return type;
+			if (name.equals("hashCode")) return annotationHashCode();
+			if (name.equals("toString")) return "@" + type.getName() + values;
+
+			final Object value = getValue(method);
+			if (value != null && value.getClass().isArray()) {
+				// protect the cached array from modification
+				final int length = Array.getLength(value);
+				final Object copy =
+					Array.newInstance(value.getClass().getComponentType(), length);
+				System.arraycopy(value, 0, copy, 0, length);
+				return copy;
+			}
+			return value;
+		}
+
+		/** Gets the value of an attribute, resolving class references. */
+		private Object getValue(final Method method) {
+			final String name = method.getName();
+			Object value = values.get(name);
+			if (value == null) return method.getDefaultValue();
+			if (value instanceof ClassReference) {
+				value = ((ClassReference) value).resolve();
+				values.put(name, value);
+			}
+			return value;
+		}
+
+		private boolean annotationEquals(final Object proxy, final Object o) {
+			if (proxy == o) return true;
+			if (!type.isInstance(o)) return false;
+			final AnnotationHandler other = getHandler(o);
+			for (final Method method : getAttributes(type)) {
+				final Object value = getValue(method);
+				final Object otherValue;
+				if (other != null) otherValue = other.getValue(method);
+				else {
+					try {
+						otherValue = method.invoke(o);
+					}
+					catch (final IllegalAccessException e) {
+						return false;
+					}
+					catch (final InvocationTargetException e) {
+						return false;
+					}
+				}
+				// NB: deepEquals compares arrays of any type element by element.
+				if (!Arrays.deepEquals(new Object[] { value },
+					new Object[] { otherValue }))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private int annotationHashCode() {
+			int hashCode = 0;
+			for (final Method method : getAttributes(type)) {
+				// NB: deepHashCode of a one-element array is 31 plus the hash code
+				// of the element, as computed by the matching Arrays.hashCode method.
+				final int valueHash =
+					Arrays.deepHashCode(new Object[] { getValue(method) }) - 31;
+				hashCode += (127 * method.getName().hashCode()) ^ valueHash;
+			}
+			return hashCode;
+		}
+
+		private static AnnotationHandler getHandler(final Object o) {
+			if (!Proxy.isProxyClass(o.getClass())) return null;
+			final InvocationHandler handler = Proxy.getInvocationHandler(o);
+			return handler instanceof AnnotationHandler ? (AnnotationHandler) handler
+				: null;
+		}
+	}
+
+}
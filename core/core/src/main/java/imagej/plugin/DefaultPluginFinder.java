@@ -36,6 +36,7 @@
 package imagej.plugin;
 
 import imagej.util.Log;
+import imagej.util.StartupProfiler;
 
 import java.util.List;
 
@@ -70,20 +71,28 @@ public DefaultPluginFinder(final ClassLoader classLoader) {
 
 	@Override
 	public void findPlugins(final List<PluginInfo<?>> plugins) {
-		final Index<Plugin, ImageJPlugin> pluginIndex;
-		if (classLoader == null) {
-			pluginIndex = Index.load(Plugin.class, ImageJPlugin.class);
-		}
-		else {
-			pluginIndex = Index.load(Plugin.class, ImageJPlugin.class, classLoader);
-		}
-
+		final StartupProfiler.Phase phase =
+			StartupProfiler.start(StartupProfiler.PHASE, "SezPoz index");
 		final int oldSize = plugins.size();
-		for (final IndexItem<Plugin, ImageJPlugin> item : pluginIndex) try {
-			final PluginInfo<?> info = createInfo(item);
-			plugins.add(info);
-		} catch (Throwable t) {
-			Log.debug(t);
+		try {
+			final Index<Plugin, ImageJPlugin> pluginIndex;
+			if (classLoader == null) {
+				pluginIndex = Index.load(Plugin.class, ImageJPlugin.class);
+			}
+			else {
+				pluginIndex =
+					Index.load(Plugin.class, ImageJPlugin.class, classLoader);
+			}
+
+			for (final IndexItem<Plugin, ImageJPlugin> item : pluginIndex) try {
+				final PluginInfo<?> info = createInfo(item);
+				plugins.add(info);
+			} catch (Throwable t) {
+				Log.debug(t);
+			}
+		}
+		finally {
+			phase.stop();
 		}
 		final int newSize = plugins.size();
 
@@ -72,9 +72,14 @@ public PluginIndex() {
 
 	// -- PluginIndex methods --
 
-	/** Discovers plugins available on the classpath. */
+	/**
+	 * Discovers plugins available on the classpath, using the plugin cache when
+	 * it is up to date.
+	 * 
+	 * @see CachingPluginFinder
+	 */
 	public void discover() {
-		discover(new DefaultPluginFinder());
+		discover(new CachingPluginFinder());
 	}
 
 	/**
@@ -0,0 +1,249 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.script;
+
+import imagej.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of compiled script artifacts, keyed by a hash of the script's
+ * contents.
+ * <p>
+ * Script engines for compiled languages can store whatever they produce from
+ * a script (typically a loaded {@link Class}) here, so that evaluating the
+ * same script text again only costs the execution. The cache holds a bounded
+ * number of artifacts in memory, evicting the least recently used ones first.
+ * Engines which also keep build artifacts on disk should use
+ * {@link #getCacheDirectory(String, String)} so that those survive across
+ * sessions.
+ * </p>
+ * 
+ * @author agent
+ */
+public class CompiledScriptCache {
+
+	/** Default number of compiled scripts to keep in memory. */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private static final String CACHE_DIRECTORY_PROPERTY =
+		"imagej.script.cache.dir";
+
+	private int capacity;
+
+	private final Map<String, Object> cache;
+
+	private long hits, misses;
+
+	public CompiledScriptCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public CompiledScriptCache(final int capacity) {
+		setCapacity(capacity);
+		cache = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+				final Map.Entry<String, Object> eldest)
+			{
+				return size() > CompiledScriptCache.this.capacity;
+			}
+		};
+	}
+
+	// -- CompiledScriptCache methods --
+
+	/**
+	 * Computes the cache key for the given script.
+	 * 
+	 * @param language the name of the script language; scripts with identical
+	 *          text in different languages get different keys
+	 * @param script the contents of the script
+	 * @return a hex-encoded SHA-1 digest of the language and the script
+	 */
+	public static String getKey(final String language, final String script) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update(language.getBytes("UTF-8"));
+			digest.update((byte) 0);
+			digest.update(script.getBytes("UTF-8"));
+			return toHex(digest.digest());
+		}
+		catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Gets the compiled artifact stored for the given key, or null if there is
+	 * none.
+	 */
+	public synchronized Object get(final String key) {
+		final Object compiled = cache.get(key);
+		if (compiled == null) misses++;
+		else hits++;
+		return compiled;
+	}
+
+	/**
+	 * Gets the compiled artifact stored for the given key, if it is of the
+	 * requested type.
+	 */
+	public <T> T get(final String key, final Class<T> type) {
+		final Object compiled = get(key);
+		return type.isInstance(compiled) ? type.cast(compiled) : null;
+	}
+
+	/** Stores a compiled artifact, possibly evicting the eldest one. */
+	public synchronized void put(final String key, final Object compiled) {
+		if (compiled == null) cache.remove(key);
+		else cache.put(key, compiled);
+	}
+
+	/** Discards the compiled artifact stored for the given key, if any. */
+	public synchronized void remove(final String key) {
+		cache.remove(key);
+	}
+
+	/** Discards all compiled artifacts held in memory. */
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+	/** Gets the number of compiled artifacts currently held in memory. */
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Sets the maximum number of compiled artifacts to keep in memory. Shrinking
+	 * the capacity drops the least recently used entries immediately.
+	 */
+	public synchronized void setCapacity(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		this.capacity = capacity;
+		if (cache == null) return;
+		while (cache.size() > capacity) {
+			final String eldest = cache.keySet().iterator().next();
+			cache.remove(eldest);
+		}
+	}
+
+	/** Gets the number of lookups which found a compiled artifact. */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/** Gets the number of lookups which did not find a compiled artifact. */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * Gets the directory in which on-disk artifacts for the given script are
+	 * stored. The directory itself is not created by this method, but the root
+	 * of the cache is, with access restricted to the current user.
+	 * <p>
+	 * The root of the cache can be overridden via the
+	 * {@code imagej.script.cache.dir} system property; it defaults to
+	 * {@code ~/.imagej/cache/scripts}.
+	 * </p>
+	 * <p>
+	 * Engines must not build in this directory directly, since concurrent
+	 * builds of the same script would clobber each other. Instead, they should
+	 * build in a directory obtained from
+	 * {@link #createBuildDirectory(String, String)} and rename it into place.
+	 * </p>
+	 */
+	public File getCacheDirectory(final String language, final String key)
+		throws IOException
+	{
+		return new File(getLanguageDirectory(language), key);
+	}
+
+	/**
+	 * Creates a fresh, private directory in which to build the artifacts of
+	 * the given script. Once complete, the directory should be renamed to
+	 * {@link #getCacheDirectory(String, String)}.
+	 */
+	public File createBuildDirectory(final String language, final String key)
+		throws IOException
+	{
+		final File directory =
+			FileUtils.createTemporaryDirectory(key + ".", ".partial",
+				getLanguageDirectory(language));
+		return FileUtils.makePrivateDirectory(directory);
+	}
+
+	// -- Helper methods --
+
+	private File getLanguageDirectory(final String language) throws IOException
+	{
+		final String root = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+		final File rootDirectory =
+			root != null ? FileUtils.makePrivateDirectory(new File(root))
+				: FileUtils.getUserCacheDirectory("scripts");
+		return FileUtils.makePrivateDirectory(new File(rootDirectory, language));
+	}
+
+	private static String toHex(final byte[] bytes) {
+		final char[] hex = "0123456789abcdef".toCharArray();
+		final StringBuilder builder = new StringBuilder(2 * bytes.length);
+		for (final byte b : bytes) {
+			builder.append(hex[(b >> 4) & 0xf]).append(hex[b & 0xf]);
+		}
+		return builder.toString();
+	}
+
+}
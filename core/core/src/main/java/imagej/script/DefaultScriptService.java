@@ -80,6 +80,10 @@ public class DefaultScriptService extends AbstractService implements ScriptServi
 	private final ScriptLanguageIndex scriptLanguageIndex =
 		new ScriptLanguageIndex();
 
+	/** Cache of compiled scripts, shared by all engines. */
+	private final CompiledScriptCache compiledScriptCache =
+		new CompiledScriptCache();
+
 	@Override
 	public void initialize() {
 		reloadScriptLanguages();
@@ -167,6 +171,11 @@ public boolean isCompiledLanguage(ScriptEngineFactory language) {
 		return false;
 	}
 
+	@Override
+	public CompiledScriptCache getCompiledScriptCache() {
+		return compiledScriptCache;
+	}
+
 	public void reloadScriptLanguages() {
 		scriptLanguageIndex.clear();
 		for (final PluginInfo<? extends ScriptLanguage> item : pluginService.getPluginsOfType(ScriptLanguage.class))
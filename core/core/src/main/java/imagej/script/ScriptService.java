@@ -92,5 +92,11 @@ void initialize(final ScriptEngine engine, final String fileName,
 
 	boolean isCompiledLanguage(ScriptEngineFactory currentLanguage);
 
+	/**
+	 * Gets the cache of compiled script artifacts shared by all script engines
+	 * of this service.
+	 */
+	CompiledScriptCache getCompiledScriptCache();
+
 }
 
@@ -43,11 +43,15 @@
 import imagej.plugin.PluginInfo;
 import imagej.service.event.ServicesLoadedEvent;
 import imagej.util.ClassUtils;
+import imagej.util.StartupProfiler;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -67,9 +71,25 @@ public class ServiceHelper extends AbstractContextual {
 	/** Classes to scan when searching for dependencies, sorted by priority. */
 	private final List<Class<? extends Service>> classPoolList;
 
+	/**
+	 * Cache of the class pool lookups performed so far, mapping each requested
+	 * service type to the highest priority compatible class (or null).
+	 */
+	private final Map<Class<?>, Class<? extends Service>> compatibleClasses;
+
 	/** Classes to instantiate as services. */
 	private final List<Class<? extends Service>> serviceClasses;
 
+	/**
+	 * Time spent creating each service, in nanoseconds, excluding the time spent
+	 * creating its dependencies. Entries are in order of creation.
+	 */
+	private final Map<Class<? extends Service>, Long> creationTimes =
+		new LinkedHashMap<Class<? extends Service>, Long>();
+
+	/** Time spent creating dependencies of the service being created. */
+	private long dependencyTime;
+
 	/**
 	 * Creates a new service helper for discovering and instantiating services.
 	 * 
@@ -92,6 +112,7 @@ public ServiceHelper(final ImageJ context,
 		setContext(context);
 		classPoolMap = new HashMap<Class<? extends Service>, Double>();
 		classPoolList = new ArrayList<Class<? extends Service>>();
+		compatibleClasses = new HashMap<Class<?>, Class<? extends Service>>();
 		findServiceClasses(classPoolMap, classPoolList);
 		this.serviceClasses = new ArrayList<Class<? extends Service>>();
 		if (serviceClasses == null) {
@@ -111,12 +132,79 @@ public ServiceHelper(final ImageJ context,
 	 * and instantiating compatible services as needed.
 	 */
 	public void loadServices() {
-		for (final Class<? extends Service> serviceClass : serviceClasses) {
-			loadService(serviceClass);
+		final StartupProfiler.Phase phase =
+			StartupProfiler.start(StartupProfiler.PHASE, "Service creation");
+		try {
+			for (final Class<? extends Service> serviceClass : serviceClasses) {
+				loadService(serviceClass);
+			}
+		}
+		finally {
+			phase.stop();
 		}
 		final EventService eventService =
-			getContext().getService(EventService.class);
+			getContext().getServiceIndex().getService(EventService.class);
 		if (eventService != null) eventService.publish(new ServicesLoadedEvent());
+
+		final LogService log =
+			getContext().getServiceIndex().getService(LogService.class);
+		if (log != null && log.isDebug()) log.debug(getProfileReport());
+	}
+
+	/**
+	 * Gets whether a service compatible with the given class is either already
+	 * registered, or can be created from the discovered service classes.
+	 */
+	public boolean isAvailable(final Class<?> c) {
+		@SuppressWarnings("unchecked")
+		final Class<Service> serviceType = (Class<Service>) c;
+		if (getContext().getServiceIndex().getService(serviceType) != null) {
+			return true;
+		}
+		return findCompatibleClass(c) != null;
+	}
+
+	/**
+	 * Gets the time spent creating each service so far, in nanoseconds. The time
+	 * of a service includes its construction, parameter injection and
+	 * {@link Service#initialize()} call, but not the creation of the services it
+	 * depends on.
+	 * 
+	 * @return A map from service class to creation time, in order of creation.
+	 */
+	public Map<Class<? extends Service>, Long> getCreationTimes() {
+		synchronized (creationTimes) {
+			return new LinkedHashMap<Class<? extends Service>, Long>(creationTimes);
+		}
+	}
+
+	/**
+	 * Gets a human-readable report of the time spent creating each service,
+	 * slowest first.
+	 */
+	public String getProfileReport() {
+		final List<Map.Entry<Class<? extends Service>, Long>> entries =
+			new ArrayList<Map.Entry<Class<? extends Service>, Long>>(
+				getCreationTimes().entrySet());
+		Collections.sort(entries,
+			new Comparator<Map.Entry<Class<? extends Service>, Long>>() {
+
+				@Override
+				public int compare(final Map.Entry<Class<? extends Service>, Long> e1,
+					final Map.Entry<Class<? extends Service>, Long> e2)
+				{
+					return e2.getValue().compareTo(e1.getValue());
+				}
+			});
+		long total = 0;
+		final StringBuilder sb = new StringBuilder();
+		for (final Map.Entry<Class<? extends Service>, Long> entry : entries) {
+			total += entry.getValue();
+			sb.append(String.format("%12.3f ms  %s%n", entry.getValue() / 1e6,
+				entry.getKey().getName()));
+		}
+		return String.format("Created %d services in %.3f ms:%n", entries.size(),
+			total / 1e6) + sb;
 	}
 
 	/**
@@ -132,14 +220,13 @@ public <S extends Service> S loadService(final Class<S> c) {
 		final S service = getContext().getServiceIndex().getService(c);
 		if (service != null) return service;
 
-		// scan the class pool for a suitable match
-		for (final Class<? extends Service> serviceClass : classPoolList) {
-			if (c.isAssignableFrom(serviceClass)) {
-				// found a match; now instantiate it
-				@SuppressWarnings("unchecked")
-				final S result = (S) createExactService(serviceClass);
-				return result;
-			}
+		// look up a suitable match in the class pool
+		final Class<? extends Service> serviceClass = findCompatibleClass(c);
+		if (serviceClass != null) {
+			// found a match; now instantiate it
+			@SuppressWarnings("unchecked")
+			final S result = (S) createExactService(serviceClass);
+			return result;
 		}
 
 		return createExactService(c);
@@ -153,15 +240,25 @@ public <S extends Service> S loadService(final Class<S> c) {
 	 */
 	public <S extends Service> S createExactService(final Class<S> c) {
 		debug("Creating service: " + c.getName());
+		final long start = System.nanoTime();
+		final long outerDependencyTime = dependencyTime;
+		dependencyTime = 0;
 		try {
 			final S service = createService(c);
 			getContext().getServiceIndex().add(service);
+			final long time = System.nanoTime() - start - dependencyTime;
+			synchronized (creationTimes) {
+				creationTimes.put(c, time);
+			}
 			info("Created service: " + c.getName());
 			return service;
 		}
 		catch (final Throwable t) {
 			error("Invalid service: " + c.getName(), t);
 		}
+		finally {
+			dependencyTime = outerDependencyTime + System.nanoTime() - start;
+		}
 		return null;
 	}
 
@@ -198,10 +295,34 @@ private <S extends Service> S createService(final Class<S> c)
 			ClassUtils.setValue(f, service, s);
 		}
 
-		service.initialize();
+		final StartupProfiler.Phase phase =
+			StartupProfiler.start(StartupProfiler.SERVICE, c.getName());
+		try {
+			service.initialize();
+		}
+		finally {
+			phase.stop();
+		}
 		return service;
 	}
 
+	/**
+	 * Gets the highest priority class in the class pool compatible with the
+	 * given type, scanning the pool only the first time a type is requested.
+	 */
+	private Class<? extends Service> findCompatibleClass(final Class<?> c) {
+		if (compatibleClasses.containsKey(c)) return compatibleClasses.get(c);
+		Class<? extends Service> match = null;
+		for (final Class<? extends Service> serviceClass : classPoolList) {
+			if (c.isAssignableFrom(serviceClass)) {
+				match = serviceClass;
+				break;
+			}
+		}
+		compatibleClasses.put(c, match);
+		return match;
+	}
+
 	/** Asks the plugin index for all available service implementations. */
 	private void findServiceClasses(
 		final Map<Class<? extends Service>, Double> serviceMap,
@@ -224,21 +345,28 @@ private void findServiceClasses(
 		}
 	}
 
+	// NB: The helpers below query the service index directly, rather than
+	// calling ImageJ#getService, so that logging never triggers the on-demand
+	// creation of a service in lazy mode.
+
 	/** Logs the given message, if a {@link LogService} is available. */
 	private void info(final String msg) {
-		final LogService log = getContext().getService(LogService.class);
+		final LogService log =
+			getContext().getServiceIndex().getService(LogService.class);
 		if (log != null) log.info(msg);
 	}
 
 	/** Logs the given error, if a {@link LogService} is available. */
 	private void error(final String msg, final Throwable t) {
-		final LogService log = getContext().getService(LogService.class);
+		final LogService log =
+			getContext().getServiceIndex().getService(LogService.class);
 		if (log != null) log.error(msg, t);
 	}
 
 	/** Logs the given debug message, if a {@link LogService} is available. */
 	private void debug(final String msg) {
-		final LogService log = getContext().getService(LogService.class);
+		final LogService log =
+			getContext().getServiceIndex().getService(LogService.class);
 		if (log != null) log.debug(msg);
 	}
 
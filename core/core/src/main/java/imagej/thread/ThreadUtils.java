@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Useful methods for splitting work across the threads of a
+ * {@link ThreadService}.
+ * 
+ * @author agent
+ */
+public final class ThreadUtils {
+
+	/** A range [first, last) of work items, processed by one thread. */
+	public interface Block {
+
+		void run(long first, long last);
+	}
+
+	private ThreadUtils() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Runs the given block over [0, count), split evenly into at most
+	 * {@code maxTasks} contiguous ranges which are processed in parallel. The
+	 * block runs on the calling thread, in one piece, when the thread service
+	 * is null or there is nothing to split. Returns once every range is done.
+	 * 
+	 * @throws IllegalStateException if a range fails or the wait is
+	 *           interrupted.
+	 */
+	public static void forEachBlock(final ThreadService threadService,
+		final long count, final int maxTasks, final Block block)
+	{
+		final int tasks =
+			threadService == null ? 1 : (int) Math.min(count, maxTasks);
+		if (tasks <= 1) {
+			block.run(0, count);
+			return;
+		}
+		final List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int t = 0; t < tasks; t++) {
+			final long first = count * t / tasks;
+			final long last = count * (t + 1) / tasks;
+			futures.add(threadService.run(new Runnable() {
+
+				@Override
+				public void run() {
+					block.run(first, last);
+				}
+			}));
+		}
+		getAll(futures);
+	}
+
+	/**
+	 * Waits for every given future to complete, returning their results in
+	 * order.
+	 * 
+	 * @throws IllegalStateException wrapping the cause of the first failed
+	 *           future, or the interruption of the wait.
+	 */
+	public static <V> List<V> getAll(
+		final List<? extends Future<? extends V>> futures)
+	{
+		final List<V> results = new ArrayList<V>(futures.size());
+		for (final Future<? extends V> future : futures) {
+			try {
+				results.add(future.get());
+			}
+			catch (final InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			catch (final ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+}
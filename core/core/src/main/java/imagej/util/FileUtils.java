@@ -410,6 +410,52 @@ public static File createTemporaryDirectory(final String prefix,
 			"Could not create temporary directory (too many race conditions?)");
 	}
 
+	/**
+	 * Gets a cache directory which only the current user may access, creating
+	 * it if necessary. Cache directories live beneath {@code ~/.imagej/cache},
+	 * so that other users of the same machine can neither read nor plant files
+	 * in them.
+	 * 
+	 * @param name The name of the cache directory
+	 * @return The cache directory
+	 * @throws IOException if the directory cannot be created or restricted
+	 */
+	public static File getUserCacheDirectory(final String name)
+		throws IOException
+	{
+		final File root =
+			new File(new File(System.getProperty("user.home"), ".imagej"), "cache");
+		return makePrivateDirectory(new File(root, name));
+	}
+
+	/**
+	 * Creates the given directory if necessary, and restricts its permissions
+	 * to the current user.
+	 * 
+	 * @param directory The directory
+	 * @return The directory
+	 * @throws IOException if the directory cannot be created or restricted
+	 */
+	public static File makePrivateDirectory(final File directory)
+		throws IOException
+	{
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not make directory " + directory);
+		}
+		// NB: Windows keeps user profiles private, and cannot revoke read access.
+		if (File.separatorChar == '\\') return directory;
+		final boolean restricted =
+			directory.setReadable(false, false) && directory.setReadable(true, true) &&
+				directory.setWritable(false, false) &&
+				directory.setWritable(true, true) &&
+				directory.setExecutable(false, false) &&
+				directory.setExecutable(true, true);
+		if (!restricted) {
+			throw new IOException("Could not restrict access to " + directory);
+		}
+		return directory;
+	}
+
 	/**
 	 * Delete a directory recursively
 	 * 
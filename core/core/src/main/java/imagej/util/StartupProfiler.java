@@ -0,0 +1,351 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records timings of the phases of ImageJ startup.
+ * <p>
+ * Each application context owns a profiler, which is active on the thread
+ * creating the context from {@link #begin()} until {@link #finish()}. Each
+ * phase (e.g., reading the plugin index, creating the services, building the
+ * menus or patching the legacy classes) is measured by calling
+ * {@link #start(String, String)} when it begins and {@link Phase#stop()} when
+ * it ends; the phase is recorded by the profiler active at that time, if any.
+ * Hence, work done after startup (e.g., adding modules at runtime) and work
+ * done on behalf of other contexts is not recorded. Along with the elapsed
+ * time in nanoseconds, the number of bytes allocated by the current thread
+ * during the phase is recorded, when the JVM supports measuring it.
+ * </p>
+ * <p>
+ * The recorded phases can be rendered as a human-readable report
+ * ({@link #getReport()}) or as JSON ({@link #toJSON()}) for tracking startup
+ * performance across versions. If the {@code imagej.profile.startup} system
+ * property names a file, the JSON is written there once a context has been
+ * created.
+ * </p>
+ * 
+ * @author agent
+ */
+public final class StartupProfiler {
+
+	/** System property naming a file to which the JSON profile is written. */
+	public static final String DUMP_PROPERTY = "imagej.profile.startup";
+
+	/** Category of the coarse-grained startup phases. */
+	public static final String PHASE = "phase";
+
+	/** Category of the initialization of individual services. */
+	public static final String SERVICE = "service";
+
+	/** Maximum number of records kept, to bound memory use. */
+	private static final int MAX_RECORDS = 10000;
+
+	/** The profiler recording phases started on each thread, if any. */
+	private static final ThreadLocal<StartupProfiler> activeProfiler =
+		new ThreadLocal<StartupProfiler>();
+
+	private static final ThreadMXBean threadBean =
+		ManagementFactory.getThreadMXBean();
+
+	/** HotSpot's getThreadAllocatedBytes(long) method, if available. */
+	private static final Method allocatedBytesMethod = findAllocatedBytesMethod();
+
+	/** Reference time, to which all start times are relative. */
+	private final long epoch = System.nanoTime();
+
+	private final List<Record> records = new ArrayList<Record>();
+
+	/** The profiler which was active before this one began, if any. */
+	private StartupProfiler previous;
+
+	private volatile boolean finished;
+
+	// -- StartupProfiler methods --
+
+	/**
+	 * Starts measuring a phase. The returned object must be stopped (typically
+	 * in a {@code finally} block) for the phase to be recorded. If no profiler
+	 * is active on the current thread, the phase is not recorded at all.
+	 * 
+	 * @param category The kind of phase, e.g. {@link #PHASE} or {@link #SERVICE}.
+	 * @param name The name of the phase.
+	 */
+	public static Phase start(final String category, final String name) {
+		return new Phase(activeProfiler.get(), category, name);
+	}
+
+	/** Makes this profiler record the phases started on the current thread. */
+	public void begin() {
+		previous = activeProfiler.get();
+		activeProfiler.set(this);
+	}
+
+	/**
+	 * Stops recording phases. Phases which have not been stopped yet are
+	 * discarded, and the profiler which was active before {@link #begin()} (if
+	 * any) becomes active again.
+	 */
+	public void finish() {
+		finished = true;
+		if (activeProfiler.get() != this) return;
+		if (previous == null) activeProfiler.remove();
+		else activeProfiler.set(previous);
+		previous = null;
+	}
+
+	/** Gets a snapshot of all recorded phases, in order of completion. */
+	public List<Record> getRecords() {
+		synchronized (records) {
+			return new ArrayList<Record>(records);
+		}
+	}
+
+	/** Discards all recorded phases. */
+	public void clear() {
+		synchronized (records) {
+			records.clear();
+		}
+	}
+
+	/** Gets a human-readable report of all recorded phases. */
+	public String getReport() {
+		final String nl = System.getProperty("line.separator");
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%12s %12s %14s  %s%s", "start (ms)", "time (ms)",
+			"allocated (B)", "phase", nl));
+		for (final Record record : getRecords()) {
+			sb.append(String.format("%12.3f %12.3f %14s  %s: %s%s",
+				record.getStartTime() / 1e6, record.getDuration() / 1e6, record
+					.getAllocatedBytes() < 0 ? "?" : "" + record.getAllocatedBytes(),
+				record.getCategory(), record.getName(), nl));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Gets all recorded phases as a JSON array of objects, with the keys
+	 * {@code category}, {@code name}, {@code thread}, {@code startNanos},
+	 * {@code durationNanos} and {@code allocatedBytes} (-1 if unknown).
+	 */
+	public String toJSON() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("[");
+		boolean first = true;
+		for (final Record record : getRecords()) {
+			if (first) first = false;
+			else sb.append(",");
+			sb.append("\n  {");
+			sb.append("\"category\": ").append(quote(record.getCategory()));
+			sb.append(", \"name\": ").append(quote(record.getName()));
+			sb.append(", \"thread\": ").append(quote(record.getThread()));
+			sb.append(", \"startNanos\": ").append(record.getStartTime());
+			sb.append(", \"durationNanos\": ").append(record.getDuration());
+			sb.append(", \"allocatedBytes\": ").append(record.getAllocatedBytes());
+			sb.append("}");
+		}
+		sb.append("\n]\n");
+		return sb.toString();
+	}
+
+	/** Writes the JSON representation of all recorded phases to a file. */
+	public void writeJSON(final File file) throws IOException {
+		final Writer writer = new FileWriter(file);
+		try {
+			writer.write(toJSON());
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Writes the JSON profile to the file named by the
+	 * {@code imagej.profile.startup} system property, if it is set.
+	 */
+	public void dumpIfRequested() {
+		final String path = System.getProperty(DUMP_PROPERTY);
+		if (path == null) return;
+		try {
+			writeJSON(new File(path));
+		}
+		catch (final IOException e) {
+			System.err.println("Could not write startup profile to " + path);
+			e.printStackTrace();
+		}
+	}
+
+	// -- Helper methods --
+
+	private static long getAllocatedBytes() {
+		if (allocatedBytesMethod == null) return -1;
+		try {
+			final Object result =
+				allocatedBytesMethod.invoke(threadBean, Thread.currentThread()
+					.getId());
+			return ((Number) result).longValue();
+		}
+		catch (final Exception e) {
+			return -1;
+		}
+	}
+
+	private static Method findAllocatedBytesMethod() {
+		// NB: Only available in HotSpot's com.sun.management.ThreadMXBean.
+		try {
+			final Class<?> c =
+				Class.forName("com.sun.management.ThreadMXBean");
+			if (!c.isInstance(threadBean)) return null;
+			final Method method =
+				c.getMethod("getThreadAllocatedBytes", long.class);
+			method.setAccessible(true);
+			return method;
+		}
+		catch (final Throwable t) {
+			return null;
+		}
+	}
+
+	private static String quote(final String s) {
+		final StringBuilder sb = new StringBuilder("\"");
+		for (final char c : s.toCharArray()) {
+			if (c == '"' || c == '\\') sb.append('\\').append(c);
+			else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+			else sb.append(c);
+		}
+		return sb.append('"').toString();
+	}
+
+	// -- Helper classes --
+
+	/** A phase being measured. */
+	public static class Phase {
+
+		private final StartupProfiler profiler;
+		private final String category;
+		private final String name;
+		private final long start;
+		private final long allocated;
+		private boolean stopped;
+
+		private Phase(final StartupProfiler profiler, final String category,
+			final String name)
+		{
+			this.profiler = profiler;
+			this.category = category;
+			this.name = name;
+			allocated = profiler == null ? -1 : getAllocatedBytes();
+			start = System.nanoTime();
+		}
+
+		/** Stops measuring the phase and records it; subsequent calls are no-ops. */
+		public void stop() {
+			final long end = System.nanoTime();
+			if (stopped) return;
+			stopped = true;
+			if (profiler == null || profiler.finished) return;
+			final long allocatedNow = getAllocatedBytes();
+			final long allocatedBytes =
+				allocated < 0 || allocatedNow < 0 ? -1 : allocatedNow - allocated;
+			final Record record =
+				new Record(category, name, Thread.currentThread().getName(), start -
+					profiler.epoch, end - start, allocatedBytes);
+			synchronized (profiler.records) {
+				if (profiler.records.size() < MAX_RECORDS) profiler.records.add(record);
+			}
+		}
+	}
+
+	/** A recorded phase. */
+	public static class Record {
+
+		private final String category;
+		private final String name;
+		private final String thread;
+		private final long startTime;
+		private final long duration;
+		private final long allocatedBytes;
+
+		private Record(final String category, final String name,
+			final String thread, final long startTime, final long duration,
+			final long allocatedBytes)
+		{
+			this.category = category;
+			this.name = name;
+			this.thread = thread;
+			this.startTime = startTime;
+			this.duration = duration;
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		public String getCategory() {
+			return category;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getThread() {
+			return thread;
+		}
+
+		/** Gets the start time, in nanoseconds since the profiler was created. */
+		public long getStartTime() {
+			return startTime;
+		}
+
+		/** Gets the duration, in nanoseconds. */
+		public long getDuration() {
+			return duration;
+		}
+
+		/** Gets the bytes allocated by the thread, or -1 if unknown. */
+		public long getAllocatedBytes() {
+			return allocatedBytes;
+		}
+	}
+
+}
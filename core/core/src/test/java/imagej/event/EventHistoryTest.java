@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import imagej.ImageJ;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link DefaultEventHistory}.
+ * 
+ * @author agent
+ */
+public class EventHistoryTest {
+
+	@Test
+	public void testCapacity() {
+		final ImageJ context = new ImageJ(EventHistory.class);
+		final EventService eventService = context.getService(EventService.class);
+		final EventHistory eventHistory = context.getService(EventHistory.class);
+		eventHistory.setCapacity(3);
+		eventHistory.setActive(true);
+
+		for (int i = 0; i < 5; i++) {
+			eventService.publish(new NumberedEvent(i));
+		}
+		final List<EventDetails> history =
+			eventHistory.getHistory(types(NumberedEvent.class), Long.MIN_VALUE,
+				Long.MAX_VALUE);
+
+		// only the most recent events are kept, oldest first
+		assertEquals(3, history.size());
+		assertTrue(history.get(0).getEventString().contains("number = 2"));
+		assertTrue(history.get(2).getEventString().contains("number = 4"));
+
+		eventHistory.clear();
+		assertTrue(eventHistory.getHistory().isEmpty());
+	}
+
+	@Test
+	public void testQuery() {
+		final ImageJ context = new ImageJ(EventHistory.class);
+		final EventService eventService = context.getService(EventService.class);
+		final EventHistory eventHistory = context.getService(EventHistory.class);
+		eventHistory.setActive(true);
+
+		eventService.publish(new NumberedEvent(1));
+		eventService.publish(new OtherEvent());
+		eventService.publish(new NumberedEvent(2));
+
+		assertEquals(2, eventHistory.getHistory(types(NumberedEvent.class),
+			Long.MIN_VALUE, Long.MAX_VALUE).size());
+		assertEquals(1, eventHistory.getHistory(types(OtherEvent.class),
+			Long.MIN_VALUE, Long.MAX_VALUE).size());
+
+		// nothing was recorded before the epoch
+		assertTrue(eventHistory.getHistory(null, Long.MIN_VALUE, -1).isEmpty());
+
+		// the publishing thread is recorded
+		final EventDetails details =
+			eventHistory.getHistory(types(OtherEvent.class), Long.MIN_VALUE,
+				Long.MAX_VALUE).get(0);
+		assertEquals(Thread.currentThread().getName(), details.getThreadName());
+	}
+
+	@Test
+	public void testCapture() throws IOException {
+		final ImageJ context = new ImageJ(EventHistory.class);
+		final EventService eventService = context.getService(EventService.class);
+		final EventHistory eventHistory = context.getService(EventHistory.class);
+
+		// capturing records events even with no listener attached
+		final File file = File.createTempFile("EventHistoryTest", ".ijev");
+		file.deleteOnExit();
+		eventHistory.startCapture(file);
+		assertTrue(eventHistory.isCapturing());
+		assertTrue(eventHistory.isActive());
+		eventService.publish(new OtherEvent());
+		eventHistory.stopCapture();
+		assertFalse(eventHistory.isCapturing());
+		assertFalse(eventHistory.isActive());
+		assertEquals(1, eventHistory.getHistory(types(OtherEvent.class),
+			Long.MIN_VALUE, Long.MAX_VALUE).size());
+
+		final DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			assertEquals(EventCapture.MAGIC, in.readInt());
+			assertEquals(EventCapture.VERSION, in.readInt());
+		}
+		finally {
+			in.close();
+		}
+		assertTrue(file.length() > 8);
+	}
+
+	// -- Helper methods --
+
+	private Set<Class<? extends ImageJEvent>> types(
+		final Class<? extends ImageJEvent> type)
+	{
+		final Set<Class<? extends ImageJEvent>> types =
+			new HashSet<Class<? extends ImageJEvent>>();
+		types.add(type);
+		return Collections.unmodifiableSet(types);
+	}
+
+	// -- Helper classes --
+
+	public static class NumberedEvent extends ImageJEvent {
+
+		private final int number;
+
+		public NumberedEvent(final int number) {
+			this.number = number;
+		}
+
+		@Override
+		public String toString() {
+			return super.toString() + "\n\tnumber = " + number;
+		}
+	}
+
+	public static class OtherEvent extends ImageJEvent {
+		// NB: No implementation needed.
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.event;
+
+import static org.junit.Assert.assertEquals;
+import imagej.ImageJ;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link DefaultEventService}.
+ * 
+ * @author agent
+ */
+public class EventServiceTest {
+
+	@Test
+	public void testInheritedHandlers() {
+		final EventService eventService = createEventService();
+		final DerivedSubscriber subscriber = new DerivedSubscriber();
+		final List<EventSubscriber<?>> subscribers =
+			eventService.subscribe(subscriber);
+		assertEquals(2, subscribers.size());
+
+		eventService.publish(new FooEvent());
+		eventService.publish(new BarEvent());
+		assertEquals(2, subscriber.fooCount);
+		assertEquals(1, subscriber.barCount);
+	}
+
+	@Test
+	public void testSubscriptionChanges() {
+		final EventService eventService = createEventService();
+		final BaseSubscriber first = new BaseSubscriber();
+		final List<EventSubscriber<?>> firstSubscribers =
+			eventService.subscribe(first);
+		eventService.publish(new FooEvent());
+		assertEquals(1, first.fooCount);
+
+		// a new subscriber receives events of a class already published
+		final BaseSubscriber second = new BaseSubscriber();
+		final List<EventSubscriber<?>> secondSubscribers =
+			eventService.subscribe(second);
+		eventService.publish(new FooEvent());
+		assertEquals(2, first.fooCount);
+		assertEquals(1, second.fooCount);
+
+		// an unsubscribed subscriber no longer receives events
+		eventService.unsubscribe(firstSubscribers);
+		eventService.publish(new FooEvent());
+		assertEquals(2, first.fooCount);
+		assertEquals(2, second.fooCount);
+		assertEquals(secondSubscribers.size(), eventService.getSubscribers(
+			FooEvent.class).size());
+	}
+
+	// -- Helper methods --
+
+	private EventService createEventService() {
+		final ImageJ context = new ImageJ(EventService.class);
+		return context.getService(EventService.class);
+	}
+
+	// -- Helper classes --
+
+	public static class FooEvent extends ImageJEvent {
+		// NB: No implementation needed.
+	}
+
+	public static class BarEvent extends FooEvent {
+		// NB: No implementation needed.
+	}
+
+	public static class BaseSubscriber {
+
+		protected int fooCount;
+
+		@EventHandler
+		protected void onEvent(final FooEvent event) {
+			fooCount++;
+		}
+	}
+
+	public static class DerivedSubscriber extends BaseSubscriber {
+
+		protected int barCount;
+
+		@EventHandler
+		protected void onEvent(final BarEvent event) {
+			barCount++;
+		}
+	}
+
+}
@@ -226,4 +226,94 @@ public void testToString() {
 		assertArrayEquals(expected, actual);
 	}
 
+	@Test
+	public void testSnapshot() {
+		final ObjectIndex<Object> objectIndex =
+			new ObjectIndex<Object>(Object.class);
+		final Object o1 = new Integer(5);
+		final Object o2 = new Float(2.5f);
+		objectIndex.add(o1);
+		final List<Object> before = objectIndex.get(Number.class);
+		assertSame(before, objectIndex.get(Number.class));
+		objectIndex.add(o2);
+		assertEquals(1, before.size());
+		final List<Object> after = objectIndex.get(Number.class);
+		assertEquals(2, after.size());
+		assertSame(o1, after.get(0));
+		assertSame(o2, after.get(1));
+		objectIndex.remove(o1);
+		assertEquals(2, after.size());
+		assertEquals(1, objectIndex.get(Number.class).size());
+		assertEquals(1, objectIndex.get(Float.class).size());
+		assertTrue(objectIndex.get(Integer.class).isEmpty());
+	}
+
+	@Test
+	public void testSnapshotAppend() {
+		final ObjectIndex<Object> objectIndex =
+			new ObjectIndex<Object>(Object.class);
+		final List<List<Object>> snapshots = new ArrayList<List<Object>>();
+		for (int i = 0; i < 10; i++) {
+			objectIndex.add(new Integer(i));
+			snapshots.add(objectIndex.get(Number.class));
+		}
+		for (int i = 0; i < 10; i++) {
+			final List<Object> snapshot = snapshots.get(i);
+			assertEquals(i + 1, snapshot.size());
+			for (int j = 0; j <= i; j++) {
+				assertEquals(new Integer(j), snapshot.get(j));
+			}
+		}
+		objectIndex.remove(snapshots.get(0).get(0));
+		objectIndex.add(new Integer(10));
+		final List<Object> all = objectIndex.getAll();
+		assertEquals(10, all.size());
+		assertEquals(new Integer(1), all.get(0));
+		assertEquals(new Integer(10), all.get(9));
+		assertEquals(10, snapshots.get(9).size());
+		assertEquals(new Integer(0), snapshots.get(9).get(0));
+	}
+
+	@Test
+	public void testRemoveInOrder() {
+		final ObjectIndex<Object> objectIndex =
+			new ObjectIndex<Object>(Object.class);
+		final List<Object> objects = new ArrayList<Object>();
+		for (int i = 0; i < 100; i++) {
+			final Object o = new Integer(i);
+			objects.add(o);
+			objectIndex.add(o);
+		}
+		// remove the earliest objects first, reading the index in between
+		for (int i = 0; i < 100; i++) {
+			assertTrue(objectIndex.remove(objects.get(i)));
+			assertEquals(99 - i, objectIndex.size());
+			if (i % 10 == 0 && i < 99) {
+				assertSame(objects.get(i + 1), objectIndex.get(Number.class).get(0));
+			}
+		}
+		assertTrue(objectIndex.isEmpty());
+		assertTrue(objectIndex.get(Integer.class).isEmpty());
+	}
+
+	@Test
+	public void testRemoveDuplicatesAndEquals() {
+		final ObjectIndex<Object> objectIndex =
+			new ObjectIndex<Object>(Object.class);
+		final Object o1 = new Integer(5);
+		final Object o2 = new Float(2.5f);
+		objectIndex.add(o1);
+		objectIndex.add(o2);
+		objectIndex.add(o1);
+		assertTrue(objectIndex.remove(o1));
+		assertTrue(objectIndex.remove(o1));
+		assertFalse(objectIndex.remove(o1));
+		objectIndex.add(o1);
+		// an equal object which was never added removes the registered one
+		assertTrue(objectIndex.remove(new Integer(5)));
+		final List<Object> all = objectIndex.getAll();
+		assertEquals(1, all.size());
+		assertSame(o2, all.get(0));
+	}
+
 }
@@ -36,8 +36,10 @@
 package imagej.object;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
@@ -91,4 +93,20 @@ public void testDuplicates() {
 		assertSame(o1, all.get(5));
 	}
 
+	@Test
+	public void testRemoveAfterAddAll() {
+		final SortedObjectIndex<String> objectIndex =
+			new SortedObjectIndex<String>(String.class);
+		final String o1 = "quick";
+		final String o2 = "brown";
+		final String o3 = "fox";
+		objectIndex.addAll(Arrays.asList(o1, o2, o3));
+		objectIndex.remove(new String(o3));
+		final List<String> all = objectIndex.getAll();
+		assertEquals(2, all.size());
+		assertSame(o2, all.get(0));
+		assertSame(o1, all.get(1));
+		assertFalse(objectIndex.remove("jumps"));
+	}
+
 }
@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import imagej.service.Service;
+import imagej.util.FileUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link CachingPluginFinder}.
+ * 
+ * @author agent
+ */
+public class CachingPluginFinderTest {
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		final File dir = FileUtils.createTemporaryDirectory("plugin-cache-", "");
+		final File cacheFile = new File(dir, "plugins.cache");
+
+		final Plugin annotation =
+			DefaultPluginService.class.getAnnotation(Plugin.class);
+		final PluginInfo<Service> info =
+			new PluginInfo<Service>(DefaultPluginService.class.getName(),
+				Service.class, annotation);
+
+		// first discovery populates the cache from the delegate
+		final List<PluginInfo<?>> plugins = new ArrayList<PluginInfo<?>>();
+		new CachingPluginFinder(null, new PluginFinder() {
+
+			@Override
+			public void findPlugins(final List<PluginInfo<?>> list) {
+				list.add(info);
+			}
+		}, cacheFile).findPlugins(plugins);
+		assertEquals(1, plugins.size());
+		assertTrue(cacheFile.exists());
+
+		// second discovery must not need the delegate at all
+		final List<PluginInfo<?>> cached = new ArrayList<PluginInfo<?>>();
+		new CachingPluginFinder(null, new PluginFinder() {
+
+			@Override
+			public void findPlugins(final List<PluginInfo<?>> list) {
+				throw new AssertionError("Plugin cache was not used");
+			}
+		}, cacheFile).findPlugins(cached);
+		assertEquals(1, cached.size());
+
+		final PluginInfo<?> result = cached.get(0);
+		assertEquals(info.getClassName(), result.getClassName());
+		assertSame(Service.class, result.getPluginType());
+		assertEquals(info.getPriority(), result.getPriority(), 0);
+		assertSame(Plugin.class, result.getAnnotation().annotationType());
+		assertEquals(annotation.menu().length, result.getAnnotation().menu().length);
+
+		// the cached annotation must be interchangeable with the real one
+		assertEquals(annotation, result.getAnnotation());
+		assertEquals(result.getAnnotation(), annotation);
+		assertEquals(annotation.hashCode(), result.getAnnotation().hashCode());
+		assertFalse(result.getAnnotation().equals(null));
+
+		assertTrue(FileUtils.deleteRecursively(dir));
+	}
+
+}
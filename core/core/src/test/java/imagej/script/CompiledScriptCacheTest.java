@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.script;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import imagej.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link CompiledScriptCache}.
+ * 
+ * @author agent
+ */
+public class CompiledScriptCacheTest {
+
+	@Test
+	public void testKeys() {
+		final String key = CompiledScriptCache.getKey("java", "class A {}");
+		assertEquals(40, key.length());
+		assertEquals(key, CompiledScriptCache.getKey("java", "class A {}"));
+		assertFalse(key.equals(CompiledScriptCache.getKey("java", "class B {}")));
+		assertFalse(key.equals(CompiledScriptCache.getKey("bsh", "class A {}")));
+	}
+
+	@Test
+	public void testEviction() {
+		final CompiledScriptCache cache = new CompiledScriptCache(2);
+		final Object a = new Object(), b = new Object(), c = new Object();
+		cache.put("a", a);
+		cache.put("b", b);
+		// touch "a" so that "b" becomes the eldest entry
+		assertSame(a, cache.get("a"));
+		cache.put("c", c);
+		assertEquals(2, cache.size());
+		assertNull(cache.get("b"));
+		assertSame(a, cache.get("a"));
+		assertSame(c, cache.get("c", Object.class));
+		assertNull(cache.get("c", String.class));
+
+		cache.setCapacity(1);
+		assertEquals(1, cache.size());
+		assertSame(c, cache.get("c"));
+	}
+
+	@Test
+	public void testBuildDirectories() throws IOException {
+		final File root = FileUtils.createTemporaryDirectory("script-cache", "");
+		final String property = "imagej.script.cache.dir";
+		final String previous = System.getProperty(property);
+		System.setProperty(property, root.getAbsolutePath());
+		try {
+			final CompiledScriptCache cache = new CompiledScriptCache();
+			final String key = CompiledScriptCache.getKey("java", "class A {}");
+			final File directory = cache.getCacheDirectory("java", key);
+			final File build1 = cache.createBuildDirectory("java", key);
+			final File build2 = cache.createBuildDirectory("java", key);
+			assertFalse(build1.equals(build2));
+			assertEquals(directory.getParentFile(), build1.getParentFile());
+			assertTrue(build1.isDirectory());
+			assertFalse(directory.exists());
+			assertTrue(build1.renameTo(directory));
+			assertTrue(directory.isDirectory());
+		}
+		finally {
+			if (previous == null) System.clearProperty(property);
+			else System.setProperty(property, previous);
+			FileUtils.deleteRecursively(root);
+		}
+	}
+
+}
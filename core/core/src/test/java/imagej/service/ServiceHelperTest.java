@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.service;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import imagej.ImageJ;
+import imagej.platform.DefaultPlatformService;
+import imagej.platform.PlatformService;
+import imagej.plugin.Parameter;
+import imagej.script.ScriptService;
+import imagej.tool.ToolService;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ServiceHelper}.
+ * 
+ * @author agent
+ */
+public class ServiceHelperTest {
+
+	@Test
+	public void testLazyServices() {
+		final ImageJ context = new ImageJ(null, true);
+		assertTrue(context.isLazy());
+		assertTrue(context.getServiceIndex().getAll().isEmpty());
+
+		// requesting a service creates it, along with its dependencies
+		final PlatformService platformService =
+			context.getService(PlatformService.class);
+		assertNotNull(platformService);
+		assertSame(platformService, context.getService(PlatformService.class));
+
+		final Map<Class<? extends Service>, Long> times =
+			context.getServiceHelper().getCreationTimes();
+		assertTrue(times.containsKey(DefaultPlatformService.class));
+		final Field[] fields = DefaultPlatformService.class.getDeclaredFields();
+		for (final Field field : fields) {
+			if (field.getAnnotation(Parameter.class) == null) continue;
+			if (!Service.class.isAssignableFrom(field.getType())) continue;
+			assertTrue(field.getType().getName(), isCreated(context, field
+				.getType()));
+		}
+
+		// services nothing depends on are not created
+		assertFalse(isCreated(context, ToolService.class));
+		assertFalse(isCreated(context, ScriptService.class));
+	}
+
+	// -- Helper methods --
+
+	private boolean isCreated(final ImageJ context, final Class<?> type) {
+		for (final Service service : context.getServiceIndex().getAll()) {
+			if (type.isInstance(service)) return true;
+		}
+		return false;
+	}
+
+}
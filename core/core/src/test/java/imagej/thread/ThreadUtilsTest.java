@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.thread;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import imagej.ImageJ;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ThreadUtils}.
+ * 
+ * @author agent
+ */
+public class ThreadUtilsTest {
+
+	@Test
+	public void testForEachBlock() {
+		final ThreadService threadService = createThreadService();
+		for (final ThreadService service : new ThreadService[] { null,
+			threadService })
+		{
+			for (final int tasks : new int[] { 1, 3, 8, 1000 }) {
+				final AtomicIntegerArray visits = new AtomicIntegerArray(100);
+				ThreadUtils.forEachBlock(service, 100, tasks,
+					new ThreadUtils.Block() {
+
+						@Override
+						public void run(final long first, final long last) {
+							for (long i = first; i < last; i++) {
+								visits.incrementAndGet((int) i);
+							}
+						}
+					});
+				for (int i = 0; i < visits.length(); i++) {
+					assertEquals(1, visits.get(i));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testGetAll() {
+		final ThreadService threadService = createThreadService();
+		final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < 5; i++) {
+			final int value = i;
+			futures.add(threadService.run(new Callable<Integer>() {
+
+				@Override
+				public Integer call() {
+					return value * value;
+				}
+			}));
+		}
+		final List<Integer> results = ThreadUtils.getAll(futures);
+		assertEquals(5, results.size());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(i * i, results.get(i).intValue());
+		}
+	}
+
+	@Test
+	public void testFailure() {
+		final ThreadService threadService = createThreadService();
+		final RuntimeException failure = new RuntimeException("block failed");
+		final ThreadUtils.Block block = new ThreadUtils.Block() {
+
+			@Override
+			public void run(final long first, final long last) {
+				if (first == 0) throw failure;
+			}
+		};
+		try {
+			ThreadUtils.forEachBlock(threadService, 10, 4, block);
+			fail("Failure was not reported");
+		}
+		catch (final IllegalStateException e) {
+			assertSame(failure, e.getCause());
+		}
+	}
+
+	// -- Helper methods --
+
+	private ThreadService createThreadService() {
+		final ImageJ context = new ImageJ(ThreadService.class);
+		return context.getService(ThreadService.class);
+	}
+
+}
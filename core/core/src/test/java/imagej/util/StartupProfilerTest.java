@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link StartupProfiler}.
+ * 
+ * @author agent
+ */
+public class StartupProfilerTest {
+
+	@Test
+	public void testRecording() {
+		final StartupProfiler profiler = new StartupProfiler();
+		StartupProfiler.start(StartupProfiler.PHASE, "before").stop();
+		profiler.begin();
+		final StartupProfiler.Phase phase =
+			StartupProfiler.start(StartupProfiler.PHASE, "during");
+		phase.stop();
+		phase.stop();
+		profiler.finish();
+		StartupProfiler.start(StartupProfiler.PHASE, "after").stop();
+
+		final List<StartupProfiler.Record> records = profiler.getRecords();
+		assertEquals(1, records.size());
+		assertEquals("during", records.get(0).getName());
+		assertEquals(StartupProfiler.PHASE, records.get(0).getCategory());
+		assertTrue(records.get(0).getDuration() >= 0);
+	}
+
+	@Test
+	public void testNesting() {
+		final StartupProfiler outer = new StartupProfiler();
+		final StartupProfiler inner = new StartupProfiler();
+		outer.begin();
+		final StartupProfiler.Phase outerPhase =
+			StartupProfiler.start(StartupProfiler.PHASE, "outer");
+		inner.begin();
+		StartupProfiler.start(StartupProfiler.SERVICE, "inner").stop();
+		inner.finish();
+		outerPhase.stop();
+		outer.finish();
+
+		assertEquals(1, outer.getRecords().size());
+		assertEquals("outer", outer.getRecords().get(0).getName());
+		assertEquals(1, inner.getRecords().size());
+		assertEquals("inner", inner.getRecords().get(0).getName());
+	}
+
+	@Test
+	public void testUnfinishedPhase() {
+		final StartupProfiler profiler = new StartupProfiler();
+		profiler.begin();
+		final StartupProfiler.Phase phase =
+			StartupProfiler.start(StartupProfiler.PHASE, "late");
+		profiler.finish();
+		phase.stop();
+		assertTrue(profiler.getRecords().isEmpty());
+	}
+
+}
@@ -82,6 +82,15 @@ public interface Dataset extends Data, Metadata {
 	 */
 	Object getPlane(int planeNumber, boolean copyOK);
 
+	/**
+	 * Gets a plane of data from the Dataset which the caller only reads, as
+	 * {@link #getPlane(int, boolean)} does. The returned data must not be
+	 * modified. Unlike {@link #getPlane(int, boolean)}, this does not keep the
+	 * plane in memory when the Dataset's planes are read on demand (see
+	 * {@link CachedPlanes}).
+	 */
+	Object getPlaneForReading(int planeNumber, boolean copyOK);
+
 	/**
 	 * sets a plane of data within the dataset. generates an update event if the
 	 * plane reference differs from the current plane reference associated with
@@ -98,6 +107,46 @@ public interface Dataset extends Data, Metadata {
 	 */
 	boolean setPlaneSilently(int planeNum, Object newPlane);
 
+	/**
+	 * Gets the number of bits per pixel of this Dataset's packed planes: 1 for
+	 * 1-bit data, 12 for 12-bit data, or 0 if its planes are not packed. Packed
+	 * planes can be accessed in bulk via {@link #getPackedPlane(int)},
+	 * {@link #unpackPlane(int, byte[])} and {@link #unpackPlane(int, short[])}.
+	 */
+	int getPackedBits();
+
+	/**
+	 * Gets a reference to the packed storage words of a 1-bit or 12-bit plane,
+	 * laid out as described in {@link PackedPlanes}. Returns null if the plane
+	 * is not packed.
+	 */
+	int[] getPackedPlane(int planeNumber);
+
+	/**
+	 * Unpacks a plane of 1-bit data into the given buffer as values of 0 and 1.
+	 * Returns false if this Dataset does not hold packed 1-bit planes.
+	 */
+	boolean unpackPlane(int planeNumber, byte[] buffer);
+
+	/**
+	 * Unpacks a plane of 12-bit data into the given buffer. Returns false if
+	 * this Dataset does not hold packed 12-bit planes.
+	 */
+	boolean unpackPlane(int planeNumber, short[] buffer);
+
+	/**
+	 * Packs the given buffer into a plane of 1-bit data; nonzero values become
+	 * set bits. NEVER generates update events. Returns false if this Dataset
+	 * does not hold packed 1-bit planes.
+	 */
+	boolean packPlane(int planeNumber, byte[] buffer);
+
+	/**
+	 * Packs the given buffer into a plane of 12-bit data. NEVER generates update
+	 * events. Returns false if this Dataset does not hold packed 12-bit planes.
+	 */
+	boolean packPlane(int planeNumber, short[] buffer);
+
 	/** TODO */
 	RealType<?> getType();
 
@@ -42,6 +42,7 @@
 import imagej.data.event.DatasetRestructuredEvent;
 import imagej.data.event.DatasetTypeChangedEvent;
 import imagej.data.event.DatasetUpdatedEvent;
+import imagej.data.undo.UndoService;
 import imagej.log.LogService;
 import net.imglib2.Cursor;
 import net.imglib2.Positionable;
@@ -56,6 +57,7 @@
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.basictypeaccess.PlanarAccess;
 import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.BitArray;
 import net.imglib2.img.basictypeaccess.array.ByteArray;
 import net.imglib2.img.basictypeaccess.array.DoubleArray;
 import net.imglib2.img.basictypeaccess.array.FloatArray;
@@ -66,8 +68,10 @@
 import net.imglib2.meta.AxisType;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.Type;
+import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.Unsigned12BitType;
 
 /**
  * Default implementation of {@link Dataset}.
@@ -187,6 +191,18 @@ public Object getPlane(final int planeNumber, final boolean copyOK) {
 		return null;
 	}
 
+	@Override
+	public Object getPlaneForReading(final int planeNumber, final boolean copyOK)
+	{
+		final Img<? extends RealType<?>> img = imgPlus.getImg();
+		if (!(img instanceof CachedPlanes)) return getPlane(planeNumber, copyOK);
+		final Object plane = ((CachedPlanes<?>) img).readPlane(planeNumber);
+		if (plane instanceof ArrayDataAccess) return ((ArrayDataAccess<?>) plane)
+			.getCurrentStorageArray();
+		if (copyOK) return copyOfPlane(planeNumber);
+		return null;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public boolean setPlaneSilently(final int planeNum, final Object newPlane) {
@@ -205,6 +221,10 @@ public boolean setPlaneSilently(final int planeNum, final Object newPlane) {
 		if (newPlane == currPlane) return false;
 		final ArrayDataAccess<?> array = createArrayDataAccess(newPlane);
 		planarAccess.setPlane(planeNum, array);
+		final UndoService undoService = getContext().getService(UndoService.class);
+		if (undoService != null) {
+			undoService.planeReplaced(this, planeNum, currPlane);
+		}
 		return true;
 	}
 
@@ -216,6 +236,58 @@ public boolean setPlane(final int planeNum, final Object newPlane) {
 		}
 		return false;
 	}
+
+	@Override
+	public int getPackedBits() {
+		final RealType<?> type = getType();
+		if (type instanceof BitType) return 1;
+		if (type instanceof Unsigned12BitType) return 12;
+		return 0;
+	}
+
+	@Override
+	public int[] getPackedPlane(final int planeNumber) {
+		if (getPackedBits() == 0) return null;
+		final Img<? extends RealType<?>> img = imgPlus.getImg();
+		if (!(img instanceof PlanarAccess)) return null;
+		final Object plane = ((PlanarAccess<?>) img).getPlane(planeNumber);
+		if (!(plane instanceof BitArray)) return null;
+		return ((BitArray) plane).getCurrentStorageArray();
+	}
+
+	@Override
+	public boolean unpackPlane(final int planeNumber, final byte[] buffer) {
+		final int[] words = packedPlaneForReading(planeNumber, 1);
+		if (words == null) return false;
+		PackedPlanes.unpackBits(words, buffer, planeSize());
+		return true;
+	}
+
+	@Override
+	public boolean unpackPlane(final int planeNumber, final short[] buffer) {
+		final int[] words = packedPlaneForReading(planeNumber, 12);
+		if (words == null) return false;
+		PackedPlanes.unpack12Bit(words, buffer, planeSize());
+		return true;
+	}
+
+	@Override
+	public boolean packPlane(final int planeNumber, final byte[] buffer) {
+		final int[] words = packedPlane(planeNumber, 1);
+		if (words == null) return false;
+		planeChanging(planeNumber);
+		PackedPlanes.packBits(buffer, words, planeSize());
+		return true;
+	}
+
+	@Override
+	public boolean packPlane(final int planeNumber, final short[] buffer) {
+		final int[] words = packedPlane(planeNumber, 12);
+		if (words == null) return false;
+		planeChanging(planeNumber);
+		PackedPlanes.pack12Bit(buffer, words, planeSize());
+		return true;
+	}
 		
 	@Override
 	public RealType<?> getType() {
@@ -653,6 +725,35 @@ private void copyDataValues(final Img<? extends RealType<?>> input,
 		}
 	}
 
+	/** Gets the packed words of a plane with the given bits per pixel. */
+	private int[] packedPlane(final int planeNumber, final int bits) {
+		if (getPackedBits() != bits) return null;
+		return getPackedPlane(planeNumber);
+	}
+
+	/**
+	 * Gets the packed words of a plane with the given bits per pixel, for
+	 * reading only.
+	 */
+	private int[] packedPlaneForReading(final int planeNumber, final int bits) {
+		if (getPackedBits() != bits) return null;
+		final Object words = getPlaneForReading(planeNumber, false);
+		return words instanceof int[] ? (int[]) words : null;
+	}
+
+	/** Gets the number of pixels in each plane. */
+	private int planeSize() {
+		long size = imgPlus.dimension(0);
+		if (imgPlus.numDimensions() > 1) size *= imgPlus.dimension(1);
+		return (int) size;
+	}
+
+	/** Notifies the undo service that a plane is about to change in place. */
+	private void planeChanging(final int planeNumber) {
+		final UndoService undoService = getContext().getService(UndoService.class);
+		if (undoService != null) undoService.planeChanging(this, planeNumber);
+	}
+
 	private Object copyOfPlane(final int planeNum) {
 		final long[] dimensions = new long[imgPlus.numDimensions()];
 		imgPlus.dimensions(dimensions);
@@ -0,0 +1,252 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import java.util.Arrays;
+
+/**
+ * Bulk operations on planes whose pixels are packed into {@code int} words.
+ * <p>
+ * ImgLib stores 1-bit and 12-bit data in a {@code BitArray}: the bits of pixel
+ * {@code i} begin at bit {@code i * bitsPerPixel} of the plane, counting from
+ * the least significant bit of the first word. These methods convert whole
+ * planes between that layout and primitive scratch buffers, and combine 1-bit
+ * masks a word at a time, instead of going through a {@code RealType} per
+ * pixel.
+ * </p>
+ * 
+ * @author agent
+ */
+public final class PackedPlanes {
+
+	/** Number of bits in each storage word. */
+	public static final int WORD_SIZE = Integer.SIZE;
+
+	private static final int MASK_12_BIT = 0xfff;
+
+	private PackedPlanes() {
+		// prevent instantiation of utility class
+	}
+
+	/** Gets the number of words needed to store the given number of bits. */
+	public static int wordCount(final long bitCount) {
+		return (int) ((bitCount + WORD_SIZE - 1) / WORD_SIZE);
+	}
+
+	// -- 1-bit methods --
+
+	/** Unpacks 1-bit pixels into the given buffer as values of 0 and 1. */
+	public static void unpackBits(final int[] words, final byte[] values,
+		final int count)
+	{
+		unpackBits(words, values, count, (byte) 1);
+	}
+
+	/**
+	 * Unpacks 1-bit pixels into the given buffer, storing 0 for each cleared bit
+	 * and the given value for each set bit.
+	 */
+	public static void unpackBits(final int[] words, final byte[] values,
+		final int count, final byte onValue)
+	{
+		int v = 0;
+		for (int w = 0; v < count; w++) {
+			final int end = Math.min(v + WORD_SIZE, count);
+			final int word = words[w];
+			if (word == 0) {
+				Arrays.fill(values, v, end, (byte) 0);
+				v = end;
+			}
+			else if (word == -1) {
+				Arrays.fill(values, v, end, onValue);
+				v = end;
+			}
+			else {
+				for (int bit = 0; v < end; bit++) {
+					values[v++] = (word & (1 << bit)) == 0 ? 0 : onValue;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Packs the given buffer into 1-bit pixels; nonzero values become set bits.
+	 * Unused bits of the last word are cleared.
+	 */
+	public static void packBits(final byte[] values, final int[] words,
+		final int count)
+	{
+		int v = 0;
+		for (int w = 0; v < count; w++) {
+			final int end = Math.min(v + WORD_SIZE, count);
+			int word = 0;
+			for (int bit = 0; v < end; bit++) {
+				if (values[v++] != 0) word |= 1 << bit;
+			}
+			words[w] = word;
+		}
+	}
+
+	/** Counts the set bits among the first count bits. */
+	public static long countBits(final int[] words, final int count) {
+		final int fullWords = count / WORD_SIZE;
+		long total = 0;
+		for (int w = 0; w < fullWords; w++) {
+			total += Integer.bitCount(words[w]);
+		}
+		if (fullWords < wordCount(count)) {
+			total += Integer.bitCount(words[fullWords] & lastWordMask(count));
+		}
+		return total;
+	}
+
+	/** Sets or clears the first count bits. */
+	public static void fillBits(final int[] words, final int count,
+		final boolean value)
+	{
+		final int n = wordCount(count);
+		Arrays.fill(words, 0, n, value ? -1 : 0);
+		clearPadding(words, count);
+	}
+
+	/** Stores a AND b in result; result may be one of the inputs. */
+	public static void and(final int[] a, final int[] b, final int[] result,
+		final int count)
+	{
+		final int n = wordCount(count);
+		for (int w = 0; w < n; w++) {
+			result[w] = a[w] & b[w];
+		}
+		clearPadding(result, count);
+	}
+
+	/** Stores a OR b in result; result may be one of the inputs. */
+	public static void or(final int[] a, final int[] b, final int[] result,
+		final int count)
+	{
+		final int n = wordCount(count);
+		for (int w = 0; w < n; w++) {
+			result[w] = a[w] | b[w];
+		}
+		clearPadding(result, count);
+	}
+
+	/** Stores a XOR b in result; result may be one of the inputs. */
+	public static void xor(final int[] a, final int[] b, final int[] result,
+		final int count)
+	{
+		final int n = wordCount(count);
+		for (int w = 0; w < n; w++) {
+			result[w] = a[w] ^ b[w];
+		}
+		clearPadding(result, count);
+	}
+
+	/** Stores a AND NOT b in result; result may be one of the inputs. */
+	public static void andNot(final int[] a, final int[] b, final int[] result,
+		final int count)
+	{
+		final int n = wordCount(count);
+		for (int w = 0; w < n; w++) {
+			result[w] = a[w] & ~b[w];
+		}
+		clearPadding(result, count);
+	}
+
+	/** Stores NOT a in result; result may be the input. */
+	public static void not(final int[] a, final int[] result, final int count) {
+		final int n = wordCount(count);
+		for (int w = 0; w < n; w++) {
+			result[w] = ~a[w];
+		}
+		clearPadding(result, count);
+	}
+
+	// -- 12-bit methods --
+
+	/** Unpacks 12-bit pixels into the given buffer. */
+	public static void unpack12Bit(final int[] words, final short[] values,
+		final int count)
+	{
+		long bit = 0;
+		for (int i = 0; i < count; i++, bit += 12) {
+			final int w = (int) (bit / WORD_SIZE);
+			final int shift = (int) (bit % WORD_SIZE);
+			int value = words[w] >>> shift;
+			if (shift > WORD_SIZE - 12) {
+				// pixel straddles two words
+				value |= words[w + 1] << (WORD_SIZE - shift);
+			}
+			values[i] = (short) (value & MASK_12_BIT);
+		}
+	}
+
+	/**
+	 * Packs the given buffer into 12-bit pixels, keeping the low 12 bits of each
+	 * value. Unused bits of the last word are cleared.
+	 */
+	public static void pack12Bit(final short[] values, final int[] words,
+		final int count)
+	{
+		Arrays.fill(words, 0, wordCount(12L * count), 0);
+		long bit = 0;
+		for (int i = 0; i < count; i++, bit += 12) {
+			final int w = (int) (bit / WORD_SIZE);
+			final int shift = (int) (bit % WORD_SIZE);
+			final int value = values[i] & MASK_12_BIT;
+			words[w] |= value << shift;
+			if (shift > WORD_SIZE - 12) {
+				// pixel straddles two words
+				words[w + 1] |= value >>> (WORD_SIZE - shift);
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Gets the mask of bits in use within the last word. */
+	private static int lastWordMask(final int count) {
+		final int bits = count % WORD_SIZE;
+		return bits == 0 ? -1 : (1 << bits) - 1;
+	}
+
+	/** Clears the unused bits of the last word. */
+	private static void clearPadding(final int[] words, final int count) {
+		final int n = wordCount(count);
+		if (n > 0) words[n - 1] &= lastWordMask(count);
+	}
+
+}
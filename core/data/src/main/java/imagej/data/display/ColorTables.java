@@ -102,6 +102,26 @@ public static boolean isGrayColorTable(final ColorTable table) {
 		return true;
 	}
 
+	/**
+	 * Packs the entries of a color table into ARGB ints, as returned by
+	 * {@link ColorTable#lookupARGB}. Returns null for tables with fewer than
+	 * three components.
+	 */
+	public static int[] toARGB(final ColorTable8 table) {
+		final byte[][] values = table.getValues();
+		if (values.length < 3) return null;
+		final int length = table.getLength();
+		final int[] argb = new int[length];
+		for (int i = 0; i < length; i++) {
+			final int a = values.length > 3 ? values[3][i] & 0xff : 0xff;
+			final int r = values[0][i] & 0xff;
+			final int g = values[1][i] & 0xff;
+			final int b = values[2][i] & 0xff;
+			argb[i] = (a << 24) | (r << 16) | (g << 8) | b;
+		}
+		return argb;
+	}
+
 	// -- Helper methods --
 
 	private static ColorTable8 fire() {
@@ -39,6 +39,7 @@
 import imagej.data.ChannelCollection;
 import imagej.data.Data;
 import imagej.data.Dataset;
+import imagej.data.PackedPlanes;
 import imagej.data.Position;
 import imagej.data.display.event.DataViewUpdatedEvent;
 import imagej.data.display.event.LutsChangedEvent;
@@ -155,13 +156,20 @@ public void autoscale(final int c) {
 		double max = imgPlus.getChannelMaximum(c);
 		if (Double.isNaN(min) || Double.isNaN(max)) {
 			// not provided in metadata, so calculate the min/max
-			final RandomAccessibleInterval<RealType> interval =
-				channelData(getData(), c);
-			final ComputeMinMax<? extends RealType<?>> cmm =
-				new ComputeMinMax(interval);
-			cmm.process();
-			min = cmm.getMin().getRealDouble();
-			max = cmm.getMax().getRealDouble();
+			final double[] packedRange = packedChannelRange(getData(), c);
+			if (packedRange != null) {
+				min = packedRange[0];
+				max = packedRange[1];
+			}
+			else {
+				final RandomAccessibleInterval<RealType> interval =
+					channelData(getData(), c);
+				final ComputeMinMax<? extends RealType<?>> cmm =
+					new ComputeMinMax(interval);
+				cmm.process();
+				min = cmm.getMin().getRealDouble();
+				max = cmm.getMax().getRealDouble();
+			}
 			// cache min/max in metadata for next time
 			imgPlus.setChannelMinimum(c, min);
 			imgPlus.setChannelMaximum(c, max);
@@ -441,7 +449,7 @@ private void initializeView(final boolean composite) {
 		for (int c = 0; c < channelCount; c++) {
 			autoscale(c);
 			final RealLUTConverter converter =
-				new RealLUTConverter(getData().getImgPlus().getChannelMinimum(c),
+				new PackedLUTConverter(getData().getImgPlus().getChannelMinimum(c),
 					getData().getImgPlus().getChannelMaximum(c), null);
 			converters.add(converter);
 		}
@@ -501,4 +509,51 @@ private RandomAccessibleInterval<RealType> channelData(final Dataset d,
 			mn, mx);
 	}
 
+	/**
+	 * Computes the min/max of a channel of packed 1-bit or 12-bit data a whole
+	 * plane at a time, counting set bits a word at a time for 1-bit data.
+	 * Returns null if the data is not stored in packed planes.
+	 */
+	private double[] packedChannelRange(final Dataset d, final int c) {
+		final int bits = d.getPackedBits();
+		if (bits == 0) return null;
+		if (!(d.getPlaneForReading(0, false) instanceof int[])) return null;
+		final long[] dims = d.getDims();
+		final int chIndex = d.getAxisIndex(Axes.CHANNEL);
+		if (dims.length < 2 || chIndex == 0 || chIndex == 1) return null;
+		final int planeSize = (int) (dims[0] * dims[1]);
+		if (planeSize == 0) return null;
+		long planeCount = 1;
+		long chStride = 1;
+		for (int i = 2; i < dims.length; i++) {
+			if (i == chIndex) chStride = planeCount;
+			planeCount *= dims[i];
+		}
+		final short[] values = bits == 12 ? new short[planeSize] : null;
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (long p = 0; p < planeCount; p++) {
+			if (chIndex >= 0 && (p / chStride) % dims[chIndex] != c) continue;
+			if (bits == 1) {
+				final int[] words = (int[]) d.getPlaneForReading((int) p, false);
+				final long ones = PackedPlanes.countBits(words, planeSize);
+				if (ones < planeSize) min = 0;
+				else if (min > 1) min = 1;
+				if (ones > 0) max = 1;
+				else if (max < 0) max = 0;
+				if (min == 0 && max == 1) break; // full range already found
+			}
+			else {
+				d.unpackPlane((int) p, values);
+				for (int i = 0; i < planeSize; i++) {
+					final int value = values[i];
+					if (value < min) min = value;
+					if (value > max) max = value;
+				}
+			}
+		}
+		if (min > max) return null;
+		return new double[] { min, max };
+	}
+
 }
@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import net.imglib2.Binning;
+import net.imglib2.display.ColorTable;
+import net.imglib2.display.ColorTable8;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * A {@link RealLUTConverter} that packs its 8-bit color table into ARGB ints
+ * whenever the table is set, so that converting a value is a single array
+ * lookup rather than a lookup and packing of each color component.
+ * 
+ * @author agent
+ */
+public class PackedLUTConverter<R extends RealType<R>> extends
+	RealLUTConverter<R>
+{
+
+	/** The packed color table, or null if the table cannot be packed. */
+	private int[] argb;
+
+	public PackedLUTConverter(final double min, final double max,
+		final ColorTable lut)
+	{
+		super(min, max, lut);
+		pack(lut);
+	}
+
+	// -- RealLUTConverter methods --
+
+	@Override
+	public void setLUT(final ColorTable lut) {
+		super.setLUT(lut);
+		pack(lut);
+	}
+
+	// -- Converter methods --
+
+	@Override
+	public void convert(final R input, final ARGBType output) {
+		final int[] table = argb;
+		if (table == null) {
+			super.convert(input, output);
+			return;
+		}
+		final int bin =
+			Binning.valueToBin(table.length, getMin(), getMax(), input
+				.getRealDouble());
+		output.set(table[bin]);
+	}
+
+	// -- Helper methods --
+
+	private void pack(final ColorTable lut) {
+		argb = lut instanceof ColorTable8 ? ColorTables.toARGB((ColorTable8) lut)
+			: null;
+	}
+
+}
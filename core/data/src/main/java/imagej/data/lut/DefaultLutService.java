@@ -49,6 +49,8 @@
 import imagej.service.AbstractService;
 import imagej.service.Service;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
@@ -58,7 +60,9 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import net.imglib2.display.ColorTable;
 import net.imglib2.display.ColorTable8;
@@ -73,7 +77,8 @@
 
 /**
  * The DefaultLutService loads {@link ColorTable}s from files (hosted locally or
- * externally).
+ * externally). The most recently used tables are cached, so applying a table
+ * again does not reread its file.
  * 
  * @author Barry DeZonia
  * @author Wayne Rasband
@@ -89,6 +94,25 @@ public class DefaultLutService extends AbstractService implements LutService {
 	@Parameter
 	private ModuleService moduleService;
 
+	// -- constants --
+
+	/** Maximum number of color tables kept in the cache. */
+	private static final int CACHE_SIZE = 32;
+
+	// -- instance variables --
+
+	/** Recently loaded color tables, keyed on URL string, in LRU order. */
+	private final Map<String, ColorTable> cache =
+		new LinkedHashMap<String, ColorTable>(CACHE_SIZE, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(
+				final Map.Entry<String, ColorTable> eldest)
+			{
+				return size() > CACHE_SIZE;
+			}
+		};
+
 	// -- LutService methods --
 
 	/**
@@ -116,27 +140,19 @@ public ColorTable loadLut(String urlString) {
 	 */
 	@Override
 	public ColorTable loadLut(URL url) {
-		Tuple2<Integer, ColorTable> result = new Tuple2<Integer, ColorTable>(0, null);
-		try {
-			int length = determineByteCount(url);
-			if (length > 768) {
-				// attempt to read NIH Image LUT
-				result = openNihImageBinaryLut(url);
-			}
-			if (result.get1() == 0 && (length == 0 || length == 768 || length == 970)) {
-				// otherwise read raw LUT
-				result = openLegacyImageJBinaryLut(url);
-			}
-			if (result.get1() == 0 && length > 768) {
-				result = openLegacyImageJTextLut(url);
-			}
-			if (result.get1() == 0) {
-				result = openModernImageJLut(url);
+		// NB: URL keys would compare by resolving host names
+		final String key = url.toString();
+		synchronized (cache) {
+			final ColorTable cached = cache.get(key);
+			if (cached != null) return cached;
+		}
+		final ColorTable colorTable = readLut(url);
+		if (colorTable != null) {
+			synchronized (cache) {
+				cache.put(key, colorTable);
 			}
-		}		catch (IOException e) {
-			logService.error(e.getMessage());
 		}
-		return result.get2();
+		return colorTable;
 	}
 
 	/**
@@ -214,16 +230,45 @@ private String tableName(final String filename) {
 
 	// -- private lut loading helpers --
 
-	private int determineByteCount(URL url) {
+	private ColorTable readLut(URL url) {
+		Tuple2<Integer, ColorTable> result = new Tuple2<Integer, ColorTable>(0, null);
 		try {
-			InputStream stream = url.openStream();
-			int size = 0;
-			while (stream.read() != -1)
-				size++;
-			return size;
+			byte[] bytes = readBytes(url);
+			int length = bytes.length;
+			if (length > 768) {
+				// attempt to read NIH Image LUT
+				result = openNihImageBinaryLut(bytes);
+			}
+			if (result.get1() == 0 && (length == 0 || length == 768 || length == 970)) {
+				// otherwise read raw LUT
+				result = openLegacyImageJBinaryLut(bytes);
+			}
+			if (result.get1() == 0 && length > 768) {
+				result = openLegacyImageJTextLut(url);
+			}
+			if (result.get1() == 0) {
+				result = openModernImageJLut(url);
+			}
 		}
 		catch (IOException e) {
-			return 0;
+			logService.error(e.getMessage());
+		}
+		return result.get2();
+	}
+
+	/** Reads the whole contents of the given url in one pass. */
+	private byte[] readBytes(URL url) throws IOException {
+		InputStream stream = url.openStream();
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = stream.read(buffer)) != -1)
+				out.write(buffer, 0, n);
+			return out.toByteArray();
+		}
+		finally {
+			stream.close();
 		}
 	}
 
@@ -240,29 +285,30 @@ private Tuple2<Integer, ColorTable> openModernImageJLut(URL url)
 
 	// note: adapted from IJ1 LutLoader class
 
-	private Tuple2<Integer, ColorTable> openNihImageBinaryLut(URL url)
+	private Tuple2<Integer, ColorTable> openNihImageBinaryLut(byte[] bytes)
 		throws IOException
 	{
-		return openOldBinaryLut(false, url);
+		return openOldBinaryLut(false, bytes);
 	}
 
-	private Tuple2<Integer, ColorTable> openLegacyImageJBinaryLut(URL url)
+	private Tuple2<Integer, ColorTable> openLegacyImageJBinaryLut(byte[] bytes)
 		throws IOException
 	{
-		return openOldBinaryLut(true, url);
+		return openOldBinaryLut(true, bytes);
 	}
 
 	private Tuple2<Integer, ColorTable> openLegacyImageJTextLut(URL url)
 		throws IOException
 	{
+		Tuple2<Integer, ColorTable> failure = new Tuple2<Integer, ColorTable>(0, null);
 		ResultsTable table = new TableLoader().valuesFromTextFile(url);
-		if (table == null) return null;
+		if (table == null) return failure;
 		byte[] reds = new byte[256];
 		byte[] greens = new byte[256];
 		byte[] blues = new byte[256];
 		int cols = table.getColumnCount();
 		int rows = table.getRowCount();
-		if (cols < 3 || cols > 4 || rows < 256 || rows > 258) return null;
+		if (cols < 3 || cols > 4 || rows < 256 || rows > 258) return failure;
 		int x = cols == 4 ? 1 : 0;
 		int y = rows > 256 ? 1 : 0;
 		for (int r = 0; r < 256; r++) {
@@ -274,11 +320,10 @@ private Tuple2<Integer, ColorTable> openLegacyImageJTextLut(URL url)
 		return new Tuple2<Integer, ColorTable>(256, colorTable);
 	}
 
-	private Tuple2<Integer, ColorTable> openOldBinaryLut(boolean raw, URL url)
-		throws IOException
+	private Tuple2<Integer, ColorTable> openOldBinaryLut(boolean raw,
+		byte[] bytes) throws IOException
 	{
-		InputStream is = url.openStream();
-		DataInputStream f = new DataInputStream(is);
+		DataInputStream f = new DataInputStream(new ByteArrayInputStream(bytes));
 		int nColors = 256;
 		if (!raw) {
 			// attempt to read 32 byte NIH Image LUT header
@@ -36,17 +36,29 @@
 package imagej.data.measure;
 
 import imagej.data.Dataset;
+import imagej.data.table.DefaultResultsTable;
+import imagej.data.table.ResultsTable;
+import imagej.plugin.Parameter;
 import imagej.plugin.Plugin;
 import imagej.service.AbstractService;
 import imagej.service.Service;
+import imagej.thread.ThreadService;
+import imagej.thread.ThreadUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
+import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.ops.function.Function;
 import net.imglib2.ops.function.real.RealImageFunction;
 import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
 
 // TODO - this service and all related classes do not have to be in the
 // imagej.data package (ij-data subproject). There is only the one reliance on
@@ -65,6 +77,9 @@ public class DefaultMeasurementService extends AbstractService implements
 	MeasurementService
 {
 
+	@Parameter
+	private ThreadService threadService;
+
 	// -- MeasurementService methods --
 
 	/**
@@ -104,6 +119,76 @@ public <T> void measure(List<Function<PointSet, T>> funcs, PointSet region,
 		measure(group, region, set);
 	}
 
+	@Override
+	public ResultsTable measureRegions(
+		final List<Function<PointSet, DoubleType>> funcs,
+		final List<String> headers, final List<PointSet> regions)
+	{
+		if (headers != null && headers.size() != funcs.size()) {
+			throw new IllegalArgumentException(
+				"measureRegions(): number of headers must equal number of functions");
+		}
+		final ResultsTable table =
+			new DefaultResultsTable(funcs.size(), regions.size());
+		if (headers != null) {
+			for (int c = 0; c < headers.size(); c++) {
+				table.setColumnHeader(c, headers.get(c));
+			}
+		}
+		final DoubleType output = new DoubleType();
+		for (int r = 0; r < regions.size(); r++) {
+			final PointSet region = regions.get(r);
+			for (int c = 0; c < funcs.size(); c++) {
+				funcs.get(c).compute(region, output);
+				table.setValue(c, r, output.getRealDouble());
+			}
+		}
+		return table;
+	}
+
+	@Override
+	public LabelStatistics measureLabels(final Img<? extends RealType<?>> img,
+		final Img<? extends IntegerType<?>> labels, final int threads)
+	{
+		final long[] dims = new long[img.numDimensions()];
+		img.dimensions(dims);
+		final long[] labelDims = new long[labels.numDimensions()];
+		labels.dimensions(labelDims);
+		if (!Arrays.equals(dims, labelDims)) {
+			throw new IllegalArgumentException(
+				"measureLabels(): image and label dimensions must match");
+		}
+
+		long planeCount = 1;
+		for (int d = 2; d < dims.length; d++) {
+			planeCount *= dims[d];
+		}
+		final int taskCount = (int) Math.max(1, Math.min(threads, planeCount));
+		if (taskCount == 1 || threadService == null) {
+			return measurePlanes(img, labels, dims, 0, planeCount);
+		}
+
+		// split the planes evenly across the tasks
+		final List<Future<LabelStatistics>> futures =
+			new ArrayList<Future<LabelStatistics>>();
+		for (int t = 0; t < taskCount; t++) {
+			final long first = planeCount * t / taskCount;
+			final long last = planeCount * (t + 1) / taskCount;
+			futures.add(threadService.run(new Callable<LabelStatistics>() {
+
+				@Override
+				public LabelStatistics call() {
+					return measurePlanes(img, labels, dims, first, last);
+				}
+			}));
+		}
+		final LabelStatistics result = new LabelStatistics();
+		for (final LabelStatistics partial : ThreadUtils.getAll(futures)) {
+			result.merge(partial);
+		}
+		return result;
+	}
+
 	/**
 	 * Creates a {@link RealImageFunction} from an {@link Img} and a given output
 	 * type. This is a convenience constructor. RealImageFunctions give read
@@ -139,4 +224,49 @@ public <T extends RealType<T>> RealImageFunction<?, T> imgFunction(
 		return imgFunction(ds.getImgPlus(), outputType);
 	}
 
+	// -- Helper methods --
+
+	/**
+	 * Accumulates the statistics of the given range of planes, walking each row
+	 * of the data and label images in lockstep.
+	 */
+	private LabelStatistics measurePlanes(final Img<? extends RealType<?>> img,
+		final Img<? extends IntegerType<?>> labels, final long[] dims,
+		final long firstPlane, final long lastPlane)
+	{
+		final LabelStatistics stats = new LabelStatistics();
+		final RandomAccess<? extends RealType<?>> dataAccess = img.randomAccess();
+		final RandomAccess<? extends IntegerType<?>> labelAccess =
+			labels.randomAccess();
+		final long width = dims.length > 0 ? dims[0] : 1;
+		final long height = dims.length > 1 ? dims[1] : 1;
+		final long[] pos = new long[dims.length];
+		for (long p = firstPlane; p < lastPlane; p++) {
+			// position the accessors at the start of the plane
+			long index = p;
+			for (int d = 2; d < dims.length; d++) {
+				pos[d] = index % dims[d];
+				index /= dims[d];
+			}
+			for (long y = 0; y < height; y++) {
+				if (dims.length > 1) pos[1] = y;
+				if (dims.length > 0) pos[0] = 0;
+				dataAccess.setPosition(pos);
+				labelAccess.setPosition(pos);
+				for (long x = 0; x < width; x++) {
+					final long label = labelAccess.get().getIntegerLong();
+					if (label < 0 || label > Integer.MAX_VALUE - 1) {
+						throw new IllegalArgumentException("Invalid label: " + label);
+					}
+					stats.add((int) label, dataAccess.get().getRealDouble());
+					if (dims.length > 0) {
+						dataAccess.fwd(0);
+						labelAccess.fwd(0);
+					}
+				}
+			}
+		}
+		return stats;
+	}
+
 }
@@ -0,0 +1,276 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import imagej.data.table.DefaultResultsTable;
+import imagej.data.table.ResultsTable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Accumulates basic statistics for many labeled regions at once.
+ * <p>
+ * Regions are identified by nonnegative integer labels, as found in a label
+ * image. Values are added one at a time via {@link #add(int, double)}, so that
+ * all regions of an image can be measured in a single sweep over its samples.
+ * Statistics gathered separately (e.g., by different threads over different
+ * planes) can be combined with {@link #merge(LabelStatistics)}.
+ * </p>
+ * <p>
+ * Variances are accumulated with Welford's method, and combined with the
+ * pairwise formula of Chan et al., so that they stay accurate for values with
+ * a large offset and a small spread. Regions with labels below
+ * {@link #DENSE_LABELS} are looked up directly by label; larger labels are
+ * kept in a sorted map, so that a few huge labels do not cost memory
+ * proportional to their value.
+ * </p>
+ * 
+ * @author agent
+ */
+public class LabelStatistics {
+
+	// -- constants --
+
+	/** Column headers of the table produced by {@link #toTable()}. */
+	public static final String[] HEADERS = { "Label", "Count", "Sum", "Mean",
+		"StdDev", "Min", "Max" };
+
+	/** Number of labels whose regions are indexed directly by label. */
+	public static final int DENSE_LABELS = 1 << 20;
+
+	// -- instance variables --
+
+	/** Regions with labels below {@link #DENSE_LABELS}, indexed by label. */
+	private Region[] dense = new Region[16];
+
+	/** Regions with labels of {@link #DENSE_LABELS} or more. */
+	private final Map<Integer, Region> sparse = new TreeMap<Integer, Region>();
+
+	// -- LabelStatistics methods --
+
+	/**
+	 * Records a sample value belonging to the region with the given label.
+	 * 
+	 * @throws IllegalArgumentException if the label is negative
+	 */
+	public void add(final int label, final double value) {
+		if (label < 0) {
+			throw new IllegalArgumentException("Invalid label: " + label);
+		}
+		region(label).add(value);
+	}
+
+	/** Adds all values recorded by another instance into this one. */
+	public void merge(final LabelStatistics other) {
+		for (int label = 0; label < other.dense.length; label++) {
+			final Region region = other.dense[label];
+			if (region != null) region(label).merge(region);
+		}
+		for (final Map.Entry<Integer, Region> entry : other.sparse.entrySet()) {
+			region(entry.getKey()).merge(entry.getValue());
+		}
+	}
+
+	/**
+	 * Returns the number of values recorded for the given label; this is 0 for
+	 * negative labels, which never have any.
+	 */
+	public long getCount(final int label) {
+		final Region region = find(label);
+		return region == null ? 0 : region.count;
+	}
+
+	/** Returns the sum of the values recorded for the given label. */
+	public double getSum(final int label) {
+		final Region region = find(label);
+		return region == null ? 0 : region.sum;
+	}
+
+	/** Returns the mean of the values recorded for the given label. */
+	public double getMean(final int label) {
+		final Region region = find(label);
+		return region == null ? 0 : region.sum / region.count;
+	}
+
+	/**
+	 * Returns the (unbiased) estimate of the standard deviation of the values
+	 * recorded for the given label, as {@link BasicStats#getSn1()} does.
+	 */
+	public double getStdDev(final int label) {
+		final Region region = find(label);
+		if (region == null || region.count <= 1) return 0;
+		final double s2n1 = region.m2 / (region.count - 1);
+		return s2n1 <= 0 ? 0 : Math.sqrt(s2n1);
+	}
+
+	/** Returns the minimum value recorded for the given label. */
+	public double getMin(final int label) {
+		final Region region = find(label);
+		return region == null ? 0 : region.min;
+	}
+
+	/** Returns the maximum value recorded for the given label. */
+	public double getMax(final int label) {
+		final Region region = find(label);
+		return region == null ? 0 : region.max;
+	}
+
+	/** Returns the number of labels with at least one recorded value. */
+	public int getRegionCount() {
+		int regions = sparse.size();
+		for (final Region region : dense) {
+			if (region != null) regions++;
+		}
+		return regions;
+	}
+
+	/**
+	 * Creates a {@link ResultsTable} with one row per region (in increasing
+	 * label order) and the columns listed in {@link #HEADERS}.
+	 * 
+	 * @param includeZero Whether to include label 0, which usually denotes the
+	 *          background.
+	 */
+	public ResultsTable toTable(final boolean includeZero) {
+		int rows = getRegionCount();
+		final boolean skipZero = !includeZero && getCount(0) > 0;
+		if (skipZero) rows--;
+		final ResultsTable table =
+			new DefaultResultsTable(HEADERS.length, rows);
+		for (int c = 0; c < HEADERS.length; c++) {
+			table.setColumnHeader(c, HEADERS[c]);
+		}
+		int row = 0;
+		for (int label = includeZero ? 0 : 1; label < dense.length; label++) {
+			if (dense[label] == null) continue;
+			setRow(table, row++, label);
+		}
+		for (final int label : sparse.keySet()) {
+			setRow(table, row++, label);
+		}
+		return table;
+	}
+
+	/** Creates a table of all regions, excluding the background label 0. */
+	public ResultsTable toTable() {
+		return toTable(false);
+	}
+
+	// -- private helpers --
+
+	/** Gets the region with the given label, or null if it has no values. */
+	private Region find(final int label) {
+		if (label < 0) return null;
+		if (label < dense.length) return dense[label];
+		return label < DENSE_LABELS ? null : sparse.get(label);
+	}
+
+	/** Gets the region with the given label, creating it if needed. */
+	private Region region(final int label) {
+		if (label >= DENSE_LABELS) {
+			Region region = sparse.get(label);
+			if (region == null) {
+				region = new Region();
+				sparse.put(label, region);
+			}
+			return region;
+		}
+		if (label >= dense.length) {
+			int length = dense.length;
+			while (length <= label)
+				length *= 2;
+			dense = Arrays.copyOf(dense, Math.min(length, DENSE_LABELS));
+		}
+		Region region = dense[label];
+		if (region == null) {
+			region = new Region();
+			dense[label] = region;
+		}
+		return region;
+	}
+
+	private void setRow(final ResultsTable table, final int row,
+		final int label)
+	{
+		table.setValue(0, row, label);
+		table.setValue(1, row, getCount(label));
+		table.setValue(2, row, getSum(label));
+		table.setValue(3, row, getMean(label));
+		table.setValue(4, row, getStdDev(label));
+		table.setValue(5, row, getMin(label));
+		table.setValue(6, row, getMax(label));
+	}
+
+	// -- Helper classes --
+
+	/** Running statistics of one region. */
+	private static class Region {
+
+		private long count;
+		private double sum;
+		private double mean;
+		/** Sum of squared differences from the mean. */
+		private double m2;
+		private double min = Double.POSITIVE_INFINITY;
+		private double max = Double.NEGATIVE_INFINITY;
+
+		public void add(final double value) {
+			count++;
+			sum += value;
+			final double delta = value - mean;
+			mean += delta / count;
+			m2 += delta * (value - mean);
+			if (value < min) min = value;
+			if (value > max) max = value;
+		}
+
+		public void merge(final Region other) {
+			if (other.count == 0) return;
+			final long n = count + other.count;
+			final double delta = other.mean - mean;
+			m2 += other.m2 + delta * delta * ((double) count * other.count / n);
+			mean += delta * other.count / n;
+			count = n;
+			sum += other.sum;
+			if (other.min < min) min = other.min;
+			if (other.max > max) max = other.max;
+		}
+
+	}
+
+}
@@ -36,6 +36,7 @@
 package imagej.data.measure;
 
 import imagej.data.Dataset;
+import imagej.data.table.ResultsTable;
 import imagej.service.Service;
 
 import java.util.List;
@@ -44,7 +45,9 @@
 import net.imglib2.ops.function.Function;
 import net.imglib2.ops.function.real.RealImageFunction;
 import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
 
 // TODO - this service and all related classes do not have to be in the
 // imagej.data package (ij-data subproject). There is only the one reliance on
@@ -81,6 +84,34 @@ public interface MeasurementService extends Service {
 	<T> void measure(List<Function<PointSet, T>> funcs, PointSet region,
 		List<T> outputs);
 
+	/**
+	 * Measures the values of a list of {@link Function}s over each of the given
+	 * regions, writing one row per region into a new {@link ResultsTable}. The
+	 * same function objects and output variables are reused for every region.
+	 * 
+	 * @param funcs The functions to measure; one table column each.
+	 * @param headers The column headers, one per function (may be null).
+	 * @param regions The regions to measure; one table row each.
+	 * @return A table with the measured values.
+	 */
+	ResultsTable measureRegions(List<Function<PointSet, DoubleType>> funcs,
+		List<String> headers, List<PointSet> regions);
+
+	/**
+	 * Measures basic statistics of every labeled region of an image, in a single
+	 * sweep over the data. Each pixel of the label image assigns the pixel at the
+	 * same position of the data image to the region of that (nonnegative) label.
+	 * 
+	 * @param img The data to measure.
+	 * @param labels The label image, with the same dimensions as the data.
+	 * @param threads The number of threads across which to split the planes of
+	 *          the images.
+	 * @return The statistics of each labeled region.
+	 * @see LabelStatistics#toTable()
+	 */
+	LabelStatistics measureLabels(Img<? extends RealType<?>> img,
+		Img<? extends IntegerType<?>> labels, int threads);
+
 	/**
 	 * Creates a {@link RealImageFunction} from an {@link Img} and a given output
 	 * type. This is a convenience constructor. RealImageFunctions give read
@@ -35,9 +35,11 @@
 
 package imagej.data.table;
 
+import imagej.util.PrimitiveArray;
 import imagej.util.SizableArrayList;
 
 import java.util.ArrayList;
+import java.util.Collections;
 
 /**
  * Abstract superclass for {@link Table} implementations.
@@ -232,16 +234,12 @@ public void appendRow(final String header) {
 
 	@Override
 	public void appendRows(final int count) {
-		for (int c = 0; c < count; c++) {
-			appendRow();
-		}
+		insertRows(getRowCount(), count);
 	}
 
 	@Override
 	public void appendRows(final String... headers) {
-		for (final String header : headers) {
-			appendRow(header);
-		}
+		insertRows(getRowCount(), headers);
 	}
 
 	@Override
@@ -258,38 +256,18 @@ public void insertRow(final int row, final String header) {
 	@Override
 	public void insertRows(final int row, final int count) {
 		checkRow(row, 0);
-		final int oldRowCount = getRowCount();
-		final int newRowCount = oldRowCount + count;
-
-		// expand rows list
-		setRowCount(newRowCount);
-
-		// copy data after the inserted range into the new position
-		for (int oldR = row; oldR < oldRowCount; oldR++) {
-			final int newR = oldR + count;
-			for (int c = 0; c < getColumnCount(); c++) {
-				set(c, newR, get(c, oldR));
-			}
-		}
-
-		// copy row headers after the inserted range into the new position
-		// NB: This loop goes backwards for performance.
-		// It ensures that rowHeaders is resized at most once.
-		for (int oldR = oldRowCount - 1; oldR >= row; oldR--) {
-			final int newR = oldR + count;
-			setRowHeader(newR, getRowHeader(oldR));
-		}
+		checkRowCount(count);
+		if (count == 0) return;
 
-		// insert new blank row data
-		for (int r = 0; r < count; r++) {
-			for (int c = 0; c < getColumnCount(); c++) {
-				set(c, row + r, null);
-			}
+		// shift the data of each column as a block
+		for (int c = 0; c < getColumnCount(); c++) {
+			insertCells(get(c), row, count);
 		}
+		rowCount += count;
 
-		// insert new blank row headers
-		for (int r = 0; r < count; r++) {
-			setRowHeader(row + r, null);
+		// shift row headers after the inserted range into the new position
+		if (rowHeaders.size() > row) {
+			rowHeaders.addAll(row, Collections.<String> nCopies(count, null));
 		}
 	}
 
@@ -311,7 +289,7 @@ public void removeRow(final int row) {
 
 	@Override
 	public void removeRow(final String header) {
-		final int row = getColumnIndex(header);
+		final int row = getRowIndex(header);
 		if (row < 0) {
 			throw new IndexOutOfBoundsException("No such row: " + header);
 		}
@@ -321,19 +299,19 @@ public void removeRow(final String header) {
 	@Override
 	public void removeRows(final int row, final int count) {
 		checkRow(row, count);
-		final int oldRowCount = getRowCount();
-		final int newRowCount = oldRowCount - count;
-		// copy data after the deleted range into the new position
-		for (int oldR = row; oldR < oldRowCount; oldR++) {
-			final int newR = oldR - count;
-			setRowHeader(newR, getRowHeader(oldR));
-			for (int c = 0; c < getColumnCount(); c++) {
-				set(c, newR, get(c, oldR));
-			}
+		if (count == 0) return;
+
+		// close the gap in the data of each column as a block
+		for (int c = 0; c < getColumnCount(); c++) {
+			deleteCells(get(c), row, count);
+		}
+		rowCount -= count;
+
+		// close the gap in the row headers, if they extend that far
+		if (rowHeaders.size() > row) {
+			final int end = Math.min(row + count, rowHeaders.size());
+			rowHeaders.subList(row, end).clear();
 		}
-		setRowCount(newRowCount);
-		// trim row headers list, if needed
-		if (rowHeaders.size() > newRowCount) rowHeaders.setSize(newRowCount);
 	}
 
 	@Override
@@ -438,6 +416,29 @@ private void scaleColumns() {
 		}
 	}
 
+	/**
+	 * Inserts blank cells into the given column. Primitive columns are shifted
+	 * with a single array copy, rather than one boxed cell at a time.
+	 */
+	private void insertCells(final C column, final int row, final int count) {
+		if (column instanceof PrimitiveArray) {
+			((PrimitiveArray<?, ?>) column).insert(row, count);
+			// NB: Clear the stale values left behind by the shift.
+			for (int r = row; r < row + count; r++) {
+				column.set(r, null);
+			}
+		}
+		else column.addAll(row, Collections.<T> nCopies(count, null));
+	}
+
+	/** Deletes a range of cells from the given column. */
+	private void deleteCells(final C column, final int row, final int count) {
+		if (column instanceof PrimitiveArray) {
+			((PrimitiveArray<?, ?>) column).delete(row, count);
+		}
+		else column.subList(row, row + count).clear();
+	}
+
 	/** Throws an exception if the given row or column is out of bounds. */
 	private void check(final int col, final int row) {
 		checkCol(col, 1);
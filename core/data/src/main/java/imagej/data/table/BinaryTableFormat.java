@@ -0,0 +1,398 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.table;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and writes {@link ResultsTable}s in a compact binary columnar format.
+ * <p>
+ * Each column is stored as a sequence of chunks of up to {@link #CHUNK_ROWS}
+ * values. A chunk is deflate-compressed when that makes it noticeably smaller
+ * (as it does for integral or repetitive measurements), and stored raw
+ * otherwise. A footer at the end of the file indexes the chunks of every
+ * column, so that a single column can be read with {@link #loadColumn} without
+ * touching the others, and raw chunks are copied straight out of memory-mapped
+ * file regions.
+ * </p>
+ * <p>
+ * Layout: magic, version; column chunks; footer (dimensions, column headers,
+ * chunk index, row headers); footer offset, magic.
+ * </p>
+ * 
+ * @author agent
+ * @see TableLoader
+ */
+public class BinaryTableFormat {
+
+	// -- constants --
+
+	/** Number of values per column chunk. */
+	public static final int CHUNK_ROWS = 65536;
+
+	private static final int MAGIC = 0x494a5254; // "IJRT"
+	private static final int VERSION = 1;
+
+	/** Minimum fraction of space a compressed chunk must save to be kept. */
+	private static final double MIN_SAVINGS = 0.1;
+
+	// -- public interface --
+
+	/**
+	 * Saves the values and headers of a ResultsTable to a binary file.
+	 * 
+	 * @param table The table to save
+	 * @param file The File to write to
+	 * @throws IOException
+	 */
+	public void save(ResultsTable table, File file) throws IOException {
+		final int cols = table.getColumnCount();
+		final int rows = table.getRowCount();
+		final int chunks = (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+
+		final FileOutputStream out = new FileOutputStream(file);
+		try {
+			final FileChannel channel = out.getChannel();
+			final ByteBuffer start = ByteBuffer.allocate(8);
+			start.putInt(MAGIC).putInt(VERSION).flip();
+			writeFully(channel, start);
+
+			final long[][] offsets = new long[cols][chunks];
+			final int[][] lengths = new int[cols][chunks];
+			final boolean[][] compressed = new boolean[cols][chunks];
+			final ByteBuffer raw = ByteBuffer.allocate(CHUNK_ROWS * 8);
+			final byte[] packed = new byte[CHUNK_ROWS * 8];
+			final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try {
+				for (int c = 0; c < cols; c++) {
+					final double[] values = table.get(c).getArray();
+					for (int k = 0; k < chunks; k++) {
+						final int first = k * CHUNK_ROWS;
+						final int count = Math.min(CHUNK_ROWS, rows - first);
+						raw.clear();
+						raw.asDoubleBuffer().put(values, first, count);
+						raw.limit(count * 8);
+
+						final int packedLength =
+							deflate(deflater, raw.array(), count * 8, packed);
+						offsets[c][k] = channel.position();
+						if (packedLength > 0) {
+							compressed[c][k] = true;
+							lengths[c][k] = packedLength;
+							writeFully(channel, ByteBuffer.wrap(packed, 0, packedLength));
+						}
+						else {
+							lengths[c][k] = count * 8;
+							writeFully(channel, raw);
+						}
+					}
+				}
+			}
+			finally {
+				deflater.end();
+			}
+
+			// write the footer
+			final long footerOffset = channel.position();
+			final ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+			final DataOutputStream footer = new DataOutputStream(footerBytes);
+			footer.writeInt(cols);
+			footer.writeInt(rows);
+			footer.writeInt(CHUNK_ROWS);
+			for (int c = 0; c < cols; c++) {
+				writeString(footer, table.getColumnHeader(c));
+				for (int k = 0; k < chunks; k++) {
+					footer.writeLong(offsets[c][k]);
+					footer.writeInt(lengths[c][k]);
+					footer.writeBoolean(compressed[c][k]);
+				}
+			}
+			int rowHeaderCount = 0;
+			for (int r = 0; r < rows; r++) {
+				if (table.getRowHeader(r) != null) rowHeaderCount++;
+			}
+			footer.writeInt(rowHeaderCount);
+			for (int r = 0; r < rows; r++) {
+				final String header = table.getRowHeader(r);
+				if (header == null) continue;
+				footer.writeInt(r);
+				footer.writeUTF(header);
+			}
+			footer.writeLong(footerOffset);
+			footer.writeInt(MAGIC);
+			footer.close();
+			writeFully(channel, ByteBuffer.wrap(footerBytes.toByteArray()));
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Loads a ResultsTable from a binary file.
+	 * 
+	 * @param file The File to read from
+	 * @return A ResultsTable containing the values and headers
+	 * @throws IOException if the file is not a valid binary table
+	 */
+	public ResultsTable load(File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			final Footer footer = readFooter(channel);
+			final ResultsTable table =
+				new DefaultResultsTable(footer.headers.length, footer.rows);
+			for (int c = 0; c < footer.headers.length; c++) {
+				table.setColumnHeader(c, footer.headers[c]);
+				readColumn(channel, footer, c, table.get(c).getArray());
+			}
+			for (int i = 0; i < footer.rowHeaderRows.length; i++) {
+				table.setRowHeader(footer.rowHeaderRows[i], footer.rowHeaders[i]);
+			}
+			return table;
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Loads the values of a single column from a binary file, reading only the
+	 * chunks belonging to that column.
+	 * 
+	 * @param file The File to read from
+	 * @param header The header of the column to read
+	 * @return The column's values, or null if there is no such column
+	 * @throws IOException if the file is not a valid binary table
+	 */
+	public double[] loadColumn(File file, String header) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			final Footer footer = readFooter(channel);
+			for (int c = 0; c < footer.headers.length; c++) {
+				if (header.equals(footer.headers[c])) {
+					final double[] values = new double[footer.rows];
+					readColumn(channel, footer, c, values);
+					return values;
+				}
+			}
+			return null;
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+	// -- private helpers --
+
+	/** The decoded footer of a binary table file. */
+	private static class Footer {
+
+		private int rows;
+		private int chunkRows;
+		private String[] headers;
+		private long[][] offsets;
+		private int[][] lengths;
+		private boolean[][] compressed;
+		private int[] rowHeaderRows;
+		private String[] rowHeaders;
+	}
+
+	private Footer readFooter(final FileChannel channel) throws IOException {
+		final long size = channel.size();
+		if (size < 20) throw new IOException("Not a binary table file");
+		final ByteBuffer start = readBytes(channel, 0, 8);
+		final ByteBuffer end = readBytes(channel, size - 12, 12);
+		final long footerOffset = end.getLong();
+		if (start.getInt() != MAGIC || end.getInt() != MAGIC) {
+			throw new IOException("Not a binary table file");
+		}
+		final int version = start.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported binary table version: " + version);
+		}
+		if (footerOffset < 8 || footerOffset > size - 12) {
+			throw new IOException("Corrupt binary table footer");
+		}
+
+		final ByteBuffer footerBuffer =
+			readBytes(channel, footerOffset, (int) (size - 12 - footerOffset));
+		final DataInputStream in =
+			new DataInputStream(new ByteArrayInputStream(footerBuffer.array()));
+		final Footer footer = new Footer();
+		final int cols = in.readInt();
+		footer.rows = in.readInt();
+		footer.chunkRows = in.readInt();
+		final int chunks = (footer.rows + footer.chunkRows - 1) / footer.chunkRows;
+		footer.headers = new String[cols];
+		footer.offsets = new long[cols][chunks];
+		footer.lengths = new int[cols][chunks];
+		footer.compressed = new boolean[cols][chunks];
+		for (int c = 0; c < cols; c++) {
+			footer.headers[c] = readString(in);
+			for (int k = 0; k < chunks; k++) {
+				footer.offsets[c][k] = in.readLong();
+				footer.lengths[c][k] = in.readInt();
+				footer.compressed[c][k] = in.readBoolean();
+			}
+		}
+		final int rowHeaderCount = in.readInt();
+		footer.rowHeaderRows = new int[rowHeaderCount];
+		footer.rowHeaders = new String[rowHeaderCount];
+		for (int i = 0; i < rowHeaderCount; i++) {
+			footer.rowHeaderRows[i] = in.readInt();
+			footer.rowHeaders[i] = in.readUTF();
+		}
+		return footer;
+	}
+
+	/** Decodes the chunks of the given column into the values array. */
+	private void readColumn(final FileChannel channel, final Footer footer,
+		final int col, final double[] values) throws IOException
+	{
+		final Inflater inflater = new Inflater();
+		try {
+			final int chunks = footer.offsets[col].length;
+			byte[] unpacked = null;
+			for (int k = 0; k < chunks; k++) {
+				final int first = k * footer.chunkRows;
+				final int count = Math.min(footer.chunkRows, footer.rows - first);
+				final ByteBuffer chunk =
+					channel.map(FileChannel.MapMode.READ_ONLY, footer.offsets[col][k],
+						footer.lengths[col][k]);
+				if (footer.compressed[col][k]) {
+					if (unpacked == null) unpacked = new byte[footer.chunkRows * 8];
+					final byte[] packed = new byte[footer.lengths[col][k]];
+					chunk.get(packed);
+					inflate(inflater, packed, unpacked, count * 8);
+					ByteBuffer.wrap(unpacked).asDoubleBuffer().get(values, first, count);
+				}
+				else chunk.asDoubleBuffer().get(values, first, count);
+			}
+		}
+		finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Compresses the given bytes, returning the compressed length, or 0 if
+	 * compression would not save enough space to be worthwhile.
+	 */
+	private int deflate(final Deflater deflater, final byte[] input,
+		final int length, final byte[] output)
+	{
+		deflater.reset();
+		deflater.setInput(input, 0, length);
+		deflater.finish();
+		final int limit = (int) (length * (1 - MIN_SAVINGS));
+		int packedLength = 0;
+		while (!deflater.finished()) {
+			if (packedLength >= limit) return 0;
+			packedLength +=
+				deflater.deflate(output, packedLength, limit - packedLength);
+		}
+		return packedLength;
+	}
+
+	private void inflate(final Inflater inflater, final byte[] input,
+		final byte[] output, final int length) throws IOException
+	{
+		inflater.reset();
+		inflater.setInput(input);
+		try {
+			int unpackedLength = 0;
+			while (unpackedLength < length && !inflater.finished()) {
+				final int n =
+					inflater.inflate(output, unpackedLength, length - unpackedLength);
+				if (n == 0 && inflater.needsInput()) break;
+				unpackedLength += n;
+			}
+			if (unpackedLength != length) {
+				throw new IOException("Corrupt binary table chunk");
+			}
+		}
+		catch (final DataFormatException e) {
+			throw new IOException("Corrupt binary table chunk: " + e.getMessage());
+		}
+	}
+
+	private ByteBuffer readBytes(final FileChannel channel, final long offset,
+		final int length) throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of binary table file");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private void writeFully(final FileChannel channel, final ByteBuffer buffer)
+		throws IOException
+	{
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private void writeString(final DataOutputStream out, final String s)
+		throws IOException
+	{
+		out.writeBoolean(s != null);
+		if (s != null) out.writeUTF(s);
+	}
+
+	private String readString(final DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+}
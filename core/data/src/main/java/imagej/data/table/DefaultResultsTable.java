@@ -72,6 +72,72 @@ public void setValue(final int col, final int row, final double value) {
 		get(col).setValue(row, value);
 	}
 
+	@Override
+	public int appendValues(final double[] values) {
+		final int colCount = getColumnCount();
+		if (colCount == 0 || values.length % colCount != 0) {
+			throw new IllegalArgumentException("Value count " + values.length +
+				" is not a multiple of column count " + colCount);
+		}
+		final int count = values.length / colCount;
+		final int first = getRowCount();
+		setRowCount(first + count);
+		for (int c = 0; c < colCount; c++) {
+			final double[] column = get(c).getArray();
+			for (int r = 0, i = c; r < count; r++, i += colCount) {
+				column[first + r] = values[i];
+			}
+		}
+		return first;
+	}
+
+	@Override
+	public void sort(final int col) {
+		final int rowCount = getRowCount();
+		final double[] keys = get(col).copyArray();
+		final int[] order = new int[rowCount];
+		for (int r = 0; r < rowCount; r++) {
+			order[r] = r;
+		}
+		// NB: NaNs sort last, as with Double.compare.
+		RowSort.sort(order, new RowSort.RowComparator() {
+
+			@Override
+			public int compare(final int r1, final int r2) {
+				return Double.compare(keys[r1], keys[r2]);
+			}
+		});
+		permuteRows(order);
+	}
+
+	@Override
+	public ResultsTable filter(final int col, final double min, final double max)
+	{
+		final double[] keys = get(col).getArray();
+		final int rowCount = getRowCount();
+		int count = 0;
+		final int[] rows = new int[rowCount];
+		for (int r = 0; r < rowCount; r++) {
+			if (keys[r] >= min && keys[r] <= max) rows[count++] = r;
+		}
+		final int colCount = getColumnCount();
+		final DefaultResultsTable result =
+			new DefaultResultsTable(colCount, count);
+		for (int c = 0; c < colCount; c++) {
+			result.setColumnHeader(c, getColumnHeader(c));
+			final double[] src = get(c).getArray();
+			final double[] dest = result.get(c).getArray();
+			for (int i = 0; i < count; i++) {
+				dest[i] = src[rows[i]];
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			final String header = getRowHeader(rows[i]);
+			if (header != null) result.setRowHeader(i, header);
+		}
+		return result;
+	}
+
 	@Override
 	public ImgPlus<DoubleType> img() {
 		final Img<DoubleType> img = new ResultsImg(this);
@@ -90,4 +156,28 @@ protected DoubleColumn createColumn(final String header) {
 		return new DoubleColumn(header);
 	}
 
+	// -- Helper methods --
+
+	/** Rearranges all rows so that new row {@code r} is old row order[r]. */
+	private void permuteRows(final int[] order) {
+		final int rowCount = order.length;
+		for (int c = 0; c < getColumnCount(); c++) {
+			final double[] values = get(c).getArray();
+			final double[] copy = get(c).copyArray();
+			for (int r = 0; r < rowCount; r++) {
+				values[r] = copy[order[r]];
+			}
+		}
+		final String[] headers = new String[rowCount];
+		boolean hasHeaders = false;
+		for (int r = 0; r < rowCount; r++) {
+			headers[r] = getRowHeader(order[r]);
+			if (headers[r] != null) hasHeaders = true;
+		}
+		if (!hasHeaders) return;
+		for (int r = 0; r < rowCount; r++) {
+			setRowHeader(r, headers[r]);
+		}
+	}
+
 }
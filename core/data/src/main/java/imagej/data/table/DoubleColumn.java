@@ -53,6 +53,45 @@ public DoubleColumn(final String header) {
 		this.header = header;
 	}
 
+	// -- DoubleColumn methods --
+
+	/** Gets the sum of the column's values. */
+	public double sum() {
+		final double[] values = getArray();
+		double sum = 0;
+		for (int i = 0; i < size(); i++) {
+			sum += values[i];
+		}
+		return sum;
+	}
+
+	/** Gets the mean of the column's values, or NaN if the column is empty. */
+	public double mean() {
+		return size() == 0 ? Double.NaN : sum() / size();
+	}
+
+	/** Gets the smallest of the column's values, or NaN if it is empty. */
+	public double min() {
+		if (size() == 0) return Double.NaN;
+		final double[] values = getArray();
+		double min = values[0];
+		for (int i = 1; i < size(); i++) {
+			if (values[i] < min) min = values[i];
+		}
+		return min;
+	}
+
+	/** Gets the largest of the column's values, or NaN if it is empty. */
+	public double max() {
+		if (size() == 0) return Double.NaN;
+		final double[] values = getArray();
+		double max = values[0];
+		for (int i = 1; i < size(); i++) {
+			if (values[i] > max) max = values[i];
+		}
+		return max;
+	}
+
 	// -- Column methods --
 
 	@Override
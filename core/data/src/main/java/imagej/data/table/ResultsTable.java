@@ -51,6 +51,29 @@ public interface ResultsTable extends Table<DoubleColumn, Double> {
 	/** Sets the value of the given table cell. */
 	void setValue(int col, int row, double value);
 
+	/**
+	 * Appends a batch of rows to the table, with values given as a flat array in
+	 * row-major order. Each column is grown at most once, and values are stored
+	 * without boxing.
+	 * 
+	 * @param values The values of the new rows; the length must be a multiple of
+	 *          the column count.
+	 * @return The index of the first appended row.
+	 */
+	int appendValues(double[] values);
+
+	/**
+	 * Sorts the rows of the table (including their row headers) into ascending
+	 * order of the values in the given column. The sort is stable.
+	 */
+	void sort(int col);
+
+	/**
+	 * Creates a new table containing only those rows whose value in the given
+	 * column lies within the range [min, max].
+	 */
+	ResultsTable filter(int col, double min, double max);
+
 	/** Wraps the results table in an ImgLib {@link net.imglib2.img.Img}. */
 	ImgPlus<DoubleType> img();
 
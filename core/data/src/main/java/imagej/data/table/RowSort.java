@@ -0,0 +1,86 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+package imagej.data.table;
+
+/**
+ * Stable sorting of table rows by index.
+ * <p>
+ * Rows are sorted through an array of row indices, which is rearranged by a
+ * merge sort, so that equal rows keep their relative order and numeric keys
+ * need not be boxed.
+ * </p>
+ * 
+ * @author agent
+ */
+public final class RowSort {
+
+	private RowSort() {
+		// prevent instantiation of utility class
+	}
+
+	/** Compares two rows of a table, by their indices. */
+	public interface RowComparator {
+
+		int compare(int r1, int r2);
+	}
+
+	/** Stably sorts the given row indices into the comparator's order. */
+	public static void sort(final int[] order, final RowComparator comparator) {
+		mergeSort(order, new int[order.length], 0, order.length, comparator);
+	}
+
+	// -- Helper methods --
+
+	private static void mergeSort(final int[] order, final int[] scratch,
+		final int start, final int end, final RowComparator comparator)
+	{
+		if (end - start < 2) return;
+		final int mid = (start + end) >>> 1;
+		mergeSort(order, scratch, start, mid, comparator);
+		mergeSort(order, scratch, mid, end, comparator);
+		if (comparator.compare(order[mid - 1], order[mid]) <= 0) return;
+		System.arraycopy(order, start, scratch, start, end - start);
+		int i = start, j = mid;
+		for (int k = start; k < end; k++) {
+			if (j >= end ||
+				(i < mid && comparator.compare(scratch[i], scratch[j]) <= 0))
+			{
+				order[k] = scratch[i++];
+			}
+			else order[k] = scratch[j++];
+		}
+	}
+
+}
@@ -40,26 +40,39 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Reader;
-import java.io.StreamTokenizer;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.BitSet;
 
 // note: adapted from Wayne Rasband's IJ1 TextReader class
 
 /**
  * Loads a text file containing comma separated values into a
  * {@link ResultsTable}.
+ * <p>
+ * The file is read in a single streaming pass. Values are separated by commas,
+ * tabs or spaces. Entries enclosed in double quotes (with embedded quotes
+ * doubled) are read verbatim, so headers containing separators survive a round
+ * trip through {@link TableSaver}. If every entry of the first line is
+ * non-numeric or quoted, that line is taken as the column headers. Rows are buffered in small blocks and appended
+ * to the table in bulk, so the only large allocation is the table itself.
+ * </p>
  * 
  * @author Barry DeZonia
  * @author Wayne Rasband
+ * @see TableSaver
  */
 public class TableLoader {
 
-	// -- instance variables --
+	// -- constants --
 
-	private int rows, cols;
+	/**
+	 * Number of cells parsed before they are appended to the table; a block
+	 * holds as many whole rows as fit, and at least one.
+	 */
+	private static final int BLOCK_CELLS = 1 << 16;
 
-	// -- private legacy text file support methods --
+	// -- public interface --
 
 	/**
 	 * Loads the values of a table stored in a text file as a ResultsTable.
@@ -69,32 +82,13 @@ public class TableLoader {
 	 * @throws IOException
 	 */
 	public ResultsTable valuesFromTextFile(URL url) throws IOException {
-		ResultsTable values = null;
-		countRowsAndCols(url);
-		if (rows == 0) return null;
-		values = new DefaultResultsTable(cols, rows);
-		read(url, values);
-		int firstRowNaNCount = 0;
-		for (int i = 0; i < cols; i++) {
-			if (Double.isNaN(values.getValue(i, 0))) firstRowNaNCount++;
+		final InputStream str = url.openStream();
+		try {
+			return read(new BufferedReader(new InputStreamReader(str), 65536));
 		}
-		if (firstRowNaNCount == cols) { // assume first row is header
-			// throw away first row of non-values
-			rows--;
-			ResultsTable oldValues = values;
-			values = new DefaultResultsTable(cols, rows);
-			for (int c = 0; c < cols; c++) {
-				String colHeader = oldValues.getColumnHeader(c);
-				values.setColumnHeader(c, colHeader);
-			}
-			for (int row = 0; row < rows; row++) {
-				for (int col = 0; col < cols; col++) {
-					double val = oldValues.getValue(col, row + 1);
-					values.setValue(col, row, val);
-				}
-			}
+		finally {
+			str.close();
 		}
-		return values;
 	}
 
 	/**
@@ -116,79 +110,122 @@ public ResultsTable valuesFromTextFile(String urlString) throws IOException {
 	 * @throws IOException
 	 */
 	public ResultsTable valuesFromTextFile(File file) throws IOException {
-		return valuesFromTextFile("file://" + file.getAbsolutePath());
+		return valuesFromTextFile(file.toURI().toURL());
 	}
 
 	// -- private helpers -
 
-	private void countRowsAndCols(URL url) throws IOException {
-		InputStream str = url.openStream();
-		Reader r = new BufferedReader(new InputStreamReader(str));
-		StreamTokenizer tok = new StreamTokenizer(r);
-		tok.resetSyntax();
-		tok.wordChars(43, 43);
-		tok.wordChars(45, 127);
-		tok.whitespaceChars(0, 42);
-		tok.whitespaceChars(44, 44);
-		// tok.wordChars(33, 127);
-		// tok.whitespaceChars(0, ' ');
-		tok.whitespaceChars(128, 255);
-		tok.eolIsSignificant(true);
-
-		int words = 0, wordsPrevLine = 0;
-		while (tok.nextToken() != StreamTokenizer.TT_EOF) {
-			switch (tok.ttype) {
-				case StreamTokenizer.TT_EOL:
-					rows++;
-					if (words == 0) rows--; // ignore empty lines
-					if (rows == 1 && words > 0) cols = words;
-					if (rows > 1 && words != 0 && words != wordsPrevLine) {
-						throw new IOException("Line " + rows +
-							" is not the same length as the first line.");
+	private ResultsTable read(BufferedReader in) throws IOException {
+		final ArrayList<String> tokens = new ArrayList<String>();
+		final BitSet quoted = new BitSet();
+		ResultsTable values = null;
+		int cols = 0;
+		int maxRows = 0;
+		double[] block = null;
+		int blockRows = 0;
+		int lineNumber = 0;
+		String line;
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			tokenize(line, tokens, quoted);
+			if (tokens.isEmpty()) continue; // ignore empty lines
+			if (values == null) {
+				// first line: determine the column count and headers
+				cols = tokens.size();
+				values = new DefaultResultsTable(cols, 0);
+				maxRows = Math.max(1, BLOCK_CELLS / cols);
+				block = new double[maxRows * cols];
+				int nanCount = 0;
+				for (int c = 0; c < cols; c++) {
+					final double value =
+						quoted.get(c) ? Double.NaN : parse(tokens.get(c));
+					if (Double.isNaN(value)) {
+						values.setColumnHeader(c, tokens.get(c));
+						nanCount++;
 					}
-					if (words != 0) wordsPrevLine = words;
-					words = 0;
-					break;
-				case StreamTokenizer.TT_WORD:
-					words++;
-					break;
+					block[c] = value;
+				}
+				// if first row is entirely non-numeric, assume it is a header
+				if (nanCount < cols && ++blockRows == maxRows) {
+					values.appendValues(block);
+					blockRows = 0;
+				}
+				continue;
+			}
+			if (tokens.size() != cols) {
+				throw new IOException("Line " + lineNumber +
+					" is not the same length as the first line.");
+			}
+			final int offset = blockRows * cols;
+			for (int c = 0; c < cols; c++) {
+				block[offset + c] = parse(tokens.get(c));
 			}
+			if (++blockRows == maxRows) {
+				values.appendValues(block);
+				blockRows = 0;
+			}
+		}
+		if (values == null) return null;
+		if (blockRows > 0) {
+			final double[] rest = new double[blockRows * cols];
+			System.arraycopy(block, 0, rest, 0, rest.length);
+			values.appendValues(rest);
 		}
-		if (words == cols) rows++; // last line does not end with EOL
+		return values;
 	}
 
-	private void read(URL url, ResultsTable values) throws IOException {
-		InputStream str = url.openStream();
-		Reader r = new BufferedReader(new InputStreamReader(str));
-		StreamTokenizer tok = new StreamTokenizer(r);
-		tok.resetSyntax();
-		tok.wordChars(43, 43);
-		tok.wordChars(45, 127);
-		tok.whitespaceChars(0, 42);
-		tok.whitespaceChars(44, 44);
-		// tok.wordChars(33, 127);
-		// tok.whitespaceChars(0, ' ');
-		tok.whitespaceChars(128, 255);
-		// tok.parseNumbers();
-
-		int row = 0, col = 0;
-		while (tok.nextToken() != StreamTokenizer.TT_EOF) {
-			if (tok.ttype == StreamTokenizer.TT_WORD) {
-				double value;
-				try {
-					value = Double.parseDouble(tok.sval);
-				}
-				catch (NumberFormatException e) {
-					value = Double.NaN;
-					if (row == 0) values.setColumnHeader(col, tok.sval);
-				}
-				values.setValue(col, row, value);
-				col++;
-				if (col == cols) {
-					row++;
-					col = 0;
+	/**
+	 * Splits a line into tokens. As in the original StreamTokenizer-based
+	 * implementation, a token is a maximal run of the characters '+', '-'
+	 * through DEL and those beyond Latin-1 (e.g., Greek or CJK letters);
+	 * everything else (including commas) separates tokens. A double
+	 * quote starts a quoted token which extends to the next unpaired quote; its
+	 * indices are recorded in the given bit set.
+	 */
+	private void tokenize(final String line, final ArrayList<String> tokens,
+		final BitSet quoted)
+	{
+		tokens.clear();
+		quoted.clear();
+		final int length = line.length();
+		int start = -1;
+		for (int i = 0; i < length; i++) {
+			final char ch = line.charAt(i);
+			if (ch == '"' && start < 0) {
+				final StringBuilder sb = new StringBuilder();
+				i++;
+				while (i < length) {
+					final char q = line.charAt(i);
+					if (q == '"') {
+						if (i + 1 < length && line.charAt(i + 1) == '"') i++;
+						else break;
+					}
+					sb.append(line.charAt(i));
+					i++;
 				}
+				quoted.set(tokens.size());
+				tokens.add(sb.toString());
+				continue;
+			}
+			final boolean wordChar =
+				ch == '+' || (ch >= '-' && ch <= 127) || ch > 255;
+			if (wordChar) {
+				if (start < 0) start = i;
 			}
+			else if (start >= 0) {
+				tokens.add(line.substring(start, i));
+				start = -1;
+			}
+		}
+		if (start >= 0) tokens.add(line.substring(start));
+	}
+
+	private double parse(final String token) {
+		try {
+			return Double.parseDouble(token);
+		}
+		catch (NumberFormatException e) {
+			return Double.NaN;
 		}
 	}
 }
@@ -0,0 +1,175 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.table;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Saves a {@link ResultsTable} as a text file of delimited values, in a form
+ * readable by {@link TableLoader}.
+ * <p>
+ * Column headers (if any) are written as the first line. Headers which would
+ * not read back as a single non-numeric token are enclosed in double quotes,
+ * with embedded quotes doubled. Values are written
+ * row by row through a buffered writer, without boxing.
+ * </p>
+ * 
+ * @author agent
+ * @see TableLoader
+ */
+public class TableSaver {
+
+	// -- constants --
+
+	public static final char COMMA = ',';
+	public static final char TAB = '\t';
+
+	// -- instance variables --
+
+	private final char delimiter;
+
+	// -- constructors --
+
+	/** Creates a saver which writes comma separated values. */
+	public TableSaver() {
+		this(COMMA);
+	}
+
+	/** Creates a saver which separates values with the given character. */
+	public TableSaver(char delimiter) {
+		this.delimiter = delimiter;
+	}
+
+	// -- public interface --
+
+	/**
+	 * Saves the values (and headers) of a ResultsTable to a text file.
+	 * 
+	 * @param table The table to save
+	 * @param file The File to write the text table to
+	 * @throws IOException
+	 */
+	public void valuesToTextFile(ResultsTable table, File file)
+		throws IOException
+	{
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			valuesToStream(table, out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the values (and headers) of a ResultsTable to a stream. The stream
+	 * is flushed, but not closed.
+	 * 
+	 * @param table The table to save
+	 * @param out The stream to write the text table to
+	 * @throws IOException
+	 */
+	public void valuesToStream(ResultsTable table, OutputStream out)
+		throws IOException
+	{
+		final Writer w = new BufferedWriter(new OutputStreamWriter(out), 65536);
+		final int cols = table.getColumnCount();
+		final int rows = table.getRowCount();
+		if (hasHeaders(table)) {
+			for (int c = 0; c < cols; c++) {
+				if (c > 0) w.write(delimiter);
+				final String header = table.getColumnHeader(c);
+				w.write(header == null ? "C" + (c + 1) : quote(header));
+			}
+			w.write('\n');
+		}
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				if (c > 0) w.write(delimiter);
+				w.write(format(table.getValue(c, r)));
+			}
+			w.write('\n');
+		}
+		w.flush();
+	}
+
+	// -- private helpers --
+
+	/** Formats a value, omitting the fraction of integral values. */
+	private String format(double value) {
+		if (value == (long) value && Math.abs(value) < 1e15) {
+			return Long.toString((long) value);
+		}
+		return Double.toString(value);
+	}
+
+	/**
+	 * Quotes a header if {@link TableLoader} would otherwise split it, drop part
+	 * of it or mistake it for a number.
+	 */
+	private String quote(String header) {
+		boolean plain = header.length() > 0;
+		for (int i = 0; plain && i < header.length(); i++) {
+			final char ch = header.charAt(i);
+			plain = ch != '"' && ch != delimiter &&
+				(ch == '+' || (ch >= '-' && ch <= 127) || ch > 255);
+		}
+		if (plain) {
+			try {
+				Double.parseDouble(header);
+				plain = false;
+			}
+			catch (NumberFormatException e) {
+				// not numeric; can be written as is
+			}
+		}
+		if (plain) return header;
+		return "\"" + header.replace("\"", "\"\"") + "\"";
+	}
+
+	private boolean hasHeaders(ResultsTable table) {
+		for (int c = 0; c < table.getColumnCount(); c++) {
+			if (table.getColumnHeader(c) != null) return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,280 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.undo;
+
+import imagej.core.options.OptionsMemoryAndThreads;
+import imagej.data.Dataset;
+import imagej.data.event.DatasetDeletedEvent;
+import imagej.data.event.DatasetRestructuredEvent;
+import imagej.data.event.DatasetUpdatedEvent;
+import imagej.event.EventHandler;
+import imagej.event.EventService;
+import imagej.module.Module;
+import imagej.module.event.ModuleCanceledEvent;
+import imagej.module.event.ModuleExecutingEvent;
+import imagej.module.event.ModuleFinishedEvent;
+import imagej.options.OptionsService;
+import imagej.plugin.Parameter;
+import imagej.plugin.Plugin;
+import imagej.service.AbstractService;
+import imagej.service.Service;
+import imagej.thread.ThreadService;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Default service for undoing and redoing changes to {@link Dataset}s.
+ * 
+ * @author agent
+ */
+@Plugin(type = Service.class)
+public class DefaultUndoService extends AbstractService implements
+	UndoService
+{
+
+	@Parameter
+	private EventService eventService;
+
+	@Parameter
+	private ThreadService threadService;
+
+	@Parameter
+	private OptionsService optionsService;
+
+	private final UndoHistory history = new UndoHistory();
+
+	/** Steps being recorded, by dataset. */
+	private final Map<Dataset, UndoStep> recording =
+		new HashMap<Dataset, UndoStep>();
+
+	/** Modules running while their datasets are recorded. */
+	private final Set<Module> running = Collections
+		.newSetFromMap(new WeakHashMap<Module, Boolean>());
+
+	// -- UndoService methods --
+
+	@Override
+	public synchronized void begin(final Dataset dataset, final String label) {
+		recording.put(dataset, new UndoStep(dataset, label));
+	}
+
+	@Override
+	public void end(final Dataset dataset) {
+		final UndoStep step;
+		synchronized (this) {
+			step = recording.remove(dataset);
+		}
+		if (step == null) return;
+		if (step.isEmpty()) {
+			// NB: The dataset changed without reporting which planes. Older steps
+			// would restore their planes over those changes, so drop them.
+			if (step.isUpdated()) history.clear(dataset);
+			return;
+		}
+		updateLimits();
+		history.push(step);
+		compressLater(step);
+	}
+
+	@Override
+	public synchronized boolean isRecording(final Dataset dataset) {
+		return recording.containsKey(dataset);
+	}
+
+	@Override
+	public void planeChanging(final Dataset dataset, final int planeIndex) {
+		final UndoStep step = getRecording(dataset);
+		if (step == null || step.contains(planeIndex)) return;
+		final Object plane = dataset.getPlaneForReading(planeIndex, false);
+		if (plane == null) return; // not planar
+		step.add(planeIndex, PlaneSnapshot.copy(plane));
+	}
+
+	@Override
+	public void planeReplaced(final Dataset dataset, final int planeIndex,
+		final Object oldPlane)
+	{
+		final UndoStep step = getRecording(dataset);
+		if (step == null || oldPlane == null) return;
+		step.add(planeIndex, PlaneSnapshot.wrap(oldPlane));
+	}
+
+	@Override
+	public boolean canUndo(final Dataset dataset) {
+		return history.peekUndo(dataset) != null;
+	}
+
+	@Override
+	public boolean canRedo(final Dataset dataset) {
+		return history.peekRedo(dataset) != null;
+	}
+
+	@Override
+	public boolean undo(final Dataset dataset) {
+		final UndoStep step = history.popUndo(dataset);
+		if (step == null) return false;
+		final UndoStep inverse = swap(step);
+		history.pushRedo(inverse);
+		compressLater(inverse);
+		dataset.update();
+		return true;
+	}
+
+	@Override
+	public boolean redo(final Dataset dataset) {
+		final UndoStep step = history.popRedo(dataset);
+		if (step == null) return false;
+		final UndoStep inverse = swap(step);
+		history.pushUndo(inverse);
+		compressLater(inverse);
+		dataset.update();
+		return true;
+	}
+
+	@Override
+	public void clear(final Dataset dataset) {
+		synchronized (this) {
+			recording.remove(dataset);
+		}
+		history.clear(dataset);
+	}
+
+	@Override
+	public long getByteCount() {
+		return history.getByteCount();
+	}
+
+	// -- Event handlers --
+
+	@EventHandler
+	protected void onEvent(final DatasetDeletedEvent event) {
+		clear(event.getObject());
+	}
+
+	/** Plane indices no longer apply once a dataset is restructured. */
+	@EventHandler
+	protected void onEvent(final DatasetRestructuredEvent event) {
+		clear(event.getObject());
+	}
+
+	@EventHandler
+	protected void onEvent(final DatasetUpdatedEvent event) {
+		if (event.isMetaDataOnly()) return;
+		final UndoStep step = getRecording(event.getObject());
+		if (step != null) step.setUpdated();
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleExecutingEvent event) {
+		final Module module = event.getModule();
+		for (final Dataset dataset : UndoPreprocessor.getDatasets(module)) {
+			if (!isRecording(dataset)) continue;
+			synchronized (this) {
+				running.add(module);
+			}
+			return;
+		}
+	}
+
+	/**
+	 * A module canceled while running is not postprocessed, so its recording
+	 * ends here, keeping whatever changes it made before stopping.
+	 */
+	@EventHandler
+	protected void onEvent(final ModuleCanceledEvent event) {
+		final Module module = event.getModule();
+		synchronized (this) {
+			if (!running.remove(module)) return;
+		}
+		for (final Dataset dataset : UndoPreprocessor.getDatasets(module)) {
+			end(dataset);
+		}
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleFinishedEvent event) {
+		synchronized (this) {
+			running.remove(event.getModule());
+		}
+	}
+
+	// -- Helper methods --
+
+	private synchronized UndoStep getRecording(final Dataset dataset) {
+		return recording.get(dataset);
+	}
+
+	/**
+	 * Puts the saved planes of a step back into its dataset. The planes they
+	 * replace are returned, by reference, as the step which reverses this one.
+	 */
+	private UndoStep swap(final UndoStep step) {
+		final Dataset dataset = step.getDataset();
+		final UndoStep inverse = new UndoStep(dataset, step.getLabel());
+		for (final int planeIndex : step.getPlaneIndices()) {
+			final Object current = dataset.getPlaneForReading(planeIndex, false);
+			dataset.setPlaneSilently(planeIndex, step.get(planeIndex).restore());
+			inverse.add(planeIndex, PlaneSnapshot.wrap(current));
+		}
+		return inverse;
+	}
+
+	/** Compresses a step in the background, then trims the history to fit. */
+	private void compressLater(final UndoStep step) {
+		threadService.run(new Runnable() {
+
+			@Override
+			public void run() {
+				step.compress();
+				history.trim();
+			}
+		});
+	}
+
+	private void updateLimits() {
+		final OptionsMemoryAndThreads options =
+			optionsService.getOptions(OptionsMemoryAndThreads.class);
+		final long maxBytes = options.getUndoMemory() * 1024L * 1024L;
+		final int maxSteps =
+			options.isMultipleBuffers() ? Integer.MAX_VALUE : 1;
+		history.setLimits(maxBytes, maxSteps);
+	}
+
+}
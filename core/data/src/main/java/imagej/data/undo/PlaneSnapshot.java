@@ -0,0 +1,189 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.undo;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The saved contents of one plane of a {@link imagej.data.Dataset}.
+ * <p>
+ * A snapshot holds a primitive array (e.g., short[]) until it is compressed,
+ * after which it holds only the deflated bytes of that array.
+ * </p>
+ * 
+ * @author agent
+ */
+public class PlaneSnapshot {
+
+	private final Class<?> componentType;
+	private final int length;
+
+	/** The saved plane, or null once compressed. */
+	private Object plane;
+
+	/** The deflated plane, or null until compressed. */
+	private byte[] compressed;
+
+	private PlaneSnapshot(final Object plane) {
+		componentType = plane.getClass().getComponentType();
+		length = Array.getLength(plane);
+		this.plane = plane;
+	}
+
+	// -- PlaneSnapshot methods --
+
+	/**
+	 * Creates a snapshot sharing the given plane array, which must not be
+	 * modified afterwards (e.g., because it was replaced by another).
+	 */
+	public static PlaneSnapshot wrap(final Object plane) {
+		return new PlaneSnapshot(plane);
+	}
+
+	/** Creates a snapshot holding a copy of the given plane array. */
+	public static PlaneSnapshot copy(final Object plane) {
+		final int length = Array.getLength(plane);
+		final Object copy =
+			Array.newInstance(plane.getClass().getComponentType(), length);
+		System.arraycopy(plane, 0, copy, 0, length);
+		return new PlaneSnapshot(copy);
+	}
+
+	/** Gets the number of bytes of memory held by this snapshot. */
+	public synchronized long getByteCount() {
+		if (compressed != null) return compressed.length;
+		return (long) length * bytesPerElement(componentType);
+	}
+
+	public synchronized boolean isCompressed() {
+		return compressed != null;
+	}
+
+	/**
+	 * Deflates the saved plane, unless that does not make it smaller. This may
+	 * safely run on another thread than the one using the snapshot.
+	 */
+	public void compress() {
+		final Object data;
+		synchronized (this) {
+			if (plane == null) return;
+			data = plane;
+		}
+		final byte[] bytes = toBytes(data);
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		deflater.setInput(bytes);
+		deflater.finish();
+		final ByteArrayOutputStream out =
+			new ByteArrayOutputStream(bytes.length / 4);
+		final byte[] buffer = new byte[65536];
+		while (!deflater.finished() && out.size() < bytes.length) {
+			out.write(buffer, 0, deflater.deflate(buffer));
+		}
+		deflater.end();
+		if (out.size() >= bytes.length) return; // incompressible
+		synchronized (this) {
+			compressed = out.toByteArray();
+			plane = null;
+		}
+	}
+
+	/**
+	 * Gets the saved plane as an array which the caller may keep, after which
+	 * the snapshot must no longer be used.
+	 */
+	public synchronized Object restore() {
+		if (plane != null) return plane;
+		final byte[] bytes = new byte[length * bytesPerElement(componentType)];
+		final Inflater inflater = new Inflater();
+		inflater.setInput(compressed);
+		try {
+			int offset = 0;
+			while (offset < bytes.length && !inflater.finished()) {
+				offset += inflater.inflate(bytes, offset, bytes.length - offset);
+			}
+		}
+		catch (final DataFormatException e) {
+			throw new IllegalStateException(e);
+		}
+		finally {
+			inflater.end();
+		}
+		return fromBytes(bytes);
+	}
+
+	// -- Helper methods --
+
+	private int bytesPerElement(final Class<?> type) {
+		if (type == byte.class) return 1;
+		if (type == short.class) return 2;
+		if (type == long.class || type == double.class) return 8;
+		return 4;
+	}
+
+	private byte[] toBytes(final Object data) {
+		if (data instanceof byte[]) return (byte[]) data;
+		final ByteBuffer buffer =
+			ByteBuffer.allocate(length * bytesPerElement(componentType));
+		if (data instanceof short[]) buffer.asShortBuffer().put((short[]) data);
+		else if (data instanceof int[]) buffer.asIntBuffer().put((int[]) data);
+		else if (data instanceof long[]) buffer.asLongBuffer().put((long[]) data);
+		else if (data instanceof float[]) {
+			buffer.asFloatBuffer().put((float[]) data);
+		}
+		else buffer.asDoubleBuffer().put((double[]) data);
+		return buffer.array();
+	}
+
+	private Object fromBytes(final byte[] bytes) {
+		if (componentType == byte.class) return bytes;
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		final Object data = Array.newInstance(componentType, length);
+		if (data instanceof short[]) buffer.asShortBuffer().get((short[]) data);
+		else if (data instanceof int[]) buffer.asIntBuffer().get((int[]) data);
+		else if (data instanceof long[]) buffer.asLongBuffer().get((long[]) data);
+		else if (data instanceof float[]) {
+			buffer.asFloatBuffer().get((float[]) data);
+		}
+		else buffer.asDoubleBuffer().get((double[]) data);
+		return data;
+	}
+
+}
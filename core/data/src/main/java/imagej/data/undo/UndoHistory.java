@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.undo;
+
+import imagej.data.Dataset;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * The undo and redo steps of all {@link Dataset}s, within a memory budget.
+ * <p>
+ * Steps are kept oldest first. Whenever the steps exceed the byte budget, or
+ * the undo steps exceed the step limit, the oldest steps are evicted: undo
+ * steps first, then redo steps. A single step larger than the whole budget is
+ * therefore not kept at all.
+ * </p>
+ * 
+ * @author agent
+ */
+public class UndoHistory {
+
+	private final LinkedList<UndoStep> undoSteps = new LinkedList<UndoStep>();
+	private final LinkedList<UndoStep> redoSteps = new LinkedList<UndoStep>();
+
+	private long maxBytes = Long.MAX_VALUE;
+	private int maxSteps = Integer.MAX_VALUE;
+
+	// -- UndoHistory methods --
+
+	/**
+	 * Sets the limits of the history, evicting steps as needed.
+	 * 
+	 * @param maxBytes Number of bytes all steps together may occupy.
+	 * @param maxSteps Number of undo steps, across all datasets, to keep.
+	 */
+	public synchronized void setLimits(final long maxBytes, final int maxSteps) {
+		this.maxBytes = maxBytes;
+		this.maxSteps = maxSteps;
+		trim();
+	}
+
+	/**
+	 * Adds the step of a newly completed command. This clears the redo steps of
+	 * the step's dataset, which no longer apply.
+	 */
+	public synchronized void push(final UndoStep step) {
+		remove(redoSteps, step.getDataset());
+		undoSteps.addLast(step);
+		trim();
+	}
+
+	/** Adds a step which redoes an undone command. */
+	public synchronized void pushRedo(final UndoStep step) {
+		redoSteps.addLast(step);
+		trim();
+	}
+
+	/** Adds a step which undoes a redone command. Redo steps are kept. */
+	public synchronized void pushUndo(final UndoStep step) {
+		undoSteps.addLast(step);
+		trim();
+	}
+
+	/** Removes and returns the latest undo step of a dataset, if any. */
+	public synchronized UndoStep popUndo(final Dataset dataset) {
+		return removeLast(undoSteps, dataset);
+	}
+
+	/** Removes and returns the latest redo step of a dataset, if any. */
+	public synchronized UndoStep popRedo(final Dataset dataset) {
+		return removeLast(redoSteps, dataset);
+	}
+
+	public synchronized UndoStep peekUndo(final Dataset dataset) {
+		return last(undoSteps, dataset);
+	}
+
+	public synchronized UndoStep peekRedo(final Dataset dataset) {
+		return last(redoSteps, dataset);
+	}
+
+	/** Drops all steps of a dataset. */
+	public synchronized void clear(final Dataset dataset) {
+		remove(undoSteps, dataset);
+		remove(redoSteps, dataset);
+	}
+
+	/** Gets the number of bytes of memory held by all steps. */
+	public synchronized long getByteCount() {
+		long bytes = 0;
+		for (final UndoStep step : undoSteps)
+			bytes += step.getByteCount();
+		for (final UndoStep step : redoSteps)
+			bytes += step.getByteCount();
+		return bytes;
+	}
+
+	/**
+	 * Evicts the oldest steps while the history exceeds its limits. Call this
+	 * again after steps shrink, e.g. once compressed.
+	 */
+	public synchronized void trim() {
+		while (undoSteps.size() > maxSteps)
+			undoSteps.removeFirst();
+		long bytes = getByteCount();
+		while (bytes > maxBytes && !undoSteps.isEmpty()) {
+			bytes -= undoSteps.removeFirst().getByteCount();
+		}
+		while (bytes > maxBytes && !redoSteps.isEmpty()) {
+			bytes -= redoSteps.removeFirst().getByteCount();
+		}
+	}
+
+	// -- Helper methods --
+
+	private UndoStep last(final LinkedList<UndoStep> steps,
+		final Dataset dataset)
+	{
+		final Iterator<UndoStep> iter = steps.descendingIterator();
+		while (iter.hasNext()) {
+			final UndoStep step = iter.next();
+			if (step.getDataset() == dataset) return step;
+		}
+		return null;
+	}
+
+	private UndoStep removeLast(final LinkedList<UndoStep> steps,
+		final Dataset dataset)
+	{
+		final UndoStep step = last(steps, dataset);
+		if (step != null) steps.removeLastOccurrence(step);
+		return step;
+	}
+
+	private void remove(final LinkedList<UndoStep> steps, final Dataset dataset) {
+		final Iterator<UndoStep> iter = steps.iterator();
+		while (iter.hasNext()) {
+			if (iter.next().getDataset() == dataset) iter.remove();
+		}
+	}
+
+}
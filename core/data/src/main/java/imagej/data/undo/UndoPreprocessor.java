@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.undo;
+
+import imagej.Priority;
+import imagej.data.Dataset;
+import imagej.module.ItemIO;
+import imagej.module.Module;
+import imagej.module.ModuleItem;
+import imagej.plugin.AbstractPreprocessorPlugin;
+import imagej.plugin.Plugin;
+import imagej.plugin.PreprocessorPlugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts recording the changes a module makes to the {@link Dataset}s it
+ * modifies in place, i.e. its {@link ItemIO#BOTH} dataset parameters. Runs
+ * after all other preprocessors, once the inputs are final.
+ * 
+ * @author agent
+ * @see UndoPostprocessor
+ */
+@Plugin(type = PreprocessorPlugin.class, priority = Priority.VERY_LOW_PRIORITY)
+public class UndoPreprocessor extends AbstractPreprocessorPlugin {
+
+	// -- ModuleProcessor methods --
+
+	@Override
+	public void process(final Module module) {
+		final UndoService undoService =
+			getContext().getService(UndoService.class);
+		if (undoService == null) return;
+		for (final Dataset dataset : getDatasets(module)) {
+			undoService.begin(dataset, module.getInfo().getTitle());
+		}
+	}
+
+	// -- Utility methods --
+
+	/** Gets the datasets a module modifies in place, whose changes it records. */
+	static List<Dataset> getDatasets(final Module module) {
+		final List<Dataset> datasets = new ArrayList<Dataset>();
+		for (final ModuleItem<?> item : module.getInfo().inputs()) {
+			if (item.getIOType() != ItemIO.BOTH) continue;
+			if (!Dataset.class.isAssignableFrom(item.getType())) continue;
+			final Dataset dataset = (Dataset) item.getValue(module);
+			if (dataset != null) datasets.add(dataset);
+		}
+		return datasets;
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.undo;
+
+import imagej.data.Dataset;
+import imagej.service.Service;
+
+/**
+ * A service that records the changes commands make to {@link Dataset}s, so
+ * that they can be undone and redone.
+ * <p>
+ * Changes are recorded one plane at a time, and only for planes a command
+ * actually changes. A plane replaced by another array (e.g., through
+ * {@link Dataset#setPlane}) is kept by reference without copying. A plane about
+ * to be modified in place is copied once, when {@link #planeChanging} is first
+ * called for it. Saved planes are compressed in the background, and the oldest
+ * steps are dropped to stay within the memory budget set in the Memory &amp;
+ * Threads options. Only planar datasets can be recorded.
+ * </p>
+ * <p>
+ * A command that updates a dataset without reporting the planes it changes
+ * leaves nothing to undo. The older steps of the dataset are then dropped,
+ * since undoing them would overwrite those changes.
+ * </p>
+ * 
+ * @author agent
+ */
+public interface UndoService extends Service {
+
+	/** Starts recording the changes made to a dataset by the named command. */
+	void begin(Dataset dataset, String label);
+
+	/** Stops recording a dataset, keeping its changes as one undo step. */
+	void end(Dataset dataset);
+
+	/** Returns true if changes to the given dataset are being recorded. */
+	boolean isRecording(Dataset dataset);
+
+	/**
+	 * Notes that a plane of a dataset is about to be modified in place. If the
+	 * dataset is being recorded and the plane was not yet saved, it is copied.
+	 */
+	void planeChanging(Dataset dataset, int planeIndex);
+
+	/**
+	 * Notes that a plane of a dataset has been replaced by another array. If the
+	 * dataset is being recorded and the plane was not yet saved, the old array
+	 * is kept as is.
+	 */
+	void planeReplaced(Dataset dataset, int planeIndex, Object oldPlane);
+
+	/** Returns true if the given dataset has changes to undo. */
+	boolean canUndo(Dataset dataset);
+
+	/** Returns true if the given dataset has undone changes to redo. */
+	boolean canRedo(Dataset dataset);
+
+	/** Undoes the latest recorded change of a dataset. */
+	boolean undo(Dataset dataset);
+
+	/** Redoes the latest undone change of a dataset. */
+	boolean redo(Dataset dataset);
+
+	/** Drops all undo and redo steps of a dataset. */
+	void clear(Dataset dataset);
+
+	/** Gets the number of bytes of memory held by undo and redo steps. */
+	long getByteCount();
+
+}
@@ -0,0 +1,135 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.undo;
+
+import imagej.data.Dataset;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The planes of a {@link Dataset} saved before one command modified them.
+ * Each plane is saved at most once, when the command first changes it.
+ * 
+ * @author agent
+ */
+public class UndoStep {
+
+	private final Dataset dataset;
+	private final String label;
+	private final Map<Integer, PlaneSnapshot> planes =
+		new LinkedHashMap<Integer, PlaneSnapshot>();
+	private boolean updated;
+
+	public UndoStep(final Dataset dataset, final String label) {
+		this.dataset = dataset;
+		this.label = label;
+	}
+
+	// -- UndoStep methods --
+
+	public Dataset getDataset() {
+		return dataset;
+	}
+
+	/** Gets the name of the command whose changes this step undoes. */
+	public String getLabel() {
+		return label;
+	}
+
+	public synchronized boolean contains(final int planeIndex) {
+		return planes.containsKey(planeIndex);
+	}
+
+	/**
+	 * Saves a plane, unless this step already holds an earlier snapshot of it.
+	 * 
+	 * @return true if the snapshot was added
+	 */
+	public synchronized boolean add(final int planeIndex,
+		final PlaneSnapshot snapshot)
+	{
+		if (planes.containsKey(planeIndex)) return false;
+		planes.put(planeIndex, snapshot);
+		return true;
+	}
+
+	public synchronized PlaneSnapshot get(final int planeIndex) {
+		return planes.get(planeIndex);
+	}
+
+	/** Gets the indices of the saved planes, in the order they were saved. */
+	public synchronized List<Integer> getPlaneIndices() {
+		return new ArrayList<Integer>(planes.keySet());
+	}
+
+	public synchronized boolean isEmpty() {
+		return planes.isEmpty();
+	}
+
+	/** Notes that the dataset was reported updated while being recorded. */
+	public synchronized void setUpdated() {
+		updated = true;
+	}
+
+	/** Returns true if the dataset was reported updated while being recorded. */
+	public synchronized boolean isUpdated() {
+		return updated;
+	}
+
+	/** Gets the number of bytes of memory held by the saved planes. */
+	public long getByteCount() {
+		long bytes = 0;
+		for (final PlaneSnapshot snapshot : snapshots())
+			bytes += snapshot.getByteCount();
+		return bytes;
+	}
+
+	/** Compresses every saved plane. */
+	public void compress() {
+		for (final PlaneSnapshot snapshot : snapshots())
+			snapshot.compress();
+	}
+
+	// -- Helper methods --
+
+	private synchronized List<PlaneSnapshot> snapshots() {
+		return new ArrayList<PlaneSnapshot>(planes.values());
+	}
+
+}
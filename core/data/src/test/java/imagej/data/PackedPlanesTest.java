@@ -0,0 +1,258 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import imagej.ImageJ;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.Unsigned12BitType;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PackedPlanes}.
+ * 
+ * @author agent
+ */
+public class PackedPlanesTest {
+
+	private static final int[] COUNTS = { 1, 31, 32, 33, 100 };
+
+	/** Dimensions whose planes do not end on a word boundary. */
+	private static final long[] DIMENSIONS = { 35, 3, 2 };
+
+	private static final int PLANE_SIZE = (int) (DIMENSIONS[0] * DIMENSIONS[1]);
+
+	@Test
+	public void testBitLayout() {
+		final int[] words = new int[2];
+		final byte[] values = new byte[40];
+		values[0] = 1;
+		values[5] = 7;
+		values[33] = 1;
+		PackedPlanes.packBits(values, words, values.length);
+		assertEquals((1 << 0) | (1 << 5), words[0]);
+		assertEquals(1 << 1, words[1]);
+	}
+
+	@Test
+	public void testBits() {
+		final Random random = new Random(1);
+		for (final int count : COUNTS) {
+			final byte[] values = new byte[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = (byte) (random.nextBoolean() ? 1 : 0);
+			}
+			final int[] words = new int[PackedPlanes.wordCount(count)];
+			Arrays.fill(words, -1);
+			PackedPlanes.packBits(values, words, count);
+			final byte[] unpacked = new byte[count];
+			PackedPlanes.unpackBits(words, unpacked, count);
+			assertArrayEquals(values, unpacked);
+			long ones = 0;
+			for (final byte value : values) {
+				ones += value;
+			}
+			assertEquals(ones, PackedPlanes.countBits(words, count));
+		}
+	}
+
+	@Test
+	public void testWordOperations() {
+		final int count = 33;
+		final int[] a = new int[PackedPlanes.wordCount(count)];
+		final int[] b = new int[a.length];
+		final int[] result = new int[a.length];
+		PackedPlanes.fillBits(a, count, true);
+		assertEquals(count, PackedPlanes.countBits(a, count));
+		assertEquals(1, a[1]);
+		b[0] = 0xff;
+		PackedPlanes.and(a, b, result, count);
+		assertEquals(8, PackedPlanes.countBits(result, count));
+		PackedPlanes.andNot(a, b, result, count);
+		assertEquals(count - 8, PackedPlanes.countBits(result, count));
+		PackedPlanes.xor(a, b, result, count);
+		assertEquals(count - 8, PackedPlanes.countBits(result, count));
+		PackedPlanes.or(b, b, result, count);
+		assertEquals(8, PackedPlanes.countBits(result, count));
+		PackedPlanes.not(b, result, count);
+		assertEquals(count - 8, PackedPlanes.countBits(result, count));
+		assertEquals(1, result[1]);
+	}
+
+	@Test
+	public void test12Bit() {
+		final Random random = new Random(2);
+		for (final int count : COUNTS) {
+			final short[] values = new short[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = (short) random.nextInt(4096);
+			}
+			final int[] words = new int[PackedPlanes.wordCount(12L * count)];
+			Arrays.fill(words, -1);
+			PackedPlanes.pack12Bit(values, words, count);
+			for (int i = 0; i < count; i++) {
+				int value = 0;
+				for (int bit = 0; bit < 12; bit++) {
+					final int index = 12 * i + bit;
+					if ((words[index / 32] & (1 << (index % 32))) != 0) {
+						value |= 1 << bit;
+					}
+				}
+				assertEquals(values[i], value);
+			}
+			final short[] unpacked = new short[count];
+			PackedPlanes.unpack12Bit(words, unpacked, count);
+			assertArrayEquals(values, unpacked);
+		}
+	}
+
+	@Test
+	public void testUnpackBitTypePlanes() {
+		final Random random = new Random(3);
+		final Dataset ds = createDataset(new BitType());
+		final byte[][] expected = new byte[(int) DIMENSIONS[2]][PLANE_SIZE];
+		for (int p = 0; p < expected.length; p++) {
+			for (int i = 0; i < PLANE_SIZE; i++) {
+				expected[p][i] = (byte) (random.nextBoolean() ? 1 : 0);
+				pixel(ds, p, i).setReal(expected[p][i]);
+			}
+		}
+		for (int p = 0; p < expected.length; p++) {
+			final byte[] unpacked = new byte[PLANE_SIZE];
+			assertTrue(ds.unpackPlane(p, unpacked));
+			assertArrayEquals(expected[p], unpacked);
+			final byte[] fromWords = new byte[PLANE_SIZE];
+			PackedPlanes.unpackBits(ds.getPackedPlane(p), fromWords, PLANE_SIZE);
+			assertArrayEquals(expected[p], fromWords);
+		}
+	}
+
+	@Test
+	public void testUnpack12BitPlanes() {
+		final Random random = new Random(4);
+		final Dataset ds = createDataset(new Unsigned12BitType());
+		final short[][] expected = new short[(int) DIMENSIONS[2]][PLANE_SIZE];
+		for (int p = 0; p < expected.length; p++) {
+			for (int i = 0; i < PLANE_SIZE; i++) {
+				expected[p][i] = (short) random.nextInt(4096);
+				pixel(ds, p, i).setReal(expected[p][i]);
+			}
+		}
+		for (int p = 0; p < expected.length; p++) {
+			final short[] unpacked = new short[PLANE_SIZE];
+			assertTrue(ds.unpackPlane(p, unpacked));
+			assertArrayEquals(expected[p], unpacked);
+			final short[] fromWords = new short[PLANE_SIZE];
+			PackedPlanes.unpack12Bit(ds.getPackedPlane(p), fromWords, PLANE_SIZE);
+			assertArrayEquals(expected[p], fromWords);
+		}
+	}
+
+	@Test
+	public void testPackBitTypePlanes() {
+		final Random random = new Random(5);
+		final Dataset ds = createDataset(new BitType());
+		final byte[][] values = new byte[(int) DIMENSIONS[2]][PLANE_SIZE];
+		for (int p = 0; p < values.length; p++) {
+			for (int i = 0; i < PLANE_SIZE; i++) {
+				values[p][i] = (byte) (random.nextBoolean() ? 1 : 0);
+			}
+			assertTrue(ds.packPlane(p, values[p]));
+		}
+		for (int p = 0; p < values.length; p++) {
+			for (int i = 0; i < PLANE_SIZE; i++) {
+				assertEquals(values[p][i], pixel(ds, p, i).getRealDouble(), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testPack12BitPlanes() {
+		final Random random = new Random(6);
+		final Dataset ds = createDataset(new Unsigned12BitType());
+		final short[][] values = new short[(int) DIMENSIONS[2]][PLANE_SIZE];
+		for (int p = 0; p < values.length; p++) {
+			for (int i = 0; i < PLANE_SIZE; i++) {
+				values[p][i] = (short) random.nextInt(4096);
+			}
+			assertTrue(ds.packPlane(p, values[p]));
+		}
+		for (int p = 0; p < values.length; p++) {
+			for (int i = 0; i < PLANE_SIZE; i++) {
+				assertEquals(values[p][i], pixel(ds, p, i).getRealDouble(), 0);
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Creates a planar dataset of the given type, backed by packed planes. */
+	private <T extends RealType<T> & NativeType<T>> Dataset createDataset(
+		final T type)
+	{
+		final ImageJ context = new ImageJ(DatasetService.class);
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Img<T> img = new PlanarImgFactory<T>().create(DIMENSIONS, type);
+		return datasetService.create(new ImgPlus<T>(img));
+	}
+
+	/** Gets the pixel at the given index of a plane. */
+	private RealType<?> pixel(final Dataset ds, final int plane,
+		final int index)
+	{
+		final RandomAccess<? extends RealType<?>> access =
+			ds.getImgPlus().randomAccess();
+		access.setPosition(index % DIMENSIONS[0], 0);
+		access.setPosition(index / DIMENSIONS[0], 1);
+		access.setPosition(plane, 2);
+		return access.get();
+	}
+
+}
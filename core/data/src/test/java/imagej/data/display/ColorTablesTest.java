@@ -0,0 +1,81 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import net.imglib2.display.ColorTable8;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ColorTables}.
+ * 
+ * @author agent
+ */
+public class ColorTablesTest {
+
+	@Test
+	public void testToARGB() {
+		final int[] grays = ColorTables.toARGB(ColorTables.GRAYS);
+		assertEquals(256, grays.length);
+		for (int i = 0; i < 256; i++) {
+			assertEquals(0xff000000 | (i << 16) | (i << 8) | i, grays[i]);
+		}
+
+		final int[] red = ColorTables.toARGB(ColorTables.RED);
+		assertEquals(0xff000000, red[0]);
+		assertEquals(0xffff0000, red[255]);
+	}
+
+	@Test
+	public void testToARGBAlpha() {
+		final byte[][] values = new byte[4][2];
+		values[0][1] = 1;
+		values[1][1] = 2;
+		values[2][1] = 3;
+		values[3][1] = (byte) 0x80;
+		final int[] argb = ColorTables.toARGB(new ColorTable8(values));
+		assertEquals(0, argb[0]);
+		assertEquals(0x80010203, argb[1]);
+	}
+
+	@Test
+	public void testToARGBTooFewComponents() {
+		assertNull(ColorTables.toARGB(new ColorTable8(new byte[1][256])));
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import static org.junit.Assert.assertEquals;
+import imagej.data.table.ResultsTable;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link LabelStatistics}.
+ * 
+ * @author agent
+ */
+public class LabelStatisticsTest {
+
+	@Test
+	public void testAccumulate() {
+		final LabelStatistics stats = new LabelStatistics();
+		stats.add(0, 100);
+		stats.add(1, 2);
+		stats.add(1, 4);
+		stats.add(40, -3);
+		stats.add(1, 6);
+
+		assertEquals(3, stats.getRegionCount());
+		assertEquals(3, stats.getCount(1));
+		assertEquals(12, stats.getSum(1), 0);
+		assertEquals(4, stats.getMean(1), 0);
+		assertEquals(2, stats.getStdDev(1), 1e-12);
+		assertEquals(2, stats.getMin(1), 0);
+		assertEquals(6, stats.getMax(1), 0);
+		assertEquals(0, stats.getCount(7));
+		assertEquals(-3, stats.getMax(40), 0);
+	}
+
+	@Test
+	public void testMerge() {
+		final LabelStatistics a = new LabelStatistics();
+		a.add(1, 2);
+		a.add(1, 4);
+		final LabelStatistics b = new LabelStatistics();
+		b.add(1, 6);
+		b.add(50, 1);
+		a.merge(b);
+
+		assertEquals(3, a.getCount(1));
+		assertEquals(4, a.getMean(1), 0);
+		assertEquals(6, a.getMax(1), 0);
+		assertEquals(1, a.getCount(50));
+	}
+
+	@Test
+	public void testToTable() {
+		final LabelStatistics stats = new LabelStatistics();
+		stats.add(0, 100);
+		stats.add(3, 5);
+		stats.add(9, 7);
+		stats.add(9, 9);
+
+		final ResultsTable table = stats.toTable();
+		assertEquals(LabelStatistics.HEADERS.length, table.getColumnCount());
+		assertEquals(2, table.getRowCount());
+		assertEquals(3, table.getValue(0, 0), 0);
+		assertEquals(1, table.getValue(1, 0), 0);
+		assertEquals(9, table.getValue(0, 1), 0);
+		assertEquals(8, table.getValue(3, 1), 0);
+
+		assertEquals(3, stats.toTable(true).getRowCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeLabel() {
+		new LabelStatistics().add(-1, 0);
+	}
+
+	@Test
+	public void testNegativeLabelQueries() {
+		final LabelStatistics stats = new LabelStatistics();
+		stats.add(0, 5);
+		assertEquals(0, stats.getCount(-1));
+		assertEquals(0, stats.getSum(-1), 0);
+		assertEquals(0, stats.getMean(-1), 0);
+		assertEquals(0, stats.getStdDev(-1), 0);
+		assertEquals(0, stats.getMin(-1), 0);
+		assertEquals(0, stats.getMax(-1), 0);
+	}
+
+	@Test
+	public void testLargeOffset() {
+		final LabelStatistics a = new LabelStatistics();
+		final LabelStatistics b = new LabelStatistics();
+		// values 1e9 + {1, 2, 3, 4}, whose squares exceed double precision
+		a.add(1, 1e9 + 1);
+		a.add(1, 1e9 + 2);
+		b.add(1, 1e9 + 3);
+		b.add(1, 1e9 + 4);
+		assertEquals(Math.sqrt(0.5), a.getStdDev(1), 1e-9);
+		a.merge(b);
+		assertEquals(1e9 + 2.5, a.getMean(1), 1e-6);
+		assertEquals(Math.sqrt(5.0 / 3), a.getStdDev(1), 1e-9);
+	}
+
+	@Test
+	public void testSparseLabels() {
+		final LabelStatistics a = new LabelStatistics();
+		a.add(Integer.MAX_VALUE, 3);
+		a.add(2, 1);
+		final LabelStatistics b = new LabelStatistics();
+		b.add(Integer.MAX_VALUE, 5);
+		b.add(LabelStatistics.DENSE_LABELS, 7);
+		a.merge(b);
+		assertEquals(3, a.getRegionCount());
+		assertEquals(2, a.getCount(Integer.MAX_VALUE));
+		assertEquals(4, a.getMean(Integer.MAX_VALUE), 0);
+		assertEquals(7, a.getMax(LabelStatistics.DENSE_LABELS), 0);
+		assertEquals(0, a.getCount(LabelStatistics.DENSE_LABELS - 1));
+		final ResultsTable table = a.toTable();
+		assertEquals(3, table.getRowCount());
+		assertEquals(2, table.getValue(0, 0), 0);
+		assertEquals(LabelStatistics.DENSE_LABELS, table.getValue(0, 1), 0);
+		assertEquals(Integer.MAX_VALUE, table.getValue(0, 2), 0);
+	}
+
+}
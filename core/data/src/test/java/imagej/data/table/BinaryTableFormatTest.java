@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link BinaryTableFormat}.
+ * 
+ * @author agent
+ */
+public class BinaryTableFormatTest {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		// span several chunks, with one compressible and one random column
+		final int rows = 2 * BinaryTableFormat.CHUNK_ROWS + 123;
+		final ResultsTable table = new DefaultResultsTable(2, rows);
+		table.setColumnHeader(0, "Label");
+		final Random random = new Random(0xdeadbeef);
+		for (int r = 0; r < rows; r++) {
+			table.setValue(0, r, r % 17);
+			table.setValue(1, r, random.nextGaussian());
+		}
+		table.setRowHeader(5, "Five");
+
+		final File file = File.createTempFile("table", ".bin");
+		final BinaryTableFormat format = new BinaryTableFormat();
+		format.save(table, file);
+		final ResultsTable loaded = format.load(file);
+		final double[] labels = format.loadColumn(file, "Label");
+		final double[] missing = format.loadColumn(file, "Area");
+		file.delete();
+
+		assertEquals(2, loaded.getColumnCount());
+		assertEquals(rows, loaded.getRowCount());
+		assertEquals("Label", loaded.getColumnHeader(0));
+		assertNull(loaded.getColumnHeader(1));
+		assertEquals("Five", loaded.getRowHeader(5));
+		assertNull(loaded.getRowHeader(6));
+		for (int r = 0; r < rows; r++) {
+			assertEquals(table.getValue(0, r), loaded.getValue(0, r), 0);
+			assertEquals(table.getValue(1, r), loaded.getValue(1, r), 0);
+			assertEquals(table.getValue(0, r), labels[r], 0);
+		}
+		assertNull(missing);
+	}
+
+	@Test
+	public void testEmptyTable() throws IOException {
+		final ResultsTable table = new DefaultResultsTable(3, 0);
+		final File file = File.createTempFile("table", ".bin");
+		final BinaryTableFormat format = new BinaryTableFormat();
+		format.save(table, file);
+		final ResultsTable loaded = format.load(file);
+		file.delete();
+		assertEquals(3, loaded.getColumnCount());
+		assertEquals(0, loaded.getRowCount());
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotBinary() throws IOException {
+		final File file = File.createTempFile("table", ".txt");
+		final FileWriter out = new FileWriter(file);
+		out.write("Year, Age\n1978, 21\n1979, 22\n");
+		out.close();
+		try {
+			new BinaryTableFormat().load(file);
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+}
@@ -36,7 +36,9 @@
 package imagej.data.table;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -116,6 +118,92 @@ public void testStructure() {
 		}
 	}
 
-	// TODO - Add more tests.
+	@Test
+	public void testInsertRows() {
+		final ResultsTable table = createTable();
+		table.setRowHeader(3, "Four");
+		table.insertRows(2, 3);
+		assertEquals(24, table.getRowCount());
+		for (int r = 0; r < table.getRowCount(); r++) {
+			for (int c = 0; c < table.getColumnCount(); c++) {
+				final double expected = r < 2 ? DATA[r][c] : r < 5 ? 0 : DATA[r - 3][c];
+				assertEquals(expected, table.getValue(c, r), 0);
+			}
+		}
+		assertNull(table.getRowHeader(3));
+		assertEquals("Four", table.getRowHeader(6));
+		for (DoubleColumn column : table) {
+			assertEquals(24, column.size());
+		}
+	}
+
+	@Test
+	public void testRemoveRows() {
+		final ResultsTable table = createTable();
+		table.setRowHeader(10, "Eleven");
+		table.removeRows(4, 5);
+		assertEquals(16, table.getRowCount());
+		for (int r = 0; r < table.getRowCount(); r++) {
+			for (int c = 0; c < table.getColumnCount(); c++) {
+				final double expected = r < 4 ? DATA[r][c] : DATA[r + 5][c];
+				assertEquals(expected, table.getValue(c, r), 0);
+			}
+		}
+		assertEquals("Eleven", table.getRowHeader(5));
+		table.removeRow("Eleven");
+		assertEquals(15, table.getRowCount());
+		assertEquals(DATA[11][0], table.getValue(0, 5), 0);
+	}
+
+	@Test
+	public void testAppendValues() {
+		final ResultsTable table = createTable();
+		final int first = table.appendValues(new double[] {
+			1999, 42, .252, 2000, 43, .111 });
+		assertEquals(21, first);
+		assertEquals(23, table.getRowCount());
+		assertEquals(1999, table.getValue(0, 21), 0);
+		assertEquals(.252, table.getValue(2, 21), 0);
+		assertEquals(43, table.getValue(1, 22), 0);
+	}
+
+	@Test
+	public void testColumnOps() {
+		final ResultsTable table = createTable();
+		final DoubleColumn age = table.get("Age");
+		assertEquals(651, age.sum(), 0);
+		assertEquals(31, age.mean(), 0);
+		assertEquals(21, age.min(), 0);
+		assertEquals(41, age.max(), 0);
+	}
+
+	@Test
+	public void testSort() {
+		final ResultsTable table = createTable();
+		table.sort(2);
+		assertEquals(21, table.getRowCount());
+		assertEquals(1984, table.getValue(0, 0), 0);
+		assertEquals(.217, table.getValue(2, 0), 0);
+		assertEquals(1987, table.getValue(0, 20), 0);
+		for (int r = 1; r < table.getRowCount(); r++) {
+			assertTrue(table.getValue(2, r - 1) <= table.getValue(2, r));
+		}
+		// NB: Ties keep their original order.
+		assertEquals(1983, table.getValue(0, 2), 0);
+		assertEquals(1995, table.getValue(0, 3), 0);
+	}
+
+	@Test
+	public void testFilter() {
+		final ResultsTable table = createTable();
+		final ResultsTable filtered = table.filter(2, .3, .33);
+		assertEquals(3, filtered.getColumnCount());
+		assertEquals("BA", filtered.getColumnHeader(2));
+		assertEquals(8, filtered.getRowCount());
+		for (int r = 0; r < filtered.getRowCount(); r++) {
+			final double ba = filtered.getValue(2, r);
+			assertTrue(ba >= .3 && ba <= .33);
+		}
+	}
 
 }
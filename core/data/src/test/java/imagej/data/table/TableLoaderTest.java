@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link TableLoader} and {@link TableSaver}.
+ * 
+ * @author agent
+ */
+public class TableLoaderTest {
+
+	@Test
+	public void testHeaderDetection() throws IOException {
+		final File file = write("Year, Age\n1978, 21\n\n1979, 22\n1980, 23");
+		final ResultsTable table = new TableLoader().valuesFromTextFile(file);
+		file.delete();
+		assertEquals(2, table.getColumnCount());
+		assertEquals(3, table.getRowCount());
+		assertEquals("Year", table.getColumnHeader(0));
+		assertEquals("Age", table.getColumnHeader(1));
+		assertEquals(1979, table.getValue(0, 1), 0);
+		assertEquals(23, table.getValue(1, 2), 0);
+	}
+
+	@Test
+	public void testNoHeader() throws IOException {
+		final File file = write("1\t2\t3\n4\t5\t6\n");
+		final ResultsTable table = new TableLoader().valuesFromTextFile(file);
+		file.delete();
+		assertEquals(3, table.getColumnCount());
+		assertEquals(2, table.getRowCount());
+		assertNull(table.getColumnHeader(0));
+		assertEquals(1, table.getValue(0, 0), 0);
+		assertEquals(6, table.getValue(2, 1), 0);
+	}
+
+	@Test
+	public void testManyRows() throws IOException {
+		final StringBuilder sb = new StringBuilder("Index,Square\n");
+		for (int i = 0; i < 10000; i++) {
+			sb.append(i).append(',').append(i * i).append('\n');
+		}
+		final File file = write(sb.toString());
+		final ResultsTable table = new TableLoader().valuesFromTextFile(file);
+		file.delete();
+		assertEquals(10000, table.getRowCount());
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(i, table.getValue(0, i), 0);
+			assertEquals(i * i, table.getValue(1, i), 0);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testRaggedRows() throws IOException {
+		final File file = write("1,2,3\n4,5\n");
+		try {
+			new TableLoader().valuesFromTextFile(file);
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final ResultsTable table = new DefaultResultsTable(3, 0);
+		table.setColumnHeader(0, "X");
+		table.setColumnHeader(1, "Y");
+		table.setColumnHeader(2, "Mean");
+		table.appendValues(new double[] { 1, 2, 0.5, -3, 4e20, Double.NaN });
+
+		for (final char delimiter : new char[] { TableSaver.COMMA, TableSaver.TAB })
+		{
+			final File file = File.createTempFile("table", ".txt");
+			new TableSaver(delimiter).valuesToTextFile(table, file);
+			final ResultsTable loaded = new TableLoader().valuesFromTextFile(file);
+			file.delete();
+			assertEquals(3, loaded.getColumnCount());
+			assertEquals(2, loaded.getRowCount());
+			assertEquals("Mean", loaded.getColumnHeader(2));
+			assertEquals(0.5, loaded.getValue(2, 0), 0);
+			assertEquals(-3, loaded.getValue(0, 1), 0);
+			assertEquals(4e20, loaded.getValue(1, 1), 0);
+			assertTrue(Double.isNaN(loaded.getValue(2, 1)));
+		}
+	}
+
+	@Test
+	public void testHeaderRoundTrip() throws IOException {
+		final String[] headers =
+			{ "Std Dev", "Area (px)", "a,b", "say \"hi\"", "42", "100%" };
+		final ResultsTable table = new DefaultResultsTable(headers.length, 0);
+		for (int c = 0; c < headers.length; c++) {
+			table.setColumnHeader(c, headers[c]);
+		}
+		table.appendValues(new double[] { 1, 2, 3, 4, 5, 6 });
+
+		for (final char delimiter : new char[] { TableSaver.COMMA, TableSaver.TAB })
+		{
+			final File file = File.createTempFile("table", ".txt");
+			new TableSaver(delimiter).valuesToTextFile(table, file);
+			final ResultsTable loaded = new TableLoader().valuesFromTextFile(file);
+			file.delete();
+			assertEquals(headers.length, loaded.getColumnCount());
+			assertEquals(1, loaded.getRowCount());
+			for (int c = 0; c < headers.length; c++) {
+				assertEquals(headers[c], loaded.getColumnHeader(c));
+				assertEquals(c + 1, loaded.getValue(c, 0), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testNonLatinHeaders() throws IOException {
+		// NB: Files are read and written in the platform's default encoding.
+		final String headers = "\u0394t\u9762\u7a4d";
+		if (!Charset.defaultCharset().newEncoder().canEncode(headers)) return;
+		final File file = write("\u0394t,\u9762\u7a4d\n1,2\n");
+		final ResultsTable table = new TableLoader().valuesFromTextFile(file);
+		file.delete();
+		assertEquals(2, table.getColumnCount());
+		assertEquals("\u0394t", table.getColumnHeader(0));
+		assertEquals("\u9762\u7a4d", table.getColumnHeader(1));
+		assertEquals(2, table.getValue(1, 0), 0);
+	}
+
+	@Test
+	public void testWideTable() throws IOException {
+		final int cols = 100000;
+		final StringBuilder sb = new StringBuilder();
+		for (int r = 0; r < 3; r++) {
+			for (int c = 0; c < cols; c++) {
+				if (c > 0) sb.append(',');
+				sb.append(r * cols + c);
+			}
+			sb.append('\n');
+		}
+		final File file = write(sb.toString());
+		final ResultsTable table = new TableLoader().valuesFromTextFile(file);
+		file.delete();
+		assertEquals(cols, table.getColumnCount());
+		assertEquals(3, table.getRowCount());
+		assertEquals(2 * cols + 5, table.getValue(5, 2), 0);
+	}
+
+	// -- Helper methods --
+
+	private File write(final String text) throws IOException {
+		final File file = File.createTempFile("table", ".txt");
+		final FileWriter out = new FileWriter(file);
+		out.write(text);
+		out.close();
+		return file;
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.undo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link PlaneSnapshot}.
+ * 
+ * @author agent
+ */
+public class PlaneSnapshotTest {
+
+	@Test
+	public void testWrapSharesPlane() {
+		final short[] plane = { 1, 2, 3 };
+		final PlaneSnapshot snapshot = PlaneSnapshot.wrap(plane);
+		assertEquals(6, snapshot.getByteCount());
+		assertSame(plane, snapshot.restore());
+	}
+
+	@Test
+	public void testCopyIsIndependent() {
+		final int[] plane = { 1, 2, 3 };
+		final PlaneSnapshot snapshot = PlaneSnapshot.copy(plane);
+		plane[0] = 99;
+		final Object restored = snapshot.restore();
+		assertNotSame(plane, restored);
+		assertArrayEquals(new int[] { 1, 2, 3 }, (int[]) restored);
+	}
+
+	@Test
+	public void testCompressRoundTrip() {
+		final float[] plane = new float[10000];
+		for (int i = 0; i < plane.length; i++)
+			plane[i] = i % 7;
+		final PlaneSnapshot snapshot = PlaneSnapshot.copy(plane);
+		snapshot.compress();
+		assertTrue(snapshot.isCompressed());
+		assertTrue(snapshot.getByteCount() < 4 * plane.length);
+		assertArrayEquals(plane, (float[]) snapshot.restore(), 0);
+	}
+
+	@Test
+	public void testIncompressibleKeptAsIs() {
+		final byte[] plane = new byte[4096];
+		new Random(1).nextBytes(plane);
+		final PlaneSnapshot snapshot = PlaneSnapshot.wrap(plane);
+		snapshot.compress();
+		assertFalse(snapshot.isCompressed());
+		assertSame(plane, snapshot.restore());
+	}
+
+}
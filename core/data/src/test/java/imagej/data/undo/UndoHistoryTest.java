@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.undo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import imagej.ImageJ;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link UndoHistory}.
+ * 
+ * @author agent
+ */
+public class UndoHistoryTest {
+
+	private Dataset a, b;
+
+	@Before
+	public void setUp() {
+		final ImageJ context = new ImageJ(DatasetService.class);
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final long[] dims = { 2, 2 };
+		final AxisType[] axes = { Axes.X, Axes.Y };
+		a = datasetService.create(dims, "a", axes, 8, false, false);
+		b = datasetService.create(dims, "b", axes, 8, false, false);
+	}
+
+	@Test
+	public void testPopLatestOfDataset() {
+		final UndoHistory history = new UndoHistory();
+		final UndoStep a1 = step(a, 10);
+		final UndoStep b1 = step(b, 10);
+		final UndoStep a2 = step(a, 10);
+		history.push(a1);
+		history.push(b1);
+		history.push(a2);
+		assertSame(a2, history.popUndo(a));
+		assertSame(a1, history.popUndo(a));
+		assertNull(history.popUndo(a));
+		assertSame(b1, history.popUndo(b));
+	}
+
+	@Test
+	public void testPushClearsRedo() {
+		final UndoHistory history = new UndoHistory();
+		history.pushRedo(step(a, 10));
+		history.pushRedo(step(b, 10));
+		history.push(step(a, 10));
+		assertNull(history.peekRedo(a));
+		assertNotNull(history.peekRedo(b));
+	}
+
+	@Test
+	public void testByteBudgetEvictsOldest() {
+		final UndoHistory history = new UndoHistory();
+		history.setLimits(25, Integer.MAX_VALUE);
+		final UndoStep a1 = step(a, 10);
+		final UndoStep b1 = step(b, 10);
+		final UndoStep a2 = step(a, 10);
+		history.push(a1);
+		history.push(b1);
+		history.push(a2);
+		assertEquals(20, history.getByteCount());
+		assertSame(a2, history.popUndo(a));
+		assertNull(history.popUndo(a));
+		assertSame(b1, history.popUndo(b));
+	}
+
+	@Test
+	public void testOversizedStepNotKept() {
+		final UndoHistory history = new UndoHistory();
+		history.setLimits(5, Integer.MAX_VALUE);
+		history.push(step(a, 10));
+		assertNull(history.peekUndo(a));
+		assertEquals(0, history.getByteCount());
+	}
+
+	@Test
+	public void testSingleBuffer() {
+		final UndoHistory history = new UndoHistory();
+		history.setLimits(Long.MAX_VALUE, 1);
+		history.push(step(a, 10));
+		final UndoStep b1 = step(b, 10);
+		history.push(b1);
+		assertNull(history.peekUndo(a));
+		assertSame(b1, history.peekUndo(b));
+	}
+
+	// -- Helper methods --
+
+	private UndoStep step(final Dataset dataset, final int bytes) {
+		final UndoStep step = new UndoStep(dataset, "test");
+		step.add(0, PlaneSnapshot.wrap(new byte[bytes]));
+		return step;
+	}
+
+}
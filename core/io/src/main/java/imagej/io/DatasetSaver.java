@@ -0,0 +1,337 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.io;
+
+import imagej.data.Dataset;
+import imagej.data.event.DataModifiedEvent;
+import imagej.event.EventHandler;
+import imagej.event.EventService;
+import imagej.event.EventSubscriber;
+import imagej.event.StatusService;
+import imagej.io.event.FileSavedEvent;
+import imagej.thread.ThreadService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatWriter;
+import loci.formats.ImageWriter;
+import loci.formats.MetadataTools;
+import loci.formats.meta.IMetadata;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.io.ImgSaver;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+
+/**
+ * Saves a {@link Dataset} to disk one plane at a time.
+ * <p>
+ * Planes are converted to bytes on several threads while a single thread
+ * writes them, in order, to a temporary file next to the destination. At most
+ * a few planes per core wait to be written at any time, bounding the memory
+ * used. Once all planes are written, the temporary file replaces the
+ * destination and a {@link FileSavedEvent} is published. If the save fails or
+ * is cancelled (by interrupting the saving thread), the destination is left
+ * untouched.
+ * </p>
+ * <p>
+ * The dataset is not locked while it is saved. If it is modified before the
+ * file is complete, the file could mix old and new data, so it is discarded
+ * and the save starts over, a few times at most before giving up with an
+ * {@link IOException}. The dataset is marked clean only if it did not change
+ * while being saved.
+ * </p>
+ * <p>
+ * Datasets whose axes or pixel types cannot be written plane by plane are
+ * saved whole with an {@link ImgSaver}, still through the temporary file.
+ * </p>
+ * 
+ * @author agent
+ */
+public class DatasetSaver implements Callable<File> {
+
+	/** Number of times to start over when the dataset changes while saved. */
+	private static final int MAX_ATTEMPTS = 3;
+
+	private final Dataset dataset;
+	private final File destination;
+	private final ThreadService threadService;
+	private final StatusService statusService;
+	private final EventService eventService;
+
+	/** Whether the dataset changed since the current attempt started. */
+	private boolean changed;
+
+	/** Whether the dataset was marked clean by this save. */
+	private boolean cleaned;
+
+	public DatasetSaver(final Dataset dataset, final File destination,
+		final ThreadService threadService, final StatusService statusService,
+		final EventService eventService)
+	{
+		this.dataset = dataset;
+		this.destination = destination;
+		this.threadService = threadService;
+		this.statusService = statusService;
+		this.eventService = eventService;
+	}
+
+	// -- Callable methods --
+
+	@Override
+	public File call() throws Exception {
+		// NB: The format is chosen by file extension, so keep it.
+		final File temp =
+			new File(destination.getAbsoluteFile().getParentFile(), ".saving-" +
+				destination.getName());
+		final List<EventSubscriber<?>> subscribers = eventService.subscribe(this);
+		try {
+			for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+				synchronized (this) {
+					changed = false;
+				}
+				boolean saved = false;
+				try {
+					write(temp);
+					if (Thread.currentThread().isInterrupted()) return null;
+					synchronized (this) {
+						if (!changed) {
+							replace(temp, destination);
+							dataset.setSource(destination.getAbsolutePath());
+							dataset.setDirty(false);
+							cleaned = saved = true;
+						}
+					}
+				}
+				finally {
+					if (!saved) temp.delete();
+					statusService.clearStatus();
+				}
+				if (saved) {
+					eventService.publish(new FileSavedEvent(destination
+						.getAbsolutePath()));
+					return destination;
+				}
+			}
+		}
+		finally {
+			eventService.unsubscribe(subscribers);
+		}
+		throw new IOException(dataset.getName() +
+			" kept changing while being saved");
+	}
+
+	// -- Event handlers --
+
+	@EventHandler
+	protected void onEvent(final DataModifiedEvent event) {
+		if (event.getObject() != dataset) return;
+		synchronized (this) {
+			changed = true;
+			// NB: Edits racing the end of the save must not be lost.
+			if (cleaned) dataset.setDirty(true);
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Writes the dataset to the given file, whole or one plane at a time. */
+	private void write(final File file) throws Exception {
+		final String dimensionOrder = dimensionOrder();
+		final int pixelType = pixelType();
+		if (dimensionOrder == null || pixelType < 0) saveWhole(file);
+		else savePlanes(file, dimensionOrder, pixelType);
+	}
+
+	private void saveWhole(final File file) throws Exception {
+		statusService.showStatus("Saving " + destination.getName());
+		final ImgSaver imageSaver = new ImgSaver();
+		imageSaver.addStatusListener(new StatusDispatcher(statusService));
+		@SuppressWarnings("rawtypes")
+		final ImgPlus img = dataset.getImgPlus();
+		imageSaver.saveImg(file.getAbsolutePath(), img);
+	}
+
+	private void savePlanes(final File file, final String dimensionOrder,
+		final int pixelType) throws FormatException, IOException,
+		InterruptedException, ExecutionException
+	{
+		final long[] dims = dataset.getDims();
+		final IMetadata meta = MetadataTools.createOMEXMLMetadata();
+		MetadataTools.populateMetadata(meta, 0, dataset.getName(), false,
+			dimensionOrder, FormatTools.getPixelTypeString(pixelType),
+			(int) dims[0], (int) dims[1], size(dims, Axes.Z), size(dims,
+				Axes.CHANNEL), size(dims, Axes.TIME), 1);
+		final IFormatWriter writer = new ImageWriter();
+		writer.setMetadataRetrieve(meta);
+		writer.setId(file.getAbsolutePath());
+
+		final int planeCount = planeCount(dims);
+		final int window = 2 * Runtime.getRuntime().availableProcessors();
+		final LinkedList<Future<byte[]>> queue = new LinkedList<Future<byte[]>>();
+		final String message = "Saving " + destination.getName();
+		int next = 0;
+		try {
+			for (int no = 0; no < planeCount; no++) {
+				while (next < planeCount && queue.size() < window) {
+					queue.add(threadService.run(new PlaneEncoder(next++)));
+				}
+				final byte[] bytes = queue.removeFirst().get();
+				if (Thread.currentThread().isInterrupted()) return;
+				writer.saveBytes(no, bytes);
+				statusService.showStatus(no + 1, planeCount, message);
+			}
+		}
+		finally {
+			for (final Future<byte[]> future : queue)
+				future.cancel(true);
+			writer.close();
+		}
+	}
+
+	/**
+	 * Gets the dimension order of a writer whose planes are numbered as those of
+	 * the dataset, or null if the axes of the dataset do not allow it.
+	 */
+	private String dimensionOrder() {
+		final AxisType[] axes = dataset.getAxes();
+		if (axes.length < 2 || axes[0] != Axes.X || axes[1] != Axes.Y) {
+			return null;
+		}
+		final StringBuilder order = new StringBuilder("XY");
+		for (int i = 2; i < axes.length; i++) {
+			if (axes[i] == Axes.Z) order.append('Z');
+			else if (axes[i] == Axes.CHANNEL) order.append('C');
+			else if (axes[i] == Axes.TIME) order.append('T');
+			else return null;
+		}
+		// NB: Missing axes have size 1, so they can go last in any order.
+		for (final char axis : "ZCT".toCharArray()) {
+			if (order.indexOf(String.valueOf(axis)) < 0) order.append(axis);
+		}
+		return order.toString();
+	}
+
+	/**
+	 * Gets the pixel type matching the dataset's type, as one of the
+	 * {@link FormatTools} constants, or -1 if there is none.
+	 */
+	private int pixelType() {
+		final int bits = dataset.getType().getBitsPerPixel();
+		final boolean signed = dataset.isSigned();
+		if (dataset.isInteger()) {
+			if (bits == 8) return signed ? FormatTools.INT8 : FormatTools.UINT8;
+			if (bits == 16) return signed ? FormatTools.INT16 : FormatTools.UINT16;
+			if (bits == 32) return signed ? FormatTools.INT32 : FormatTools.UINT32;
+			return -1;
+		}
+		if (bits == 32) return FormatTools.FLOAT;
+		if (bits == 64) return FormatTools.DOUBLE;
+		return -1;
+	}
+
+	private int size(final long[] dims, final AxisType axis) {
+		final int index = dataset.getAxisIndex(axis);
+		return index < 0 ? 1 : (int) dims[index];
+	}
+
+	private int planeCount(final long[] dims) {
+		long count = 1;
+		for (int d = 2; d < dims.length; d++)
+			count *= dims[d];
+		return (int) count;
+	}
+
+	/**
+	 * Moves a file over another. Where the platform cannot rename onto an
+	 * existing file, the target is deleted first.
+	 */
+	private void replace(final File source, final File target)
+		throws IOException
+	{
+		if (source.renameTo(target)) return;
+		if (target.delete() && source.renameTo(target)) return;
+		throw new IOException("Cannot replace " + target.getAbsolutePath());
+	}
+
+	/** Converts one plane of the dataset to big-endian bytes. */
+	private class PlaneEncoder implements Callable<byte[]> {
+
+		private final int no;
+
+		public PlaneEncoder(final int no) {
+			this.no = no;
+		}
+
+		@Override
+		public byte[] call() {
+			final Object plane = dataset.getPlaneForReading(no, true);
+			// NB: Copy the plane, lest it change before it is written.
+			if (plane instanceof byte[]) return ((byte[]) plane).clone();
+			if (plane instanceof short[]) {
+				final short[] data = (short[]) plane;
+				final ByteBuffer buffer = ByteBuffer.allocate(2 * data.length);
+				buffer.asShortBuffer().put(data);
+				return buffer.array();
+			}
+			if (plane instanceof int[]) {
+				final int[] data = (int[]) plane;
+				final ByteBuffer buffer = ByteBuffer.allocate(4 * data.length);
+				buffer.asIntBuffer().put(data);
+				return buffer.array();
+			}
+			if (plane instanceof float[]) {
+				final float[] data = (float[]) plane;
+				final ByteBuffer buffer = ByteBuffer.allocate(4 * data.length);
+				buffer.asFloatBuffer().put(data);
+				return buffer.array();
+			}
+			final double[] data = (double[]) plane;
+			final ByteBuffer buffer = ByteBuffer.allocate(8 * data.length);
+			buffer.asDoubleBuffer().put(data);
+			return buffer.array();
+		}
+	}
+
+}
@@ -37,16 +37,35 @@
 
 import imagej.data.Dataset;
 import imagej.data.DatasetService;
+import imagej.data.event.DatasetDeletedEvent;
+import imagej.data.event.DatasetUpdatedEvent;
+import imagej.event.EventHandler;
 import imagej.event.EventService;
 import imagej.event.StatusService;
 import imagej.io.event.FileOpenedEvent;
+import imagej.log.LogService;
 import imagej.module.ModuleService;
 import imagej.plugin.Parameter;
 import imagej.plugin.Plugin;
 import imagej.service.AbstractService;
 import imagej.service.Service;
+import imagej.thread.ThreadService;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import net.imglib2.display.ColorTable;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.ImgPlus;
+import net.imglib2.img.basictypeaccess.PlanarAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.io.ImgIOException;
 import net.imglib2.io.ImgOpener;
 import net.imglib2.type.NativeType;
@@ -77,6 +96,19 @@
 	@Parameter
 	private DatasetService datasetService;
 
+	@Parameter
+	private ThreadService threadService;
+
+	@Parameter
+	private LogService log;
+
+	/** Minimum time between update events of a dataset being opened. */
+	private static final long UPDATE_INTERVAL = 100;
+
+	/** Datasets whose planes are still being read in the background. */
+	private final Map<Dataset, Future<Dataset>> opening =
+		Collections.synchronizedMap(new HashMap<Dataset, Future<Dataset>>());
+
 	// -- IOService methods --
 
 	@Override
@@ -119,6 +151,109 @@ public Dataset loadDataset(final String source) throws ImgIOException,
 		return dataset;
 	}
 
+	@Override
+	public Dataset openDataset(final String source) throws ImgIOException {
+		if (source == null) return null;
+		final PlaneReader reader = new PlaneReader(source);
+		final Dataset dataset;
+		try {
+			dataset =
+				datasetService.create(reader.getDims(), reader.getName(), reader
+					.getAxes(), reader.getBitsPerPixel(), reader.isSigned(), reader
+					.isFloating());
+			final double[] calibration = reader.getCalibration();
+			for (int d = 0; d < calibration.length; d++) {
+				dataset.setCalibration(calibration[d], d);
+			}
+			dataset.setValidBits(reader.getValidBitsPerPixel());
+			dataset.setCompositeChannelCount(reader.getCompositeChannelCount());
+			dataset.initializeColorTables(reader.getPlaneCount());
+			readPlane(reader, dataset, 0);
+		}
+		catch (final IllegalArgumentException e) {
+			closeQuietly(reader);
+			throw new ImgIOException(e);
+		}
+		catch (final IOException e) {
+			closeQuietly(reader);
+			throw new ImgIOException(e);
+		}
+		final FutureTask<Dataset> task =
+			new FutureTask<Dataset>(new Callable<Dataset>() {
+
+				@Override
+				public Dataset call() throws IOException {
+					readPlanes(source, reader, dataset);
+					return dataset;
+				}
+			});
+		opening.put(dataset, task);
+		threadService.run(task);
+		return dataset;
+	}
+
+	@Override
+	public Future<Dataset> getOpening(final Dataset dataset) {
+		final Future<Dataset> future = opening.get(dataset);
+		if (future != null) return future;
+		// not (or no longer) being read: report it complete
+		final FutureTask<Dataset> done =
+			new FutureTask<Dataset>(new Callable<Dataset>() {
+
+				@Override
+				public Dataset call() {
+					return dataset;
+				}
+			});
+		done.run();
+		return done;
+	}
+
+	@Override
+	public Dataset loadVirtualDataset(final String source)
+		throws ImgIOException
+	{
+		if (source == null) return null;
+		// hold up to a quarter of the heap in planes of each virtual image
+		final long cacheBytes = Runtime.getRuntime().maxMemory() / 4;
+		final VirtualImgOpener imageOpener =
+			new VirtualImgOpener(threadService, cacheBytes);
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		final ImgPlus<T> imgPlus = (ImgPlus) imageOpener.openImg(source);
+		final Dataset dataset = datasetService.create(imgPlus);
+		eventService.publish(new FileOpenedEvent(source));
+		return dataset;
+	}
+
+	@Override
+	public Future<File> saveDataset(final Dataset dataset,
+		final String destination)
+	{
+		final DatasetSaver saver =
+			new DatasetSaver(dataset, new File(destination), threadService,
+				statusService, eventService);
+		return threadService.run(new Callable<File>() {
+
+			@Override
+			public File call() throws Exception {
+				try {
+					// NB: Planes still being read would change the dataset mid-save.
+					getOpening(dataset).get();
+					return saver.call();
+				}
+				catch (final InterruptedException e) {
+					return null; // cancelled
+				}
+				catch (final Exception e) {
+					log.error(e);
+					statusService.warn("Error saving " + destination + ": " +
+						e.getMessage());
+					throw e;
+				}
+			}
+		});
+	}
+
 	@Override
 	public void revertDataset(final Dataset dataset) throws ImgIOException,
 		IncompatibleTypeException
@@ -129,4 +264,97 @@ public void revertDataset(final Dataset dataset) throws ImgIOException,
 		revertedDataset.copyInto(dataset);
 	}
 
+	// -- Event handlers --
+
+	/**
+	 * Stops reading planes of a dataset being opened, and releases the source
+	 * of a virtual dataset, once it is deleted.
+	 */
+	@EventHandler
+	protected void onEvent(final DatasetDeletedEvent event) {
+		opening.remove(event.getObject());
+		final Object img = event.getObject().getImgPlus().getImg();
+		if (!(img instanceof VirtualPlanarImg)) return;
+		try {
+			((VirtualPlanarImg<?, ?>) img).close();
+		}
+		catch (final IOException e) {
+			log.warn(e);
+		}
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Reads all but the first plane of a dataset being opened. Update events are
+	 * coalesced so the display redraws at most every {@link #UPDATE_INTERVAL}
+	 * milliseconds, however fast planes arrive.
+	 * <p>
+	 * The events are published directly rather than through
+	 * {@link Dataset#update()}, so that reading planes does not mark the dataset
+	 * dirty; edits made while the planes arrive still do.
+	 * </p>
+	 */
+	private void readPlanes(final String source, final PlaneReader reader,
+		final Dataset dataset) throws IOException
+	{
+		final int planeCount = reader.getPlaneCount();
+		final String message = "Reading " + reader.getName();
+		long lastUpdate = System.currentTimeMillis();
+		try {
+			for (int p = 1; p < planeCount; p++) {
+				if (!opening.containsKey(dataset)) return; // dataset was closed
+				readPlane(reader, dataset, p);
+				final long time = System.currentTimeMillis();
+				if (time - lastUpdate >= UPDATE_INTERVAL) {
+					lastUpdate = time;
+					eventService.publish(new DatasetUpdatedEvent(dataset, false));
+					statusService.showStatus(p + 1, planeCount, message);
+				}
+			}
+			eventService.publish(new DatasetUpdatedEvent(dataset, false));
+			statusService.clearStatus();
+			eventService.publish(new FileOpenedEvent(source));
+		}
+		catch (final IOException e) {
+			log.error(e);
+			statusService.warn("Error reading " + reader.getName() + ": " +
+				e.getMessage());
+			throw e;
+		}
+		finally {
+			opening.remove(dataset);
+			closeQuietly(reader);
+		}
+	}
+
+	/**
+	 * Reads one plane into a dataset being opened, with its color table. The
+	 * data is copied directly into the image's existing plane rather than set
+	 * through the dataset, since reading it is not an edit for the
+	 * {@link imagej.data.undo.UndoService} to record. The plane array itself is
+	 * kept, as others (e.g., a legacy ImagePlus) may already share it.
+	 */
+	private void readPlane(final PlaneReader reader, final Dataset dataset,
+		final int no) throws IOException
+	{
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		final PlanarAccess<ArrayDataAccess<?>> planes =
+			(PlanarAccess) dataset.getImgPlus().getImg();
+		final Object target = planes.getPlane(no).getCurrentStorageArray();
+		final Object data = reader.load(no).getCurrentStorageArray();
+		System.arraycopy(data, 0, target, 0, Array.getLength(target));
+		final ColorTable colorTable = reader.getColorTable(no);
+		if (colorTable != null) dataset.setColorTable(colorTable, no);
+	}
+
+	private void closeQuietly(final PlaneReader reader) {
+		try {
+			reader.close();
+		}
+		catch (final IOException e) {
+			log.warn(e);
+		}
+	}
+
 }
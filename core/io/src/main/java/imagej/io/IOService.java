@@ -41,6 +41,10 @@
 import imagej.event.StatusService;
 import imagej.module.ModuleService;
 import imagej.service.Service;
+
+import java.io.File;
+import java.util.concurrent.Future;
+
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.io.ImgIOException;
 
@@ -63,10 +67,48 @@ public interface IOService extends Service {
 	Dataset loadDataset(String source) throws ImgIOException,
 		IncompatibleTypeException;
 
+	/**
+	 * Opens a dataset from a source, returning as soon as its dimensions and
+	 * first plane are known. The remaining planes are read on a background
+	 * thread, with the dataset publishing periodic update events as they arrive
+	 * and a {@link imagej.io.event.FileOpenedEvent} once all have been read.
+	 * The spatial calibration, color tables and composite channel count are set
+	 * as {@link #loadDataset} sets them. Use {@link #getOpening} to wait for the
+	 * remaining planes. Modules which modify the dataset in place wait for them
+	 * before they run (see {@link OpeningPreprocessor}).
+	 */
+	Dataset openDataset(String source) throws ImgIOException;
+
+	/**
+	 * Gets a future which completes, yielding the dataset, once every plane of
+	 * a dataset returned by {@link #openDataset} has been read. The future fails
+	 * if a plane cannot be read. For any other dataset, the future is already
+	 * complete.
+	 */
+	Future<Dataset> getOpening(Dataset dataset);
+
+	/**
+	 * Loads a dataset from a source without reading all of its pixels up front.
+	 * Planes are read on demand and held in a bounded cache, so that sources
+	 * larger than available memory can be browsed and measured.
+	 */
+	Dataset loadVirtualDataset(String source) throws ImgIOException;
+
 	/** Reverts the given dataset to its original source. */
 	void revertDataset(Dataset dataset) throws ImgIOException,
 		IncompatibleTypeException;
 
-	// TODO: Add a saveDataset method, and use it in SaveAsImage plugin.
+	/**
+	 * Saves a dataset to the given destination on a background thread. The file
+	 * is written one plane at a time, with progress reported to the status bar,
+	 * and only replaces the destination once complete. A dataset still being
+	 * opened is saved once all its planes are read. The dataset is marked clean
+	 * only if it was not modified during the save. Cancel the returned future to
+	 * abandon the save.
+	 * 
+	 * @return A future yielding the saved file, or null if cancelled. It fails
+	 *         with the cause of the error if the file could not be saved.
+	 */
+	Future<File> saveDataset(Dataset dataset, String destination);
 
 }
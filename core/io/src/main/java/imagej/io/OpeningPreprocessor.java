@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.io;
+
+import imagej.Priority;
+import imagej.data.Dataset;
+import imagej.data.display.DataView;
+import imagej.data.display.ImageDisplay;
+import imagej.event.StatusService;
+import imagej.module.ItemIO;
+import imagej.module.Module;
+import imagej.module.ModuleItem;
+import imagej.plugin.AbstractPreprocessorPlugin;
+import imagej.plugin.Plugin;
+import imagej.plugin.PreprocessorPlugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Holds back a module until every {@link Dataset} it modifies in place has
+ * been fully read by {@link IOService#openDataset}. Otherwise the module would
+ * work on partly read data, and the planes still arriving would overwrite its
+ * changes. Covers the module's {@link ItemIO#BOTH} parameters which are
+ * datasets or image displays. Runs after the preprocessors which prompt for
+ * inputs, and before the undo recording starts.
+ * 
+ * @author agent
+ */
+@Plugin(type = PreprocessorPlugin.class,
+	priority = Priority.VERY_LOW_PRIORITY + 0.5)
+public class OpeningPreprocessor extends AbstractPreprocessorPlugin {
+
+	// -- ModuleProcessor methods --
+
+	@Override
+	public void process(final Module module) {
+		final IOService ioService = getContext().getService(IOService.class);
+		if (ioService == null) return;
+		for (final Dataset dataset : getDatasets(module)) {
+			final Future<Dataset> opening = ioService.getOpening(dataset);
+			if (opening.isDone()) continue;
+			final StatusService statusService =
+				getContext().getService(StatusService.class);
+			if (statusService != null) {
+				statusService.showStatus("Waiting for " + dataset.getName() +
+					" to be read");
+			}
+			try {
+				opening.get();
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				canceled = true;
+				return;
+			}
+			catch (final ExecutionException e) {
+				canceled = true;
+				cancelReason =
+					"Cannot read " + dataset.getName() + ": " +
+						e.getCause().getMessage();
+				return;
+			}
+			finally {
+				if (statusService != null) statusService.clearStatus();
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Gets the datasets a module modifies in place. */
+	private List<Dataset> getDatasets(final Module module) {
+		final List<Dataset> datasets = new ArrayList<Dataset>();
+		for (final ModuleItem<?> item : module.getInfo().inputs()) {
+			if (item.getIOType() != ItemIO.BOTH) continue;
+			final Object value = item.getValue(module);
+			if (value instanceof Dataset) datasets.add((Dataset) value);
+			else if (value instanceof ImageDisplay) {
+				for (final DataView view : (ImageDisplay) value) {
+					final Object data = view.getData();
+					if (data instanceof Dataset) datasets.add((Dataset) data);
+				}
+			}
+		}
+		return datasets;
+	}
+
+}
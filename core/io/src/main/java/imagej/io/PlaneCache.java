@@ -0,0 +1,455 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.io;
+
+import imagej.thread.ThreadService;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * A bounded cache of image planes which are read on demand.
+ * <p>
+ * Recently used planes are held strongly, in least recently used order, up to
+ * a given number of bytes. Planes pushed out of that budget are kept behind
+ * {@link SoftReference}s, so the garbage collector reclaims them only when
+ * memory actually runs short.
+ * </p>
+ * <p>
+ * Modified planes are never lost. Planes stored with {@link #put} or
+ * {@link #pin} are pinned: their callers may write into them at any time, so
+ * they are never evicted. Pinned planes count against the byte budget, which
+ * pushes other planes out in their place. Planes changed in place are
+ * detected by comparing a checksum taken when the plane was read: once when
+ * the plane drops out of the byte budget, and again when a caller which held
+ * it past that point hands it back with {@link #checkIn}. Such planes are
+ * written to a temporary swap file as they are evicted, and read back from
+ * there instead of from the source.
+ * </p>
+ * 
+ * @author agent
+ */
+public class PlaneCache<A extends ArrayDataAccess<A>> {
+
+	/** Reads the planes of an image. */
+	public interface Loader<A> {
+
+		/** Reads the given plane from its source. */
+		A load(int no) throws IOException;
+	}
+
+	private final Loader<A> loader;
+	private final long maxBytes;
+	private final ThreadService threadService;
+
+	/** Recently used planes, eldest first. */
+	private final LinkedHashMap<Integer, A> planes =
+		new LinkedHashMap<Integer, A>(16, 0.75f, true);
+
+	/** Planes evicted from the byte budget. */
+	private final Map<Integer, SoftReference<A>> spilled =
+		new HashMap<Integer, SoftReference<A>>();
+
+	/** Planes which must never be evicted. */
+	private final Map<Integer, A> pinned = new HashMap<Integer, A>();
+
+	/** Checksums of the planes as read from the source or swap file. */
+	private final Map<Integer, Long> checksums = new HashMap<Integer, Long>();
+
+	/** Offsets of the modified planes written to the swap file. */
+	private final Map<Integer, Long> swapped = new HashMap<Integer, Long>();
+
+	/** Planes currently being read in the background. */
+	private final Set<Integer> pending = new HashSet<Integer>();
+
+	private File swapFile;
+	private RandomAccessFile swap;
+	private long swapLength;
+
+	/** Number of bytes of the planes held strongly, pinned ones included. */
+	private long bytes;
+
+	/**
+	 * Creates a cache of planes read by the given loader.
+	 * 
+	 * @param maxBytes Number of bytes of planes to hold strongly.
+	 * @param threadService Service used to prefetch planes, or null to disable
+	 *          prefetching.
+	 */
+	public PlaneCache(final Loader<A> loader, final long maxBytes,
+		final ThreadService threadService)
+	{
+		this.loader = loader;
+		this.maxBytes = maxBytes;
+		this.threadService = threadService;
+	}
+
+	// -- PlaneCache methods --
+
+	/** Gets the given plane, reading it from the source if needed. */
+	public A get(final int no) {
+		final A cached = lookup(no);
+		if (cached != null) return cached;
+		try {
+			return store(no, loader.load(no));
+		}
+		catch (final IOException e) {
+			throw new IllegalStateException("Cannot read plane " + no, e);
+		}
+	}
+
+	/** Stores a modified plane, which is then never evicted. */
+	public synchronized void put(final int no, final A plane) {
+		remove(no);
+		spilled.remove(no);
+		checksums.remove(no);
+		final A previous = pinned.put(no, plane);
+		if (previous != null) bytes -= byteCount(previous);
+		bytes += byteCount(plane);
+		evict();
+	}
+
+	/**
+	 * Gets the given plane and pins it, for callers which may modify it without
+	 * handing it back.
+	 */
+	public A pin(final int no) {
+		final A plane = get(no);
+		synchronized (this) {
+			if (!pinned.containsKey(no)) put(no, plane);
+			return pinned.get(no);
+		}
+	}
+
+	/**
+	 * Notes that a caller is done with a plane it got from this cache. If the
+	 * plane was evicted in the meantime and has been modified, it is cached
+	 * again, to be written to the swap file when it is next evicted.
+	 */
+	public synchronized void checkIn(final int no, final A plane) {
+		if (pinned.get(no) == plane || planes.get(no) == plane) {
+			// NB: Planes within the byte budget are checked upon eviction.
+			return;
+		}
+		if (!isModified(no, plane)) return;
+		spilled.remove(no);
+		remove(no);
+		insert(no, plane);
+	}
+
+	/** Returns true if the given plane is pinned. */
+	public synchronized boolean isPinned(final int no) {
+		return pinned.containsKey(no);
+	}
+
+	/** Returns true if a modified version of the given plane was swapped out. */
+	public synchronized boolean isSwapped(final int no) {
+		return swapped.containsKey(no);
+	}
+
+	/**
+	 * Reads the given plane in the background, unless it is already cached or
+	 * being read.
+	 */
+	public void prefetch(final int no) {
+		if (threadService == null) return;
+		synchronized (this) {
+			if (contains(no) || !pending.add(no)) return;
+		}
+		threadService.run(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					store(no, loader.load(no));
+				}
+				catch (final IOException e) {
+					// NB: The plane is read again when it is actually needed.
+				}
+				finally {
+					synchronized (PlaneCache.this) {
+						pending.remove(no);
+					}
+				}
+			}
+		});
+	}
+
+	/** Returns true if the given plane is cached. */
+	public synchronized boolean contains(final int no) {
+		if (planes.containsKey(no) || pinned.containsKey(no)) return true;
+		final SoftReference<A> ref = spilled.get(no);
+		return ref != null && ref.get() != null;
+	}
+
+	/**
+	 * Gets the number of bytes of planes currently held strongly, pinned planes
+	 * included.
+	 */
+	public synchronized long getByteCount() {
+		return bytes;
+	}
+
+	/**
+	 * Drops all cached planes, deletes the swap file and closes the loader, if
+	 * it is closeable.
+	 */
+	public void close() throws IOException {
+		synchronized (this) {
+			planes.clear();
+			spilled.clear();
+			pinned.clear();
+			checksums.clear();
+			swapped.clear();
+			bytes = 0;
+			if (swap != null) {
+				swap.close();
+				swap = null;
+				swapLength = 0;
+				swapFile.delete();
+			}
+		}
+		if (loader instanceof Closeable) ((Closeable) loader).close();
+	}
+
+	// -- Helper methods --
+
+	private synchronized A lookup(final int no) {
+		final A plane = planes.get(no);
+		if (plane != null) return plane;
+		final A modified = pinned.get(no);
+		if (modified != null) return modified;
+		final SoftReference<A> ref = spilled.remove(no);
+		if (ref == null) return null;
+		final A reclaimed = ref.get();
+		if (reclaimed != null) insert(no, reclaimed);
+		return reclaimed;
+	}
+
+	/**
+	 * Caches a freshly read plane. If another thread cached the same plane in
+	 * the meantime, that plane wins so that all callers share one copy. If the
+	 * plane was modified and swapped out, its data is read from the swap file.
+	 */
+	private synchronized A store(final int no, final A plane)
+		throws IOException
+	{
+		final A existing = lookup(no);
+		if (existing != null) return existing;
+		final Long offset = swapped.get(no);
+		if (offset != null) readSwap(offset, plane);
+		checksums.put(no, checksum(plane));
+		insert(no, plane);
+		return plane;
+	}
+
+	private void insert(final int no, final A plane) {
+		planes.put(no, plane);
+		bytes += byteCount(plane);
+		evict();
+	}
+
+	/** Evicts the eldest planes until the byte budget is met. */
+	private void evict() {
+		final Iterator<Map.Entry<Integer, A>> iter =
+			planes.entrySet().iterator();
+		while (bytes > maxBytes && planes.size() > 1) {
+			final Map.Entry<Integer, A> eldest = iter.next();
+			final int no = eldest.getKey();
+			final A plane = eldest.getValue();
+			iter.remove();
+			bytes -= byteCount(plane);
+			if (isModified(no, plane)) {
+				try {
+					writeSwap(no, plane);
+				}
+				catch (final IOException e) {
+					// NB: Keep the plane in memory rather than lose the changes.
+					pinned.put(no, plane);
+					bytes += byteCount(plane);
+					continue;
+				}
+			}
+			spilled.put(no, new SoftReference<A>(plane));
+		}
+	}
+
+	/** Returns true if a plane differs from its last read or written data. */
+	private boolean isModified(final int no, final A plane) {
+		final Long checksum = checksums.get(no);
+		return checksum == null || checksum.longValue() != checksum(plane);
+	}
+
+	private void remove(final int no) {
+		final A plane = planes.remove(no);
+		if (plane != null) bytes -= byteCount(plane);
+	}
+
+	/** Writes a modified plane to the swap file. */
+	private void writeSwap(final int no, final A plane) throws IOException {
+		if (swap == null) {
+			swapFile = File.createTempFile("planes", ".swap");
+			swapFile.deleteOnExit();
+			swap = new RandomAccessFile(swapFile, "rw");
+		}
+		final byte[] data = toBytes(plane.getCurrentStorageArray());
+		Long offset = swapped.get(no);
+		if (offset == null) {
+			offset = swapLength;
+			swapLength += data.length;
+		}
+		swap.seek(offset);
+		swap.write(data);
+		swapped.put(no, offset);
+		checksums.put(no, checksum(plane));
+	}
+
+	/** Reads the data of a swapped out plane into the given plane. */
+	private void readSwap(final long offset, final A plane) throws IOException {
+		final Object array = plane.getCurrentStorageArray();
+		final byte[] data = new byte[(int) byteCount(plane)];
+		swap.seek(offset);
+		swap.readFully(data);
+		fromBytes(data, array);
+	}
+
+	/** Converts a storage array to big-endian bytes. */
+	private byte[] toBytes(final Object array) {
+		if (array instanceof byte[]) return (byte[]) array;
+		final ByteBuffer buffer =
+			ByteBuffer.allocate(Array.getLength(array) * elementSize(array));
+		if (array instanceof short[]) buffer.asShortBuffer().put((short[]) array);
+		else if (array instanceof int[]) buffer.asIntBuffer().put((int[]) array);
+		else if (array instanceof long[]) buffer.asLongBuffer().put((long[]) array);
+		else if (array instanceof float[]) {
+			buffer.asFloatBuffer().put((float[]) array);
+		}
+		else if (array instanceof double[]) {
+			buffer.asDoubleBuffer().put((double[]) array);
+		}
+		else buffer.asCharBuffer().put((char[]) array);
+		return buffer.array();
+	}
+
+	/** Fills a storage array from big-endian bytes. */
+	private void fromBytes(final byte[] data, final Object array) {
+		if (array instanceof byte[]) {
+			System.arraycopy(data, 0, array, 0, data.length);
+			return;
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(data);
+		if (array instanceof short[]) buffer.asShortBuffer().get((short[]) array);
+		else if (array instanceof int[]) buffer.asIntBuffer().get((int[]) array);
+		else if (array instanceof long[]) buffer.asLongBuffer().get((long[]) array);
+		else if (array instanceof float[]) {
+			buffer.asFloatBuffer().get((float[]) array);
+		}
+		else if (array instanceof double[]) {
+			buffer.asDoubleBuffer().get((double[]) array);
+		}
+		else buffer.asCharBuffer().get((char[]) array);
+	}
+
+	/** Computes a 64-bit FNV-1a hash of a plane's values. */
+	private long checksum(final A plane) {
+		final Object array = plane.getCurrentStorageArray();
+		long hash = 0xcbf29ce484222325L;
+		if (array instanceof byte[]) {
+			for (final byte v : (byte[]) array) {
+				hash = (hash ^ v) * 0x100000001b3L;
+			}
+		}
+		else if (array instanceof short[]) {
+			for (final short v : (short[]) array) {
+				hash = (hash ^ v) * 0x100000001b3L;
+			}
+		}
+		else if (array instanceof int[]) {
+			for (final int v : (int[]) array) {
+				hash = (hash ^ v) * 0x100000001b3L;
+			}
+		}
+		else if (array instanceof long[]) {
+			for (final long v : (long[]) array) {
+				hash = (hash ^ v) * 0x100000001b3L;
+			}
+		}
+		else if (array instanceof float[]) {
+			for (final float v : (float[]) array) {
+				hash = (hash ^ Float.floatToRawIntBits(v)) * 0x100000001b3L;
+			}
+		}
+		else if (array instanceof double[]) {
+			for (final double v : (double[]) array) {
+				hash = (hash ^ Double.doubleToRawLongBits(v)) * 0x100000001b3L;
+			}
+		}
+		else {
+			for (final char v : (char[]) array) {
+				hash = (hash ^ v) * 0x100000001b3L;
+			}
+		}
+		return hash;
+	}
+
+	private long byteCount(final A plane) {
+		final Object array = plane.getCurrentStorageArray();
+		return (long) Array.getLength(array) * elementSize(array);
+	}
+
+	/** Gets the number of bytes per element of a storage array. */
+	private int elementSize(final Object array) {
+		final Class<?> c = array.getClass().getComponentType();
+		if (c == byte.class) return 1;
+		if (c == short.class || c == char.class) return 2;
+		if (c == long.class || c == double.class) return 8;
+		return 4;
+	}
+
+}
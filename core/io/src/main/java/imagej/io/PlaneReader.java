@@ -0,0 +1,347 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import loci.common.services.DependencyException;
+import loci.common.services.ServiceException;
+import loci.common.services.ServiceFactory;
+import loci.formats.ChannelSeparator;
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.ImageReader;
+import loci.formats.meta.IMetadata;
+import loci.formats.meta.MetadataRetrieve;
+import loci.formats.services.OMEXMLService;
+import net.imglib2.display.ColorTable;
+import net.imglib2.display.ColorTable16;
+import net.imglib2.display.ColorTable8;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.io.ImgIOException;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import ome.xml.model.primitives.PositiveFloat;
+
+/**
+ * Reads an image source one plane at a time.
+ * <p>
+ * Multichannel planes (e.g., RGB) are split into one plane per channel, and
+ * axes of size 1 are dropped, as {@link net.imglib2.io.ImgOpener} does.
+ * Planes are numbered exactly as the planes of a planar image with the
+ * reported axes and dimensions. The underlying reader is shared by all threads.
+ * </p>
+ * <p>
+ * The metadata {@link net.imglib2.io.ImgOpener} attaches to an image is also
+ * available: the spatial calibration and composite channel count up front, and
+ * the color table of each plane once that plane has been read.
+ * </p>
+ * 
+ * @author agent
+ */
+public class PlaneReader implements PlaneCache.Loader<ArrayDataAccess<?>>,
+	Closeable
+{
+
+	private final IFormatReader reader;
+	private final String name;
+	private final AxisType[] axes;
+	private final long[] dims;
+	private final int pixelType;
+	private final ByteOrder byteOrder;
+	private final double[] calibration;
+
+	/** Color table of each plane read so far, if the source is indexed. */
+	private final ColorTable[] colorTables;
+
+	/** Opens the given source, reading its metadata but none of its planes. */
+	public PlaneReader(final String source) throws ImgIOException {
+		reader = new ChannelSeparator(new ImageReader());
+		final IMetadata metadata = createMetadata();
+		if (metadata != null) reader.setMetadataStore(metadata);
+		try {
+			reader.setId(source);
+		}
+		catch (final FormatException e) {
+			throw new ImgIOException(e);
+		}
+		catch (final IOException e) {
+			throw new ImgIOException(e);
+		}
+		name = new File(source).getName();
+
+		final List<AxisType> axisList = new ArrayList<AxisType>();
+		final List<Long> dimList = new ArrayList<Long>();
+		axisList.add(Axes.X);
+		dimList.add((long) reader.getSizeX());
+		axisList.add(Axes.Y);
+		dimList.add((long) reader.getSizeY());
+		final String order = reader.getDimensionOrder();
+		for (int i = 2; i < order.length(); i++) {
+			final char axis = order.charAt(i);
+			final int size = size(axis);
+			if (size <= 1) continue;
+			axisList.add(axis(axis));
+			dimList.add((long) size);
+		}
+		axes = axisList.toArray(new AxisType[axisList.size()]);
+		dims = new long[dimList.size()];
+		for (int d = 0; d < dims.length; d++)
+			dims[d] = dimList.get(d);
+
+		pixelType = reader.getPixelType();
+		byteOrder =
+			reader.isLittleEndian() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+		calibration = new double[axes.length];
+		for (int d = 0; d < axes.length; d++) {
+			calibration[d] = calibration(metadata, axes[d]);
+		}
+		colorTables = new ColorTable[reader.getImageCount()];
+	}
+
+	// -- PlaneReader methods --
+
+	public String getName() {
+		return name;
+	}
+
+	public AxisType[] getAxes() {
+		return axes.clone();
+	}
+
+	public long[] getDims() {
+		return dims.clone();
+	}
+
+	public int getPlaneCount() {
+		return reader.getImageCount();
+	}
+
+	/** Gets the size of a pixel along each axis, or 1 where unknown. */
+	public double[] getCalibration() {
+		return calibration.clone();
+	}
+
+	/** Gets the number of channels which make up one composite color pixel. */
+	public int getCompositeChannelCount() {
+		return reader.getRGBChannelCount();
+	}
+
+	/**
+	 * Gets the color table of the given plane, or null if the source has none
+	 * or the plane has not been read yet.
+	 */
+	public ColorTable getColorTable(final int no) {
+		synchronized (reader) {
+			return colorTables[no];
+		}
+	}
+
+	/** Gets the pixel type, as one of the {@link FormatTools} constants. */
+	public int getPixelType() {
+		return pixelType;
+	}
+
+	public int getBitsPerPixel() {
+		return 8 * FormatTools.getBytesPerPixel(pixelType);
+	}
+
+	/**
+	 * Gets the number of bits per pixel actually used by the data (e.g., 12 for
+	 * 12-bit data stored in 16-bit pixels), as given by the source's metadata.
+	 */
+	public int getValidBitsPerPixel() {
+		final int bits = reader.getBitsPerPixel();
+		final int storedBits = getBitsPerPixel();
+		return bits > 0 && bits < storedBits ? bits : storedBits;
+	}
+
+	public boolean isSigned() {
+		return FormatTools.isSigned(pixelType);
+	}
+
+	public boolean isFloating() {
+		return FormatTools.isFloatingPoint(pixelType);
+	}
+
+	/**
+	 * Reads the given plane as a primitive array of the type matching the pixel
+	 * type (e.g., short[] for 16-bit pixels).
+	 */
+	public Object readPlane(final int no) throws IOException {
+		final byte[] bytes;
+		synchronized (reader) {
+			try {
+				bytes = reader.openBytes(no);
+				// NB: The lookup table belongs to the most recently read plane.
+				if (reader.isIndexed()) colorTables[no] = readColorTable();
+			}
+			catch (final FormatException e) {
+				throw new IOException(e);
+			}
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(byteOrder);
+		switch (pixelType) {
+			case FormatTools.INT8:
+			case FormatTools.UINT8:
+				return bytes;
+			case FormatTools.INT16:
+			case FormatTools.UINT16: {
+				final short[] data = new short[bytes.length / 2];
+				buffer.asShortBuffer().get(data);
+				return data;
+			}
+			case FormatTools.INT32:
+			case FormatTools.UINT32: {
+				final int[] data = new int[bytes.length / 4];
+				buffer.asIntBuffer().get(data);
+				return data;
+			}
+			case FormatTools.FLOAT: {
+				final float[] data = new float[bytes.length / 4];
+				buffer.asFloatBuffer().get(data);
+				return data;
+			}
+			default: {
+				final double[] data = new double[bytes.length / 8];
+				buffer.asDoubleBuffer().get(data);
+				return data;
+			}
+		}
+	}
+
+	// -- PlaneCache.Loader methods --
+
+	@Override
+	public ArrayDataAccess<?> load(final int no) throws IOException {
+		final Object plane = readPlane(no);
+		if (plane instanceof byte[]) return new ByteArray((byte[]) plane);
+		if (plane instanceof short[]) return new ShortArray((short[]) plane);
+		if (plane instanceof int[]) return new IntArray((int[]) plane);
+		if (plane instanceof float[]) return new FloatArray((float[]) plane);
+		return new DoubleArray((double[]) plane);
+	}
+
+	// -- Closeable methods --
+
+	@Override
+	public void close() throws IOException {
+		synchronized (reader) {
+			reader.close();
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Creates a store for the source's OME metadata, or null if unavailable. */
+	private IMetadata createMetadata() {
+		try {
+			final OMEXMLService service =
+				new ServiceFactory().getInstance(OMEXMLService.class);
+			return service.createOMEXMLMetadata();
+		}
+		catch (final DependencyException e) {
+			return null;
+		}
+		catch (final ServiceException e) {
+			return null;
+		}
+	}
+
+	private double calibration(final MetadataRetrieve metadata,
+		final AxisType axis)
+	{
+		if (metadata == null || metadata.getImageCount() == 0) return 1;
+		final Number value;
+		if (axis == Axes.X) value = value(metadata.getPixelsPhysicalSizeX(0));
+		else if (axis == Axes.Y) value = value(metadata.getPixelsPhysicalSizeY(0));
+		else if (axis == Axes.Z) value = value(metadata.getPixelsPhysicalSizeZ(0));
+		else if (axis == Axes.TIME) value = metadata.getPixelsTimeIncrement(0);
+		else value = null;
+		return value == null || value.doubleValue() <= 0 ? 1 : value
+			.doubleValue();
+	}
+
+	private Number value(final PositiveFloat size) {
+		return size == null ? null : size.getValue();
+	}
+
+	private ColorTable readColorTable() throws FormatException, IOException {
+		if (FormatTools.getBytesPerPixel(pixelType) == 1) {
+			final byte[][] lut = reader.get8BitLookupTable();
+			return lut == null ? null : new ColorTable8(lut);
+		}
+		final short[][] lut = reader.get16BitLookupTable();
+		return lut == null ? null : new ColorTable16(lut);
+	}
+
+	private int size(final char axis) {
+		switch (axis) {
+			case 'Z':
+				return reader.getSizeZ();
+			case 'C':
+				return reader.getEffectiveSizeC();
+			case 'T':
+				return reader.getSizeT();
+			default:
+				return 1;
+		}
+	}
+
+	private AxisType axis(final char axis) {
+		switch (axis) {
+			case 'Z':
+				return Axes.Z;
+			case 'C':
+				return Axes.CHANNEL;
+			default:
+				return Axes.TIME;
+		}
+	}
+
+}
@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.io;
+
+import imagej.thread.ThreadService;
+import loci.formats.FormatTools;
+import net.imglib2.img.ImgPlus;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.io.ImgIOException;
+import net.imglib2.meta.Axes;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Opens images as {@link VirtualPlanarImg}s, whose planes are read from the
+ * source through a {@link PlaneReader} on demand instead of all at once.
+ * <p>
+ * The range of each channel is set up front, so that displaying the image does
+ * not compute it by reading every plane: integer data spans the range of the
+ * bits per pixel the source reports, and floating point data spans the range of
+ * the channel's first plane.
+ * </p>
+ * 
+ * @author agent
+ */
+public class VirtualImgOpener {
+
+	private final ThreadService threadService;
+	private final long cacheBytes;
+
+	/**
+	 * Creates an opener whose images each cache up to the given number of
+	 * bytes of planes.
+	 * 
+	 * @param threadService Service used to prefetch planes, or null to disable
+	 *          prefetching.
+	 */
+	public VirtualImgOpener(final ThreadService threadService,
+		final long cacheBytes)
+	{
+		this.threadService = threadService;
+		this.cacheBytes = cacheBytes;
+	}
+
+	// -- VirtualImgOpener methods --
+
+	/** Opens the given source without reading any of its planes yet. */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public ImgPlus<?> openImg(final String source) throws ImgIOException {
+		final PlaneReader reader = new PlaneReader(source);
+		final long[] dims = reader.getDims();
+		final double[] calibration = reader.getCalibration();
+		final PlaneCache cache = new PlaneCache(reader, cacheBytes, threadService);
+		final VirtualPlanarImg img = new VirtualPlanarImg(dims, cache);
+		img.setLinkedType(createType(reader.getPixelType(), img));
+		final ImgPlus imgPlus =
+			new ImgPlus(img, reader.getName(), reader.getAxes(), calibration);
+		setChannelRanges(imgPlus, reader, cache);
+		return imgPlus;
+	}
+
+	// -- Helper methods --
+
+	private void setChannelRanges(final ImgPlus<?> imgPlus,
+		final PlaneReader reader, final PlaneCache<ArrayDataAccess<?>> cache)
+	{
+		final long[] dims = reader.getDims();
+		final int channelAxis = imgPlus.getAxisIndex(Axes.CHANNEL);
+		final long channels = channelAxis < 0 ? 1 : dims[channelAxis];
+		// planes between consecutive channels of the first Z and T position
+		long channelStride = 1;
+		for (int d = 2; d < channelAxis; d++) {
+			channelStride *= dims[d];
+		}
+		for (int c = 0; c < channels; c++) {
+			final double min, max;
+			if (reader.isFloating()) {
+				final Object plane =
+					cache.get((int) (c * channelStride)).getCurrentStorageArray();
+				final double[] range = range(plane);
+				min = range[0];
+				max = range[1];
+			}
+			else {
+				final int bits = reader.getValidBitsPerPixel();
+				min = reader.isSigned() ? -Math.pow(2, bits - 1) : 0;
+				max = min + Math.pow(2, bits) - 1;
+			}
+			imgPlus.setChannelMinimum(c, min);
+			imgPlus.setChannelMaximum(c, max);
+		}
+	}
+
+	/** Gets the range of the finite values of a float[] or double[] plane. */
+	private double[] range(final Object plane) {
+		final double[] range =
+			{ Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		if (plane instanceof float[]) {
+			for (final float v : (float[]) plane) {
+				include(range, v);
+			}
+		}
+		else {
+			for (final double v : (double[]) plane) {
+				include(range, v);
+			}
+		}
+		if (range[0] > range[1]) return new double[] { 0, 0 };
+		return range;
+	}
+
+	private void include(final double[] range, final double v) {
+		if (Double.isNaN(v) || Double.isInfinite(v)) return;
+		if (v < range[0]) range[0] = v;
+		if (v > range[1]) range[1] = v;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private NativeType<?> createType(final int pixelType,
+		final VirtualPlanarImg img) throws ImgIOException
+	{
+		switch (pixelType) {
+			case FormatTools.INT8:
+				return new ByteType(img);
+			case FormatTools.UINT8:
+				return new UnsignedByteType(img);
+			case FormatTools.INT16:
+				return new ShortType(img);
+			case FormatTools.UINT16:
+				return new UnsignedShortType(img);
+			case FormatTools.INT32:
+				return new IntType(img);
+			case FormatTools.UINT32:
+				return new UnsignedIntType(img);
+			case FormatTools.FLOAT:
+				return new FloatType(img);
+			case FormatTools.DOUBLE:
+				return new DoubleType(img);
+			default:
+				throw new ImgIOException("Unsupported pixel type: " +
+					FormatTools.getPixelTypeString(pixelType));
+		}
+	}
+
+}
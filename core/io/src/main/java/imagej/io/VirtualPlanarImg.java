@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.io;
+
+import imagej.data.CachedPlanes;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarLocation;
+import net.imglib2.type.NativeType;
+
+/**
+ * A {@link PlanarImg} whose planes are read on demand through a
+ * {@link PlaneCache}, rather than all being held in memory.
+ * <p>
+ * Whenever a new plane is visited, the plane one step further in the same
+ * direction is prefetched. Browsing along any axis (e.g., Z in an XYCZT image,
+ * where consecutive slices are C planes apart) thus finds the next plane
+ * already read.
+ * </p>
+ * <p>
+ * Edits are never lost to a plane being read again from the source. Planes
+ * replaced with {@link #setPlane} and planes handed out by {@link #getPlane}
+ * (whose callers may write into them at any time) are pinned in memory.
+ * Planes which cursors and random accesses wrote into are swapped out by the
+ * {@link PlaneCache}: the plane an accessor was on is checked in with the
+ * cache when the accessor moves to another plane or is garbage collected.
+ * Callers which only read a plane should use {@link #readPlane}, which does
+ * not pin it.
+ * </p>
+ * 
+ * @author agent
+ */
+public class VirtualPlanarImg<T extends NativeType<T>, A extends ArrayDataAccess<A>>
+	extends PlanarImg<T, A> implements CachedPlanes<A>
+{
+
+	private final PlaneCache<A> cache;
+
+	/** The most recently visited plane. */
+	private volatile int lastPlane = -1;
+
+	/** The plane each live accessor is on, keyed by the accessor. */
+	private final Map<Object, Handout<A>> handouts =
+		new WeakHashMap<Object, Handout<A>>();
+
+	/** Handouts not yet checked in, so that their planes stay reachable. */
+	private final Set<Handout<A>> live = new HashSet<Handout<A>>();
+
+	/** Handouts whose accessors were garbage collected. */
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+
+	public VirtualPlanarImg(final long[] dim, final PlaneCache<A> cache) {
+		super(dim, 1);
+		this.cache = cache;
+	}
+
+	// -- VirtualPlanarImg methods --
+
+	public PlaneCache<A> getCache() {
+		return cache;
+	}
+
+	/** Releases the cached planes and the underlying source. */
+	public void close() throws IOException {
+		synchronized (handouts) {
+			handouts.clear();
+			live.clear();
+		}
+		cache.close();
+	}
+
+	// -- PlanarImg methods --
+
+	@Override
+	public A update(final Object c) {
+		final int no = ((PlanarLocation) c).getCurrentPlane();
+		final A plane = fetch(no);
+		synchronized (handouts) {
+			checkInCollected();
+			final Handout<A> previous = handouts.get(c);
+			if (previous != null) {
+				if (previous.no == no && previous.plane == plane) return plane;
+				checkIn(previous);
+			}
+			final Handout<A> handout = new Handout<A>(c, no, plane, collected);
+			handouts.put(c, handout);
+			live.add(handout);
+		}
+		return plane;
+	}
+
+	@Override
+	public A getPlane(final int no) {
+		fetch(no);
+		return cache.pin(no);
+	}
+
+	@Override
+	public void setPlane(final int no, final A plane) {
+		cache.put(no, plane);
+	}
+
+	// -- CachedPlanes methods --
+
+	@Override
+	public A readPlane(final int no) {
+		return fetch(no);
+	}
+
+	// -- Helper methods --
+
+	/** Gets a plane, prefetching the next one in the direction of travel. */
+	private A fetch(final int no) {
+		final A plane = cache.get(no);
+		final int last = lastPlane;
+		if (no != last) {
+			lastPlane = no;
+			if (last >= 0) {
+				final int next = no + (no - last);
+				if (next >= 0 && next < numSlices()) cache.prefetch(next);
+			}
+		}
+		return plane;
+	}
+
+	private void checkIn(final Handout<A> handout) {
+		handout.clear();
+		live.remove(handout);
+		cache.checkIn(handout.no, handout.plane);
+	}
+
+	private void checkInCollected() {
+		Reference<?> ref;
+		while ((ref = collected.poll()) != null) {
+			@SuppressWarnings("unchecked")
+			final Handout<A> handout = (Handout<A>) ref;
+			checkIn(handout);
+		}
+	}
+
+	// -- Helper classes --
+
+	/** A plane handed to an accessor, which may write into it. */
+	private static class Handout<A> extends WeakReference<Object> {
+
+		private final int no;
+		private final A plane;
+
+		public Handout(final Object accessor, final int no, final A plane,
+			final ReferenceQueue<Object> queue)
+		{
+			super(accessor, queue);
+			this.no = no;
+			this.plane = plane;
+		}
+	}
+
+}
@@ -54,6 +54,12 @@
 
 /**
  * Opens the selected file as a {@link Dataset}.
+ * <p>
+ * When a user interface is showing, the dataset is returned as soon as its
+ * first plane has been read, and fills in as the remaining planes are read in
+ * the background; {@link IOService#getOpening} waits for them. Otherwise (e.g.,
+ * in a headless script) the whole dataset is read before the command returns.
+ * </p>
  * 
  * @author Curtis Rueden
  * @author Mark Hiner
@@ -84,7 +90,8 @@ public class OpenImage extends ContextCommand {
 	public void run() {
 		final String source = inputFile.getAbsolutePath();
 		try {
-			dataset = ioService.loadDataset(source);
+			if (uiService.isVisible()) dataset = ioService.openDataset(source);
+			else dataset = ioService.loadDataset(source);
 		}
 		catch (final ImgIOException e) {
 			log.error(e);
@@ -38,11 +38,7 @@
 import imagej.command.ContextCommand;
 import imagej.data.Dataset;
 import imagej.display.Display;
-import imagej.event.EventService;
-import imagej.event.StatusService;
-import imagej.io.StatusDispatcher;
-import imagej.io.event.FileSavedEvent;
-import imagej.log.LogService;
+import imagej.io.IOService;
 import imagej.menu.MenuConstants;
 import imagej.module.ItemIO;
 import imagej.plugin.Menu;
@@ -54,14 +50,16 @@
 import imagej.widget.FileWidget;
 
 import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.ImgPlus;
-import net.imglib2.io.ImgIOException;
 import net.imglib2.io.ImgSaver;
 
 /**
  * Saves the current {@link Dataset} to disk using a user-specified file name.
+ * Planes are encoded in the background, and the command returns once the file
+ * is complete, reporting any failure.
  * 
  * @author Mark Hiner
  */
@@ -72,13 +70,7 @@
 public class SaveAsImage extends ContextCommand {
 
 	@Parameter
-	private LogService log;
-
-	@Parameter
-	private EventService eventService;
-
-	@Parameter
-	private StatusService statusService;
+	private IOService ioService;
 
 	@Parameter
 	private UIService uiService;
@@ -119,49 +111,41 @@ public void run() {
 			overwrite = result == DialogPrompt.Result.YES_OPTION;
 		}
 
-		if (overwrite) {
-			final ImgSaver imageSaver = new ImgSaver();
-			boolean saveImage = true;
-			try {
-				imageSaver.addStatusListener(new StatusDispatcher(statusService));
-
-				if (imageSaver.isCompressible(img)) {
-					result =
-					uiService.showDialog("Your image contains axes other than XYZCT.\n"
-						+ "When saving, these may be compressed to the "
-						+ "Channel axis (or the save process may simply fail).\n"
-						+ "Would you like to continue?", "Save [IJ2]",
-						DialogPrompt.MessageType.WARNING_MESSAGE,
-						DialogPrompt.OptionType.YES_NO_OPTION);
-				}
-
-				saveImage = result == DialogPrompt.Result.YES_OPTION;
-				imageSaver.saveImg(outputFile.getAbsolutePath(), img);
-				eventService.publish(new FileSavedEvent(img.getSource()));
-			}
-			catch (final ImgIOException e) {
-				log.error(e);
-				uiService.showDialog(e.getMessage(), "IJ2: Save Error",
-					DialogPrompt.MessageType.ERROR_MESSAGE);
-				return;
-			}
-			catch (final IncompatibleTypeException e) {
-				log.error(e);
-				uiService.showDialog(e.getMessage(), "IJ2: Save Error",
-					DialogPrompt.MessageType.ERROR_MESSAGE);
-				return;
-			}
-
-			if (saveImage) {
-				dataset.setName(outputFile.getName());
-				dataset.setDirty(false);
-
-				display.setName(outputFile.getName());
-				// NB - removed when display became ItemIO.Both.
-				//  Restore later if necessary.
-				//display.update();
-			}
+		if (!overwrite) return;
+
+		if (new ImgSaver().isCompressible(img)) {
+			result =
+				uiService.showDialog("Your image contains axes other than XYZCT.\n" +
+					"When saving, these may be compressed to the " +
+					"Channel axis (or the save process may simply fail).\n" +
+					"Would you like to continue?", "Save [IJ2]",
+					DialogPrompt.MessageType.WARNING_MESSAGE,
+					DialogPrompt.OptionType.YES_NO_OPTION);
+			if (result != DialogPrompt.Result.YES_OPTION) return;
+		}
+
+		// NB: The dataset is marked clean once the save completes.
+		final Future<File> saved =
+			ioService.saveDataset(dataset, outputFile.getAbsolutePath());
+		try {
+			if (saved.get() == null) return; // cancelled
 		}
+		catch (final InterruptedException e) {
+			saved.cancel(true);
+			return;
+		}
+		catch (final ExecutionException e) {
+			uiService.showDialog("Could not save \"" + outputFile.getName() +
+				"\": " + e.getCause().getMessage(), "Save [IJ2]",
+				DialogPrompt.MessageType.ERROR_MESSAGE);
+			return;
+		}
+
+		dataset.setName(outputFile.getName());
+		display.setName(outputFile.getName());
+		// NB - removed when display became ItemIO.Both.
+		//  Restore later if necessary.
+		//display.update();
 	}
 
 }
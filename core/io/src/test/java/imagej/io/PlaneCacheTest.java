@@ -0,0 +1,232 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import imagej.ImageJ;
+import imagej.thread.ThreadService;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link PlaneCache}.
+ * 
+ * @author agent
+ */
+public class PlaneCacheTest {
+
+	private static final int PLANE_SIZE = 100;
+
+	@Test
+	public void testReadOnDemand() {
+		final CountingLoader loader = new CountingLoader();
+		final PlaneCache<ByteArray> cache =
+			new PlaneCache<ByteArray>(loader, 10 * PLANE_SIZE, null);
+		assertFalse(cache.contains(3));
+		final ByteArray plane = cache.get(3);
+		assertEquals(3, plane.getValue(0));
+		assertSame(plane, cache.get(3));
+		assertEquals(1, loader.loads);
+		assertTrue(cache.contains(3));
+		assertEquals(PLANE_SIZE, cache.getByteCount());
+	}
+
+	@Test
+	public void testByteBudget() {
+		final CountingLoader loader = new CountingLoader();
+		final PlaneCache<ByteArray> cache =
+			new PlaneCache<ByteArray>(loader, 2 * PLANE_SIZE, null);
+		for (int no = 0; no < 5; no++) {
+			cache.get(no);
+			assertTrue(cache.getByteCount() <= 2 * PLANE_SIZE);
+		}
+		assertEquals(2 * PLANE_SIZE, cache.getByteCount());
+		// the most recently used planes are held strongly
+		final int loads = loader.loads;
+		cache.get(4);
+		cache.get(3);
+		assertEquals(loads, loader.loads);
+		assertFalse(cache.isPinned(0));
+	}
+
+	@Test
+	public void testUnmodifiedPlanesAreNotPinned() {
+		final PlaneCache<ByteArray> cache =
+			new PlaneCache<ByteArray>(new CountingLoader(), PLANE_SIZE, null);
+		final ByteArray plane = cache.get(0);
+		cache.get(1); // evicts plane 0
+		cache.checkIn(0, plane);
+		assertFalse(cache.isPinned(0));
+		assertFalse(cache.isPinned(1));
+	}
+
+	@Test
+	public void testModifiedPlaneIsSwappedOnEviction() {
+		final CountingLoader loader = new CountingLoader();
+		final PlaneCache<ByteArray> cache =
+			new PlaneCache<ByteArray>(loader, PLANE_SIZE, null);
+		final ByteArray plane = cache.get(0);
+		plane.setValue(7, (byte) 99);
+		cache.get(1); // evicts plane 0
+		assertFalse(cache.isPinned(0));
+		assertTrue(cache.isSwapped(0));
+		assertEquals(PLANE_SIZE, cache.getByteCount());
+		assertSame(plane, cache.get(0));
+		assertEquals(99, cache.get(0).getValue(7));
+		assertEquals(2, loader.loads);
+	}
+
+	@Test
+	public void testModifiedPlaneIsCachedOnCheckIn() {
+		final PlaneCache<ByteArray> cache =
+			new PlaneCache<ByteArray>(new CountingLoader(), PLANE_SIZE, null);
+		final ByteArray plane = cache.get(0);
+		cache.get(1); // evicts plane 0, unmodified
+		assertFalse(cache.isSwapped(0));
+		// a caller still holding the plane writes into it
+		plane.setValue(7, (byte) 99);
+		cache.checkIn(0, plane);
+		assertFalse(cache.isPinned(0));
+		assertSame(plane, cache.get(0));
+		cache.get(1); // evicts plane 0 again, now modified
+		assertTrue(cache.isSwapped(0));
+	}
+
+	@Test
+	public void testPutAndPin() {
+		final CountingLoader loader = new CountingLoader();
+		final PlaneCache<ByteArray> cache =
+			new PlaneCache<ByteArray>(loader, PLANE_SIZE, null);
+		final ByteArray replacement = new ByteArray(PLANE_SIZE);
+		cache.put(2, replacement);
+		assertTrue(cache.isPinned(2));
+		assertSame(replacement, cache.get(2));
+		assertEquals(0, loader.loads);
+
+		final ByteArray pinned = cache.pin(4);
+		assertTrue(cache.isPinned(4));
+		for (int no = 5; no < 10; no++) {
+			cache.get(no);
+		}
+		assertSame(pinned, cache.get(4));
+		assertEquals(6, loader.loads);
+	}
+
+	@Test
+	public void testPinnedPlanesCountAgainstBudget() {
+		final PlaneCache<ByteArray> cache =
+			new PlaneCache<ByteArray>(new CountingLoader(), 3 * PLANE_SIZE, null);
+		cache.pin(0);
+		cache.pin(1);
+		for (int no = 2; no < 10; no++) {
+			cache.get(no);
+			assertTrue(cache.getByteCount() <= 3 * PLANE_SIZE);
+		}
+		assertTrue(cache.contains(0));
+		assertTrue(cache.contains(1));
+		// once the pinned planes fill the budget, one more plane is held
+		cache.pin(2);
+		cache.pin(3);
+		cache.get(4);
+		assertEquals(5 * PLANE_SIZE, cache.getByteCount());
+	}
+
+	@Test
+	public void testPrefetch() throws InterruptedException {
+		final ThreadService threadService =
+			new ImageJ(ThreadService.class).getService(ThreadService.class);
+		final CountingLoader loader = new CountingLoader();
+		final PlaneCache<ByteArray> cache =
+			new PlaneCache<ByteArray>(loader, 10 * PLANE_SIZE, threadService);
+		cache.prefetch(6);
+		for (int i = 0; i < 100 && !cache.contains(6); i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(cache.contains(6));
+		cache.prefetch(6);
+		assertEquals(6, cache.get(6).getValue(0));
+		assertEquals(1, loader.loads);
+	}
+
+	@Test
+	public void testClose() throws IOException {
+		final CountingLoader loader = new CountingLoader();
+		final PlaneCache<ByteArray> cache =
+			new PlaneCache<ByteArray>(loader, 10 * PLANE_SIZE, null);
+		cache.get(0);
+		cache.put(1, new ByteArray(PLANE_SIZE));
+		cache.close();
+		assertTrue(loader.closed);
+		assertFalse(cache.contains(0));
+		assertFalse(cache.contains(1));
+		assertEquals(0, cache.getByteCount());
+	}
+
+	// -- Helper classes --
+
+	/** Creates planes filled with their plane number, counting the reads. */
+	private static class CountingLoader implements
+		PlaneCache.Loader<ByteArray>, Closeable
+	{
+
+		private volatile int loads;
+		private boolean closed;
+
+		@Override
+		public synchronized ByteArray load(final int no) {
+			loads++;
+			final ByteArray plane = new ByteArray(PLANE_SIZE);
+			for (int i = 0; i < PLANE_SIZE; i++) {
+				plane.setValue(i, (byte) no);
+			}
+			return plane;
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+
+}
@@ -35,6 +35,12 @@
 
 package imagej.legacy;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import javassist.CannotCompileException;
 import javassist.ClassClassPath;
 import javassist.ClassPool;
@@ -53,6 +59,12 @@
  * code, so that (e.g.) the modern UI is aware of legacy ImageJ events as they
  * occur.
  * </p>
+ * <p>
+ * Modifications are queued until {@link #loadClass(String)} is called. If the
+ * {@link LegacyClassCache} holds bytecode patched identically before, it is
+ * loaded directly; otherwise the patches are applied with Javassist and the
+ * result is added to the cache.
+ * </p>
  * 
  * @author Curtis Rueden
  * @author Rick Lentz
@@ -64,9 +76,21 @@ public class CodeHacker {
 
 	private final ClassPool pool;
 	private final ClassLoader classLoader;
+	private final LegacyClassCache cache;
+
+	/** Modifications queued for each class, in the order requested. */
+	private final Map<String, List<Patch>> patches =
+		new HashMap<String, List<Patch>>();
 
 	public CodeHacker(ClassLoader classLoader) {
+		this(classLoader, new LegacyClassCache());
+	}
+
+	public CodeHacker(final ClassLoader classLoader,
+		final LegacyClassCache cache)
+	{
 		this.classLoader = classLoader;
+		this.cache = cache;
 		pool = new ClassPool();
 		pool.appendClassPath(new ClassClassPath(getClass()));
 	}
@@ -86,7 +110,7 @@ public CodeHacker(ClassLoader classLoader) {
 	public void
 		insertAfterMethod(final String fullClass, final String methodSig)
 	{
-		insertAfterMethod(fullClass, methodSig, newCode(fullClass, methodSig));
+		insertAfterMethod(fullClass, methodSig, null);
 	}
 
 	/**
@@ -102,13 +126,7 @@ public CodeHacker(ClassLoader classLoader) {
 	public void insertAfterMethod(final String fullClass,
 		final String methodSig, final String newCode)
 	{
-		try {
-			getMethod(fullClass, methodSig).insertAfter(expand(newCode));
-		}
-		catch (final CannotCompileException e) {
-			throw new IllegalArgumentException("Cannot modify method: " + methodSig,
-				e);
-		}
+		addPatch(fullClass, new Patch(Patch.AFTER, methodSig, newCode));
 	}
 
 	/**
@@ -126,7 +144,7 @@ public void insertAfterMethod(final String fullClass,
 	public void
 		insertBeforeMethod(final String fullClass, final String methodSig)
 	{
-		insertBeforeMethod(fullClass, methodSig, newCode(fullClass, methodSig));
+		insertBeforeMethod(fullClass, methodSig, null);
 	}
 
 	/**
@@ -142,13 +160,7 @@ public void insertAfterMethod(final String fullClass,
 	public void insertBeforeMethod(final String fullClass,
 		final String methodSig, final String newCode)
 	{
-		try {
-			getMethod(fullClass, methodSig).insertBefore(expand(newCode));
-		}
-		catch (final CannotCompileException e) {
-			throw new IllegalArgumentException("Cannot modify method: " + methodSig,
-				e);
-		}
+		addPatch(fullClass, new Patch(Patch.BEFORE, methodSig, newCode));
 	}
 
 	/**
@@ -173,7 +185,7 @@ public void insertBeforeMethod(final String fullClass,
 	 *          "public void setVisible(boolean vis)"
 	 */
 	public void insertMethod(final String fullClass, final String methodSig) {
-		insertMethod(fullClass, methodSig, newCode(fullClass, methodSig));
+		insertMethod(fullClass, methodSig, null);
 	}
 
 	/**
@@ -188,15 +200,7 @@ public void insertMethod(final String fullClass, final String methodSig) {
 	public void insertMethod(final String fullClass, final String methodSig,
 		final String newCode)
 	{
-		final CtClass classRef = getClass(fullClass);
-		final String methodBody = methodSig + " { " + expand(newCode) + " } ";
-		try {
-			final CtMethod methodRef = CtNewMethod.make(methodBody, classRef);
-			classRef.addMethod(methodRef);
-		}
-		catch (final CannotCompileException e) {
-			throw new IllegalArgumentException("Cannot add method: " + methodSig, e);
-		}
+		addPatch(fullClass, new Patch(Patch.NEW, methodSig, newCode));
 	}
 
 	/**
@@ -211,17 +215,131 @@ public void insertMethod(final String fullClass, final String methodSig,
 	 * @return the loaded class
 	 */
 	public Class<?> loadClass(final String fullClass) {
+		final List<Patch> list = patches.remove(fullClass);
+
+		// look for identically patched bytecode from an earlier session
+		String key = null;
+		if (cache.isEnabled()) {
+			try {
+				key = cache.getKey(fullClass, getPatchClass(fullClass),
+					describe(list));
+				final byte[] bytecode = cache.read(fullClass, key);
+				if (bytecode != null) {
+					return LegacyClassCache.defineClass(classLoader, fullClass, bytecode);
+				}
+			}
+			catch (final IOException e) {
+				// NB: Fall back to patching the class again.
+				System.err.println("Warning: Cannot use cached class: " + fullClass);
+				e.printStackTrace();
+			}
+			catch (final LinkageError e) {
+				return cannotLoad(fullClass, e);
+			}
+		}
+
 		final CtClass classRef = getClass(fullClass);
+		if (list != null) {
+			for (final Patch patch : list) {
+				apply(fullClass, patch);
+			}
+		}
+		final byte[] bytecode;
 		try {
-			return classRef.toClass(classLoader, null);
+			bytecode = classRef.toBytecode();
 		}
 		catch (final CannotCompileException e) {
-			// Cannot use LogService; it will not be initialized by the time the DefaultLegacyService
-			// class is loaded, which is when the CodeHacker is run
-			System.err.println("Warning: Cannot load class: " + fullClass);
-			e.printStackTrace();
-			return null;
+			return cannotLoad(fullClass, e);
+		}
+		catch (final IOException e) {
+			return cannotLoad(fullClass, e);
 		}
+		if (key != null) {
+			try {
+				cache.write(fullClass, key, bytecode);
+			}
+			catch (final IOException e) {
+				System.err.println("Warning: Cannot cache class: " + fullClass);
+				e.printStackTrace();
+			}
+		}
+		try {
+			return LegacyClassCache.defineClass(classLoader, fullClass, bytecode);
+		}
+		catch (final IOException e) {
+			return cannotLoad(fullClass, e);
+		}
+		catch (final LinkageError e) {
+			return cannotLoad(fullClass, e);
+		}
+	}
+
+	// -- Helper methods --
+
+	private Class<?> cannotLoad(final String fullClass, final Throwable t) {
+		// Cannot use LogService; it will not be initialized by the time the DefaultLegacyService
+		// class is loaded, which is when the CodeHacker is run
+		System.err.println("Warning: Cannot load class: " + fullClass);
+		t.printStackTrace();
+		return null;
+	}
+
+	/** Queues a modification of the given class. */
+	private void addPatch(final String fullClass, final Patch patch) {
+		List<Patch> list = patches.get(fullClass);
+		if (list == null) {
+			list = new ArrayList<Patch>();
+			patches.put(fullClass, list);
+		}
+		list.add(patch);
+	}
+
+	/** Describes the given modifications, for use as part of a cache key. */
+	private String describe(final List<Patch> list) {
+		if (list == null) return "";
+		final StringBuilder sb = new StringBuilder();
+		for (final Patch patch : list) {
+			sb.append(patch.kind).append('\t').append(patch.methodSig);
+			sb.append('\t').append(patch.code == null ? "" : patch.code);
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/** Applies a queued modification to the Javassist class object. */
+	private void apply(final String fullClass, final Patch patch) {
+		final String methodSig = patch.methodSig;
+		final String code =
+			patch.code != null ? patch.code : newCode(fullClass, methodSig);
+		if (patch.kind == Patch.NEW) {
+			final CtClass classRef = getClass(fullClass);
+			final String methodBody = methodSig + " { " + expand(code) + " } ";
+			try {
+				final CtMethod methodRef = CtNewMethod.make(methodBody, classRef);
+				classRef.addMethod(methodRef);
+			}
+			catch (final CannotCompileException e) {
+				throw new IllegalArgumentException("Cannot add method: " + methodSig,
+					e);
+			}
+			return;
+		}
+		try {
+			final CtMethod method = getMethod(fullClass, methodSig);
+			if (patch.kind == Patch.BEFORE) method.insertBefore(expand(code));
+			else method.insertAfter(expand(code));
+		}
+		catch (final CannotCompileException e) {
+			throw new IllegalArgumentException("Cannot modify method: " + methodSig,
+				e);
+		}
+	}
+
+	/** Gets the name of the patch class corresponding to the given class. */
+	private String getPatchClass(final String fullClass) {
+		final int dotIndex = fullClass.lastIndexOf(".");
+		final String className = fullClass.substring(dotIndex + 1);
+		return PATCH_PKG + "." + className + PATCH_SUFFIX;
 	}
 
 	/** Gets the Javassist class object corresponding to the given class name. */
@@ -259,14 +377,11 @@ private CtMethod getMethod(final String fullClass, final String methodSig) {
 	 * class and method corresponding to the given method signature.
 	 */
 	private String newCode(final String fullClass, final String methodSig) {
-		final int dotIndex = fullClass.lastIndexOf(".");
-		final String className = fullClass.substring(dotIndex + 1);
-
 		final String methodName = getMethodName(methodSig);
 		final boolean isStatic = isStatic(methodSig);
 		final boolean isVoid = isVoid(methodSig);
 
-		final String patchClass = PATCH_PKG + "." + className + PATCH_SUFFIX;
+		final String patchClass = getPatchClass(fullClass);
 		for (final CtMethod method : getClass(patchClass).getMethods()) try {
 			if ((method.getModifiers() & Modifier.STATIC) == 0) continue;
 			final CtClass[] types = method.getParameterTypes();
@@ -336,4 +451,22 @@ private boolean isVoid(final String methodSig) {
 			methodPrefix.indexOf(" void ") > 0;
 	}
 
+	// -- Helper classes --
+
+	/** A queued modification of a method. */
+	private static class Patch {
+
+		private static final char BEFORE = 'b', AFTER = 'a', NEW = 'n';
+
+		private final char kind;
+		private final String methodSig;
+		private final String code;
+
+		public Patch(final char kind, final String methodSig, final String code) {
+			this.kind = kind;
+			this.methodSig = methodSig;
+			this.code = code;
+		}
+	}
+
 }
@@ -0,0 +1,319 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.legacy;
+
+import imagej.util.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProtectionDomain;
+
+/**
+ * On-disk cache of the legacy classes patched by the {@link CodeHacker}.
+ * <p>
+ * Each patched class is stored under a key derived from the original bytecode
+ * of the class, the bytecode of its patch class (in the
+ * {@link imagej.legacy.patches} package), the list of patches applied to it,
+ * the bytecode of the classes which do the patching or are referenced by the
+ * generated code, and the contents of the ImageJ1 JAR file. As long as none of
+ * those change, subsequent startups define the cached bytecode directly
+ * instead of patching it anew with Javassist.
+ * </p>
+ * <p>
+ * Since cached bytecode is defined without any further checks, the cache lives
+ * in {@code ~/.imagej/cache/legacy}, which only the current user may access.
+ * Its location can be set via the {@code imagej.legacy.cache} system property;
+ * setting it to {@code false} disables the cache.
+ * </p>
+ * 
+ * @author agent
+ */
+public class LegacyClassCache {
+
+	/** System property controlling the location of the cache. */
+	public static final String CACHE_PROPERTY = "imagej.legacy.cache";
+
+	/**
+	 * Classes whose bytecode determines the patched code: those doing the
+	 * patching, and those referenced by the code they insert.
+	 */
+	private static final String[] PATCHING_CLASSES = {
+		"imagej.legacy.CodeHacker", "imagej.legacy.LegacyClassCache",
+		"imagej.legacy.LegacyInjector", "imagej.legacy.Utils",
+		"imagej.legacy.DefaultLegacyService" };
+
+	/** Class identifying the location of ImageJ1. */
+	private static final String IJ1_CLASS = "ij.IJ";
+
+	/** Digest of the patching classes and ImageJ1, computed once. */
+	private static byte[] environmentDigest;
+
+	/** The cache directory, or null if caching is disabled. */
+	private final File directory;
+
+	public LegacyClassCache() {
+		this(getDefaultDirectory());
+	}
+
+	public LegacyClassCache(final File directory) {
+		this.directory = directory;
+	}
+
+	// -- LegacyClassCache methods --
+
+	/**
+	 * Gets the default cache directory, or null if the cache was disabled by
+	 * setting the {@code imagej.legacy.cache} system property to {@code false}.
+	 */
+	public static File getDefaultDirectory() {
+		final String path = System.getProperty(CACHE_PROPERTY);
+		if ("false".equals(path)) return null;
+		if (path != null) return new File(path);
+		try {
+			return FileUtils.getUserCacheDirectory("legacy");
+		}
+		catch (final IOException e) {
+			System.err.println("Warning: Legacy class cache disabled: " +
+				e.getMessage());
+			return null;
+		}
+	}
+
+	/** Gets whether the cache is enabled. */
+	public boolean isEnabled() {
+		return directory != null;
+	}
+
+	/**
+	 * Computes the cache key of a patched class.
+	 * 
+	 * @param fullClass The fully qualified name of the class to patch.
+	 * @param patchClass The fully qualified name of the class implementing the
+	 *          patches, or null if there is none.
+	 * @param patches A description of all patches applied to the class.
+	 * @return the key, or null if the original class cannot be found
+	 */
+	public String getKey(final String fullClass, final String patchClass,
+		final String patches) throws IOException
+	{
+		final byte[] original = readResource(fullClass);
+		if (original == null) return null;
+		final MessageDigest digest = createDigest();
+		digest.update(getEnvironmentDigest());
+		digest.update((fullClass + "\n").getBytes("UTF-8"));
+		digest.update(original);
+		if (patchClass != null) {
+			final byte[] patch = readResource(patchClass);
+			if (patch != null) digest.update(patch);
+		}
+		digest.update(patches.getBytes("UTF-8"));
+		final StringBuilder sb = new StringBuilder();
+		for (final byte b : digest.digest()) {
+			sb.append(String.format("%02x", b & 0xff));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Reads the cached bytecode for the given key.
+	 * 
+	 * @return the bytecode, or null if it is not cached
+	 */
+	public byte[] read(final String fullClass, final String key)
+		throws IOException
+	{
+		if (!isEnabled() || key == null) return null;
+		final File file = getFile(fullClass, key);
+		if (!file.exists()) return null;
+		return readFully(new FileInputStream(file));
+	}
+
+	/** Stores the patched bytecode of a class, replacing older versions. */
+	public void write(final String fullClass, final String key,
+		final byte[] bytecode) throws IOException
+	{
+		if (!isEnabled() || key == null) return;
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Could not make directory " + directory);
+		}
+
+		// remove stale versions of the class
+		final String prefix = fullClass + "-";
+		final File[] list = directory.listFiles();
+		if (list != null) {
+			for (final File file : list) {
+				if (file.getName().startsWith(prefix)) file.delete();
+			}
+		}
+
+		final File file = getFile(fullClass, key);
+		final File tmp = File.createTempFile(fullClass + ".", ".tmp", directory);
+		final OutputStream out = new FileOutputStream(tmp);
+		try {
+			out.write(bytecode);
+		}
+		finally {
+			out.close();
+		}
+		if (!tmp.renameTo(file)) {
+			tmp.delete();
+			throw new IOException("Could not write " + file);
+		}
+	}
+
+	/** Defines a class from the given bytecode in the given class loader. */
+	public static Class<?> defineClass(final ClassLoader classLoader,
+		final String fullClass, final byte[] bytecode) throws IOException
+	{
+		// NB: This is the same mechanism Javassist uses in CtClass#toClass.
+		try {
+			final Method method =
+				ClassLoader.class.getDeclaredMethod("defineClass", String.class,
+					byte[].class, int.class, int.class, ProtectionDomain.class);
+			method.setAccessible(true);
+			return (Class<?>) method.invoke(classLoader, fullClass, bytecode, 0,
+				bytecode.length, null);
+		}
+		catch (final NoSuchMethodException e) {
+			throw new IOException(e.getMessage());
+		}
+		catch (final IllegalAccessException e) {
+			throw new IOException(e.getMessage());
+		}
+		catch (final InvocationTargetException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof LinkageError) throw (LinkageError) cause;
+			throw new IOException(cause == null ? e.getMessage() : cause
+				.getMessage());
+		}
+	}
+
+	// -- Helper methods --
+
+	private static MessageDigest createDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		}
+		catch (final NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Gets a digest of the bytecode of the patching classes and of the ImageJ1
+	 * JAR file (or, if ImageJ1 is not in a JAR file, of its main class).
+	 */
+	private static synchronized byte[] getEnvironmentDigest()
+		throws IOException
+	{
+		if (environmentDigest != null) return environmentDigest;
+		final MessageDigest digest = createDigest();
+		for (final String className : PATCHING_CLASSES) {
+			final byte[] bytecode = readResource(className);
+			if (bytecode == null) {
+				throw new IOException("Cannot read bytecode of " + className);
+			}
+			digest.update(className.getBytes("UTF-8"));
+			digest.update(bytecode);
+		}
+		final URL ij1 = getResource(IJ1_CLASS);
+		if (ij1 == null) throw new IOException("ImageJ1 not found");
+		digest.update(ij1.toString().getBytes("UTF-8"));
+		if (ij1.getProtocol().equals("jar")) {
+			final byte[] buffer = new byte[65536];
+			final InputStream in =
+				new FileInputStream(FileUtils.urlToFile(ij1));
+			try {
+				for (;;) {
+					final int count = in.read(buffer);
+					if (count < 0) break;
+					digest.update(buffer, 0, count);
+				}
+			}
+			finally {
+				in.close();
+			}
+		}
+		else digest.update(readResource(IJ1_CLASS));
+		environmentDigest = digest.digest();
+		return environmentDigest;
+	}
+
+	private File getFile(final String fullClass, final String key) {
+		return new File(directory, fullClass + "-" + key + ".class");
+	}
+
+	/** Reads the original bytecode of the given class, as Javassist sees it. */
+	private static byte[] readResource(final String fullClass)
+		throws IOException
+	{
+		final URL url = getResource(fullClass);
+		if (url == null) return null;
+		return readFully(url.openStream());
+	}
+
+	private static URL getResource(final String fullClass) {
+		return CodeHacker.class.getResource("/" + fullClass.replace('.', '/') +
+			".class");
+	}
+
+	private static byte[] readFully(final InputStream in) throws IOException {
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[65536];
+			for (;;) {
+				final int count = in.read(buffer);
+				if (count < 0) break;
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+}
@@ -36,6 +36,7 @@
 package imagej.legacy;
 
 import imagej.util.ClassUtils;
+import imagej.util.StartupProfiler;
 
 /**
  * Overrides class behavior of ImageJ1 classes using bytecode manipulation. This
@@ -48,9 +49,20 @@ public class LegacyInjector {
 
 	/** Overrides class behavior of ImageJ1 classes by injecting method hooks. */
 	public void injectHooks(final ClassLoader classLoader) {
-		// NB: Override class behavior before class loading gets too far along.
-		final CodeHacker hacker = new CodeHacker(classLoader);
+		final StartupProfiler.Phase phase =
+			StartupProfiler.start(StartupProfiler.PHASE, "Legacy patching");
+		try {
+			// NB: Override class behavior before class loading gets too far along.
+			injectHooks(new CodeHacker(classLoader));
+		}
+		finally {
+			phase.stop();
+		}
+	}
+
+	// -- Helper methods --
 
+	private void injectHooks(final CodeHacker hacker) {
 		// override behavior of ij.ImageJ
 		hacker.insertMethod("ij.ImageJ",
 			"public java.awt.Point getLocationOnScreen()");
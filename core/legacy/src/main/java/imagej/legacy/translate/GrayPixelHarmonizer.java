@@ -39,6 +39,7 @@
 import ij.ImageStack;
 import ij.process.ImageProcessor;
 import imagej.data.Dataset;
+import imagej.data.PackedPlanes;
 import net.imglib2.RandomAccess;
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
@@ -61,11 +62,16 @@ public class GrayPixelHarmonizer implements DataHarmonizer {
 	 * {@link ImagePlus}. Assumes the Dataset and ImagePlus have compatible
 	 * dimensions and that the data planes are not directly mapped. Gets values
 	 * via {@link ImageProcessor}::getf(). In cases where there is a narrowing of
-	 * data into modern ImageJ types the data is range clamped. Does not change
+	 * data into modern ImageJ types the data is range clamped. Packed 1-bit and
+	 * 12-bit planes are instead filled a whole plane at a time. Does not change
 	 * the Dataset's metadata.
 	 */
 	@Override
 	public void updateDataset(final Dataset ds, final ImagePlus imp) {
+		if (packPlanes(ds, imp)) {
+			ds.update();
+			return;
+		}
 		final RealType<?> type = ds.getType();
 		final double typeMin = type.getMinValue();
 		final double typeMax = type.getMaxValue();
@@ -117,11 +123,13 @@ public void updateDataset(final Dataset ds, final ImagePlus imp) {
 	 * It is possible that multiple modern ImageJ axes are encoded as a single set
 	 * of channels in the ImagePlus. Sets values via {@link ImageProcessor}
 	 * ::setf(). Some special case code is in place to assure that BitType images
-	 * go to legacy ImageJ as 0/255 value images. Does not change the ImagePlus'
-	 * metadata.
+	 * go to legacy ImageJ as 0/255 value images. Packed 1-bit and 12-bit planes
+	 * are instead unpacked a whole plane at a time. Does not change the
+	 * ImagePlus' metadata.
 	 */
 	@Override
 	public void updateLegacyImage(final Dataset ds, final ImagePlus imp) {
+		if (unpackPlanes(ds, imp)) return;
 		final RealType<?> type = ds.getType();
 		final boolean signed16BitData = type instanceof ShortType;
 		final boolean bitData = type instanceof BitType;
@@ -164,4 +172,110 @@ public void updateLegacyImage(final Dataset ds, final ImagePlus imp) {
 		}
 	}
 
+	// -- Helper methods --
+
+	/**
+	 * Copies packed 1-bit and 12-bit planes of a {@link Dataset} from a paired
+	 * {@link ImagePlus} a whole plane at a time. Returns false, without changing
+	 * anything, if the data is not suitable for bulk packing.
+	 */
+	private boolean packPlanes(final Dataset ds, final ImagePlus imp) {
+		final int bits = planeBits(ds, imp);
+		if (bits == 0) return false;
+		final ImageStack stack = imp.getStack();
+		final int planeSize = imp.getWidth() * imp.getHeight();
+		final short[] scratch = bits == 12 ? new short[planeSize] : null;
+		final long[] planeNums = planeNumbers(ds, imp);
+		for (int i = 0; i < planeNums.length; i++) {
+			final int planeNum = (int) planeNums[i];
+			final Object pixels = stack.getPixels(i + 1);
+			if (bits == 1) ds.packPlane(planeNum, (byte[]) pixels);
+			else {
+				// clamp to the 12-bit range, as the per-pixel path does
+				final short[] values = (short[]) pixels;
+				for (int p = 0; p < planeSize; p++) {
+					final int value = values[p] & 0xffff;
+					scratch[p] = (short) (value > 4095 ? 4095 : value);
+				}
+				ds.packPlane(planeNum, scratch);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Copies packed 1-bit and 12-bit planes of a {@link Dataset} into a paired
+	 * {@link ImagePlus} a whole plane at a time, with 1-bit data going to legacy
+	 * ImageJ as 0/255 values. Returns false, without changing anything, if the
+	 * data is not suitable for bulk unpacking.
+	 */
+	private boolean unpackPlanes(final Dataset ds, final ImagePlus imp) {
+		final int bits = planeBits(ds, imp);
+		if (bits == 0) return false;
+		final ImageStack stack = imp.getStack();
+		final int planeSize = imp.getWidth() * imp.getHeight();
+		final long[] planeNums = planeNumbers(ds, imp);
+		for (int i = 0; i < planeNums.length; i++) {
+			final int[] words =
+				(int[]) ds.getPlaneForReading((int) planeNums[i], false);
+			final Object pixels = stack.getPixels(i + 1);
+			if (bits == 1) {
+				PackedPlanes.unpackBits(words, (byte[]) pixels, planeSize, (byte) 255);
+			}
+			else PackedPlanes.unpack12Bit(words, (short[]) pixels, planeSize);
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the bits per pixel of a {@link Dataset}'s packed planes, or 0 if its
+	 * planes cannot be copied in bulk to and from the given {@link ImagePlus}.
+	 */
+	private int planeBits(final Dataset ds, final ImagePlus imp) {
+		final int bits = ds.getPackedBits();
+		if (bits == 0) return 0;
+		if (ds.getAxisIndex(Axes.X) != 0 || ds.getAxisIndex(Axes.Y) != 1) {
+			return 0;
+		}
+		if (ds.dimension(0) != imp.getWidth()) return 0;
+		if (ds.dimension(1) != imp.getHeight()) return 0;
+		if (!(ds.getPlaneForReading(0, false) instanceof int[])) return 0;
+		final Object pixels = imp.getStack().getPixels(1);
+		if (bits == 1 && pixels instanceof byte[]) return bits;
+		if (bits == 12 && pixels instanceof short[]) return bits;
+		return 0;
+	}
+
+	/**
+	 * Gets the {@link Dataset} plane number of each {@link ImagePlus} stack
+	 * plane, in stack order.
+	 */
+	private long[] planeNumbers(final Dataset ds, final ImagePlus imp) {
+		final long[] dims = ds.getDims();
+		final AxisType[] axes = ds.getAxes();
+		final int zIndex = ds.getAxisIndex(Axes.Z);
+		final int tIndex = ds.getAxisIndex(Axes.TIME);
+		final int zSize = imp.getNSlices();
+		final int tSize = imp.getNFrames();
+		final int cSize = imp.getNChannels();
+		final long[] planeNums = new long[imp.getStackSize()];
+		final long[] pos = new long[dims.length];
+		int i = 0;
+		for (int t = 0; t < tSize; t++) {
+			if (tIndex >= 0) pos[tIndex] = t;
+			for (int z = 0; z < zSize; z++) {
+				if (zIndex >= 0) pos[zIndex] = z;
+				for (int c = 0; c < cSize; c++) {
+					LegacyUtils.fillChannelIndices(dims, axes, c, pos);
+					long planeNum = 0;
+					for (int d = dims.length - 1; d >= 2; d--) {
+						planeNum = planeNum * dims[d] + pos[d];
+					}
+					planeNums[i++] = planeNum;
+				}
+			}
+		}
+		return planeNums;
+	}
+
 }
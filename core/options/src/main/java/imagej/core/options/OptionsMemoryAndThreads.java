@@ -65,6 +65,9 @@ public class OptionsMemoryAndThreads extends OptionsPlugin {
 	@Parameter(label = "Keep multiple undo buffers")
 	private boolean multipleBuffers = false;
 
+	@Parameter(label = "Undo memory (MB)", min = "0")
+	private int undoMemory = 256;
+
 	@Parameter(label = "Run garbage collector on status bar click")
 	private boolean runGcOnClick = true;
 
@@ -109,6 +112,13 @@ public boolean isMultipleBuffers() {
 		return multipleBuffers;
 	}
 
+	/**
+	 * Returns the number of megabytes of memory that undo buffers may occupy.
+	 */
+	public int getUndoMemory() {
+		return undoMemory;
+	}
+
 	/**
 	 * Returns true if ImageJ will run the garbage collector when user clicks on
 	 * the status area.
@@ -139,6 +149,13 @@ public void setMultipleBuffers(final boolean multipleBuffers) {
 		this.multipleBuffers = multipleBuffers;
 	}
 
+	/**
+	 * Sets the number of megabytes of memory that undo buffers may occupy.
+	 */
+	public void setUndoMemory(final int undoMemory) {
+		this.undoMemory = undoMemory;
+	}
+
 	/**
 	 * Sets whether ImageJ will run the garbage collector when user clicks on the
 	 * status area.
@@ -0,0 +1,270 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2012 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.ui.viewer.table;
+
+import imagej.data.table.ResultsTable;
+import imagej.data.table.RowSort;
+import imagej.data.table.RowSort.RowComparator;
+import imagej.data.table.Table;
+
+/**
+ * A UI-independent, virtualized view of a {@link Table}.
+ * <p>
+ * The view holds no copy of the table's data: cells are fetched on demand,
+ * so a UI only ever touches the rows currently visible. The view does maintain
+ * an optional row order, which maps view rows to table rows, allowing rows to
+ * be sorted or filtered without modifying the table. The orders are computed
+ * by {@link #computeSortOrder} and {@link #computeFilterOrder}, which are safe
+ * to call from a worker thread; the result is then swapped in with
+ * {@link #setRowOrder}.
+ * </p>
+ * <p>
+ * Calling {@link #refresh()} after the table changes reports what kind of
+ * change occurred, so that a UI can react as narrowly as possible, e.g. by
+ * keeping its columns when only the rows changed.
+ * </p>
+ * 
+ * @author agent
+ */
+public class TableViewModel {
+
+	/** The kinds of change detected by {@link TableViewModel#refresh()}. */
+	public enum Change {
+		/** The dimensions of the table are unchanged. */
+		NONE,
+		/**
+		 * The number of rows changed; the columns are unchanged. Since a table
+		 * does not report where rows were inserted or removed, any row may differ.
+		 */
+		ROWS_CHANGED,
+		/** The number of columns changed. */
+		STRUCTURE_CHANGED
+	}
+
+	private final Table<?, ?> table;
+
+	/** Number of rows as of the most recent refresh. */
+	private int rowCount;
+
+	/** Number of columns as of the most recent refresh. */
+	private int columnCount;
+
+	/** Table row of each view row, or null when rows are in table order. */
+	private int[] rowOrder;
+
+	/** The column by which the rows are sorted, or -1 if unsorted. */
+	private int sortColumn = -1;
+
+	private boolean ascending;
+
+	public TableViewModel(final Table<?, ?> table) {
+		this.table = table;
+		refresh();
+	}
+
+	// -- TableViewModel methods --
+
+	public Table<?, ?> getTable() {
+		return table;
+	}
+
+	/** Gets the number of rows in the view. */
+	public synchronized int getRowCount() {
+		return rowOrder == null ? rowCount : rowOrder.length;
+	}
+
+	/** Gets the number of table columns in the view. */
+	public synchronized int getColumnCount() {
+		return columnCount;
+	}
+
+	/** Converts the given view row to the corresponding table row. */
+	public synchronized int getTableRow(final int viewRow) {
+		return rowOrder == null ? viewRow : rowOrder[viewRow];
+	}
+
+	/** Gets the value at the given view row and table column. */
+	public Object getValueAt(final int viewRow, final int col) {
+		return table.get(col, getTableRow(viewRow));
+	}
+
+	/** Gets the sort column, or -1 if the rows are not sorted. */
+	public synchronized int getSortColumn() {
+		return sortColumn;
+	}
+
+	/** Gets whether the rows are sorted in ascending order. */
+	public synchronized boolean isAscending() {
+		return ascending;
+	}
+
+	/** Gets whether the view rows are sorted or filtered. */
+	public synchronized boolean isReordered() {
+		return rowOrder != null;
+	}
+
+	/**
+	 * Updates the view to the table's current dimensions, reporting how it
+	 * changed. Because sorted and filtered orders do not cover new rows, any row
+	 * order is discarded when the number of rows changes.
+	 */
+	public synchronized Change refresh() {
+		final int newRowCount = table == null ? 0 : table.getRowCount();
+		final int newColumnCount = table == null ? 0 : table.getColumnCount();
+		final boolean structure = newColumnCount != columnCount;
+		final boolean rows = newRowCount != rowCount;
+		rowCount = newRowCount;
+		columnCount = newColumnCount;
+		if (structure || rows) {
+			clearRowOrder();
+			return structure ? Change.STRUCTURE_CHANGED : Change.ROWS_CHANGED;
+		}
+		return Change.NONE;
+	}
+
+	/**
+	 * Swaps in a new row order, as computed by {@link #computeSortOrder} or
+	 * {@link #computeFilterOrder}. The order is ignored if there is no table, or
+	 * if the table has changed size since the order was computed.
+	 * 
+	 * @return true iff the order was applied.
+	 */
+	public synchronized boolean setRowOrder(final int[] order,
+		final int sortColumn, final boolean ascending)
+	{
+		if (table == null || table.getRowCount() != rowCount) return false;
+		this.rowOrder = order;
+		this.sortColumn = sortColumn;
+		this.ascending = ascending;
+		return true;
+	}
+
+	/** Restores the table's own row order. */
+	public synchronized void clearRowOrder() {
+		rowOrder = null;
+		sortColumn = -1;
+	}
+
+	/**
+	 * Computes the row order which sorts the table by the given column. The sort
+	 * is stable, and does not box numeric values of {@link ResultsTable}s.
+	 */
+	public int[] computeSortOrder(final int col, final boolean ascend) {
+		if (table == null) return new int[0];
+		final int rows = table.getRowCount();
+		final RowComparator comparator;
+		if (table instanceof ResultsTable) {
+			final ResultsTable results = (ResultsTable) table;
+			final double[] keys = new double[rows];
+			for (int r = 0; r < rows; r++) {
+				keys[r] = results.getValue(col, r);
+			}
+			comparator = new RowComparator() {
+
+				@Override
+				public int compare(final int r1, final int r2) {
+					return Double.compare(keys[r1], keys[r2]);
+				}
+			};
+		}
+		else {
+			comparator = new RowComparator() {
+
+				@Override
+				public int compare(final int r1, final int r2) {
+					return compareObjects(table.get(col, r1), table.get(col, r2));
+				}
+			};
+		}
+		final int[] order = new int[rows];
+		for (int r = 0; r < rows; r++) {
+			order[r] = r;
+		}
+		RowSort.sort(order, ascend ? comparator : new RowComparator() {
+
+			@Override
+			public int compare(final int r1, final int r2) {
+				return comparator.compare(r2, r1);
+			}
+		});
+		return order;
+	}
+
+	/**
+	 * Computes the row order which retains only the rows whose value in the
+	 * given column is a number within [min, max].
+	 */
+	public int[] computeFilterOrder(final int col, final double min,
+		final double max)
+	{
+		if (table == null) return new int[0];
+		final int rows = table.getRowCount();
+		final ResultsTable results =
+			table instanceof ResultsTable ? (ResultsTable) table : null;
+		int[] order = new int[rows];
+		int count = 0;
+		for (int r = 0; r < rows; r++) {
+			final double value;
+			if (results != null) value = results.getValue(col, r);
+			else {
+				final Object o = table.get(col, r);
+				if (!(o instanceof Number)) continue;
+				value = ((Number) o).doubleValue();
+			}
+			if (value >= min && value <= max) order[count++] = r;
+		}
+		if (count < rows) {
+			final int[] trimmed = new int[count];
+			System.arraycopy(order, 0, trimmed, 0, count);
+			order = trimmed;
+		}
+		return order;
+	}
+
+	// -- Helper methods --
+
+	/** Compares two cell values, ordering nulls last. */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private int compareObjects(final Object o1, final Object o2) {
+		if (o1 == null) return o2 == null ? 0 : 1;
+		if (o2 == null) return -1;
+		if (o1 instanceof Comparable && o1.getClass() == o2.getClass()) {
+			return ((Comparable) o1).compareTo(o2);
+		}
+		return o1.toString().compareTo(o2.toString());
+	}
+
+}
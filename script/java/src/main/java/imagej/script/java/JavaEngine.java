@@ -45,6 +45,7 @@
 import imagej.plugin.Plugin;
 import imagej.plugin.PluginService;
 import imagej.script.AbstractScriptEngine;
+import imagej.script.CompiledScriptCache;
 import imagej.script.ScriptService;
 import imagej.util.FileUtils;
 import imagej.util.LineOutputStream;
@@ -85,7 +86,14 @@
 import org.xml.sax.SAXException;
 
 /**
- * TODO
+ * A script engine building and running Java sources with MiniMaven.
+ * <p>
+ * Built scripts are kept in the {@link CompiledScriptCache} of the
+ * {@link ScriptService}, keyed by the hash of their source, so that evaluating
+ * an unchanged script again only costs its execution. For scripts given as a
+ * file, only the main source file is hashed; changes to sibling sources are
+ * not detected until the main file changes, too.
+ * </p>
  * 
  * @author Johannes Schindelin
  */
@@ -95,6 +103,13 @@ public class JavaEngine extends AbstractScriptEngine {
 	private final static String DEFAULT_VERSION = "1.0.0-SNAPSHOT";
 
 	private final static String XALAN_INDENT_AMOUNT = "{http://xml.apache.org/xslt}indent-amount";
+
+	private final static String LANGUAGE = "java";
+	private final static String COMPILED_INFO = "compiled.txt";
+
+	/** Cache used when the engine is not attached to an ImageJ context. */
+	private final static CompiledScriptCache DEFAULT_CACHE = new CompiledScriptCache();
+
 	{
 		engineScopeBindings = new JavaEngineBindings();
 	}
@@ -104,7 +119,6 @@ public Object eval(String script) throws ScriptException {
 		return eval(new StringReader(script));
 	}
 
-	@SuppressWarnings({ "unchecked" })
 	@Override
 	public Object eval(Reader reader) throws ScriptException {
 		final Writer writer = getContext().getErrorWriter();
@@ -123,62 +137,38 @@ public void println(final String line) throws IOException {
 		}
 
 		try {
-			boolean verbose = "true".equals(get("verbose"));
-			boolean debug = "true".equals(get("debug"));
-			BuildEnvironment env = new BuildEnvironment(err, true, verbose, debug);
-			final MavenProject project;
-			String mainClass = null;
-
 			final String path = (String)get(FILENAME);
 			File file = path == null ? null : new File(path);
-			if (file == null || !file.exists()) try {
-				project = writeTemporaryProject(env, reader);
-				mainClass = project.getMainClass();
-			} catch (Exception e) {
-				throw new ScriptException(e);
-			} else {
-				if (file.getName().equals("pom.xml")) {
-					project = env.parse(file, null);
-				} else {
-					mainClass = getFullClassName(file);
-					project = getMavenProject(env, file, mainClass);
-				}
-			}
 
-			project.build(true);
-			if (mainClass == null) {
-				mainClass = project.getMainClass();
-				if (mainClass == null) {
-					throw new ScriptException("No main class found for file " + file);
-				}
+			// look up the script in the cache of compiled scripts
+			final CompiledScriptCache cache = getCompiledScriptCache();
+			String script = null, key = null;
+			if (file == null || !file.exists()) {
+				script = read(reader);
+				key = CompiledScriptCache.getKey(LANGUAGE, script);
+			} else if (!file.getName().equals("pom.xml")) {
+				key = CompiledScriptCache.getKey(LANGUAGE, file.getAbsolutePath() +
+					"\n" + read(new FileReader(file)));
+			}
+			CompiledJava compiled =
+				key == null ? null : cache.get(key, CompiledJava.class);
+			if (compiled == null && script != null) {
+				compiled = readCompiled(cache.getCacheDirectory(LANGUAGE, key));
 			}
 
-			// make class loader
-			String[] paths = project.getClassPath(false).split(File.pathSeparator);
-			URL[] urls = new URL[paths.length];
-			for (int i = 0; i < urls.length; i++)
-				urls[i] = new URL("file:" + paths[i] + (paths[i].endsWith(".jar") ? "" : "/"));
-			URLClassLoader classLoader = new URLClassLoader(urls, getClass().getClassLoader());
+			if (compiled == null) {
+				compiled = compile(err, file, script, cache, key);
+			}
+			if (key != null) cache.put(key, compiled);
 
 			// needed for sezpoz
-			Thread.currentThread().setContextClassLoader(classLoader);
+			final Class<?> clazz = compiled.getMainClass();
+			Thread.currentThread().setContextClassLoader(clazz.getClassLoader());
 
 			// launch main class
-			final Class<?> clazz = classLoader.loadClass(mainClass);
 			if (Command.class.isAssignableFrom(clazz)) {
 				final ImageJ context = (ImageJ)get(ScriptService.CONTEXT);
-				final Plugin annotation = clazz.getAnnotation(Plugin.class);
-				final CommandInfo info = new CommandInfo(mainClass, annotation) {
-
-					@Override
-					public Class<? extends Command> loadClass() {
-						return (Class<? extends Command>) clazz;
-					}
-				};
-
-				final PluginService pluginService = context.getService(PluginService.class);
-				pluginService.addPlugin(info);
-
+				final CommandInfo info = compiled.getCommandInfo(context);
 				final CommandService commandService = context.getService(CommandService.class);
 				commandService.run(info);
 			} else {
@@ -194,6 +184,166 @@ public Class<? extends Command> loadClass() {
 		return null;
 	}
 
+	/**
+	 * Builds the given script (or file) with MiniMaven and loads its main class.
+	 * <p>
+	 * Scripts passed as text are built in a directory of the compiled script
+	 * cache named after the script's hash, so that the resulting classes can be
+	 * reused by later sessions, too.
+	 * </p>
+	 */
+	private CompiledJava compile(final PrintStream err, final File file,
+		final String script, final CompiledScriptCache cache, final String key)
+		throws Exception
+	{
+		boolean verbose = "true".equals(get("verbose"));
+		boolean debug = "true".equals(get("debug"));
+		BuildEnvironment env = new BuildEnvironment(err, true, verbose, debug);
+		final MavenProject project;
+		String mainClass = null;
+
+		final File directory;
+		if (script != null) try {
+			directory = cache.createBuildDirectory(LANGUAGE, key);
+			project = writeProject(env, directory, script);
+			mainClass = project.getMainClass();
+		} catch (Exception e) {
+			throw new ScriptException(e);
+		} else {
+			directory = null;
+			if (file.getName().equals("pom.xml")) {
+				project = env.parse(file, null);
+			} else {
+				mainClass = getFullClassName(file);
+				project = getMavenProject(env, file, mainClass);
+			}
+		}
+
+		project.build(true);
+		if (mainClass == null) {
+			mainClass = project.getMainClass();
+			if (mainClass == null) {
+				throw new ScriptException("No main class found for file " + file);
+			}
+		}
+
+		final String classPath = project.getClassPath(false);
+		if (directory == null) return load(classPath, mainClass);
+		return publish(directory, cache.getCacheDirectory(LANGUAGE, key),
+			classPath, mainClass);
+	}
+
+	/**
+	 * Moves a finished build into its place in the compiled script cache, and
+	 * loads its main class from there.
+	 * <p>
+	 * The build directory is renamed as a whole, so that concurrent builds of
+	 * the same script never see each other's partial output. If another build
+	 * got there first, its result is used instead.
+	 * </p>
+	 */
+	private CompiledJava publish(final File buildDirectory,
+		final File directory, final String classPath, final String mainClass)
+		throws IOException, ClassNotFoundException
+	{
+		final String buildPrefix = buildDirectory.getAbsolutePath();
+		final String prefix = directory.getAbsolutePath();
+		final StringBuilder published = new StringBuilder();
+		for (final String path : classPath.split(File.pathSeparator)) {
+			if (published.length() > 0) published.append(File.pathSeparator);
+			if (path.startsWith(buildPrefix)) {
+				published.append(prefix).append(path.substring(buildPrefix.length()));
+			}
+			else published.append(path);
+		}
+		writeCompiled(buildDirectory, published.toString(), mainClass);
+
+		if (directory.exists() && readCompiled(directory) == null) {
+			// a stale or broken entry; replace it
+			FileUtils.deleteRecursively(directory);
+		}
+		if (buildDirectory.renameTo(directory)) {
+			return load(published.toString(), mainClass);
+		}
+		final CompiledJava compiled = readCompiled(directory);
+		if (compiled != null) {
+			FileUtils.deleteRecursively(buildDirectory);
+			return compiled;
+		}
+		// NB: Leave the build where it is; its classes are still loadable.
+		return load(classPath, mainClass);
+	}
+
+	/** Makes a class loader for the given class path and loads the main class. */
+	private CompiledJava load(final String classPath, final String mainClass)
+		throws IOException, ClassNotFoundException
+	{
+		String[] paths = classPath.split(File.pathSeparator);
+		URL[] urls = new URL[paths.length];
+		for (int i = 0; i < urls.length; i++)
+			urls[i] = new URL("file:" + paths[i] + (paths[i].endsWith(".jar") ? "" : "/"));
+		URLClassLoader classLoader = new URLClassLoader(urls, getClass().getClassLoader());
+		return new CompiledJava(classLoader.loadClass(mainClass));
+	}
+
+	/** Records what is needed to load a built script without rebuilding it. */
+	private static void writeCompiled(final File directory,
+		final String classPath, final String mainClass) throws IOException
+	{
+		final Writer out = new FileWriter(new File(directory, COMPILED_INFO));
+		out.write(mainClass);
+		out.write('\n');
+		out.write(classPath);
+		out.write('\n');
+		out.close();
+	}
+
+	/**
+	 * Loads a script built in an earlier session, if its build artifacts are
+	 * still intact.
+	 * 
+	 * @return the loaded script, or null if it needs to be built again
+	 */
+	private CompiledJava readCompiled(final File directory) {
+		final File info = new File(directory, COMPILED_INFO);
+		if (!info.exists()) return null;
+		try {
+			final BufferedReader in = new BufferedReader(new FileReader(info));
+			final String mainClass = in.readLine();
+			final String classPath = in.readLine();
+			in.close();
+			if (mainClass == null || classPath == null) return null;
+			for (final String path : classPath.split(File.pathSeparator)) {
+				if (!new File(path).exists()) return null;
+			}
+			return load(classPath, mainClass);
+		}
+		catch (final Exception e) {
+			return null;
+		}
+	}
+
+	private CompiledScriptCache getCompiledScriptCache() {
+		final ImageJ context = (ImageJ)get(ScriptService.CONTEXT);
+		if (context != null) {
+			final ScriptService scriptService = context.getService(ScriptService.class);
+			if (scriptService != null) return scriptService.getCompiledScriptCache();
+		}
+		return DEFAULT_CACHE;
+	}
+
+	private static String read(final Reader reader) throws IOException {
+		final StringBuilder builder = new StringBuilder();
+		final BufferedReader in = new BufferedReader(reader);
+		for (;;) {
+			final String line = in.readLine();
+			if (line == null) break;
+			builder.append(line).append('\n');
+		}
+		in.close();
+		return builder.toString();
+	}
+
 	private MavenProject getMavenProject(final BuildEnvironment env,
 			final File file, final String mainClass) throws IOException,
 			ParserConfigurationException, SAXException, ScriptException,
@@ -253,23 +403,16 @@ private static String getFullClassName(final File file) throws IOException {
 		return packageName + name; // the 'package' statement must be the first in the file
 	}
 
-	private static MavenProject writeTemporaryProject(final BuildEnvironment env,
-		final Reader reader) throws IOException, ParserConfigurationException,
-		SAXException, TransformerConfigurationException, TransformerException,
+	private static MavenProject writeProject(final BuildEnvironment env,
+		final File directory, final String script) throws IOException,
+		ParserConfigurationException, SAXException,
+		TransformerConfigurationException, TransformerException,
 		TransformerFactoryConfigurationError
 	{
-		final File directory = FileUtils.createTemporaryDirectory("java", "");
 		final File file = new File(directory, ".java");
 
-		final BufferedReader in = new BufferedReader(reader);
 		final Writer out = new FileWriter(file);
-		for (;;) {
-			final String line = in.readLine();
-			if (line == null) break;
-			out.write(line);
-			out.write('\n');
-		}
-		in.close();
+		out.write(script);
 		out.close();
 
 		final String mainClass = getFullClassName(file);
@@ -354,6 +497,41 @@ private static MavenProject fakePOM(final BuildEnvironment env,
 		return env.parse(new ByteArrayInputStream(out.toByteArray()), directory, null, null);
 	}
 
+	/**
+	 * A built script: its main class, plus the command info once it has been
+	 * registered with the {@link PluginService}.
+	 */
+	private static class CompiledJava {
+
+		private final Class<?> mainClass;
+		private CommandInfo info;
+
+		public CompiledJava(final Class<?> mainClass) {
+			this.mainClass = mainClass;
+		}
+
+		public Class<?> getMainClass() {
+			return mainClass;
+		}
+
+		@SuppressWarnings("unchecked")
+		public synchronized CommandInfo getCommandInfo(final ImageJ context) {
+			if (info != null) return info;
+			final Plugin annotation = mainClass.getAnnotation(Plugin.class);
+			info = new CommandInfo(mainClass.getName(), annotation) {
+
+				@Override
+				public Class<? extends Command> loadClass() {
+					return (Class<? extends Command>) mainClass;
+				}
+			};
+
+			final PluginService pluginService = context.getService(PluginService.class);
+			pluginService.addPlugin(info);
+			return info;
+		}
+	}
+
 	private static Element append(final Document document, final Element parent, final String tag, final String content) {
 		Element child = document.createElement(tag);
 		if (content != null) child.appendChild(document.createCDATASection(content));
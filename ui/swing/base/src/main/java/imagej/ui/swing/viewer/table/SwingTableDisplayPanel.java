@@ -39,17 +39,29 @@
 import imagej.data.table.TableDisplay;
 import imagej.event.EventService;
 import imagej.event.EventSubscriber;
+import imagej.thread.ThreadService;
 import imagej.ui.viewer.DisplayWindow;
 import imagej.ui.viewer.table.TableDisplayPanel;
+import imagej.ui.viewer.table.TableViewModel;
 
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.List;
 
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableColumnModel;
 
 /**
  * This is the display panel for {@link Table}s.
+ * <p>
+ * The panel is backed by a {@link TableViewModel}, so only the visible cells
+ * are ever fetched from the table. Clicking a column header sorts the rows by
+ * that column; sorting and filtering are computed on a worker thread, and the
+ * resulting row order is swapped in on the event dispatch thread.
+ * </p>
  * 
  * @author Curtis Rueden
  * @author Barry DeZonia
@@ -62,8 +74,10 @@ public class SwingTableDisplayPanel extends JScrollPane implements
 
 	private final DisplayWindow window;
 	private final TableDisplay display;
+	private final ThreadService threadService;
+	private final TableViewModel viewModel;
+	private final TableModel tableModel;
 	private final JTable table;
-	private final NullTableModel nullModel;
 
 	@SuppressWarnings("unused")
 	private final List<EventSubscriber<?>> subscribers;
@@ -75,9 +89,27 @@ public SwingTableDisplayPanel(final TableDisplay display,
 	{
 		this.display = display;
 		this.window = window;
-		nullModel = new NullTableModel();
-		table = makeTable();
-		table.setAutoCreateRowSorter(true);
+		threadService = display.getContext().getService(ThreadService.class);
+		viewModel = new TableViewModel(getTable());
+		tableModel = new TableModel(viewModel);
+		table = new JTable(tableModel);
+		table.getTableHeader().addMouseListener(new MouseAdapter() {
+
+			@Override
+			public void mouseClicked(final MouseEvent e) {
+				final int viewCol = table.columnAtPoint(e.getPoint());
+				if (viewCol < 0) return;
+				final int col = table.convertColumnIndexToModel(viewCol) - 1;
+				if (col < 0) {
+					// row header column: restore the original order
+					clearRowOrder();
+					return;
+				}
+				final boolean ascending =
+					viewModel.getSortColumn() != col || !viewModel.isAscending();
+				sort(col, ascending);
+			}
+		});
 		setViewportView(table);
 		window.setContent(this);
 
@@ -86,6 +118,45 @@ public SwingTableDisplayPanel(final TableDisplay display,
 		subscribers = eventService.subscribe(this);
 	}
 
+	// -- SwingTableDisplayPanel methods --
+
+	/**
+	 * Sorts the displayed rows by the given table column. The table itself is
+	 * not modified. The sort order is computed in the background.
+	 */
+	public void sort(final int col, final boolean ascending) {
+		reorder(new Runnable() {
+
+			@Override
+			public void run() {
+				final int[] order = viewModel.computeSortOrder(col, ascending);
+				swap(order, col, ascending);
+			}
+		});
+	}
+
+	/**
+	 * Displays only the rows whose value in the given table column is within
+	 * [min, max]. The table itself is not modified. The filter is computed in
+	 * the background.
+	 */
+	public void filter(final int col, final double min, final double max) {
+		reorder(new Runnable() {
+
+			@Override
+			public void run() {
+				final int[] order = viewModel.computeFilterOrder(col, min, max);
+				swap(order, -1, true);
+			}
+		});
+	}
+
+	/** Displays all rows, in the order of the table. */
+	public void clearRowOrder() {
+		viewModel.clearRowOrder();
+		rowsReordered();
+	}
+
 	// -- TableDisplayPanel methods --
 
 	@Override
@@ -112,128 +183,123 @@ public void setLabel(final String s) {
 
 	@Override
 	public void redraw() {
-		// BDZ - I found a TODO here saying implement me. Not sure if my one liner
-		// is correct but it seems to work.
-		// one liner:
-		// table.update(table.getGraphics());
-		// BDZ now try something more intuitive
-		// table.repaint(); // nope
-		// BDZ this?
-		// table.doLayout(); // nope
-
-		// note that our table is not attached to the table model as a listener.
-		// we might need to do that. but try to find a simple way to enforce a
-		// reread of the table because when it gets in here it's contents are ok
-
-		javax.swing.table.TableModel model = table.getModel();
-
-		// BDZ attempt to force a rebuild. no luck. and also fails the Clear test.
-		// Object v = model.getValueAt(0, 0);
-		// model.setValueAt(v, 0, 0);
-
-		// BDZ hacky hack way that works
-		table.setModel(nullModel);
-		table.setModel(model);
-		// table.repaint();
-	}
-
-	// -- Event Handlers
-
-	/*
-	@EventHandler
-	protected void onEvent(DisplayUpdatedEvent evt) {
-		if (evt.getDisplay() != display) return;
-		System.out.println("JTable.getModel().getRowCount() == " +
-			table.getModel().getRowCount());
-		redraw();
+		// NB: The view fetches cells on demand, so only the kind of change
+		// matters; notify the JTable as narrowly as possible.
+		switch (viewModel.refresh()) {
+			case STRUCTURE_CHANGED:
+				tableModel.fireTableStructureChanged();
+				break;
+			default:
+				tableModel.fireTableDataChanged();
+		}
 	}
-	*/
 
 	// -- Helper methods --
 
-	private JTable makeTable() {
-		return new JTable(new TableModel(getTable()));
-	}
-
 	private Table<?, ?> getTable() {
 		return display.size() == 0 ? null : display.get(0);
 	}
 
-	// -- Helper classes --
-
-	public static class NullTableModel extends AbstractTableModel {
+	/** Computes a new row order on a worker thread. */
+	private void reorder(final Runnable computation) {
+		if (threadService == null) computation.run();
+		else threadService.run(computation);
+	}
 
-		@Override
-		public int getColumnCount() {
-			return 0;
-		}
+	/** Swaps in a newly computed row order, on the event dispatch thread. */
+	private void swap(final int[] order, final int sortColumn,
+		final boolean ascending)
+	{
+		final Runnable update = new Runnable() {
 
-		@Override
-		public int getRowCount() {
-			return 0;
-		}
+			@Override
+			public void run() {
+				if (viewModel.setRowOrder(order, sortColumn, ascending)) {
+					rowsReordered();
+				}
+			}
+		};
+		if (threadService == null) update.run();
+		else threadService.queue(update);
+	}
 
-		@Override
-		public Object getValueAt(int rowIndex, int columnIndex) {
-			return null;
+	/**
+	 * Notifies the JTable that the rows were reordered. Only the data changed,
+	 * so the user's column widths and order are kept; the sort indicators are
+	 * updated in place.
+	 */
+	private void rowsReordered() {
+		tableModel.fireTableDataChanged();
+		final TableColumnModel columns = table.getColumnModel();
+		for (int i = 0; i < columns.getColumnCount(); i++) {
+			final TableColumn column = columns.getColumn(i);
+			column.setHeaderValue(tableModel.getColumnName(column.getModelIndex()));
 		}
-
+		table.getTableHeader().repaint();
 	}
 
-	/** A Swing {@link TableModel} backed by an ImageJ {@link Table}. */
+	// -- Helper classes --
+
+	/** A Swing {@link TableModel} backed by a {@link TableViewModel}. */
 	public static class TableModel extends AbstractTableModel {
 
-		private final Table<?, ?> tab;
+		private final TableViewModel view;
 
-		public TableModel(final Table<?, ?> table) {
-			this.tab = table;
+		public TableModel(final TableViewModel view) {
+			this.view = view;
 		}
 
 		@Override
 		public String getColumnName(final int col) {
 			if (col == 0) return "";
-			return tab.getColumnHeader(col - 1);
+			final String header = view.getTable().getColumnHeader(col - 1);
+			if (view.getSortColumn() != col - 1) return header;
+			final String arrow = view.isAscending() ? "\u25b2" : "\u25bc";
+			return header == null ? arrow : header + " " + arrow;
 		}
 
 		@Override
 		public int getRowCount() {
-			return tab.getRowCount();
+			return view.getRowCount();
 		}
 
 		@Override
 		public int getColumnCount() {
-			return tab.getColumnCount() + 1; // +1 for row header column
+			return view.getColumnCount() + 1; // +1 for row header column
 		}
 
 		@Override
 		public Object getValueAt(final int row, final int col) {
 			if (row < 0 || row >= getRowCount()) return null;
 			if (col < 0 || col >= getColumnCount()) return null;
+			final int tableRow = view.getTableRow(row);
 
 			if (col == 0) {
 				// get row header, or row number if none
 				// NB: Assumes the JTable can handle Strings equally as well as the
 				// underlying type T of the Table.
-				final String header = tab.getRowHeader(row);
+				final String header = view.getTable().getRowHeader(tableRow);
 				if (header != null) return header;
-				return "" + (row + 1);
+				return "" + (tableRow + 1);
 			}
 
 			// get the underlying table value
 			// NB: The column is offset by one to accommodate the row header/number.
-			return tab.get(col - 1, row);
+			return view.getValueAt(row, col - 1);
 		}
 
 		@Override
 		public void setValueAt(final Object value, final int row, final int col) {
 			if (row < 0 || row >= getRowCount()) return;
 			if (col < 0 || col >= getColumnCount()) return;
+			final int tableRow = view.getTableRow(row);
 			if (col == 0) {
 				// set row header
-				tab.setRowHeader(row, value == null ? null : value.toString());
+				view.getTable().setRowHeader(tableRow,
+					value == null ? null : value.toString());
 				return;
 			}
-			set(tab, col - 1, row, value);
+			set(view.getTable(), col - 1, tableRow, value);
 			fireTableCellUpdated(row, col);
 		}
 
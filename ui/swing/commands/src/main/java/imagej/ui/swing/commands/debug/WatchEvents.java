@@ -80,6 +80,7 @@ public void run() {
 
 			@Override
 			public void windowClosing(final WindowEvent e) {
+				eventHistory.stopCapture();
 				eventHistory.removeListener(WatchEvents.this);
 			}
 		});
@@ -47,6 +47,7 @@
 import java.awt.BorderLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
 import java.io.IOException;
 import java.util.Enumeration;
 import java.util.HashSet;
@@ -54,6 +55,7 @@
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
@@ -100,6 +102,11 @@ public class WatchEventsFrame extends JFrame implements ActionListener,
 	private final HTMLEditorKit kit;
 	private final HTMLDocument doc;
 
+	private final JButton capture;
+
+	/** Number of events shown in the text pane. */
+	private int shownCount;
+
 	// -- Constructor --
 
 	public WatchEventsFrame(final EventHistory eventHistory, final LogService log)
@@ -137,9 +144,15 @@ public WatchEventsFrame(final EventHistory eventHistory, final LogService log)
 		clearHistory.setActionCommand("clearHistory");
 		clearHistory.addActionListener(this);
 
+		// create capture button
+		capture = new JButton(captureLabel());
+		capture.setActionCommand("capture");
+		capture.addActionListener(this);
+
 		final JPanel buttonBar = new JPanel();
 		buttonBar.setLayout(new BoxLayout(buttonBar, BoxLayout.X_AXIS));
 		buttonBar.add(Box.createHorizontalGlue());
+		buttonBar.add(capture);
 		buttonBar.add(clearHistory);
 
 		final JPanel contentPane = new JPanel();
@@ -160,6 +173,11 @@ public void append(final EventDetails details) {
 		final Class<? extends ImageJEvent> eventType = details.getEventType();
 		final DefaultMutableTreeNode node = findOrCreate(eventType);
 		if (!isChecked(node)) return; // skip disabled event types
+		if (++shownCount > 2 * eventHistory.getCapacity()) {
+			// keep the text pane as bounded as the event history
+			refreshLog();
+			return;
+		}
 		append(details.toHTML(selected.contains(eventType)));
 	}
 
@@ -175,6 +193,7 @@ public void refreshTree() {
 	/** Resets the text to match the current event history. Expensive. */
 	public void refreshLog() {
 		final String html = eventHistory.toHTML(filtered, selected);
+		shownCount = eventHistory.getCapacity();
 		setText(html);
 	}
 
@@ -200,6 +219,7 @@ public void setText(final String text) {
 
 	/** Clears the text pane. */
 	public void clear() {
+		shownCount = 0;
 		textPane.setText("");
 	}
 
@@ -212,6 +232,9 @@ public void actionPerformed(final ActionEvent e) {
 			eventHistory.clear();
 			clear();
 		}
+		else if ("capture".equals(cmd)) {
+			toggleCapture();
+		}
 	}
 
 	// -- TreeModelListener methods --
@@ -264,6 +287,29 @@ public void valueChanged(final TreeSelectionEvent e) {
 
 	// -- Helper methods --
 
+	/** Starts or stops streaming the event history to a file. */
+	private void toggleCapture() {
+		if (eventHistory.isCapturing()) {
+			eventHistory.stopCapture();
+		}
+		else {
+			final JFileChooser chooser = new JFileChooser();
+			chooser.setSelectedFile(new File("events.ijev"));
+			if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+			try {
+				eventHistory.startCapture(chooser.getSelectedFile());
+			}
+			catch (final IOException e) {
+				log.error(e);
+			}
+		}
+		capture.setText(captureLabel());
+	}
+
+	private String captureLabel() {
+		return eventHistory.isCapturing() ? "Stop Capture" : "Capture to File...";
+	}
+
 	/** Populates the {@link #filtered} set to match the current tree state. */
 	private void syncFiltered() {
 		filtered.clear();